@@ -0,0 +1,137 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.brackit.xquery.node.d2linked.D2Node;
+import org.brackit.xquery.node.d2linked.D2NodeBuilder;
+import org.brackit.xquery.node.parser.DocumentParser;
+import org.brackit.xquery.util.xmark.XMarkGenerator;
+import org.brackit.xquery.xdm.DocumentException;
+
+/**
+ * Helpers to load benchmark documents and queries. Locations of the form
+ * <code>xmark:&lt;factor&gt;</code> denote a generated XMark document of the
+ * given scale factor. Locations starting with '/' are looked up on the
+ * classpath first (e.g. the XMark documents shipped in the brackit test jar),
+ * all other locations are read from the file system.
+ */
+final class Documents {
+
+	static final String XMARK_QUERY_DIR = "/xmark/queries/orig/";
+
+	static final String GENERATED_PREFIX = "xmark:";
+
+	private Documents() {
+	}
+
+	static byte[] read(String location) throws IOException {
+		if (location.startsWith(GENERATED_PREFIX)) {
+			StringWriter out = new StringWriter();
+			try {
+				generator(location).write(out);
+			} catch (DocumentException e) {
+				throw new IOException(e);
+			}
+			return out.toString().getBytes("UTF-8");
+		}
+		InputStream in = Documents.class.getResourceAsStream(location);
+		if (in == null) {
+			in = new FileInputStream(new File(location));
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int r;
+			while ((r = in.read(buf)) != -1) {
+				out.write(buf, 0, r);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	static String xmarkQuery(String query) throws IOException {
+		return new String(read(XMARK_QUERY_DIR + query + ".xq"), "UTF-8");
+	}
+
+	static D2Node load(String location) throws IOException,
+			DocumentException {
+		if (location.startsWith(GENERATED_PREFIX)) {
+			D2NodeBuilder builder = new D2NodeBuilder();
+			generator(location).parse(builder);
+			return builder.root();
+		}
+		return parse(read(location));
+	}
+
+	private static XMarkGenerator generator(String location) {
+		double factor = Double.parseDouble(location
+				.substring(GENERATED_PREFIX.length()));
+		return new XMarkGenerator(factor);
+	}
+
+	static D2Node parse(byte[] document) throws DocumentException {
+		DocumentParser parser = new DocumentParser(new ByteArrayInputStream(
+				document));
+		parser.setRetainWhitespace(true);
+		D2NodeBuilder builder = new D2NodeBuilder();
+		parser.parse(builder);
+		return builder.root();
+	}
+
+	static PrintWriter nullWriter() {
+		return new PrintWriter(new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+			}
+
+			@Override
+			public void write(String str, int off, int len) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.util.Cmp;
+import org.brackit.xquery.util.join.MultiTypeJoinTable;
+import org.brackit.xquery.xdm.Sequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link MultiTypeJoinTable} in isolation and a value join that
+ * the compiler turns into a TableJoin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+
+	@Param( { "10000", "100000" })
+	public int size;
+
+	@Param( { "integer", "string", "mixed" })
+	public String keyType;
+
+	private Atomic[] keys;
+
+	private XQuery tableJoin;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Random rnd = new Random(42);
+		keys = new Atomic[size];
+		for (int i = 0; i < size; i++) {
+			int key = rnd.nextInt(size);
+			boolean str = ("string".equals(keyType))
+					|| (("mixed".equals(keyType)) && ((i & 1) == 0));
+			keys[i] = (str) ? new Str(Integer.toString(key)) : new Int32(key);
+		}
+		tableJoin = new XQuery(String.format(
+				"count(for $l in 1 to %s for $r in 1 to %s "
+						+ "where $l = $r return $r)", size, size));
+	}
+
+	@Benchmark
+	public int joinTable() throws Exception {
+		MultiTypeJoinTable table = new MultiTypeJoinTable(Cmp.eq, true, false);
+		for (int i = 0; i < size; i++) {
+			table.add(keys[i], new Sequence[] { keys[i] }, i);
+		}
+		int matches = 0;
+		for (int i = 0; i < size; i++) {
+			matches += table.probe(keys[i]).getSize();
+		}
+		return matches;
+	}
+
+	@Benchmark
+	public Sequence tableJoin() throws Exception {
+		return tableJoin.evaluate(new QueryContext());
+	}
+}
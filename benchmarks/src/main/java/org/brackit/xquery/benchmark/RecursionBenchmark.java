@@ -0,0 +1,89 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.XQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures deeply recursive user-defined functions whose recursive calls are
+ * in tail position, e.g., accumulators over a million iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RecursionBenchmark {
+
+	private static final String SUM = "declare function "
+			+ "local:sum($n as xs:integer, $acc as xs:integer) as xs:integer { "
+			+ "if ($n = 0) then $acc else local:sum($n - 1, $acc + $n) }; "
+			+ "local:sum(%s, 0)";
+
+	private static final String EVEN_ODD = "declare function "
+			+ "local:even($n as xs:integer) as xs:boolean { "
+			+ "if ($n = 0) then true() else local:odd($n - 1) }; "
+			+ "declare function local:odd($n as xs:integer) as xs:boolean { "
+			+ "if ($n = 0) then false() else local:even($n - 1) }; "
+			+ "local:even(%s)";
+
+	@Param( { "1000", "1000000" })
+	public int depth;
+
+	@Param( { "sum", "even-odd" })
+	public String function;
+
+	private XQuery xquery;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		String query = ("sum".equals(function)) ? SUM : EVEN_ODD;
+		xquery = new XQuery(String.format(query, depth));
+	}
+
+	@Benchmark
+	public void recursion() throws Exception {
+		xquery.serialize(new QueryContext(), Documents.nullWriter());
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.DTD;
+import org.brackit.xquery.atomic.Date;
+import org.brackit.xquery.atomic.DateTime;
+import org.brackit.xquery.atomic.Dur;
+import org.brackit.xquery.atomic.Time;
+import org.brackit.xquery.atomic.YMD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures lexical parsing of date/time and duration values, both directly
+ * and as casts of untyped values in a query, e.g., xs:dateTime($l/@ts).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TemporalParseBenchmark {
+
+	private static final int VARIANTS = 1024;
+
+	private static final String CAST = "count(for $i in 1 to 100000 "
+			+ "let $v := xs:untypedAtomic(concat(%s)) "
+			+ "where xs:%s($v) = xs:%s('%s') return $i)";
+
+	@Param( { "dateTime", "date", "time", "dayTimeDuration",
+			"yearMonthDuration", "duration" })
+	public String type;
+
+	private String[] values;
+
+	private int pos;
+
+	private XQuery cast;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		values = new String[VARIANTS];
+		for (int i = 0; i < VARIANTS; i++) {
+			int d = 1 + i % 28;
+			int m = 1 + i % 12;
+			int h = i % 24;
+			int s = i % 60;
+			String date = String.format(Locale.ROOT, "%04d-%02d-%02d",
+					1990 + i % 30, m, d);
+			String time = String.format(Locale.ROOT, "%02d:%02d:%02d.%03d",
+					h, s, 59 - s, i % 1000);
+			if ("dateTime".equals(type)) {
+				values[i] = date + "T" + time
+						+ ((i % 2 == 0) ? "Z" : "+02:00");
+			} else if ("date".equals(type)) {
+				values[i] = date;
+			} else if ("time".equals(type)) {
+				values[i] = time;
+			} else if ("dayTimeDuration".equals(type)) {
+				values[i] = String.format(Locale.ROOT, "P%dDT%dH%dM%d.%dS",
+						d, h, s, i, i);
+			} else if ("yearMonthDuration".equals(type)) {
+				values[i] = String.format(Locale.ROOT, "P%dY%dM", i, m);
+			} else {
+				values[i] = String.format(Locale.ROOT,
+						"P%dY%dM%dDT%dH%dM%dS", i, m, d, h, s, i);
+			}
+		}
+		cast = new XQuery(query());
+	}
+
+	private String query() {
+		// lexical forms are computed from $i to prevent constant folding
+		if ("dateTime".equals(type)) {
+			return String.format(CAST, "'2012-03-', 10 + $i mod 20, "
+					+ "'T10:11:12.345Z'", type, type, "2012-03-20T10:11:12.345Z");
+		} else if ("date".equals(type)) {
+			return String.format(CAST, "'2012-03-', 10 + $i mod 20", type,
+					type, "2012-03-20");
+		} else if ("time".equals(type)) {
+			return String.format(CAST, "'10:11:', 10 + $i mod 50, '.345'",
+					type, type, "10:11:20.345");
+		} else if ("dayTimeDuration".equals(type)) {
+			return String.format(CAST, "'P', $i mod 30, 'DT10H11M12.5S'",
+					type, type, "P20DT10H11M12.5S");
+		} else if ("yearMonthDuration".equals(type)) {
+			return String.format(CAST, "'P', $i mod 30, 'Y3M'", type, type,
+					"P20Y3M");
+		} else {
+			return String.format(CAST, "'P', $i mod 30, 'Y3M4DT10H11M12S'",
+					type, type, "P20Y3M4DT10H11M12S");
+		}
+	}
+
+	@Benchmark
+	public Atomic parse() throws QueryException {
+		String s = values[pos++ & (VARIANTS - 1)];
+		if ("dateTime".equals(type)) {
+			return new DateTime(s);
+		} else if ("date".equals(type)) {
+			return new Date(s);
+		} else if ("time".equals(type)) {
+			return new Time(s);
+		} else if ("dayTimeDuration".equals(type)) {
+			return new DTD(s);
+		} else if ("yearMonthDuration".equals(type)) {
+			return new YMD(s);
+		} else {
+			return new Dur(s);
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void cast() throws Exception {
+		cast.serialize(new QueryContext(), Documents.nullWriter());
+	}
+}
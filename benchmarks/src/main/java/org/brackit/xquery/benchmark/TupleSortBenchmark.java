@@ -0,0 +1,106 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.brackit.xquery.Tuple;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.operator.TupleImpl;
+import org.brackit.xquery.util.sort.Ordering;
+import org.brackit.xquery.util.sort.Ordering.OrderModifier;
+import org.brackit.xquery.xdm.Expr;
+import org.brackit.xquery.xdm.Sequence;
+import org.brackit.xquery.xdm.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts tuples on a single integer key with {@link Ordering}, i.e., the
+ * TupleSort used by order by clauses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TupleSortBenchmark {
+
+	@Param( { "10000", "1000000" })
+	public int size;
+
+	@Param( { "random", "sorted" })
+	public String input;
+
+	private Tuple[] tuples;
+
+	private Sequence[] keys;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random rnd = new Random(42);
+		tuples = new Tuple[size];
+		keys = new Sequence[size];
+		for (int i = 0; i < size; i++) {
+			int key = ("sorted".equals(input)) ? i : rnd.nextInt();
+			keys[i] = new Int32(key);
+			tuples[i] = new TupleImpl(new Int32(i));
+		}
+	}
+
+	@Benchmark
+	public int sort() throws Exception {
+		Ordering ordering = new Ordering(new Expr[1],
+				new OrderModifier[] { new OrderModifier(true, true, null) });
+		for (int i = 0; i < size; i++) {
+			ordering.add(new Sequence[] { keys[i] }, tuples[i]);
+		}
+		int count = 0;
+		Stream<Tuple> sorted = ordering.sorted();
+		try {
+			while (sorted.next() != null) {
+				count++;
+			}
+		} finally {
+			sorted.close();
+		}
+		return count;
+	}
+}
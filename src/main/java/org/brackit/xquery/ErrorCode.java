@@ -670,6 +670,12 @@ public class ErrorCode {
 	public static final QNm BIT_DYN_ABORTED_ERROR = new QNm(BIT_NSURI,
 			BIT_PREFIX, "BIDY0007");
 
+	public static final QNm BIT_DYN_RT_TIMEOUT_ERROR = new QNm(BIT_NSURI,
+			BIT_PREFIX, "BIDY0008");
+
+	public static final QNm BIT_DYN_RT_RESOURCE_LIMIT_ERROR = new QNm(
+			BIT_NSURI, BIT_PREFIX, "BIDY0009");
+
 	public static final QNm BIT_DYN_DOCUMENT_ACCESS_ERROR = new QNm(BIT_NSURI,
 			BIT_PREFIX, "BIDY0200");
 
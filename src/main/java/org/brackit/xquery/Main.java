@@ -28,6 +28,7 @@
 package org.brackit.xquery;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,11 +36,17 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.brackit.xquery.compiler.profiler.ProfileStats;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.brackit.xquery.function.MemoTable;
 import org.brackit.xquery.node.parser.DocumentParser;
 import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.node.snapshot.MappedStore;
 import org.brackit.xquery.util.io.URIHandler;
 import org.brackit.xquery.xdm.Collection;
+import org.brackit.xquery.xdm.Function;
 import org.brackit.xquery.xdm.Node;
 import org.brackit.xquery.xdm.NodeFactory;
 
@@ -83,13 +90,19 @@ public class Main {
 		options.add(new Option("-q",
 				"query file [use '-' for stdin (default)]", true));
 		options.add(new Option("-f", "default document", true));
+		options.add(new Option("-d", "persistent store directory", true));
 		options.add(new Option("-p", "pretty print", false));
+		options.add(new Option("-t", "timeout in milliseconds", true));
+		options.add(new Option("-e",
+				"print execution statistics to stderr [text|json]", true));
 	}
 
 	public static void main(String[] args) {
 		try {
 			Config config = parseParams(args);
-			QueryContext ctx = new QueryContext();
+			QueryContext ctx = (config.isSet("-d")) ? new QueryContext(
+					new MappedStore(new File(config.getValue("-d"))))
+					: new QueryContext();
 
 			String file = config.getValue("-f");
 			if (file != null) {
@@ -114,10 +127,35 @@ public class Main {
 				query = readString(System.in);
 			}
 
-			XQuery xq = new XQuery(query);
+			String explain = config.getValue("-e");
+			if ((explain != null) && (!"text".equals(explain))
+					&& (!"json".equals(explain))) {
+				throw new Exception("Invalid statistics format: " + explain);
+			}
+
+			XQuery xq = (explain != null) ? new XQuery(
+					new ProfilingCompileChain(), query) : new XQuery(query);
 			xq.setPrettyPrint(config.isSet("-p"));
 
+			if (config.isSet("-t")) {
+				ctx.setTimeout(Long.parseLong(config.getValue("-t")));
+			}
+
 			xq.serialize(ctx, System.out);
+
+			if (explain != null) {
+				System.out.flush();
+				ProfileStats stats = xq.getStats();
+				System.err.println("json".equals(explain) ? stats.toJSON()
+						: stats.toString());
+				if ("text".equals(explain)) {
+					for (Map.Entry<Function, MemoTable> memo : ctx
+							.getMemoTables().entrySet()) {
+						System.err.println(String.format("memoize %s (%s)",
+								memo.getKey().getName(), memo.getValue()));
+					}
+				}
+			}
 		} catch (QueryException e) {
 			System.out.println("Error: " + e.getMessage());
 			System.exit(-2);
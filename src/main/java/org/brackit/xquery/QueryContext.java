@@ -27,7 +27,9 @@
  */
 package org.brackit.xquery;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.brackit.xquery.atomic.AbstractTimeInstant;
@@ -37,11 +39,14 @@ import org.brackit.xquery.atomic.Date;
 import org.brackit.xquery.atomic.DateTime;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Time;
+import org.brackit.xquery.function.MemoTable;
 import org.brackit.xquery.node.SimpleStore;
 import org.brackit.xquery.node.d2linked.D2NodeFactory;
 import org.brackit.xquery.update.UpdateList;
+import org.brackit.xquery.util.Cfg;
 import org.brackit.xquery.update.op.UpdateOp;
 import org.brackit.xquery.xdm.Collection;
+import org.brackit.xquery.xdm.Function;
 import org.brackit.xquery.xdm.Item;
 import org.brackit.xquery.xdm.Node;
 import org.brackit.xquery.xdm.NodeFactory;
@@ -50,11 +55,49 @@ import org.brackit.xquery.xdm.Store;
 import org.brackit.xquery.xdm.type.ItemType;
 
 /**
+ * Dynamic context of a query.
+ * <p>
+ * The context also acts as resource governor of a query: A query can be
+ * cancelled asynchronously, limited to a wall-clock timeout, and limited in
+ * the number of tuples produced and the estimated memory held by blocking
+ * operators. Iterative operators and expressions cooperatively call
+ * {@link #check()}, {@link #produced()}, and {@link #allocate(long)}, which
+ * raise a {@link QueryException} with error code
+ * {@link ErrorCode#BIT_DYN_ABORTED_ERROR},
+ * {@link ErrorCode#BIT_DYN_RT_TIMEOUT_ERROR}, or
+ * {@link ErrorCode#BIT_DYN_RT_RESOURCE_LIMIT_ERROR}, respectively.
  * 
  * @author Sebastian Baechle
  * 
  */
 public class QueryContext {
+	public static final String TIMEOUT_CFG = "org.brackit.xquery.timeout";
+
+	public static final String MAX_TUPLES_CFG = "org.brackit.xquery.maxTuples";
+
+	public static final String MAX_MEMORY_CFG = "org.brackit.xquery.maxMemory";
+
+	/**
+	 * Default wall-clock timeout in milliseconds (0 = unlimited)
+	 */
+	public static long TIMEOUT = Cfg.asLong(TIMEOUT_CFG, 0);
+
+	/**
+	 * Default maximum number of tuples produced (0 = unlimited)
+	 */
+	public static long MAX_TUPLES = Cfg.asLong(MAX_TUPLES_CFG, 0);
+
+	/**
+	 * Default maximum estimated memory in bytes held by blocking operators (0
+	 * = unlimited)
+	 */
+	public static long MAX_MEMORY = Cfg.asLong(MAX_MEMORY_CFG, 0);
+
+	/**
+	 * Number of calls to {@link #check()} between two clock reads
+	 */
+	private static final int CLOCK_CHECK_MASK = 0xFF;
+
 	protected static final NodeFactory<?> FACTORY = new D2NodeFactory();
 
 	protected static final Store STORE = null;
@@ -83,14 +126,189 @@ public class QueryContext {
 
 	private DTD implicitTimezone = AbstractTimeInstant.LOCAL_TIMEZONE;
 
+	private volatile boolean cancelled;
+
+	private long timeout;
+
+	private boolean started;
+
+	private long deadline;
+
+	private int checkCount;
+
+	private long maxTuples = MAX_TUPLES;
+
+	private long tupleCount;
+
+	private long maxMemory = MAX_MEMORY;
+
+	private long memory;
+
+	private Map<Function, MemoTable> memoTables;
+
 	public QueryContext() {
 		this.factory = FACTORY;
 		this.store = new SimpleStore();
+		this.timeout = TIMEOUT;
 	}
 
 	public QueryContext(Store store) {
 		this.factory = FACTORY;
 		this.store = store;
+		this.timeout = TIMEOUT;
+	}
+
+	/**
+	 * Requests cancellation of the query. May be called from any thread; the
+	 * query will fail at its next cooperative check.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Sets a wall-clock timeout in milliseconds, measured from the start of
+	 * the first query evaluated with this context, or from now if a query was
+	 * already started. A value of 0 disables the timeout.
+	 */
+	public void setTimeout(long millis) {
+		timeout = millis;
+		if (started) {
+			arm();
+		}
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Marks the start of query evaluation. Arms the timeout on the first call
+	 * and performs a {@link #check()}.
+	 */
+	public final void start() throws QueryException {
+		if (!started) {
+			started = true;
+			arm();
+		}
+		check();
+	}
+
+	private void arm() {
+		deadline = (timeout > 0) ? System.nanoTime() + timeout * 1000000 : 0;
+	}
+
+	/**
+	 * Sets the maximum number of tuples produced by the query. A value of 0
+	 * disables the limit.
+	 */
+	public void setMaxTuples(long maxTuples) {
+		this.maxTuples = maxTuples;
+	}
+
+	public long getMaxTuples() {
+		return maxTuples;
+	}
+
+	public long getTupleCount() {
+		return tupleCount;
+	}
+
+	/**
+	 * Sets the maximum estimated memory in bytes held by blocking operators.
+	 * A value of 0 disables the limit.
+	 */
+	public void setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+	}
+
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	public long getMemory() {
+		return memory;
+	}
+
+	/**
+	 * Cooperative check for cancellation and timeout. The clock is only read
+	 * every few calls, so this is cheap enough to be called per item.
+	 */
+	public final void check() throws QueryException {
+		if (cancelled) {
+			throw new QueryException(ErrorCode.BIT_DYN_ABORTED_ERROR,
+					"Query was cancelled");
+		}
+		if ((deadline != 0) && ((++checkCount & CLOCK_CHECK_MASK) == 0)
+				&& (System.nanoTime() - deadline > 0)) {
+			throw new QueryException(ErrorCode.BIT_DYN_RT_TIMEOUT_ERROR,
+					"Query exceeded its time limit");
+		}
+	}
+
+	/**
+	 * Accounts a produced tuple and performs a {@link #check()}.
+	 */
+	public final void produced() throws QueryException {
+		if ((++tupleCount > maxTuples) && (maxTuples > 0)) {
+			throw new QueryException(ErrorCode.BIT_DYN_RT_RESOURCE_LIMIT_ERROR,
+					"Query exceeded its limit of %s tuples", maxTuples);
+		}
+		check();
+	}
+
+	/**
+	 * Accounts the given estimated number of bytes held by a blocking
+	 * operator. Every allocation must be followed by a matching
+	 * {@link #release(long)}.
+	 */
+	public final void allocate(long bytes) throws QueryException {
+		memory += bytes;
+		if ((memory > maxMemory) && (maxMemory > 0)) {
+			throw new QueryException(ErrorCode.BIT_DYN_RT_RESOURCE_LIMIT_ERROR,
+					"Query exceeded its memory limit of %s bytes", maxMemory);
+		}
+	}
+
+	public final void release(long bytes) {
+		memory -= bytes;
+	}
+
+	/**
+	 * Rough estimate of the bytes held by a buffered tuple of the given
+	 * width. Items are assumed to be shared and are not accounted.
+	 */
+	public static long estimateSize(int width) {
+		return 16 + 16L * width;
+	}
+
+	/**
+	 * Returns the result cache of the given memoized function for this
+	 * query.
+	 */
+	public MemoTable getMemoTable(Function function, int capacity) {
+		if (memoTables == null) {
+			memoTables = new LinkedHashMap<Function, MemoTable>();
+		}
+		MemoTable table = memoTables.get(function);
+		if (table == null) {
+			table = new MemoTable(capacity);
+			memoTables.put(function, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the result caches of all memoized functions called so far,
+	 * e.g., to inspect their hit rates.
+	 */
+	public Map<Function, MemoTable> getMemoTables() {
+		return (memoTables != null) ? Collections.unmodifiableMap(memoTables)
+				: Collections.<Function, MemoTable> emptyMap();
 	}
 
 	public void addPendingUpdate(UpdateOp op) {
@@ -31,6 +31,9 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 
 import org.brackit.xquery.compiler.CompileChain;
+import org.brackit.xquery.compiler.profiler.ProfileStats;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.brackit.xquery.compiler.profiler.ProfilingCompiler;
 import org.brackit.xquery.module.Module;
 import org.brackit.xquery.operator.TupleImpl;
 import org.brackit.xquery.util.Cfg;
@@ -85,6 +88,7 @@ public class XQuery {
 			throw new QueryException(ErrorCode.BIT_DYN_INT_ERROR,
 					"Module does not contain a query body.");
 		}
+		ctx.start();
 		Sequence result = body.evaluate(ctx, new TupleImpl());
 
 		if ((!lazy) || (body.isUpdating())) {
@@ -129,6 +133,17 @@ public class XQuery {
 		serializer.serialize(result);
 	}
 
+	/**
+	 * Returns the execution plan with the runtime statistics collected so far,
+	 * i.e., an EXPLAIN before and an EXPLAIN ANALYZE after the query was
+	 * executed. Statistics are only available if the query was compiled with
+	 * a {@link ProfilingCompileChain}; otherwise <code>null</code> is
+	 * returned.
+	 */
+	public ProfileStats getStats() {
+		return ProfilingCompiler.getStats(this);
+	}
+
 	public boolean isPrettyPrint() {
 		return prettyPrint;
 	}
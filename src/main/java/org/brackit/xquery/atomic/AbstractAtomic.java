@@ -27,6 +27,7 @@
  */
 package org.brackit.xquery.atomic;
 
+import org.brackit.xquery.ErrorCode;
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.Tuple;
@@ -69,6 +70,25 @@ public abstract class AbstractAtomic extends AbstractItem implements Atomic {
 
 	protected abstract int atomicCmpInternal(Atomic atomic);
 
+	/**
+	 * Parses the non-negative decimal number in
+	 * <code>str[start, end)</code> without creating intermediate strings.
+	 * The characters must be ASCII digits.
+	 */
+	protected static int parseInt(String str, int start, int end)
+			throws QueryException {
+		int v = 0;
+		for (int i = start; i < end; i++) {
+			int d = str.charAt(i) - '0';
+			if (v > (Integer.MAX_VALUE - d) / 10) {
+				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
+						"Cannot cast '%s': component too large", str);
+			}
+			v = v * 10 + d;
+		}
+		return v;
+	}
+
 	@Override
 	public boolean eq(Atomic atomic) throws QueryException {
 		// default implementation
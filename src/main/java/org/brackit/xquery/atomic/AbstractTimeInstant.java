@@ -67,26 +67,25 @@ public abstract class AbstractTimeInstant extends AbstractAtomic implements
 		throw new RuntimeException("Not implemented yet");
 	}
 
-	protected DTD parseTimezone(String str, char[] charArray, int pos,
-			int length) throws QueryException {
+	protected DTD parseTimezone(String str, int pos, int length)
+			throws QueryException {
 		boolean negative = false;
 		byte hour = 0;
 		byte minute = 0;
 
-		if (charArray[pos] == 'Z') {
+		if (str.charAt(pos) == 'Z') {
 			// UTC
 			pos++;
-		} else if ((charArray[pos] == '+') || (charArray[pos] == '-')) {
-			negative = (charArray[pos++] == '-');
+		} else if ((str.charAt(pos) == '+') || (str.charAt(pos) == '-')) {
+			negative = (str.charAt(pos++) == '-');
 
 			// parse hour
 			int start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			int end = pos;
-			int v = (end - start == 2) ? Integer.parseInt(str.substring(start,
-					end)) : -1;
+			int v = (end - start == 2) ? parseInt(str, start, end) : -1;
 			if ((v < 0) || (v > 24)) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 						"Cannot cast '%s' to xs:dateTime: illegal hour", str);
@@ -94,19 +93,18 @@ public abstract class AbstractTimeInstant extends AbstractAtomic implements
 			hour = (byte) v;
 
 			// consume ':'
-			if ((pos >= length) || (charArray[pos++] != ':')) {
+			if ((pos >= length) || (str.charAt(pos++) != ':')) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 						"Illegal hour in timezone: %s", str);
 			}
 
 			// parse minute
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			v = (end - start == 2) ? Integer
-					.parseInt(str.substring(start, end)) : -1;
+			v = (end - start == 2) ? parseInt(str, start, end) : -1;
 			if ((v < 0) || (v > 59)) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 						"Illegal minute in timezone: %s", str);
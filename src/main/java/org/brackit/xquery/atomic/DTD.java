@@ -79,27 +79,26 @@ public class DTD extends AbstractDuration {
 		int micros = 0; // 0..59,999,999 -> minute wrap on overflow
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
-		if (((length - pos) < 3) || (charArray[pos++] != 'P')) {
+		if (((length - pos) < 3) || (str.charAt(pos++) != 'P')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dayTimeDuration", str);
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if ((sectionTerminator == 'D') && (v > -1)) {
@@ -113,24 +112,22 @@ public class DTD extends AbstractDuration {
 			days = (short) v;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 		}
 
 		if (sectionTerminator == 'T') {
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 
 			if (sectionTerminator == -1) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
@@ -152,13 +149,12 @@ public class DTD extends AbstractDuration {
 				hours = (byte) v;
 
 				start = pos;
-				while ((pos < length) && ('0' <= charArray[pos])
-						&& (charArray[pos] <= '9'))
+				while ((pos < length) && ('0' <= str.charAt(pos))
+						&& (str.charAt(pos) <= '9'))
 					pos++;
 				end = pos;
-				sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-				v = (start != end) ? Integer
-						.parseInt(str.substring(start, end)) : -1;
+				sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+				v = (start != end) ? parseInt(str, start, end) : -1;
 			}
 
 			if ((sectionTerminator == 'M') && (v > -1)) {
@@ -182,13 +178,12 @@ public class DTD extends AbstractDuration {
 				minutes = (byte) v;
 
 				start = pos;
-				while ((pos < length) && ('0' <= charArray[pos])
-						&& (charArray[pos] <= '9'))
+				while ((pos < length) && ('0' <= str.charAt(pos))
+						&& (str.charAt(pos) <= '9'))
 					pos++;
 				end = pos;
-				sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-				v = (start != end) ? Integer
-						.parseInt(str.substring(start, end)) : -1;
+				sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+				v = (start != end) ? parseInt(str, start, end) : -1;
 			}
 
 			if (((sectionTerminator == '.') || (sectionTerminator == 'S'))
@@ -219,14 +214,14 @@ public class DTD extends AbstractDuration {
 
 				if (sectionTerminator == '.') {
 					start = pos;
-					while ((pos < length) && ('0' <= charArray[pos])
-							&& (charArray[pos] <= '9'))
+					while ((pos < length) && ('0' <= str.charAt(pos))
+							&& (str.charAt(pos) <= '9'))
 						pos++;
 					end = pos;
-					sectionTerminator = (pos < length) ? charArray[pos++] : -1;
+					sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
 					int l = end - start;
-					v = (start != end) ? Integer.parseInt(str.substring(start,
-							start + Math.min(l, 6))) : -1; // drop nano seconds
+					v = (start != end) ? parseInt(str, start,
+							start + Math.min(l, 6)) : -1; // drop nano seconds
 
 					if ((sectionTerminator == 'S') && (v > -1)) {
 						if (v > 0) {
@@ -234,7 +229,7 @@ public class DTD extends AbstractDuration {
 								v *= 10;
 							micros += v;
 						}
-						sectionTerminator = (pos < length) ? charArray[pos++]
+						sectionTerminator = (pos < length) ? str.charAt(pos++)
 								: -1;
 					} else {
 						sectionTerminator = 'X';
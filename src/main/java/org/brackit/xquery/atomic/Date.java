@@ -57,20 +57,19 @@ public class Date extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// parse variable length year
 		boolean negative = false;
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
 
@@ -81,7 +80,7 @@ public class Date extends AbstractTimeInstant {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:date", str);
 		}
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if ((v > Short.MAX_VALUE) || (v == 0)) {
@@ -91,19 +90,18 @@ public class Date extends AbstractTimeInstant {
 		year = (negative) ? (short) -v : (short) v;
 
 		// consume '-'
-		if ((pos >= length) || (charArray[pos++] != '-')) {
+		if ((pos >= length) || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:date", str);
 		}
 
 		// parse month
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 12)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:date: illegal month", str);
@@ -111,19 +109,18 @@ public class Date extends AbstractTimeInstant {
 		month = (byte) v;
 
 		// consume '-'
-		if ((pos >= length) || (charArray[pos++] != '-')) {
+		if ((pos >= length) || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:date", str);
 		}
 
 		// parse day
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 31)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:date: illegal day", str);
@@ -141,7 +138,7 @@ public class Date extends AbstractTimeInstant {
 		}
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.year = year;
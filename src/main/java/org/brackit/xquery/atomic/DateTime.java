@@ -70,20 +70,19 @@ public class DateTime extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// parse variable length year
 		boolean negative = false;
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
 
@@ -94,7 +93,7 @@ public class DateTime extends AbstractTimeInstant {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if ((v > Short.MAX_VALUE) || (v == 0)) {
@@ -104,19 +103,18 @@ public class DateTime extends AbstractTimeInstant {
 		year = (negative) ? (short) -v : (short) v;
 
 		// consume '-'
-		if ((pos >= length) || (charArray[pos++] != '-')) {
+		if ((pos >= length) || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
 
 		// parse month
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 12)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime: illegal month", str);
@@ -124,19 +122,18 @@ public class DateTime extends AbstractTimeInstant {
 		month = (byte) v;
 
 		// consume '-'
-		if ((pos >= length) || (charArray[pos++] != '-')) {
+		if ((pos >= length) || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
 
 		// parse day
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 31)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime: illegal day", str);
@@ -144,19 +141,18 @@ public class DateTime extends AbstractTimeInstant {
 		day = (byte) v;
 
 		// consume 'T'
-		if ((pos >= length) || (charArray[pos++] != 'T')) {
+		if ((pos >= length) || (str.charAt(pos++) != 'T')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
 
 		// parse hour
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 24)) // attention 24 is only allowed if the minutes
 		// are zero!
 		{
@@ -166,19 +162,18 @@ public class DateTime extends AbstractTimeInstant {
 		hour = (byte) v;
 
 		// consume ':'
-		if ((pos >= length) || (charArray[pos++] != ':')) {
+		if ((pos >= length) || (str.charAt(pos++) != ':')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
 
 		// parse hour
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 59)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime: illegal minute", str);
@@ -186,33 +181,32 @@ public class DateTime extends AbstractTimeInstant {
 		minute = (byte) v;
 
 		// consume ':'
-		if ((pos >= length) || (charArray[pos++] != ':')) {
+		if ((pos >= length) || (str.charAt(pos++) != ':')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime", str);
 		}
 
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 59)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:dateTime: illegal seconds", str);
 		}
 		micros = v * 1000000;
 
-		if ((pos < length) && (charArray[pos] == '.')) {
+		if ((pos < length) && (str.charAt(pos) == '.')) {
 			start = ++pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
 			int l = end - start;
-			v = (start != end) ? Integer.parseInt(str.substring(start, start
-					+ Math.min(l, 6))) : -1; // drop nano seconds
+			v = (start != end) ? parseInt(str, start,
+					start + Math.min(l, 6)) : -1; // drop nano seconds
 
 			if (v == -1) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
@@ -259,7 +253,7 @@ public class DateTime extends AbstractTimeInstant {
 		}
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.year = year;
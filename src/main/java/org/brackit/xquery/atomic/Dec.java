@@ -36,17 +36,48 @@ import org.brackit.xquery.util.Whitespace;
 import org.brackit.xquery.xdm.Type;
 
 /**
+ * Decimal value. Values with at most 18 significant digits are represented
+ * compactly as an unscaled <code>long</code> and a scale, i.e., the value is
+ * <code>unscaled * 10^-scale</code>. Addition, subtraction, multiplication and
+ * comparison of compact values with compact values or <code>long</code>
+ * integers do not need a {@link BigDecimal}. All other values and results
+ * which overflow the compact representation are represented as
+ * {@link BigDecimal}.
  * 
  * @author Sebastian Baechle
  * 
  */
 public class Dec extends AbstractNumeric implements DecNumeric {
-	private final BigDecimal v;
+	/**
+	 * Scale marker for values represented as {@link BigDecimal}
+	 */
+	private static final int INFLATED = Integer.MIN_VALUE;
+
+	/**
+	 * Result marker for overflows of compact computations
+	 */
+	private static final long OVERFLOW = Long.MIN_VALUE;
+
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L,
+			100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+			10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+			100000000000000L, 1000000000000000L, 10000000000000000L,
+			100000000000000000L, 1000000000000000000L };
+
+	private static final double[] DPOW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+			1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+			1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final long unscaled;
+
+	private final int scale;
+
+	private BigDecimal v;
 
 	private class DDec extends Dec {
 		private final Type type;
 
-		public DDec(BigDecimal v, Type type) {
+		public DDec(Dec v, Type type) {
 			super(v);
 			this.type = type;
 		}
@@ -58,8 +89,18 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 	}
 
 	public Dec(String str) throws QueryException {
+		str = Whitespace.collapseTrimOnly(str);
+		long u = parseCompact(str);
+		if (u != OVERFLOW) {
+			int dot = str.indexOf('.');
+			this.unscaled = u;
+			this.scale = (dot < 0) ? 0 : str.length() - dot - 1;
+			return;
+		}
 		try {
-			this.v = new BigDecimal(Whitespace.collapseTrimOnly(str));
+			this.v = new BigDecimal(str);
+			this.unscaled = 0;
+			this.scale = INFLATED;
 		} catch (Exception e) {
 			throw new QueryException(e, ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast %s to xs:decimal", str);
@@ -68,10 +109,132 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 
 	public Dec(BigDecimal v) {
 		this.v = v;
+		this.unscaled = 0;
+		this.scale = INFLATED;
+	}
+
+	public Dec(long unscaled, int scale) {
+		if ((unscaled == OVERFLOW) || (scale == INFLATED)) {
+			this.v = BigDecimal.valueOf(unscaled, scale);
+			this.unscaled = 0;
+			this.scale = INFLATED;
+		} else {
+			this.unscaled = unscaled;
+			this.scale = scale;
+		}
 	}
 
 	public Dec(Dec v) {
 		this.v = v.v;
+		this.unscaled = v.unscaled;
+		this.scale = v.scale;
+	}
+
+	/**
+	 * Parses a plain decimal literal with at most 18 digits, i.e., without
+	 * exponent, to its unscaled value or returns {@link #OVERFLOW}.
+	 */
+	private static long parseCompact(String str) {
+		int len = str.length();
+		int pos = 0;
+		boolean negative = false;
+		if (len == 0) {
+			return OVERFLOW;
+		}
+		char c = str.charAt(0);
+		if ((c == '-') || (c == '+')) {
+			negative = (c == '-');
+			pos++;
+		}
+		if ((len - pos > 19) || (pos == len)) {
+			return OVERFLOW;
+		}
+		long u = 0;
+		boolean dot = false;
+		int digits = 0;
+		for (; pos < len; pos++) {
+			c = str.charAt(pos);
+			if ((c >= '0') && (c <= '9')) {
+				u = u * 10 + (c - '0');
+				digits++;
+			} else if ((c == '.') && (!dot)) {
+				dot = true;
+			} else {
+				return OVERFLOW;
+			}
+		}
+		if ((digits == 0) || (digits > 18)) {
+			return OVERFLOW;
+		}
+		return (negative) ? -u : u;
+	}
+
+	/**
+	 * Returns <code>u * 10^diff</code> or {@link #OVERFLOW}.
+	 */
+	private static long rescale(long u, int diff) {
+		if (diff == 0) {
+			return u;
+		}
+		if (diff >= POW10.length) {
+			return (u == 0) ? 0 : OVERFLOW;
+		}
+		long f = POW10[diff];
+		long r = u * f;
+		return (r / f != u) ? OVERFLOW : r;
+	}
+
+	private boolean isCompact() {
+		return (scale != INFLATED);
+	}
+
+	private static boolean isCompact(Numeric n) {
+		return ((n instanceof Dec) && (((Dec) n).isCompact()))
+				|| ((n instanceof LonNumeric) && (n.longValue() != OVERFLOW));
+	}
+
+	private static long unscaled(Numeric n) {
+		return (n instanceof Dec) ? ((Dec) n).unscaled : n.longValue();
+	}
+
+	private static int scale(Numeric n) {
+		return (n instanceof Dec) ? ((Dec) n).scale : 0;
+	}
+
+	private static Dec add(long a, int as, long b, int bs) {
+		int s = Math.max(as, bs);
+		long x = rescale(a, s - as);
+		long y = rescale(b, s - bs);
+		if ((x == OVERFLOW) || (y == OVERFLOW)) {
+			return null;
+		}
+		long r = x + y;
+		if ((((x ^ r) & (y ^ r)) < 0) || (r == OVERFLOW)) {
+			return null;
+		}
+		return new Dec(r, s);
+	}
+
+	private static Dec multiply(long a, int as, long b, int bs) {
+		long r = a * b;
+		if (((b != 0) && (r / b != a)) || (r == OVERFLOW)) {
+			return null;
+		}
+		long s = (long) as + bs;
+		if ((s > Integer.MAX_VALUE) || (s <= INFLATED)) {
+			return null;
+		}
+		return new Dec(r, (int) s);
+	}
+
+	private static int compare(long a, int as, long b, int bs) {
+		int s = Math.max(as, bs);
+		long x = rescale(a, s - as);
+		long y = rescale(b, s - bs);
+		if ((x == OVERFLOW) || (y == OVERFLOW)) {
+			return Integer.MIN_VALUE;
+		}
+		return (x < y) ? -1 : (x == y) ? 0 : 1;
 	}
 
 	@Override
@@ -81,9 +244,13 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 
 	@Override
 	public IntNumeric asIntNumeric() {
+		if ((isCompact()) && (scale >= 0) && (scale < POW10.length)) {
+			return (unscaled % POW10[scale] == 0) ? new Int(decimalValue())
+					: null;
+		}
 		try {
-			v.toBigIntegerExact();
-			return new Int(v);
+			decimalValue().toBigIntegerExact();
+			return new Int(decimalValue());
 		} catch (ArithmeticException e) {
 			return null;
 		}
@@ -91,24 +258,23 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 
 	@Override
 	public Atomic asType(Type type) throws QueryException {
-		return new DDec(v, type);
+		return new DDec(this, type);
 	}
 
 	@Override
 	public boolean booleanValue() throws QueryException {
-		return (v.intValue() != 0);
+		return (intValue() != 0);
 	}
 
 	@Override
 	public int cmp(Atomic other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return v.compareTo(((Numeric) other).decimalValue());
+			return cmpDecimal((Numeric) other);
 		} else if (other instanceof DblNumeric) {
-			return Double.compare(v.doubleValue(),
+			return Double.compare(doubleValue(),
 					((Numeric) other).doubleValue());
 		} else if (other instanceof FltNumeric) {
-			return Float
-					.compare(v.floatValue(), ((Numeric) other).floatValue());
+			return Float.compare(floatValue(), ((Numeric) other).floatValue());
 		}
 		throw new QueryException(ErrorCode.ERR_TYPE_INAPPROPRIATE_TYPE,
 				"Cannot compare '%s' with '%s'", type(), other.type());
@@ -117,20 +283,53 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 	@Override
 	protected int atomicCmpInternal(Atomic other) {
 		if (other instanceof DecNumeric) {
-			return v.compareTo(((Numeric) other).decimalValue());
+			return cmpDecimal((Numeric) other);
 		} else if (other instanceof DblNumeric) {
-			return Double.compare(v.doubleValue(),
+			return Double.compare(doubleValue(),
 					((Numeric) other).doubleValue());
 		} else {
-			return Float
-					.compare(v.floatValue(), ((Numeric) other).floatValue());
+			return Float.compare(floatValue(), ((Numeric) other).floatValue());
+		}
+	}
+
+	private int cmpDecimal(Numeric other) {
+		if ((isCompact()) && (isCompact(other))) {
+			int res = compare(unscaled, scale, unscaled(other), scale(other));
+			if (res != Integer.MIN_VALUE) {
+				return res;
+			}
 		}
+		return decimalValue().compareTo(other.decimalValue());
 	}
 
 	@Override
 	public String stringValue() {
-		String s = v.toPlainString();
-		return (v.scale() <= 0) ? s : killTrailingZeros(s);
+		if ((!isCompact()) || (scale < 0)) {
+			BigDecimal v = decimalValue();
+			String s = v.toPlainString();
+			return (v.scale() <= 0) ? s : killTrailingZeros(s);
+		}
+		if (scale == 0) {
+			return Long.toString(unscaled);
+		}
+		String digits = Long.toString(Math.abs(unscaled));
+		StringBuilder s = new StringBuilder(digits.length() + scale + 3);
+		if (unscaled < 0) {
+			s.append('-');
+		}
+		int intDigits = digits.length() - scale;
+		if (intDigits > 0) {
+			s.append(digits, 0, intDigits);
+			s.append('.');
+			s.append(digits, intDigits, digits.length());
+		} else {
+			s.append("0.");
+			for (int i = intDigits; i < 0; i++) {
+				s.append('0');
+			}
+			s.append(digits);
+		}
+		return killTrailingZeros(s.toString());
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -146,127 +345,170 @@ public class Dec extends AbstractNumeric implements DecNumeric {
 	}
 
 	public BigDecimal decimalValue() {
+		BigDecimal v = this.v;
+		if (v == null) {
+			// benign race: the value is immutable
+			v = BigDecimal.valueOf(unscaled, scale);
+			this.v = v;
+		}
 		return v;
 	}
 
 	public BigDecimal integerValue() {
-		return v.setScale(0, RoundingMode.FLOOR);
+		return decimalValue().setScale(0, RoundingMode.FLOOR);
 	}
 
 	@Override
 	public double doubleValue() {
-		return v.doubleValue();
+		if ((isCompact()) && (scale >= 0) && (scale < DPOW10.length)
+				&& (Math.abs(unscaled) < (1L << 53))) {
+			// exact operands yield a correctly rounded quotient
+			return unscaled / DPOW10[scale];
+		}
+		return decimalValue().doubleValue();
 	}
 
 	@Override
 	public float floatValue() {
-		return v.floatValue();
+		return decimalValue().floatValue();
 	}
 
 	@Override
 	public long longValue() {
-		return v.longValue();
+		if ((isCompact()) && (scale >= 0) && (scale < POW10.length)) {
+			return unscaled / POW10[scale];
+		}
+		return decimalValue().longValue();
 	}
 
 	@Override
 	public int intValue() {
-		return v.intValue();
+		if ((isCompact()) && (scale >= 0) && (scale < POW10.length)) {
+			return (int) (unscaled / POW10[scale]);
+		}
+		return decimalValue().intValue();
 	}
 
 	@Override
 	public Numeric add(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return addBigDecimal(v, other.decimalValue(), true);
+			if ((isCompact()) && (isCompact(other))) {
+				Dec res = add(unscaled, scale, unscaled(other), scale(other));
+				if (res != null) {
+					return res;
+				}
+			}
+			return addBigDecimal(decimalValue(), other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
-			return addDouble(v.doubleValue(), other.doubleValue());
+			return addDouble(doubleValue(), other.doubleValue());
 		} else {
-			return addFloat(v.floatValue(), other.floatValue());
+			return addFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric subtract(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return subtractBigDecimal(v, other.decimalValue(), true);
+			if ((isCompact()) && (isCompact(other))) {
+				Dec res = add(unscaled, scale, -unscaled(other), scale(other));
+				if (res != null) {
+					return res;
+				}
+			}
+			return subtractBigDecimal(decimalValue(), other.decimalValue(),
+					true);
 		} else if (other instanceof DblNumeric) {
-			return subtractDouble(v.doubleValue(), other.doubleValue());
+			return subtractDouble(doubleValue(), other.doubleValue());
 		} else {
-			return subtractFloat(v.floatValue(), other.floatValue());
+			return subtractFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric multiply(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return multiplyBigDecimal(v, other.decimalValue(), true);
+			if ((isCompact()) && (isCompact(other))) {
+				Dec res = multiply(unscaled, scale, unscaled(other),
+						scale(other));
+				if (res != null) {
+					return res;
+				}
+			}
+			return multiplyBigDecimal(decimalValue(), other.decimalValue(),
+					true);
 		} else if (other instanceof DblNumeric) {
-			return multiplyDouble(v.doubleValue(), other.doubleValue());
+			return multiplyDouble(doubleValue(), other.doubleValue());
 		} else {
-			return multiplyFloat(v.floatValue(), other.floatValue());
+			return multiplyFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric div(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return divideBigDecimal(v, other.decimalValue(), true);
+			return divideBigDecimal(decimalValue(), other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
-			return divideDouble(v.doubleValue(), other.doubleValue());
+			return divideDouble(doubleValue(), other.doubleValue());
 		} else {
-			return divideFloat(v.floatValue(), other.floatValue());
+			return divideFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric idiv(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return idivideBigDecimal(v, other.decimalValue(), true);
+			return idivideBigDecimal(decimalValue(), other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
-			return idivideDouble(v.doubleValue(), other.doubleValue());
+			return idivideDouble(doubleValue(), other.doubleValue());
 		} else {
-			return idivideFloat(v.floatValue(), other.floatValue());
+			return idivideFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric mod(Numeric other) throws QueryException {
 		if (other instanceof DecNumeric) {
-			return modBigDecimal(v, other.decimalValue(), true);
+			return modBigDecimal(decimalValue(), other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
-			return modDouble(v.doubleValue(), other.doubleValue());
+			return modDouble(doubleValue(), other.doubleValue());
 		} else {
-			return modFloat(v.floatValue(), other.floatValue());
+			return modFloat(floatValue(), other.floatValue());
 		}
 	}
 
 	@Override
 	public Numeric negate() throws QueryException {
-		return new Dec(v.negate());
+		return (isCompact()) ? new Dec(-unscaled, scale) : new Dec(
+				decimalValue().negate());
 	}
 
 	public Numeric round() throws QueryException {
+		BigDecimal v = decimalValue();
 		return (v.signum() >= 0) ? new Dec(v.setScale(0, RoundingMode.HALF_UP))
 				: new Dec(v.setScale(0, RoundingMode.DOWN));
 	}
 
 	@Override
 	public Numeric abs() throws QueryException {
-		return (v.signum() >= 0) ? this : new Int(v.negate());
+		if (isCompact()) {
+			return (unscaled >= 0) ? this : new Dec(-unscaled, scale);
+		}
+		return (v.signum() >= 0) ? this : new Dec(v.negate());
 	}
 
 	@Override
 	public Numeric ceiling() throws QueryException {
-		return new Dec(v.setScale(0, RoundingMode.CEILING));
+		return new Dec(decimalValue().setScale(0, RoundingMode.CEILING));
 	}
 
 	@Override
 	public Numeric floor() throws QueryException {
-		return new Dec(v.setScale(0, RoundingMode.FLOOR));
+		return new Dec(decimalValue().setScale(0, RoundingMode.FLOOR));
 	}
 
 	@Override
 	public Numeric roundHalfToEven(int precision) throws QueryException {
-		BigDecimal bd = v.scaleByPowerOfTen(precision);
+		BigDecimal bd = decimalValue().scaleByPowerOfTen(precision);
 		bd = bd.setScale(0, BigDecimal.ROUND_HALF_EVEN);
 		return new Dec(bd.scaleByPowerOfTen(-precision));
 	}
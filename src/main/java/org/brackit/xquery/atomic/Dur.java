@@ -87,27 +87,26 @@ public class Dur extends AbstractDuration {
 		int micros = 0; // 0..59,999,999 -> minute wrap on overflow
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
-		if (((length - pos) < 3) || (charArray[pos++] != 'P')) {
+		if (((length - pos) < 3) || (str.charAt(pos++) != 'P')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:duration", str);
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if (sectionTerminator == 'Y') {
@@ -120,13 +119,12 @@ public class Dur extends AbstractDuration {
 			years = (short) v;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 		}
 
 		if ((sectionTerminator == 'M') && (v > -1)) {
@@ -143,13 +141,12 @@ public class Dur extends AbstractDuration {
 			years = (short) newYears;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 		}
 
 		if ((sectionTerminator == 'D') && (v > -1)) {
@@ -162,24 +159,22 @@ public class Dur extends AbstractDuration {
 			days = (short) v;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 		}
 
 		if (sectionTerminator == 'T') {
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 
 			if (sectionTerminator == -1) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
@@ -201,13 +196,12 @@ public class Dur extends AbstractDuration {
 				hours = (byte) v;
 
 				start = pos;
-				while ((pos < length) && ('0' <= charArray[pos])
-						&& (charArray[pos] <= '9'))
+				while ((pos < length) && ('0' <= str.charAt(pos))
+						&& (str.charAt(pos) <= '9'))
 					pos++;
 				end = pos;
-				sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-				v = (start != end) ? Integer
-						.parseInt(str.substring(start, end)) : -1;
+				sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+				v = (start != end) ? parseInt(str, start, end) : -1;
 			}
 
 			if ((sectionTerminator == 'M') && (v > -1)) {
@@ -231,13 +225,12 @@ public class Dur extends AbstractDuration {
 				minutes = (byte) v;
 
 				start = pos;
-				while ((pos < length) && ('0' <= charArray[pos])
-						&& (charArray[pos] <= '9'))
+				while ((pos < length) && ('0' <= str.charAt(pos))
+						&& (str.charAt(pos) <= '9'))
 					pos++;
 				end = pos;
-				sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-				v = (start != end) ? Integer
-						.parseInt(str.substring(start, end)) : -1;
+				sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+				v = (start != end) ? parseInt(str, start, end) : -1;
 			}
 
 			if (((sectionTerminator == '.') || (sectionTerminator == 'S'))
@@ -268,14 +261,14 @@ public class Dur extends AbstractDuration {
 
 				if (sectionTerminator == '.') {
 					start = pos;
-					while ((pos < length) && ('0' <= charArray[pos])
-							&& (charArray[pos] <= '9'))
+					while ((pos < length) && ('0' <= str.charAt(pos))
+							&& (str.charAt(pos) <= '9'))
 						pos++;
 					end = pos;
-					sectionTerminator = (pos < length) ? charArray[pos++] : -1;
+					sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
 					int l = end - start;
-					v = (start != end) ? Integer.parseInt(str.substring(start,
-							start + Math.min(l, 6))) : -1; // drop nano seconds
+					v = (start != end) ? parseInt(str, start,
+							start + Math.min(l, 6)) : -1; // drop nano seconds
 
 					if ((sectionTerminator == 'S') && (v > -1)) {
 						if (v > 0) {
@@ -283,7 +276,7 @@ public class Dur extends AbstractDuration {
 								v *= 10;
 							micros += v;
 						}
-						sectionTerminator = (pos < length) ? charArray[pos++]
+						sectionTerminator = (pos < length) ? str.charAt(pos++)
 								: -1;
 					} else {
 						sectionTerminator = 'X';
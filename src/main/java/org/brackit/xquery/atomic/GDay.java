@@ -53,25 +53,23 @@ public class GDay extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// consume '---'
-		if ((pos + 2 >= length) || (charArray[pos++] != '-')
-				|| (charArray[pos++] != '-') || (charArray[pos++] != '-')) {
+		if ((pos + 2 >= length) || (str.charAt(pos++) != '-')
+				|| (str.charAt(pos++) != '-') || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gDay", str);
 		}
 
 		// parse day
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int v = (end - start == 2) ? Integer
-				.parseInt(str.substring(start, end)) : -1;
+		int v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 31)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gDay: illegal day", str);
@@ -79,7 +77,7 @@ public class GDay extends AbstractTimeInstant {
 		day = (byte) v;
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.day = day;
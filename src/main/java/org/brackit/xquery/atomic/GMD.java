@@ -56,25 +56,23 @@ public class GMD extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// consume '--'
-		if ((pos + 1 >= length) || (charArray[pos++] != '-')
-				|| (charArray[pos++] != '-')) {
+		if ((pos + 1 >= length) || (str.charAt(pos++) != '-')
+				|| (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gMonthDay", str);
 		}
 
 		// parse month
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int v = (end - start == 2) ? Integer
-				.parseInt(str.substring(start, end)) : -1;
+		int v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 12)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gMonthDay: illegal month", str);
@@ -82,19 +80,18 @@ public class GMD extends AbstractTimeInstant {
 		month = (byte) v;
 
 		// consume '-'
-		if ((pos >= length) || (charArray[pos++] != '-')) {
+		if ((pos >= length) || (str.charAt(pos++) != '-')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gMonthDay", str);
 		}
 
 		// parse day
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 1) || (v > 31)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gMonthDay: illegal day", str);
@@ -112,7 +109,7 @@ public class GMD extends AbstractTimeInstant {
 		}
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.month = month;
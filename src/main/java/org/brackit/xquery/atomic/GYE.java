@@ -53,20 +53,19 @@ public class GYE extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// parse variable length year
 		boolean negative = false;
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
 
@@ -77,7 +76,7 @@ public class GYE extends AbstractTimeInstant {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:gYear", str);
 		}
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if ((v > Short.MAX_VALUE) || (v == 0)) {
@@ -87,7 +86,7 @@ public class GYE extends AbstractTimeInstant {
 		year = (negative) ? (short) -v : (short) v;
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.year = year;
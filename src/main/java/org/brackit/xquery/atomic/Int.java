@@ -160,8 +160,10 @@ public class Int extends AbstractNumeric implements IntNumeric {
 
 	@Override
 	public Numeric add(Numeric other) throws QueryException {
-		if (other instanceof DecNumeric) {
+		if (other instanceof IntNumeric) {
 			return addBigDecimal(v, other.decimalValue(), false);
+		} else if (other instanceof DecNumeric) {
+			return addBigDecimal(v, other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
 			return addDouble(v.doubleValue(), other.doubleValue());
 		} else {
@@ -171,8 +173,10 @@ public class Int extends AbstractNumeric implements IntNumeric {
 
 	@Override
 	public Numeric subtract(Numeric other) throws QueryException {
-		if (other instanceof DecNumeric) {
+		if (other instanceof IntNumeric) {
 			return subtractBigDecimal(v, other.decimalValue(), false);
+		} else if (other instanceof DecNumeric) {
+			return subtractBigDecimal(v, other.decimalValue(), true);
 		} else if (other instanceof DblNumeric) {
 			return subtractDouble(v.doubleValue(), other.doubleValue());
 		} else {
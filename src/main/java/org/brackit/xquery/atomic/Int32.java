@@ -222,7 +222,7 @@ public class Int32 extends AbstractNumeric implements LonNumeric {
 			}
 			return other.add(this);
 		} else if (other instanceof DecNumeric) {
-			return addBigDecimal(new BigDecimal(v), other.decimalValue(), false);
+			return new Dec(v, 0).add(other);
 		} else if (other instanceof Dbl) {
 			return addDouble(v, other.doubleValue());
 		} else {
@@ -241,8 +241,7 @@ public class Int32 extends AbstractNumeric implements LonNumeric {
 			}
 			return other.negate().add(this);
 		} else if (other instanceof DecNumeric) {
-			return subtractBigDecimal(new BigDecimal(v), other.decimalValue(),
-					false);
+			return new Dec(v, 0).subtract(other);
 		} else if (other instanceof Dbl) {
 			return subtractDouble(v, other.doubleValue());
 		} else {
@@ -261,8 +260,7 @@ public class Int32 extends AbstractNumeric implements LonNumeric {
 			}
 			return other.multiply(this);
 		} else if (other instanceof DecNumeric) {
-			return multiplyBigDecimal(new BigDecimal(v), other.decimalValue(),
-					true);
+			return new Dec(v, 0).multiply(other);
 		} else if (other instanceof Dbl) {
 			return multiplyDouble(v, other.doubleValue());
 		} else {
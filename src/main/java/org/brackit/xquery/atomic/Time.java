@@ -64,18 +64,16 @@ public class Time extends AbstractTimeInstant {
 		DTD timezone = null;
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 
 		// parse hour
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int v = (end - start == 2) ? Integer
-				.parseInt(str.substring(start, end)) : -1;
+		int v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 24)) // attention 24 is only allowed if the minutes
 		// are zero!
 		{
@@ -85,19 +83,18 @@ public class Time extends AbstractTimeInstant {
 		hour = (byte) v;
 
 		// consume ':'
-		if ((pos >= length) || (charArray[pos++] != ':')) {
+		if ((pos >= length) || (str.charAt(pos++) != ':')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:time", str);
 		}
 
 		// parse hour
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 59)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:time: illegal minute", str);
@@ -105,33 +102,32 @@ public class Time extends AbstractTimeInstant {
 		minute = (byte) v;
 
 		// consume ':'
-		if ((pos >= length) || (charArray[pos++] != ':')) {
+		if ((pos >= length) || (str.charAt(pos++) != ':')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:time", str);
 		}
 
 		start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		end = pos;
-		v = (end - start == 2) ? Integer.parseInt(str.substring(start, end))
-				: -1;
+		v = (end - start == 2) ? parseInt(str, start, end) : -1;
 		if ((v < 0) || (v > 59)) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:time: illegal seconds", str);
 		}
 		micros = v * 1000000;
 
-		if ((pos < length) && (charArray[pos] == '.')) {
+		if ((pos < length) && (str.charAt(pos) == '.')) {
 			start = ++pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
 			int l = end - start;
-			v = (start != end) ? Integer.parseInt(str.substring(start, start
-					+ Math.min(l, 6))) : -1; // drop nano seconds
+			v = (start != end) ? parseInt(str, start,
+					start + Math.min(l, 6)) : -1; // drop nano seconds
 
 			if (v == -1) {
 				throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
@@ -155,7 +151,7 @@ public class Time extends AbstractTimeInstant {
 		}
 
 		if (pos < length) {
-			timezone = parseTimezone(str, charArray, pos, length);
+			timezone = parseTimezone(str, pos, length);
 		}
 
 		this.hour = hour;
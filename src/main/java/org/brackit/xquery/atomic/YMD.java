@@ -72,29 +72,28 @@ public class YMD extends AbstractDuration {
 		// indicate negative duration
 
 		str = Whitespace.collapseTrimOnly(str);
-		char[] charArray = str.toCharArray();
 		int pos = 0;
-		int length = charArray.length;
+		int length = str.length();
 		while ((pos < length) && (str.charAt(pos) == ' '))
 			pos++; // strip leading whitespace
 
-		if ((pos == length) || (charArray[pos] == '-')) {
+		if ((pos == length) || (str.charAt(pos) == '-')) {
 			negative = true;
 			pos++;
 		}
 
-		if (((length - pos) < 3) || (charArray[pos++] != 'P')) {
+		if (((length - pos) < 3) || (str.charAt(pos++) != 'P')) {
 			throw new QueryException(ErrorCode.ERR_INVALID_VALUE_FOR_CAST,
 					"Cannot cast '%s' to xs:duration", str);
 		}
 
 		int start = pos;
-		while ((pos < length) && ('0' <= charArray[pos])
-				&& (charArray[pos] <= '9'))
+		while ((pos < length) && ('0' <= str.charAt(pos))
+				&& (str.charAt(pos) <= '9'))
 			pos++;
 		int end = pos;
-		int sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-		int v = (start != end) ? Integer.parseInt(str.substring(start, end))
+		int sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+		int v = (start != end) ? parseInt(str, start, end)
 				: -1; // parse leading value
 
 		if (sectionTerminator == 'Y') {
@@ -107,13 +106,12 @@ public class YMD extends AbstractDuration {
 			years = (short) v;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
-			v = (start != end) ? Integer.parseInt(str.substring(start, end))
-					: -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
+			v = (start != end) ? parseInt(str, start, end) : -1;
 		}
 
 		if ((sectionTerminator == 'M') && (v > -1)) {
@@ -130,11 +128,11 @@ public class YMD extends AbstractDuration {
 			years = (short) newYears;
 
 			start = pos;
-			while ((pos < length) && ('0' <= charArray[pos])
-					&& (charArray[pos] <= '9'))
+			while ((pos < length) && ('0' <= str.charAt(pos))
+					&& (str.charAt(pos) <= '9'))
 				pos++;
 			end = pos;
-			sectionTerminator = (pos < length) ? charArray[pos++] : -1;
+			sectionTerminator = (pos < length) ? str.charAt(pos++) : -1;
 		}
 
 		if (sectionTerminator != -1) {
@@ -55,12 +55,15 @@ import org.brackit.xquery.function.bit.Serialize;
 import org.brackit.xquery.function.bit.Silent;
 import org.brackit.xquery.function.bit.Store;
 import org.brackit.xquery.function.bit.Values;
+import org.brackit.xquery.function.io.IOFun;
 import org.brackit.xquery.function.io.Ls;
 import org.brackit.xquery.function.io.Read;
 import org.brackit.xquery.function.io.Readline;
 import org.brackit.xquery.function.io.Write;
 import org.brackit.xquery.function.io.Writeline;
+import org.brackit.xquery.function.json.JSONFun;
 import org.brackit.xquery.function.json.JSONParse;
+import org.brackit.xquery.module.FunctionLibrary;
 import org.brackit.xquery.module.Functions;
 import org.brackit.xquery.module.Module;
 import org.brackit.xquery.util.dot.DotUtil;
@@ -74,36 +77,62 @@ import org.brackit.xquery.util.dot.DotUtil;
 public class CompileChain {
 
 	static {
-		// IO
-		Functions.predefine(new Readline());
-		Functions.predefine(new Writeline());
-		Functions.predefine(new Read());
-		Functions.predefine(new Write());
-		Functions.predefine(new Ls(true));
-		Functions.predefine(new Ls(false));
+		Functions.predefine(new FunctionLibrary(IOFun.IO_NSURI,
+				IOFun.IO_PREFIX, "readline", "writeline", "read", "write", "ls") {
+			protected void define() {
+				Functions.predefine(new Readline());
+				Functions.predefine(new Writeline());
+				Functions.predefine(new Read());
+				Functions.predefine(new Write());
+				Functions.predefine(new Ls(true));
+				Functions.predefine(new Ls(false));
+			}
+		});
 		// Internal
-		Functions.predefine(BitFun.SOME_FUNC);
-		Functions.predefine(BitFun.EVERY_FUNC);
+		Functions.predefine(new FunctionLibrary(Bits.BIT_NSURI,
+				Bits.BIT_PREFIX, "some", "every") {
+			protected void define() {
+				Functions.predefine(BitFun.SOME_FUNC);
+				Functions.predefine(BitFun.EVERY_FUNC);
+			}
+		});
 		// Utility
-		Functions.predefine(new Now());
-		Functions.predefine(new Silent());
-		Functions.predefine(new Parse());
-		Functions.predefine(new Eval());
-		Functions.predefine(new Serialize());
-		Functions.predefine(new Len());
-		Functions.predefine(new Fields());
-		Functions.predefine(new Values());
+		Functions.predefine(new FunctionLibrary(Bits.BIT_NSURI,
+				Bits.BIT_PREFIX, "now", "silent", "parse", "eval", "serialize",
+				"len", "fields", "values") {
+			protected void define() {
+				Functions.predefine(new Now());
+				Functions.predefine(new Silent());
+				Functions.predefine(new Parse());
+				Functions.predefine(new Eval());
+				Functions.predefine(new Serialize());
+				Functions.predefine(new Len());
+				Functions.predefine(new Fields());
+				Functions.predefine(new Values());
+			}
+		});
 		// Storage
-		Functions.predefine(new Store(true));
-		Functions.predefine(new Store(false));
-		Functions.predefine(new Load(true));
-		Functions.predefine(new Load(false));
-		Functions.predefine(new Create());
-		Functions.predefine(new Drop());
-		Functions.predefine(new Mkdir());
-		Functions.predefine(new Exists());
+		Functions.predefine(new FunctionLibrary(Bits.BIT_NSURI,
+				Bits.BIT_PREFIX, "store", "load", "create", "drop", "mkdir",
+				"exists") {
+			protected void define() {
+				Functions.predefine(new Store(true));
+				Functions.predefine(new Store(false));
+				Functions.predefine(new Load(true));
+				Functions.predefine(new Load(false));
+				Functions.predefine(new Create());
+				Functions.predefine(new Drop());
+				Functions.predefine(new Mkdir());
+				Functions.predefine(new Exists());
+			}
+		});
 		// JSON
-		Functions.predefine(new JSONParse());
+		Functions.predefine(new FunctionLibrary(JSONFun.JSON_NSURI,
+				JSONFun.JSON_PREFIX, "parse") {
+			protected void define() {
+				Functions.predefine(new JSONParse());
+			}
+		});
 	}
 
 	final AnyURI baseURI;
@@ -302,6 +302,10 @@ public final class XQ {
 	public static final int KeyValueField = 249;
 	public static final int DerefExpr = 250;
 	// End brackit's custom array syntax
+	// Begin brackit's optimizer extensions
+	public static final int FunctionConversion = 251;
+	public static final int Atomic = 252;
+	// End brackit's optimizer extensions
 
 	public static final String NAMES[] = new String[] { "XQuery",
 			"LibraryModule", "MainModule", "Prolog", "NamespaceDeclaration",
@@ -407,14 +411,17 @@ public final class XQ {
 			// End brackit's custom array syntax
 			// Begin brackit's custom array syntax
 			"RecordProjection", "RecordConstructor", "RecordField",
-			"KeyValueField", "DerefExpr"
-	// End brackit's custom record syntax
+			"KeyValueField", "DerefExpr",
+			// End brackit's custom record syntax
+			// Begin brackit's optimizer extensions
+			"FunctionConversion", "Atomic"
+	// End brackit's optimizer extensions
 	};
 
 	private XQ() {
 	}
 
-	private static int base = 251;
+	private static int base = 253;
 
 	public static synchronized int allocate(int noOfTokens) {
 		int r = base;
@@ -951,6 +951,8 @@ public class ExprAnalyzer extends AbstractAnalyzer {
 			QNm newName = name.equals(Functions.FN_POSITION) ? Bits.FS_POSITION
 					: Bits.FS_LAST;
 			expr.setValue(newName);
+			// position and size are part of the focus
+			referContextItem();
 			return true;
 		}
 		if ((name.equals(Functions.FN_TRUE) || name.equals(Functions.FN_FALSE))) {
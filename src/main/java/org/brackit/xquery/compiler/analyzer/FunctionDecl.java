@@ -27,10 +27,15 @@
  */
 package org.brackit.xquery.compiler.analyzer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.Target;
+import org.brackit.xquery.compiler.Unit;
+import org.brackit.xquery.compiler.optimizer.DefaultOptimizer;
 import org.brackit.xquery.compiler.translator.Translator;
 import org.brackit.xquery.function.UDF;
 import org.brackit.xquery.module.Module;
@@ -58,6 +63,7 @@ public class FunctionDecl extends ForwardDeclaration {
 			params[i] = bind(params[i]);
 		}
 		functionBody(body);
+		keepForInlining();
 		return new Target(module, sctx, body, unit, udf.isUpdating()) {
 
 			@Override
@@ -66,5 +72,38 @@ public class FunctionDecl extends ForwardDeclaration {
 				unit.setExpr(expr);
 			}
 		};
-	}	
+	}
+
+	private void keepForInlining() {
+		List<UDF> callees = new ArrayList<UDF>();
+		boolean closed = true;
+		for (Unit dep : dependsOn()) {
+			if (dep instanceof UDF) {
+				callees.add((UDF) dep);
+			} else if (dep != null) {
+				// depends on global variables or the context item
+				closed = false;
+			}
+		}
+		udf.setCallees(callees.toArray(new UDF[callees.size()]));
+
+		if ((!DefaultOptimizer.INLINE) || (!closed) || (udf.isUpdating())
+				|| (udf.isMemoized())
+				|| (size(body) > DefaultOptimizer.INLINE_SIZE)) {
+			return;
+		}
+		AST copy = body.copyTree();
+		if (copy.getStaticContext() == null) {
+			copy.setStaticContext(sctx);
+		}
+		udf.setInlineBody(params.clone(), copy);
+	}
+
+	private static int size(AST node) {
+		int size = 1;
+		for (int i = 0; i < node.getChildCount(); i++) {
+			size += size(node.getChild(i));
+		}
+		return size;
+	}
 }
\ No newline at end of file
@@ -46,6 +46,7 @@ import org.brackit.xquery.module.Namespaces;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.xdm.Signature;
 import org.brackit.xquery.xdm.type.AnyItemType;
+import org.brackit.xquery.xdm.type.AtomicType;
 import org.brackit.xquery.xdm.type.Cardinality;
 import org.brackit.xquery.xdm.type.ItemType;
 import org.brackit.xquery.xdm.type.SequenceType;
@@ -562,6 +563,8 @@ public class PrologAnalyzer extends AbstractAnalyzer {
 		// Begin XQuery Update 1.0
 		boolean updating = false;
 		// End XQuery Update 1.0
+		boolean memoize = false;
+		int memoCapacity = 0;
 		int pos = 0;
 		AST child = decl.getChild(pos++);
 		while (child.getType() == XQ.Annotation) {
@@ -577,6 +580,10 @@ public class PrologAnalyzer extends AbstractAnalyzer {
 			} else if ("updating".equals(annotation)) {
 				updating = true;
 				ignored = false;
+			} else if ("memoize".equals(annotation)) {
+				memoize = true;
+				memoCapacity = memoCapacity(child);
+				ignored = false;
 			}
 			// TODO process annotations
 			if (ignored) {
@@ -648,6 +655,16 @@ public class PrologAnalyzer extends AbstractAnalyzer {
 		// register function beforehand to support recursion
 		Signature signature = new Signature(resultType, pTypes);
 		UDF udf = new UDF(name, signature, updating);
+		if (memoize) {
+			if (updating) {
+				log.warn("Ignoring %memoize for updating function " + name);
+			} else if (!atomicParams(pTypes)) {
+				log.warn("Ignoring %memoize for function " + name
+						+ " with non-atomic parameters");
+			} else {
+				udf.setMemoize(memoCapacity);
+			}
+		}
 		sctx.getFunctions().declare(udf);
 
 		// defer function body because functions
@@ -658,6 +675,34 @@ public class PrologAnalyzer extends AbstractAnalyzer {
 		return true;
 	}
 
+	private int memoCapacity(AST annotation) throws QueryException {
+		if (annotation.getChildCount() == 0) {
+			return 0;
+		}
+		String capacity = annotation.getChild(0).getStringValue();
+		try {
+			int value = Integer.parseInt(capacity.trim());
+			if (value >= 0) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		throw new QueryException(ErrorCode.ERR_PARSING_ERROR,
+				"Invalid capacity of %%memoize annotation: %s", capacity);
+	}
+
+	private boolean atomicParams(SequenceType[] pTypes) {
+		for (SequenceType pType : pTypes) {
+			// item() claims to be atomic, too, but matches nodes and
+			// functions as well; untyped parameters are item()*
+			if (!(pType.getItemType() instanceof AtomicType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private boolean optionDecl(AST option) throws QueryException {
 		if (option.getType() != XQ.OptionDeclaration) {
 			return false;
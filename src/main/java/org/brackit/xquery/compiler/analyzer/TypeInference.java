@@ -0,0 +1,453 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.analyzer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.module.StaticContext;
+import org.brackit.xquery.xdm.Function;
+import org.brackit.xquery.xdm.Type;
+import org.brackit.xquery.xdm.type.AnyItemType;
+import org.brackit.xquery.xdm.type.AnyNodeType;
+import org.brackit.xquery.xdm.type.AtomicType;
+import org.brackit.xquery.xdm.type.Cardinality;
+import org.brackit.xquery.xdm.type.ItemType;
+import org.brackit.xquery.xdm.type.NumericType;
+import org.brackit.xquery.xdm.type.SequenceType;
+
+/**
+ * Static typing pass which annotates expression nodes with an inferred
+ * {@link SequenceType} in property {@link #TYPE}. The inference is
+ * conservative: nodes without a type annotation may evaluate to anything.
+ * 
+ * <p>
+ * Types are inferred for literals, arithmetic, comparisons, logical
+ * expressions, casts, function calls and references to variables of for,
+ * let and count clauses and their pipelined counterparts. It relies on the
+ * uniqueness of local variable names after analysis. A group by rebinds
+ * all variables and, thus, discards all variable types.
+ * </p>
+ */
+public class TypeInference {
+
+	public static final String TYPE = "staticType";
+
+	private static final SequenceType BOOLEAN = new SequenceType(
+			AtomicType.BOOL, Cardinality.One);
+
+	private static final SequenceType BOOLEAN_OPT = new SequenceType(
+			AtomicType.BOOL, Cardinality.ZeroOrOne);
+
+	private static final SequenceType INTEGER_SEQUENCE = new SequenceType(
+			AtomicType.INR, Cardinality.ZeroOrMany);
+
+	private static final AtomicType FLT = new AtomicType(Type.FLO);
+
+	private final StaticContext sctx;
+
+	private final Map<QNm, SequenceType> vars = new HashMap<QNm, SequenceType>();
+
+	public TypeInference(StaticContext sctx) {
+		this.sctx = sctx;
+	}
+
+	public AST annotate(AST ast) throws QueryException {
+		infer(ast);
+		return ast;
+	}
+
+	/**
+	 * Returns the inferred type of <code>node</code> or <code>null</code> if
+	 * it is unknown.
+	 */
+	public static SequenceType type(AST node) {
+		return (SequenceType) node.getProperty(TYPE);
+	}
+
+	/**
+	 * Checks if every sequence of type <code>t</code> is also of type
+	 * <code>s</code>.
+	 */
+	public static boolean subtypeOf(SequenceType t, SequenceType s) {
+		if ((t == null) || (s == null)) {
+			return false;
+		}
+		if (!subtypeOf(t.getCardinality(), s.getCardinality())) {
+			return false;
+		}
+		if (t.getCardinality() == Cardinality.Zero) {
+			return true;
+		}
+		return subtypeOf(t.getItemType(), s.getItemType());
+	}
+
+	private static boolean subtypeOf(Cardinality t, Cardinality s) {
+		switch (s) {
+		case ZeroOrMany:
+			return true;
+		case OneOrMany:
+			return ((t == Cardinality.One) || (t == Cardinality.OneOrMany));
+		case ZeroOrOne:
+			return t.atMostOne() || (t == Cardinality.Zero);
+		default:
+			return (t == s);
+		}
+	}
+
+	private static boolean subtypeOf(ItemType t, ItemType s) {
+		if (s.isAnyItem()) {
+			return true;
+		}
+		if (s instanceof NumericType) {
+			return (numeric(t) != null);
+		}
+		if (s instanceof AnyNodeType) {
+			return t.isNode();
+		}
+		if ((s instanceof AtomicType) && (t instanceof AtomicType)
+				&& (!(t instanceof NumericType))) {
+			return ((AtomicType) t).getType().instanceOf(
+					((AtomicType) s).getType());
+		}
+		return t.equals(s);
+	}
+
+	/**
+	 * Returns the numeric type of a single typed numeric item, i.e., either
+	 * xs:double, xs:float, xs:decimal, xs:integer or the generic numeric
+	 * type.
+	 */
+	public static AtomicType numeric(SequenceType t) {
+		if ((t == null) || (!t.getCardinality().atMostOne())) {
+			return null;
+		}
+		return numeric(t.getItemType());
+	}
+
+	private static AtomicType numeric(ItemType t) {
+		if (t instanceof NumericType) {
+			return (AtomicType) t;
+		}
+		if (!(t instanceof AtomicType)) {
+			return null;
+		}
+		Type type = ((AtomicType) t).getType();
+		if (type.instanceOf(Type.DBL)) {
+			return AtomicType.DBL;
+		}
+		if (type.instanceOf(Type.FLO)) {
+			return FLT;
+		}
+		if (type.instanceOf(Type.INR)) {
+			return AtomicType.INR;
+		}
+		if (type.instanceOf(Type.DEC)) {
+			return AtomicType.DEC;
+		}
+		return null;
+	}
+
+	private SequenceType infer(AST node) throws QueryException {
+		SequenceType type;
+		switch (node.getType()) {
+		case XQ.ForClause:
+		case XQ.ForBind:
+			forBind(node);
+			return null;
+		case XQ.LetClause:
+		case XQ.LetBind:
+			letBind(node);
+			return null;
+		case XQ.CountClause:
+		case XQ.Count:
+			bind(node.getChild(0), SequenceType.INTEGER);
+			children(node, 1, node.getChildCount());
+			return null;
+		case XQ.GroupBy:
+			children(node, 0, node.getChildCount() - 1);
+			vars.clear();
+			infer(node.getLastChild());
+			return null;
+		case XQ.GroupByClause:
+			children(node, 0, node.getChildCount());
+			vars.clear();
+			return null;
+		default:
+			children(node, 0, node.getChildCount());
+			type = type(node, node.getType());
+		}
+		if (type != null) {
+			node.setProperty(TYPE, type);
+		}
+		return type;
+	}
+
+	private void children(AST node, int from, int to) throws QueryException {
+		for (int i = from; i < to; i++) {
+			infer(node.getChild(i));
+		}
+	}
+
+	private SequenceType type(AST node, int nodeType) throws QueryException {
+		switch (nodeType) {
+		case XQ.Int:
+			return SequenceType.INTEGER;
+		case XQ.Dbl:
+			return new SequenceType(AtomicType.DBL, Cardinality.One);
+		case XQ.Dec:
+			return new SequenceType(AtomicType.DEC, Cardinality.One);
+		case XQ.Str:
+			return new SequenceType(AtomicType.STR, Cardinality.One);
+		case XQ.Bool:
+			return BOOLEAN;
+		case XQ.Atomic:
+			return new SequenceType(new AtomicType(((Atomic) node.getValue())
+					.type()), Cardinality.One);
+		case XQ.VariableRef:
+			return vars.get((QNm) node.getValue());
+		case XQ.ArithmeticExpr:
+			return arithmetic(node);
+		case XQ.ComparisonExpr:
+			return comparison(node);
+		case XQ.AndExpr:
+		case XQ.OrExpr:
+		case XQ.QuantifiedExpr:
+		case XQ.InstanceofExpr:
+		case XQ.CastableExpr:
+			return BOOLEAN;
+		case XQ.RangeExpr:
+			return INTEGER_SEQUENCE;
+		case XQ.CastExpr:
+			return singleType(node.getChild(1));
+		case XQ.FunctionConversion:
+			return (SequenceType) node.getValue();
+		case XQ.FunctionCall:
+			return functionCall(node);
+		case XQ.ParenthesizedExpr:
+		case XQ.SequenceExpr:
+		case XQ.EnclosedExpr:
+			return (node.getChildCount() == 1) ? type(node.getChild(0))
+					: null;
+		case XQ.IfExpr:
+			SequenceType thenType = type(node.getChild(1));
+			SequenceType elseType = type(node.getChild(2));
+			return ((subtypeOf(thenType, elseType)) && (subtypeOf(elseType,
+					thenType))) ? thenType : null;
+		default:
+			return null;
+		}
+	}
+
+	private SequenceType arithmetic(AST node) {
+		SequenceType leftType = type(node.getChild(1));
+		SequenceType rightType = type(node.getChild(2));
+		AtomicType left = operand(leftType);
+		AtomicType right = operand(rightType);
+		if ((left == null) || (right == null)) {
+			return null;
+		}
+		int op = node.getChild(0).getType();
+		AtomicType res;
+		if (op == XQ.IDivideOp) {
+			res = AtomicType.INR;
+		} else if ((left instanceof NumericType)
+				|| (right instanceof NumericType)) {
+			res = NumericType.INSTANCE;
+		} else if ((left == AtomicType.DBL) || (right == AtomicType.DBL)) {
+			res = AtomicType.DBL;
+		} else if ((left == FLT) || (right == FLT)) {
+			res = FLT;
+		} else if ((left == AtomicType.DEC) || (right == AtomicType.DEC)
+				|| (op == XQ.DivideOp)) {
+			res = AtomicType.DEC;
+		} else {
+			res = AtomicType.INR;
+		}
+		Cardinality card = ((leftType.getCardinality() == Cardinality.One) && (rightType
+				.getCardinality() == Cardinality.One)) ? Cardinality.One
+				: Cardinality.ZeroOrOne;
+		return new SequenceType(res, card);
+	}
+
+	private AtomicType operand(SequenceType t) {
+		if ((t != null) && (t.getCardinality().atMostOne())
+				&& (t.getItemType() instanceof AtomicType)
+				&& (!(t.getItemType() instanceof NumericType))
+				&& (((AtomicType) t.getItemType()).getType()
+						.instanceOf(Type.UNA))) {
+			// untyped operands are cast to xs:double
+			return AtomicType.DBL;
+		}
+		return numeric(t);
+	}
+
+	private SequenceType comparison(AST node) {
+		switch (node.getChild(0).getType()) {
+		case XQ.GeneralCompEQ:
+		case XQ.GeneralCompGE:
+		case XQ.GeneralCompLE:
+		case XQ.GeneralCompLT:
+		case XQ.GeneralCompGT:
+		case XQ.GeneralCompNE:
+			return BOOLEAN;
+		case XQ.NodeCompIs:
+		case XQ.NodeCompFollows:
+		case XQ.NodeCompPrecedes:
+			return BOOLEAN_OPT;
+		default:
+			SequenceType left = type(node.getChild(1));
+			SequenceType right = type(node.getChild(2));
+			return ((left != null) && (right != null)
+					&& (left.getCardinality() == Cardinality.One) && (right
+					.getCardinality() == Cardinality.One)) ? BOOLEAN
+					: BOOLEAN_OPT;
+		}
+	}
+
+	private SequenceType functionCall(AST node) throws QueryException {
+		StaticContext ctx = (node.getStaticContext() != null) ? node
+				.getStaticContext() : sctx;
+		Function function = ctx.getFunctions().resolve(
+				(QNm) node.getValue(), node.getChildCount());
+		return (function != null) ? function.getSignature().getResultType()
+				: null;
+	}
+
+	private SequenceType singleType(AST node) throws QueryException {
+		StaticContext ctx = (node.getStaticContext() != null) ? node
+				.getStaticContext() : sctx;
+		Type type = ctx.getTypes().resolveAtomicType(
+				(QNm) node.getChild(0).getChild(0).getValue());
+		boolean opt = ((node.getChildCount() == 2) && (node.getChild(1)
+				.getType() == XQ.CardinalityZeroOrOne));
+		return new SequenceType(new AtomicType(type), (opt) ? Cardinality.ZeroOrOne
+				: Cardinality.One);
+	}
+
+	private SequenceType sequenceType(AST node) throws QueryException {
+		AST itemType = node.getChild(0);
+		ItemType type;
+		if (itemType.getType() == XQ.ItemType) {
+			type = AnyItemType.ANY;
+		} else if (itemType.getType() == XQ.AtomicOrUnionType) {
+			StaticContext ctx = (node.getStaticContext() != null) ? node
+					.getStaticContext() : sctx;
+			type = new AtomicType(ctx.getTypes().resolveAtomicType(
+					(QNm) itemType.getChild(0).getValue()));
+		} else {
+			return null;
+		}
+		Cardinality card = Cardinality.One;
+		if (node.getChildCount() == 2) {
+			switch (node.getChild(1).getType()) {
+			case XQ.CardinalityOneOrMany:
+				card = Cardinality.OneOrMany;
+				break;
+			case XQ.CardinalityZeroOrMany:
+				card = Cardinality.ZeroOrMany;
+				break;
+			case XQ.CardinalityZeroOrOne:
+				card = Cardinality.ZeroOrOne;
+				break;
+			}
+		}
+		return new SequenceType(type, card);
+	}
+
+	private void forBind(AST node) throws QueryException {
+		int pos = 1;
+		AST posVar = null;
+		if (node.getChild(pos).getType() == XQ.TypedVariableBinding) {
+			posVar = node.getChild(pos++);
+		}
+		AST expr = node.getChild(pos++);
+		SequenceType exprType = infer(expr);
+		// pipelined variables may be bound to the empty sequence in
+		// lifted iteration groups and outer joins
+		boolean opt = (node.getType() == XQ.ForBind);
+		for (int i = 0; i < node.getChildCount(); i++) {
+			opt |= (node.getChild(i).getType() == XQ.AllowingEmpty);
+		}
+		SequenceType type = declared(node.getChild(0));
+		if ((type == null) && (exprType != null)) {
+			type = new SequenceType(exprType.getItemType(), Cardinality.One);
+		}
+		if ((type != null) && (opt)) {
+			type = optional(type);
+		}
+		bind(node.getChild(0), type);
+		if (posVar != null) {
+			bind(posVar, SequenceType.INTEGER);
+		}
+		children(node, pos, node.getChildCount());
+	}
+
+	private void letBind(AST node) throws QueryException {
+		SequenceType type = infer(node.getChild(1));
+		SequenceType declared = declared(node.getChild(0));
+		if (declared != null) {
+			type = declared;
+		}
+		if ((type != null) && (node.getType() == XQ.LetBind)) {
+			type = optional(type);
+		}
+		bind(node.getChild(0), type);
+		children(node, 2, node.getChildCount());
+	}
+
+	private SequenceType declared(AST binding) throws QueryException {
+		return (binding.getChildCount() == 2) ? sequenceType(binding
+				.getChild(1)) : null;
+	}
+
+	private SequenceType optional(SequenceType type) {
+		switch (type.getCardinality()) {
+		case One:
+			return new SequenceType(type.getItemType(), Cardinality.ZeroOrOne);
+		case OneOrMany:
+			return new SequenceType(type.getItemType(), Cardinality.ZeroOrMany);
+		default:
+			return type;
+		}
+	}
+
+	private void bind(AST binding, SequenceType type) {
+		QNm name = (QNm) binding.getChild(0).getValue();
+		if (type != null) {
+			vars.put(name, type);
+		} else {
+			vars.remove(name);
+		}
+	}
+}
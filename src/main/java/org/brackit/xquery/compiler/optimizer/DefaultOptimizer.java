@@ -36,6 +36,7 @@ import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.Bits;
+import org.brackit.xquery.compiler.analyzer.TypeInference;
 import org.brackit.xquery.compiler.optimizer.walker.DoSNStepMerger;
 import org.brackit.xquery.compiler.optimizer.walker.OrderForGroupBy;
 import org.brackit.xquery.compiler.optimizer.walker.PathDDOElimination;
@@ -55,10 +56,41 @@ public class DefaultOptimizer implements Optimizer {
 
 	public static final String UNNEST_CFG = "org.brackit.xquery.unnest";
 
+	public static final String INLINE_CFG = "org.brackit.xquery.inline";
+
+	public static final String INLINE_SIZE_CFG = "org.brackit.xquery.inlineSize";
+
+	public static final String FOLDING_CFG = "org.brackit.xquery.constantFolding";
+
+	public static final String CSE_CFG = "org.brackit.xquery.cse";
+
+	public static final String STATIC_TYPING_CFG = "org.brackit.xquery.staticTyping";
+
+	public static final String MAX_HASH_GROUPS_CFG = "org.brackit.xquery.maxHashGroups";
+
 	public static boolean UNNEST = Cfg.asBool(UNNEST_CFG, true);
 
 	public static boolean JOIN_DETECTION = Cfg.asBool(JOIN_DETECTION_CFG, true);
 
+	public static boolean INLINE = Cfg.asBool(INLINE_CFG, true);
+
+	public static boolean FOLDING = Cfg.asBool(FOLDING_CFG, true);
+
+	public static boolean CSE = Cfg.asBool(CSE_CFG, true);
+
+	public static boolean STATIC_TYPING = Cfg.asBool(STATIC_TYPING_CFG, true);
+
+	/**
+	 * Maximum number of AST nodes of a function body to be inlined.
+	 */
+	public static int INLINE_SIZE = Cfg.asInt(INLINE_SIZE_CFG, 64);
+
+	/**
+	 * Maximum estimated number of groups for hash-based grouping. Grouping
+	 * with more groups sorts the input instead.
+	 */
+	public static int MAX_HASH_GROUPS = Cfg.asInt(MAX_HASH_GROUPS_CFG, 1 << 16);
+
 	protected final List<Stage> stages;
 	protected final Map<QNm, Str> options;
 
@@ -66,6 +98,9 @@ public class DefaultOptimizer implements Optimizer {
 		stages = new ArrayList<Stage>();
 		stages.add(new Simplification());
 		stages.add(new Finalize());
+		if (STATIC_TYPING) {
+			stages.add(new Typing());
+		}
 		this.options = options;
 	}
 
@@ -90,9 +125,7 @@ public class DefaultOptimizer implements Optimizer {
 	protected class Simplification implements Stage {
 		public AST rewrite(StaticContext sctx, AST ast) {
 			ast = new DoSNStepMerger().walk(ast);
-			if (enabled(SEQUENTIAL_GROUPBY)) {
-				ast = new OrderForGroupBy().walk(ast);
-			}
+			ast = new OrderForGroupBy(enabled(SEQUENTIAL_GROUPBY)).walk(ast);
 			return ast;
 		}
 	}
@@ -104,6 +137,13 @@ public class DefaultOptimizer implements Optimizer {
 		}
 	}
 
+	protected class Typing implements Stage {
+		public AST rewrite(StaticContext sctx, AST ast) throws QueryException {
+			ast = new TypeInference(sctx).annotate(ast);
+			return ast;
+		}
+	}
+
 	protected boolean enabled(QNm option) {
 		Str opt = options.get(option);
 		return ((opt != null) && Boolean.parseBoolean(opt.stringValue()));
@@ -34,6 +34,9 @@ import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.optimizer.walker.CommonSubexpressions;
+import org.brackit.xquery.compiler.optimizer.walker.ConstantFolding;
+import org.brackit.xquery.compiler.optimizer.walker.FunctionInlining;
 import org.brackit.xquery.compiler.optimizer.walker.topdown.GroupByAggregates;
 import org.brackit.xquery.compiler.optimizer.walker.topdown.JoinGroupDemarcation;
 import org.brackit.xquery.compiler.optimizer.walker.topdown.JoinRewriter;
@@ -58,6 +61,15 @@ public class TopDownOptimizer extends DefaultOptimizer {
 
 	public TopDownOptimizer(Map<QNm, Str> options) {
 		super(options, new ArrayList<Stage>());
+		if (INLINE) {
+			stages.add(new Inlining());
+		}
+		if (FOLDING) {
+			stages.add(new Folding());
+		}
+		if (CSE) {
+			stages.add(new SubexpressionElimination());
+		}
 		stages.add(new Simplification());
 		stages.add(new Pipelining());
 		stages.add(new Reordering());
@@ -69,6 +81,30 @@ public class TopDownOptimizer extends DefaultOptimizer {
 		}
 		stages.add(new FinalizePipeline());
 		stages.add(new Finalize());
+		if (STATIC_TYPING) {
+			stages.add(new Typing());
+		}
+	}
+
+	private class Inlining implements Stage {
+		public AST rewrite(StaticContext sctx, AST ast) throws QueryException {
+			ast = new FunctionInlining(sctx).walk(ast);
+			return ast;
+		}
+	}
+
+	private class Folding implements Stage {
+		public AST rewrite(StaticContext sctx, AST ast) throws QueryException {
+			ast = new ConstantFolding(sctx, options).walk(ast);
+			return ast;
+		}
+	}
+
+	private class SubexpressionElimination implements Stage {
+		public AST rewrite(StaticContext sctx, AST ast) throws QueryException {
+			ast = new CommonSubexpressions(sctx).walk(ast);
+			return ast;
+		}
 	}
 
 	private class Pipelining implements Stage {
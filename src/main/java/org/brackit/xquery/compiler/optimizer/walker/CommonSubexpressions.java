@@ -0,0 +1,293 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer.walker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.module.Namespaces;
+import org.brackit.xquery.module.StaticContext;
+import org.brackit.xquery.xdm.Function;
+
+/**
+ * Binds path expressions which are evaluated repeatedly in the clauses of a
+ * FLWOR expression to a new let variable, e.g.,
+ * 
+ * <pre>
+ * for $i in $items where $i/price &gt; 10 order by $i/price return $i/price
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * for $i in $items let $p := $i/price where $p &gt; 10 order by $p return $p
+ * </pre>
+ * 
+ * Only path expressions rooted at a variable which do not construct nodes
+ * and do not call user-defined functions are considered. The let clause is
+ * placed directly after the clause binding the last variable the expression
+ * depends on. Clauses following a group by are not considered, because
+ * grouping rebinds the variables of the FLWOR.
+ */
+public class CommonSubexpressions extends Walker {
+
+	private int count;
+
+	public CommonSubexpressions(StaticContext sctx) {
+		super(sctx);
+	}
+
+	@Override
+	protected AST prepare(AST root) {
+		count = 0;
+		return root;
+	}
+
+	@Override
+	protected AST visit(AST node) {
+		if (node.getType() != XQ.FlowrExpr) {
+			return node;
+		}
+		while (eliminate(node))
+			;
+		return node;
+	}
+
+	private boolean eliminate(AST flwor) {
+		int end = flwor.getChildCount();
+		for (int i = 0; i < flwor.getChildCount(); i++) {
+			if (flwor.getChild(i).getType() == XQ.GroupByClause) {
+				end = i;
+				break;
+			}
+		}
+
+		// variables which are visible in all clauses
+		// after their binding clause
+		Map<QNm, Integer> clauseVars = new HashMap<QNm, Integer>();
+		Set<QNm> localVars = new HashSet<QNm>();
+		for (int i = 0; i < flwor.getChildCount(); i++) {
+			AST clause = flwor.getChild(i);
+			collectVariables(clause, localVars);
+			if ((clause.getType() == XQ.ForClause)
+					|| (clause.getType() == XQ.LetClause)) {
+				for (int j = 0; j < clause.getChildCount(); j++) {
+					AST binding = clause.getChild(j);
+					if (binding.getType() == XQ.TypedVariableBinding) {
+						clauseVars.put((QNm) binding.getChild(0).getValue(), i);
+					}
+				}
+			}
+		}
+
+		List<AST> candidates = new ArrayList<AST>();
+		for (int i = 0; i < end; i++) {
+			collectCandidates(flwor.getChild(i), candidates);
+		}
+
+		// find the largest expression that occurs more than once
+		List<AST> best = null;
+		int bestSize = 0;
+		boolean[] done = new boolean[candidates.size()];
+		for (int i = 0; i < candidates.size(); i++) {
+			if (done[i]) {
+				continue;
+			}
+			AST candidate = candidates.get(i);
+			List<AST> occurrences = new ArrayList<AST>();
+			occurrences.add(candidate);
+			for (int j = i + 1; j < candidates.size(); j++) {
+				if ((!done[j]) && (equal(candidate, candidates.get(j)))) {
+					occurrences.add(candidates.get(j));
+					done[j] = true;
+				}
+			}
+			if ((occurrences.size() > 1)
+					&& (inScope(candidate, clauseVars, localVars))) {
+				int size = size(candidate);
+				if (size > bestSize) {
+					best = occurrences;
+					bestSize = size;
+				}
+			}
+		}
+		if (best == null) {
+			return false;
+		}
+
+		// bind the expression as early as possible to evaluate
+		// it only once for all tuples of subsequent for clauses
+		int insertAt = insertionPoint(best.get(0), clauseVars);
+		QNm name = new QNm("#cse" + (++count));
+		AST binding = new AST(XQ.TypedVariableBinding);
+		binding.addChild(new AST(XQ.Variable, name));
+		AST let = new AST(XQ.LetClause);
+		let.addChild(binding);
+		let.addChild(best.get(0).copyTree());
+		for (AST occurrence : best) {
+			occurrence.getParent().replaceChild(occurrence.getChildIndex(),
+					new AST(XQ.VariableRef, name));
+		}
+		flwor.insertChild(insertAt, let);
+		snapshot();
+		return true;
+	}
+
+	private void collectVariables(AST node, Set<QNm> vars) {
+		if (node.getType() == XQ.Variable) {
+			vars.add((QNm) node.getValue());
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			collectVariables(node.getChild(i), vars);
+		}
+	}
+
+	private void collectCandidates(AST node, List<AST> candidates) {
+		if ((node.getType() == XQ.PathExpr)
+				&& (node.getChild(0).getType() == XQ.VariableRef)
+				&& (pure(node))) {
+			candidates.add(node);
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			collectCandidates(node.getChild(i), candidates);
+		}
+	}
+
+	private boolean pure(AST node) {
+		switch (node.getType()) {
+		case XQ.DirElementConstructor:
+		case XQ.DirAttributeConstructor:
+		case XQ.DirCommentConstructor:
+		case XQ.DirPIConstructor:
+		case XQ.CompDocumentConstructor:
+		case XQ.CompElementConstructor:
+		case XQ.CompAttributeConstructor:
+		case XQ.CompCommentConstructor:
+		case XQ.CompPIConstructor:
+		case XQ.CompTextConstructor:
+		case XQ.CompNamespaceConstructor:
+		case XQ.ArrayConstructor:
+		case XQ.RecordConstructor:
+		case XQ.InlineFuncItem:
+		case XQ.LiteralFuncItem:
+		case XQ.InsertExpr:
+		case XQ.DeleteExpr:
+		case XQ.ReplaceValueExpr:
+		case XQ.ReplaceNodeExpr:
+		case XQ.RenameExpr:
+		case XQ.TransformExpr:
+			return false;
+		case XQ.FunctionCall:
+			QNm name = (QNm) node.getValue();
+			Function fun = sctx.getFunctions().resolve(name,
+					node.getChildCount());
+			if ((fun == null) || (!fun.isBuiltIn()) || (fun.isUpdating())
+					|| (!Namespaces.FN_NSURI.equals(name.getNamespaceURI()))) {
+				return false;
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			if (!pure(node.getChild(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The expression must not refer to variables which are bound
+	 * in nested scopes of the FLWOR.
+	 */
+	private boolean inScope(AST node, Map<QNm, Integer> clauseVars,
+			Set<QNm> localVars) {
+		if (node.getType() == XQ.VariableRef) {
+			QNm name = (QNm) node.getValue();
+			if ((localVars.contains(name)) && (!clauseVars.containsKey(name))) {
+				return false;
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			if (!inScope(node.getChild(i), clauseVars, localVars)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int insertionPoint(AST node, Map<QNm, Integer> clauseVars) {
+		int pos = 0;
+		if (node.getType() == XQ.VariableRef) {
+			Integer clause = clauseVars.get((QNm) node.getValue());
+			if (clause != null) {
+				pos = clause + 1;
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			pos = Math.max(pos, insertionPoint(node.getChild(i), clauseVars));
+		}
+		return pos;
+	}
+
+	private boolean equal(AST a, AST b) {
+		if ((a.getType() != b.getType())
+				|| (a.getChildCount() != b.getChildCount())) {
+			return false;
+		}
+		Object va = a.getValue();
+		Object vb = b.getValue();
+		if ((va == null) ? (vb != null) : (!va.equals(vb))) {
+			return false;
+		}
+		if ((va instanceof Atomic)
+				&& (((Atomic) va).type() != ((Atomic) vb).type())) {
+			return false;
+		}
+		for (int i = 0; i < a.getChildCount(); i++) {
+			if (!equal(a.getChild(i), b.getChild(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int size(AST node) {
+		int size = 1;
+		for (int i = 0; i < node.getChildCount(); i++) {
+			size += size(node.getChild(i));
+		}
+		return size;
+	}
+}
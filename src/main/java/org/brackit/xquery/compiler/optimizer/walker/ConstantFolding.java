@@ -0,0 +1,217 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer.walker;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.translator.Compiler;
+import org.brackit.xquery.module.Namespaces;
+import org.brackit.xquery.module.StaticContext;
+import org.brackit.xquery.operator.TupleImpl;
+import org.brackit.xquery.xdm.Expr;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Type;
+
+/**
+ * Evaluates arithmetic, comparisons, logical expressions, casts and calls of
+ * context-independent built-in functions whose operands are literals at
+ * compile time. Expressions which raise an error are left untouched to
+ * report the error at runtime only if they are actually evaluated.
+ */
+public class ConstantFolding extends Walker {
+
+	private static final Set<String> FOLDABLE_FUNCTIONS = new HashSet<String>();
+
+	static {
+		String[] names = new String[] { "concat", "string-join", "substring",
+				"string-length", "upper-case", "lower-case", "normalize-space",
+				"contains", "starts-with", "ends-with", "substring-before",
+				"substring-after", "translate", "not", "boolean", "abs",
+				"floor", "ceiling", "round", "string", "number" };
+		for (String name : names) {
+			FOLDABLE_FUNCTIONS.add(name);
+		}
+	}
+
+	private final Map<QNm, Str> options;
+
+	private QueryContext ctx;
+
+	public ConstantFolding(StaticContext sctx, Map<QNm, Str> options) {
+		super(sctx);
+		this.options = options;
+	}
+
+	@Override
+	protected AST prepare(AST root) {
+		// fold bottom-up to fold nested constant expressions in one pass
+		return fold(root);
+	}
+
+	@Override
+	protected AST visit(AST node) {
+		return node;
+	}
+
+	private AST fold(AST node) {
+		for (int i = 0; i < node.getChildCount(); i++) {
+			AST child = node.getChild(i);
+			AST folded = fold(child);
+			if (folded != child) {
+				node.replaceChild(i, folded);
+				snapshot();
+			}
+		}
+		if (!foldable(node)) {
+			return (node.getType() == XQ.FunctionCall) ? mergeConcatArgs(node)
+					: node;
+		}
+		if (node.getType() == XQ.ParenthesizedExpr) {
+			return node.getChild(0);
+		}
+		Atomic value = evaluate(node);
+		return (value != null) ? literal(value) : node;
+	}
+
+	private AST mergeConcatArgs(AST call) {
+		QNm name = (QNm) call.getValue();
+		if ((!Namespaces.FN_NSURI.equals(name.getNamespaceURI()))
+				|| (!"concat".equals(name.getLocalName()))) {
+			return call;
+		}
+		for (int i = 0; i < call.getChildCount() - 1; i++) {
+			AST arg = call.getChild(i);
+			AST next = call.getChild(i + 1);
+			if ((arg.getType() == XQ.Str) && (next.getType() == XQ.Str)) {
+				String merged = arg.getStringValue() + next.getStringValue();
+				call.replaceChild(i, new AST(XQ.Str, new Str(merged)));
+				call.deleteChild(i + 1);
+				i--;
+				snapshot();
+			}
+		}
+		return call;
+	}
+
+	private boolean foldable(AST node) {
+		switch (node.getType()) {
+		case XQ.ParenthesizedExpr:
+			return ((node.getChildCount() == 1) && (constant(node.getChild(0))));
+		case XQ.ArithmeticExpr:
+		case XQ.ComparisonExpr:
+			// date/time values depend on the implicit timezone
+			return ((primitive(node.getChild(1))) && (primitive(node
+					.getChild(2))));
+		case XQ.AndExpr:
+		case XQ.OrExpr:
+			return ((primitive(node.getChild(0))) && (primitive(node
+					.getChild(1))));
+		case XQ.CastExpr:
+			return constant(node.getChild(0));
+		case XQ.FunctionCall:
+			QNm name = (QNm) node.getValue();
+			String nsURI = name.getNamespaceURI();
+			if ((node.getChildCount() == 0)
+					|| ((!Namespaces.XS_NSURI.equals(nsURI)) && ((!Namespaces.FN_NSURI
+							.equals(nsURI)) || (!FOLDABLE_FUNCTIONS
+							.contains(name.getLocalName()))))) {
+				return false;
+			}
+			for (int i = 0; i < node.getChildCount(); i++) {
+				if (!constant(node.getChild(i))) {
+					return false;
+				}
+			}
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private boolean primitive(AST node) {
+		switch (node.getType()) {
+		case XQ.Int:
+		case XQ.Dbl:
+		case XQ.Dec:
+		case XQ.Str:
+		case XQ.Bool:
+		case XQ.AnyURI:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private boolean constant(AST node) {
+		return ((primitive(node)) || (node.getType() == XQ.QNm) || (node
+				.getType() == XQ.Atomic));
+	}
+
+	private Atomic evaluate(AST node) {
+		try {
+			Expr expr = new Compiler(options).expression(null, sctx, node,
+					false);
+			if (ctx == null) {
+				ctx = new QueryContext();
+			}
+			Item item = expr.evaluateToItem(ctx, TupleImpl.EMPTY_TUPLE);
+			return (item instanceof Atomic) ? (Atomic) item : null;
+		} catch (QueryException e) {
+			return null;
+		}
+	}
+
+	private AST literal(Atomic value) {
+		Type type = value.type();
+		if (type == Type.BOOL) {
+			return new AST(XQ.Bool, value);
+		} else if (type == Type.STR) {
+			return new AST(XQ.Str, value);
+		} else if (type == Type.INR) {
+			return new AST(XQ.Int, value);
+		} else if (type == Type.DBL) {
+			return new AST(XQ.Dbl, value);
+		} else if (type == Type.DEC) {
+			return new AST(XQ.Dec, value);
+		} else if (type == Type.AURI) {
+			return new AST(XQ.AnyURI, value);
+		} else if (type == Type.QNM) {
+			return new AST(XQ.QNm, value);
+		}
+		return new AST(XQ.Atomic, value);
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer.walker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.optimizer.DefaultOptimizer;
+import org.brackit.xquery.function.UDF;
+import org.brackit.xquery.module.StaticContext;
+import org.brackit.xquery.xdm.Function;
+import org.brackit.xquery.xdm.type.SequenceType;
+
+/**
+ * Replaces calls of small, non-recursive user-defined functions with a FLWOR
+ * expression which let-binds the arguments to the parameters and returns the
+ * function body. All variables bound in the inlined body are renamed to keep
+ * them apart from the variables of the caller and of other inlined copies.
+ */
+public class FunctionInlining extends Walker {
+
+	private int inlined;
+
+	private int budget;
+
+	public FunctionInlining(StaticContext sctx) {
+		super(sctx);
+	}
+
+	@Override
+	protected AST prepare(AST root) {
+		inlined = 0;
+		// bound the growth of the AST caused by
+		// chains of nested inlined calls
+		budget = 16 * DefaultOptimizer.INLINE_SIZE;
+		return root;
+	}
+
+	@Override
+	protected AST visit(AST node) {
+		if (node.getType() != XQ.FunctionCall) {
+			return node;
+		}
+		UDF udf = inlinable(node);
+		if (udf == null) {
+			return node;
+		}
+		AST body = udf.getInlineBody();
+		int size = size(body);
+		if ((size > budget) || (!resolvable(body))) {
+			return node;
+		}
+		budget -= size;
+
+		AST inlinedCall = inline(node, udf, body);
+		AST parent = node.getParent();
+		if (parent != null) {
+			parent.replaceChild(node.getChildIndex(), inlinedCall);
+		}
+		snapshot();
+		return inlinedCall;
+	}
+
+	private UDF inlinable(AST call) {
+		QNm name = (QNm) call.getValue();
+		Function fun = sctx.getFunctions().resolve(name,
+				call.getChildCount());
+		if (!(fun instanceof UDF)) {
+			return null;
+		}
+		UDF udf = (UDF) fun;
+		if ((!udf.isInlinable()) || (udf.isRecursive())) {
+			return null;
+		}
+		for (int i = 0; i < call.getChildCount(); i++) {
+			if (call.getChild(i).getType() == XQ.ArgumentPlaceHolder) {
+				return null;
+			}
+		}
+		return udf;
+	}
+
+	/*
+	 * Calls in the inlined body are compiled in the static
+	 * context of the caller and must resolve to the same functions.
+	 */
+	private boolean resolvable(AST node) {
+		if (node.getType() == XQ.FunctionCall) {
+			QNm name = (QNm) node.getValue();
+			int arity = node.getChildCount();
+			Function fun = node.getStaticContext().getFunctions().resolve(
+					name, arity);
+			if (sctx.getFunctions().resolve(name, arity) != fun) {
+				return false;
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			if (!resolvable(node.getChild(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private AST inline(AST call, UDF udf, AST body) {
+		int id = ++inlined;
+		Map<QNm, QNm> names = new HashMap<QNm, QNm>();
+		QNm[] params = udf.getInlineParams();
+		for (QNm param : params) {
+			names.put(param, rename(param, id));
+		}
+		collectBindings(body, names, id);
+		renameVariables(body, names);
+
+		SequenceType resultType = udf.getSignature().getResultType();
+		AST ret = convert(body, resultType);
+		if (params.length == 0) {
+			return ret;
+		}
+
+		SequenceType[] types = udf.getSignature().getParams();
+		AST flwor = new AST(XQ.FlowrExpr);
+		for (int i = 0; i < params.length; i++) {
+			AST binding = new AST(XQ.TypedVariableBinding);
+			binding.addChild(new AST(XQ.Variable, names.get(params[i])));
+			AST let = new AST(XQ.LetClause);
+			let.addChild(binding);
+			let.addChild(convert(call.getChild(i), types[i]));
+			flwor.addChild(let);
+		}
+		AST returnClause = new AST(XQ.ReturnClause);
+		returnClause.addChild(ret);
+		flwor.addChild(returnClause);
+		return flwor;
+	}
+
+	private AST convert(AST expr, SequenceType type) {
+		if ((type.getCardinality().many())
+				&& (type.getItemType().isAnyItem())) {
+			return expr;
+		}
+		AST conversion = new AST(XQ.FunctionConversion, type);
+		conversion.addChild(expr);
+		return conversion;
+	}
+
+	private void collectBindings(AST node, Map<QNm, QNm> names, int id) {
+		if (node.getType() == XQ.Variable) {
+			QNm name = (QNm) node.getValue();
+			names.put(name, rename(name, id));
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			collectBindings(node.getChild(i), names, id);
+		}
+	}
+
+	private void renameVariables(AST node, Map<QNm, QNm> names) {
+		if ((node.getType() == XQ.Variable)
+				|| (node.getType() == XQ.VariableRef)) {
+			QNm renamed = names.get((QNm) node.getValue());
+			if (renamed != null) {
+				node.setValue(renamed);
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			renameVariables(node.getChild(i), names);
+		}
+	}
+
+	private QNm rename(QNm name, int id) {
+		return new QNm(name.getNamespaceURI(), name.getPrefix(), name
+				.getLocalName()
+				+ "#" + id);
+	}
+
+	private static int size(AST node) {
+		int size = 1;
+		for (int i = 0; i < node.getChildCount(); i++) {
+			size += size(node.getChild(i));
+		}
+		return size;
+	}
+}
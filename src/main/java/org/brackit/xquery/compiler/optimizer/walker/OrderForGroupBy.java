@@ -27,29 +27,75 @@
  */
 package org.brackit.xquery.compiler.optimizer.walker;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.brackit.xquery.atomic.IntNumeric;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.optimizer.DefaultOptimizer;
 
 /**
- * Insert an orderBy clause in front of a groupBy clause that orders the tuple
- * stream in according to the grouping specification.
+ * <p>
+ * Chooses the evaluation strategy of groupBy clauses:
+ * </p>
+ * <ul>
+ * <li>If the tuple stream is already ordered on the grouping variables, e.g.,
+ * because of a preceding orderBy clause or because the only grouping
+ * variable iterates over a range, the groupBy clause is marked as
+ * <code>sequential</code> to group in a single pass.</li>
+ * <li>If the estimated number of groups exceeds
+ * {@link DefaultOptimizer#MAX_HASH_GROUPS}, an orderBy clause is inserted in
+ * front of the groupBy clause, which orders the tuple stream according to the
+ * grouping specification, and the groupBy clause is marked as
+ * <code>sequential</code>.</li>
+ * <li>Otherwise, tuples are grouped in a hash table.</li>
+ * </ul>
+ * <p>
+ * If the sort-based strategy is forced, an orderBy clause is always inserted
+ * unless the tuple stream is already ordered.
+ * </p>
  * 
  * @author Sebastian Baechle
  * 
  */
 public class OrderForGroupBy extends Walker {
 
+	private static final long UNKNOWN = -1;
+
+	private final boolean force;
+
+	public OrderForGroupBy() {
+		this(true);
+	}
+
+	public OrderForGroupBy(boolean force) {
+		this.force = force;
+	}
+
 	@Override
 	protected AST visit(AST node) {
-		if (node.getType() != XQ.GroupByClause) {
+		if ((node.getType() != XQ.GroupByClause)
+				|| (node.getChildCount() == 1)
+				|| (node.checkProperty("sequential"))) {
+			return node;
+		}
+
+		Set<QNm> keys = new HashSet<QNm>();
+		for (int i = 0; i < node.getChildCount() - 1; i++) {
+			keys.add((QNm) node.getChild(i).getChild(0).getValue());
+		}
+
+		if (ordered(node, keys)) {
+			node.setProperty("sequential", Boolean.TRUE);
 			return node;
 		}
 
-		// check if prev sibling is already the needed group by
-		AST prev = node.getParent().getChild(node.getChildIndex() - 1);
-		if (prev.getType() == XQ.OrderByClause) {
-			if (checkOrderBy(node, prev)) {
+		if (!force) {
+			long groups = groups(node, keys);
+			if ((groups == UNKNOWN)
+					|| (groups <= DefaultOptimizer.MAX_HASH_GROUPS)) {
 				return node;
 			}
 		}
@@ -59,9 +105,7 @@ public class OrderForGroupBy extends Walker {
 		for (int i = 0; i < node.getChildCount() - 1; i++) {
 			AST groupBySpec = node.getChild(i);
 			AST orderBySpec = new AST(XQ.OrderBySpec);
-			for (int j = 0; j < groupBySpec.getChildCount(); j++) {
-				orderBySpec.addChild(groupBySpec.getChild(0).copyTree());
-			}
+			orderBySpec.addChild(groupBySpec.getChild(0).copyTree());
 			orderBy.addChild(orderBySpec);
 		}
 
@@ -70,17 +114,178 @@ public class OrderForGroupBy extends Walker {
 		return orderBy;
 	}
 
-	private boolean checkOrderBy(AST groupBy, AST orderBy) {
-		if (groupBy.getChildCount() - 1 != orderBy.getChildCount()) {
+	/**
+	 * Checks if tuples with equal grouping keys arrive consecutively at the
+	 * given groupBy clause.
+	 */
+	private boolean ordered(AST groupBy, Set<QNm> keys) {
+		AST flwor = groupBy.getParent();
+		for (int i = groupBy.getChildIndex() - 1; i >= 0; i--) {
+			AST clause = flwor.getChild(i);
+			switch (clause.getType()) {
+			case XQ.OrderByClause:
+				return orderedOn(clause, keys);
+			case XQ.GroupByClause:
+				// groups are unique on their keys
+				for (int j = 0; j < clause.getChildCount() - 1; j++) {
+					if (!keys.contains(clause.getChild(j).getChild(0)
+							.getValue())) {
+						return false;
+					}
+				}
+				return true;
+			case XQ.ForClause:
+				if (binds(clause, keys)) {
+					// a range is iterated in ascending order
+					return ((i == 0) && (keys.size() == 1)
+							&& (keys.contains(var(clause))) && (source(clause)
+							.getType() == XQ.RangeExpr));
+				}
+				// repeats each incoming tuple consecutively
+				break;
+			case XQ.LetClause:
+				if (binds(clause, keys)) {
+					return false;
+				}
+				break;
+			case XQ.WhereClause:
+			case XQ.CountClause:
+				break;
+			default:
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private boolean orderedOn(AST orderBy, Set<QNm> keys) {
+		if (orderBy.getChildCount() < keys.size()) {
 			return false;
 		}
-		for (int i = 0; i < groupBy.getChildCount() - 1; i++) {
-			QNm groupByVar = (QNm) groupBy.getChild(i).getChild(0).getValue();
-			QNm orderByVar = (QNm) orderBy.getChild(i).getChild(0).getValue();
-			if (!groupByVar.equals(orderByVar)) {
+		Set<QNm> prefix = new HashSet<QNm>();
+		for (int i = 0; i < keys.size(); i++) {
+			AST spec = orderBy.getChild(i).getChild(0);
+			if (spec.getType() != XQ.VariableRef) {
 				return false;
 			}
+			prefix.add((QNm) spec.getValue());
+		}
+		return prefix.equals(keys);
+	}
+
+	/**
+	 * Estimates the number of groups as product of the estimated numbers of
+	 * distinct values of the grouping variables.
+	 */
+	private long groups(AST groupBy, Set<QNm> keys) {
+		long groups = 1;
+		for (QNm key : keys) {
+			long card = cardinality(groupBy, key);
+			if (card == UNKNOWN) {
+				return UNKNOWN;
+			}
+			groups = Math.min(groups * card, Integer.MAX_VALUE);
+		}
+		return groups;
+	}
+
+	private long cardinality(AST groupBy, QNm key) {
+		AST flwor = groupBy.getParent();
+		for (int i = groupBy.getChildIndex() - 1; i >= 0; i--) {
+			AST clause = flwor.getChild(i);
+			switch (clause.getType()) {
+			case XQ.ForClause:
+				if (key.equals(var(clause))) {
+					AST source = source(clause);
+					return (source.getType() == XQ.RangeExpr) ? range(source)
+							: UNKNOWN;
+				} else if (binds(clause, key)) {
+					// positional variable
+					return UNKNOWN;
+				}
+				break;
+			case XQ.LetClause:
+				if (key.equals(var(clause))) {
+					return distinctValues(source(clause));
+				}
+				break;
+			case XQ.GroupByClause:
+				return UNKNOWN;
+			}
+		}
+		// bound outside of the FLWOR
+		return 1;
+	}
+
+	private long distinctValues(AST expr) {
+		switch (expr.getType()) {
+		case XQ.Int:
+		case XQ.Str:
+		case XQ.Dbl:
+		case XQ.Dec:
+		case XQ.Bool:
+			return 1;
+		case XQ.ComparisonExpr:
+		case XQ.AndExpr:
+		case XQ.OrExpr:
+		case XQ.InstanceofExpr:
+			return 2;
+		case XQ.ArithmeticExpr:
+			if ((expr.getChild(0).getType() == XQ.ModulusOp)
+					&& (expr.getChild(2).getType() == XQ.Int)) {
+				// result has the sign of the dividend
+				long m = ((IntNumeric) expr.getChild(2).getValue())
+						.longValue();
+				return Math.max(1, 2 * Math.abs(m) - 1);
+			}
+			return UNKNOWN;
+		default:
+			return UNKNOWN;
+		}
+	}
+
+	private long range(AST range) {
+		AST from = range.getChild(0);
+		AST to = range.getChild(1);
+		if ((from.getType() != XQ.Int) || (to.getType() != XQ.Int)) {
+			return UNKNOWN;
+		}
+		long f = ((IntNumeric) from.getValue()).longValue();
+		long t = ((IntNumeric) to.getValue()).longValue();
+		return Math.max(1, t - f + 1);
+	}
+
+	private QNm var(AST clause) {
+		return (QNm) clause.getChild(0).getChild(0).getValue();
+	}
+
+	private AST source(AST clause) {
+		for (int i = 0; i < clause.getChildCount(); i++) {
+			AST child = clause.getChild(i);
+			if (child.getType() != XQ.TypedVariableBinding) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	private boolean binds(AST clause, QNm var) {
+		for (int i = 0; i < clause.getChildCount(); i++) {
+			AST child = clause.getChild(i);
+			if ((child.getType() == XQ.TypedVariableBinding)
+					&& (var.equals(child.getChild(0).getValue()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean binds(AST clause, Set<QNm> vars) {
+		for (QNm var : vars) {
+			if (binds(clause, var)) {
+				return true;
+			}
 		}
-		return true;
+		return false;
 	}
 }
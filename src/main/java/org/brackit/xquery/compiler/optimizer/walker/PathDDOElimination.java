@@ -27,21 +27,42 @@
  */
 package org.brackit.xquery.compiler.optimizer.walker;
 
-import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.optimizer.walker.topdown.ScopeWalker;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.xdm.Function;
+import org.brackit.xquery.xdm.type.SequenceType;
 
 /**
  * <p>
- * This walker infers safety properties of path expressions, to reduce the need
- * for sorting and deduplicating the result of individual path steps.
+ * This walker infers order and duplicate-freeness properties of path
+ * expressions, to reduce the need for sorting and deduplicating the result of
+ * individual path steps.
  * </p>
  * <p>
- * In general, such inference rules are very complex, but this this class 
- * is rather conservative and only checks for the frequent and more obvious cases. 
+ * For each intermediate result of a path E1/E2/../EN, we track whether it is
+ * sorted in document order (<em>ord</em>), free of duplicates
+ * (<em>nodup</em>), contains at most one node (<em>one</em>), contains no two
+ * nodes of which one is an ancestor of the other (<em>unrel</em>), and
+ * contains only nodes at the same tree depth (<em>samedepth</em>). The
+ * properties of the input of a step and its axis determine the properties of
+ * its output. A step must only sort and deduplicate its output if the result
+ * would not be ordered and duplicate-free anyway. Otherwise, it is marked
+ * with the property <code>skipDDO</code>.
+ * </p>
+ * <p>
+ * If nothing is known about the input of the first step, but the step would
+ * be safe for a single context node, it is marked with the property
+ * <code>checkInput</code> to check the input at runtime instead.
+ * </p>
+ * <p>
+ * Descendant steps without predicates on a document-ordered input of multiple
+ * nodes are marked with the property <code>structuralJoin</code>. They are
+ * evaluated in a single pass, which skips context nodes that are descendants
+ * of a preceding context node (staircase join). The output is then in
+ * document order and free of duplicates, too.
  * </p>
  * <p>
  * For detailed theoretical information about this issue, checkout the paper of
@@ -53,7 +74,23 @@ import org.brackit.xquery.xdm.Function;
  * @author Sebastian Baechle
  * 
  */
-public class PathDDOElimination extends Walker {
+public class PathDDOElimination extends ScopeWalker {
+
+	private static final int ORD = 1;
+
+	private static final int NODUP = 2;
+
+	private static final int UNREL = 4;
+
+	private static final int SAMEDEPTH = 8;
+
+	private static final int ONE = 16;
+
+	private static final int DDO = ORD | NODUP;
+
+	private static final int SET = UNREL | SAMEDEPTH;
+
+	private static final int ALL = ORD | NODUP | UNREL | SAMEDEPTH | ONE;
 
 	public PathDDOElimination(StaticContext sctx) {
 		super(sctx);
@@ -61,125 +98,172 @@ public class PathDDOElimination extends Walker {
 
 	@Override
 	protected AST visit(AST node) {
-		if (node.getType() != XQ.PathExpr) {
-			return node;
+		if (node.getType() == XQ.PathExpr) {
+			path(node, true);
 		}
+		return node;
+	}
 
-		int stepCount = node.getChildCount();		
-		AST step = node.getChild(1);
-		
-		// special check for leading E1/E2
-		if (isForwardStep(step)) {
-			boolean isDescOrDescOSStep = isDescOrDescOSStep(step);
-			boolean isLastStep = (stepCount == 2);
-			if (!isDescOrDescOSStep || isLastStep) {
-				AST firstStep = node.getChild(0);
-				if (isAtomicOrEmpty(firstStep)) {
-					step.setProperty("skipDDO", Boolean.TRUE);
-				} else {
-					step.setProperty("checkInput", Boolean.TRUE);
+	/**
+	 * Infers the properties of the given path and annotates the steps which
+	 * do not need sorting and duplicate elimination, if requested.
+	 */
+	private int path(AST node, boolean annotate) {
+		int props = infer(node.getChild(0));
+		for (int i = 1; i < node.getChildCount(); i++) {
+			AST step = node.getChild(i);
+			int out = step(props, step);
+			if (((out & DDO) != DDO) && (isStructuralJoin(props, step))) {
+				if (annotate) {
+					step.setProperty("structuralJoin", Boolean.TRUE);
 				}
+				out = DDO;
 			}
-			if (isDescOrDescOSStep) {
-				// be conservative:
-				// stop trying to skip DDO after a '//'
-				return node;
-			}
-		} else if (isBackwardStep(step)) {
-
-		} else {
-
-		}
-
-		for (int i = 2; i < stepCount; i++) {
-			step = node.getChild(i);
-			if (isForwardStep(step)) {
-				boolean isDescOrDescOSStep = isDescOrDescOSStep(step);
-				boolean isLastStep = (i + 1 == stepCount);
-				if ((!isDescOrDescOSStep) || (isLastStep)) {
+			if ((out & DDO) == DDO) {
+				if (annotate) {
 					step.setProperty("skipDDO", Boolean.TRUE);
 				}
-				if (isDescOrDescOSStep) {
-					// be conservative:
-					// stop trying to skip DDO after a '//'
-					return node;
+				props = out;
+				continue;
+			}
+			// the step must sort and deduplicate its output
+			// unless we can check at runtime for a single context node
+			int single = step(ALL, step);
+			if ((i == 1) && ((single & DDO) == DDO)) {
+				if (annotate) {
+					step.setProperty("checkInput", Boolean.TRUE);
 				}
-			} else if (isBackwardStep(step)) {
-
+				props = DDO | (out & single & SET);
 			} else {
-
+				props = DDO | (out & SET);
 			}
 		}
-		return node;
+		return props;
 	}
 
 	/**
-	 * Try to infer if this path step returns only a single item or the empty
-	 * sequence
+	 * Infers the properties of the (unsorted) output of a step for an input
+	 * with the given properties.
 	 */
-	private boolean isAtomicOrEmpty(AST step) {
-		// TODO
-		// Life would be great if we already had static typing...
-		if (step.getType() == XQ.ContextItemExpr) {
-			return true;
-		}
-		if (step.getType() == XQ.FunctionCall) {
-			int childCount = step.getChildCount();
-			QNm name = (QNm) step.getValue();
-			Function fun = sctx.getFunctions().resolve(name, childCount);
-			return fun.getSignature().getResultType().getCardinality()
-					.atMostOne();
-		}
-		if (step.getType() == XQ.VariableRef) {
-			// TODO check if if we can derive information
-			// about this variable (e.g., if for-bound)
-		}
-		return false;
-	}
-
-	protected boolean sortAfterStep(AST node, int position, int lastPosition)
-			throws QueryException {
-		AST child = node.getChild(position);
-
-		if (child.getType() != XQ.StepExpr) {
-			return true;
+	private int step(int in, AST step) {
+		if (step.getType() != XQ.StepExpr) {
+			return 0;
 		}
+		boolean one = ((in & ONE) != 0);
+		boolean ordNodup = ((in & DDO) == DDO);
+		boolean unrel = ((in & UNREL) != 0);
+		boolean samedepth = ((in & SAMEDEPTH) != 0);
 
-		int axis = getAxis(child);
-		if ((axis == XQ.CHILD) || (axis == XQ.ATTRIBUTE) || (axis == XQ.SELF)) {
-			return true;
+		switch (getAxis(step)) {
+		case XQ.SELF:
+			// self step (with predicates) is a filter
+			return in;
+		case XQ.CHILD:
+			// children of unrelated nodes are disjoint and unrelated
+			return (((in & NODUP) != 0) ? NODUP : 0)
+					| ((ordNodup && unrel) ? ORD : 0) | (in & SET)
+					| (one ? SET : 0);
+		case XQ.ATTRIBUTE:
+			// attributes precede the children of their parent
+			// and never have descendants themselves
+			return (in & DDO) | UNREL | (samedepth ? SAMEDEPTH : 0);
+		case XQ.DESCENDANT:
+		case XQ.DESCENDANT_OR_SELF:
+			// subtrees of unrelated nodes are disjoint
+			return (ordNodup && unrel) ? DDO : 0;
+		case XQ.PARENT:
+			if (one) {
+				return ALL;
+			}
+			// parents of same-depth nodes are of same depth
+			// but may be shared
+			return (samedepth) ? SET : 0;
+		case XQ.FOLLOWING_SIBLING:
+		case XQ.PRECEDING_SIBLING:
+			if (one) {
+				return DDO | SET;
+			}
+			return (samedepth) ? SET : 0;
+		case XQ.ANCESTOR:
+		case XQ.ANCESTOR_OR_SELF:
+		case XQ.FOLLOWING:
+		case XQ.PRECEDING:
+			// accessors deliver nodes of a single
+			// context node in document order
+			return (one) ? DDO : 0;
+		default:
+			return 0;
 		}
-		return false;
-	}
-
-	private boolean isForwardStep(AST step) {
-		return ((step.getType() == XQ.StepExpr) && isForwardAxis(getAxis(step)));
 	}
 
-	private boolean isBackwardStep(AST step) {
-		return ((step.getType() == XQ.StepExpr) && !isForwardAxis(getAxis(step)));
-	}
-
-	private boolean isDescOrDescOSStep(AST step) {
-		if (step.getType() != XQ.StepExpr) {
+	private boolean isStructuralJoin(int in, AST step) {
+		if ((step.getType() != XQ.StepExpr) || ((in & ORD) == 0)) {
 			return false;
 		}
 		int axis = getAxis(step);
-		return ((axis == XQ.DESCENDANT) || (axis == XQ.DESCENDANT_OR_SELF));
+		// predicates are evaluated per context node and
+		// may depend on the position within a subtree
+		return (((axis == XQ.DESCENDANT) || (axis == XQ.DESCENDANT_OR_SELF)) && (step
+				.getChildCount() == 2));
 	}
 
-	private boolean isForwardAxis(int axis) {
-		return ((axis == XQ.CHILD) || (axis == XQ.DESCENDANT)
-				|| (axis == XQ.ATTRIBUTE) || (axis == XQ.SELF)
-				|| (axis == XQ.DESCENDANT_OR_SELF)
-				|| (axis == XQ.FOLLOWING_SIBLING) || (axis == XQ.FOLLOWING));
+	/**
+	 * Infers the properties of the initial expression E1 of a path.
+	 */
+	private int infer(AST expr) {
+		switch (expr.getType()) {
+		case XQ.ContextItemExpr:
+		case XQ.CompDocumentConstructor:
+		case XQ.CompElementConstructor:
+		case XQ.DirElementConstructor:
+			return ALL;
+		case XQ.ParenthesizedExpr:
+			if (expr.getChildCount() == 0) {
+				return ALL;
+			}
+			return (expr.getChildCount() == 1) ? infer(expr.getChild(0)) : 0;
+		case XQ.TreatExpr:
+			return infer(expr.getChild(0));
+		case XQ.PathExpr:
+			return path(expr, false);
+		case XQ.FunctionCall:
+			QNm name = (QNm) expr.getValue();
+			Function fun = sctx.getFunctions().resolve(name,
+					expr.getChildCount());
+			if ((fun != null)
+					&& (fun.getSignature().getResultType().getCardinality()
+							.atMostOne())) {
+				return ALL;
+			}
+			return 0;
+		case XQ.VariableRef:
+			return variable(expr);
+		default:
+			return 0;
+		}
 	}
 
-	private boolean isReverseAxis(int axis) {
-		return !isForwardAxis(axis);
+	private int variable(AST varRef) {
+		AST decl = findDeclaringNode(varRef);
+		if ((decl != null) && (decl.getType() == XQ.LetBind)) {
+			QNm letVar = (QNm) decl.getChild(0).getChild(0).getValue();
+			if (letVar.atomicCmp((QNm) varRef.getValue()) == 0) {
+				return infer(decl.getChild(1));
+			}
+		}
+		// for-bound and quantified variables are bound to single items
+		SequenceType type = findDeclaredType(varRef);
+		if ((type != null) && (type.getCardinality().atMostOne())) {
+			return ALL;
+		}
+		return 0;
 	}
 
 	private int getAxis(AST stepExpr) {
-		return stepExpr.getChild(0).getChild(0).getType();
+		AST axisSpec = stepExpr.getChild(0);
+		if (axisSpec.getType() != XQ.AxisSpec) {
+			return XQ.CHILD;
+		}
+		return axisSpec.getChild(0).getType();
 	}
 }
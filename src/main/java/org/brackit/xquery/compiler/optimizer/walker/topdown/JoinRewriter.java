@@ -36,6 +36,8 @@ import static org.brackit.xquery.compiler.XQ.Selection;
 import static org.brackit.xquery.compiler.XQ.ValueCompNE;
 
 import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.XQ;
@@ -142,12 +144,18 @@ public class JoinRewriter extends ScopeWalker {
 		// a) the beginning of this pipeline or
 		// b) the node defining the beginning of S2
 		AST anc = select.getParent();
+		boolean iterates = false;
 		while (true) {
 			if ((anc.getType() == XQ.Start) || (anc.getType() == XQ.Count)
 					|| (anc.getType() == XQ.GroupBy)
 					|| (anc.getType() == XQ.OrderBy)) {
 				return select;
-			} else if (anc == s2Begin.node) {
+			}
+			iterates |= (anc.getType() == XQ.ForBind);
+			if (anc == s2Begin.node) {
+				if ((!iterates) || (correlated(s1Begin, s2Begin, select))) {
+					return select;
+				}
 				return convertToJoin(s2Begin.node, select, s1Expr, s2Expr, cmp,
 						isGCmp);
 			}
@@ -155,6 +163,36 @@ public class JoinRewriter extends ScopeWalker {
 		}
 	}
 
+	/*
+	 * A join requires that S2 iterates, i.e., binds more than one tuple
+	 * per tuple of S1, and that it does not depend on S1 or on any other
+	 * variable iterated in the same pipeline, because the join table is
+	 * built only once for all tuples of the left input.
+	 */
+	private boolean correlated(Scope s1Begin, Scope s2Begin, AST select) {
+		Set<AST> iterated = new HashSet<AST>();
+		for (AST anc = s2Begin.node.getParent(); anc.getType() != XQ.Start; anc = anc
+				.getParent()) {
+			if (anc.getType() == XQ.ForBind) {
+				iterated.add(anc);
+			}
+		}
+		for (AST op = s2Begin.node; op != select; op = op.getLastChild()) {
+			for (int i = 0; i < op.getChildCount() - 1; i++) {
+				VarRef refs = findVarRefs(op.getChild(i));
+				for (VarRef ref = refs; ref != null; ref = ref.next) {
+					Scope scope = ref.var.scope;
+					if (((scope.compareTo(s1Begin) >= 0) && (scope
+							.compareTo(s2Begin) < 0))
+							|| (iterated.contains(scope.node))) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
 	private AST convertToJoin(AST rightInRoot, AST select, AST s1Expr,
 			AST s2Expr, Cmp cmp, boolean isGCmp) {
 		// assemble left input pipeline
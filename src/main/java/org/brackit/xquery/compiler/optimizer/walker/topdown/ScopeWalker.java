@@ -209,6 +209,27 @@ public abstract class ScopeWalker extends Walker {
 		return table.rootScope;
 	}
 	
+	/**
+	 * Returns the declared type of the variable referenced by the given
+	 * variable reference or <code>null</code> if the variable is not bound
+	 * within the walked AST (e.g., declared variables or function parameters).
+	 */
+	protected final SequenceType findDeclaredType(AST varRef) {
+		Var var = findScope(varRef).resolve((QNm) varRef.getValue());
+		return (var != null) ? var.type : null;
+	}
+
+	/**
+	 * Returns the AST node which opened the scope of the variable referenced
+	 * by the given variable reference, e.g., a {@link XQ#ForBind} or
+	 * {@link XQ#LetBind}, or <code>null</code> if the variable is not bound
+	 * within the walked AST.
+	 */
+	protected final AST findDeclaringNode(AST varRef) {
+		Var var = findScope(varRef).resolve((QNm) varRef.getValue());
+		return (var != null) ? var.scope.node : null;
+	}
+
 	protected final VarRef findVarRefs(AST node) {
 		return findVarRefs(null, node);
 	}
@@ -703,7 +724,10 @@ public abstract class ScopeWalker extends Walker {
 				AST aggBnd = aggSpec.getChild(i);
 				AST typedVar = aggBnd.getChild(0);
 				QNm aggVar = (QNm) typedVar.getChild(0).getValue();
-				SequenceType aggVarType = ONE_ITEM;
+				// sequence aggregates bind all grouped items
+				int aggType = aggBnd.getChild(1).getType();
+				SequenceType aggVarType = (aggType == XQ.SequenceAgg) ? ITEMS
+						: ONE_ITEM;
 				table.bind(aggVar, aggVarType);
 			}
 			pos++;
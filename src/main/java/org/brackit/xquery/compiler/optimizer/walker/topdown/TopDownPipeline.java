@@ -81,7 +81,10 @@ public class TopDownPipeline extends Walker {
 
 	private AST pipelineClause(AST node, int pos, int opType) {
 		AST clause = node.getChild(pos);
-		AST op = new AST(opType);
+		// keep properties of the clause
+		AST op = clause.copy();
+		op.setType(opType);
+		op.setValue(XQ.NAMES[opType]);
 		for (int i = 0; i < clause.getChildCount(); i++) {
 			op.addChild(clause.getChild(i).copyTree());
 		}
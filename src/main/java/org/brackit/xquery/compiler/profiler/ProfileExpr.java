@@ -27,11 +27,14 @@
  */
 package org.brackit.xquery.compiler.profiler;
 
+import java.util.List;
+
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.Tuple;
 import org.brackit.xquery.atomic.Int32;
 import org.brackit.xquery.atomic.IntNumeric;
+import org.brackit.xquery.function.TailCall;
 import org.brackit.xquery.sequence.AbstractSequence;
 import org.brackit.xquery.sequence.BaseIter;
 import org.brackit.xquery.util.dot.DotNode;
@@ -61,6 +64,8 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 	private long seqIterTotal;
 
 	private int seqDeliverCnt;
+
+	private int itemDeliverCnt;
 	
 	private int seqSkipCnt;
 	
@@ -72,12 +77,10 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 	
 	private int evalGet;
 
+	private long seqAccessTotal;
+
 	private class StatIter implements Iter {
 		final Iter it;
-		int delivered;
-		int skipCnt;
-		long time;
-		long skipTime;
 
 		StatIter(Iter it) {
 			this.it = it;
@@ -88,9 +91,9 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 			Item item = it.next();
 			long end = System.nanoTime();
 			if (item != null) {
-				delivered++;
+				seqDeliverCnt++;
 			}
-			time += (end - start);
+			seqIterTotal += (end - start);
 			return item;
 		}
 
@@ -99,16 +102,12 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 			long start = System.nanoTime();
 			it.skip(i);
 			long end = System.nanoTime();
-			skipTime += (end - start);
-			skipCnt++;
+			seqSkipTotal += (end - start);
+			seqSkipCnt++;
 		}
 
 		public void close() {
 			it.close();
-			seqIterTotal += time;
-			seqDeliverCnt += delivered;
-			seqSkipCnt += skipCnt;
-			seqSkipTotal += skipTime;
 		}
 	}
 
@@ -122,7 +121,13 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 		@Override
 		public boolean booleanValue() throws QueryException {
 			evalBooleanValue++;
-			return (s != null) ? s.booleanValue() : false;
+			if (s == null) {
+				return false;
+			}
+			long start = System.nanoTime();
+			boolean b = s.booleanValue();
+			seqAccessTotal += (System.nanoTime() - start);
+			return b;
 		}
 
 		@Override
@@ -144,13 +149,25 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 		@Override
 		public IntNumeric size() throws QueryException {
 			evalSize++;
-			return (s != null) ? s.size() : Int32.ZERO;
+			if (s == null) {
+				return Int32.ZERO;
+			}
+			long start = System.nanoTime();
+			IntNumeric size = s.size();
+			seqAccessTotal += (System.nanoTime() - start);
+			return size;
 		}
 
 		@Override
 		public Item get(IntNumeric pos) throws QueryException {
 			evalGet++;
-			return (s != null) ? s.get(pos) : null;
+			if (s == null) {
+				return null;
+			}
+			long start = System.nanoTime();
+			Item item = s.get(pos);
+			seqAccessTotal += (System.nanoTime() - start);
+			return item;
 		}
 
 	}
@@ -188,6 +205,15 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 		node.addRow("total time skip (seq) [ms]", seqSkipTotal / 1000000);
 	}
 
+	@Override
+	protected ProfileStats getStats(List<ProfileStats> children) {
+		return new ProfileStats(ProfileStats.Kind.EXPRESSION, e.getClass()
+				.getSimpleName(), e.toString(), seqCnt, itemCnt + seqCnt,
+				itemDeliverCnt + seqDeliverCnt, itemTotal
+				+ seqTotal + seqIterTotal + seqSkipTotal + seqAccessTotal, 0, 0,
+				children);
+	}
+
 	@Override
 	protected String getName() {
 		return e.getClass().getSimpleName() + "_" + id;
@@ -201,7 +227,8 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 		long end = System.nanoTime();
 		seqTotal += (end - start);
 		seqCnt++;
-		return new StatSequence(s);
+		// pending tail calls must reach the calling function unwrapped
+		return (s instanceof TailCall) ? s : new StatSequence(s);
 	}
 
 	@Override
@@ -212,6 +239,9 @@ public class ProfileExpr extends ProfilingNode implements Expr {
 		long end = System.nanoTime();
 		itemTotal += (end - start);
 		itemCnt++;
+		if (i != null) {
+			itemDeliverCnt++;
+		}
 		return i;
 	}
 
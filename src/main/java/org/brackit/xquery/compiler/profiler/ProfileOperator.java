@@ -27,12 +27,14 @@
  */
 package org.brackit.xquery.compiler.profiler;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.Tuple;
 import org.brackit.xquery.operator.Cursor;
+import org.brackit.xquery.operator.Measurable;
 import org.brackit.xquery.operator.Operator;
 import org.brackit.xquery.util.dot.DotNode;
 
@@ -54,22 +56,30 @@ public class ProfileOperator extends ProfilingNode implements Operator {
 
 	private int closeCnt;
 
+	private int nextCnt;
+
 	private int deliverCnt;
 
+	private long spilledBytes;
+
+	private long tableSize;
+
 	private class StatOpCursor implements Cursor {
 		final Cursor c;
 
-		long time;
-
 		public StatOpCursor(Cursor c) {
 			this.c = c;
 		}
 
 		@Override
 		public void close(QueryContext ctx) {
+			if (c instanceof Measurable) {
+				Measurable m = (Measurable) c;
+				spilledBytes += m.getSpilledBytes();
+				tableSize = Math.max(tableSize, m.getTableSize());
+			}
 			c.close(ctx);
 			closeCnt++;
-			total += time;
 		}
 
 		@Override
@@ -77,7 +87,8 @@ public class ProfileOperator extends ProfilingNode implements Operator {
 			long start = System.nanoTime();
 			Tuple next = c.next(ctx);
 			long end = System.nanoTime();
-			time += (end - start);
+			total += (end - start);
+			nextCnt++;
 			if (next != null)
 				deliverCnt++;
 			return next;
@@ -85,8 +96,11 @@ public class ProfileOperator extends ProfilingNode implements Operator {
 
 		@Override
 		public void open(QueryContext ctx) throws QueryException {
+			long start = System.nanoTime();
 			openCnt++;
 			c.open(ctx);
+			long end = System.nanoTime();
+			total += (end - start);
 		}
 	}
 
@@ -97,6 +111,10 @@ public class ProfileOperator extends ProfilingNode implements Operator {
 		this.op = op;
 	}
 
+	Operator getOp() {
+		return op;
+	}
+
 	@Override
 	public Cursor create(QueryContext ctx, Tuple tuple) throws QueryException {
 		return new StatOpCursor(op.create(ctx, tuple));
@@ -121,12 +139,20 @@ public class ProfileOperator extends ProfilingNode implements Operator {
 	protected void addFields(DotNode node) {
 		node.addRow("operator", op.getClass().getSimpleName());
 		node.addRow("open / close", openCnt + " /" + closeCnt);
+		node.addRow("next", nextCnt);
 		node.addRow("delivered", deliverCnt);
 		node.addRow("total time [ms]", total / 1000000);
 		node.addRow("avg. time [ms]", (deliverCnt > 0) ? ((double) total)
 				/ (1000000 * deliverCnt) : -1);
 	}
 
+	@Override
+	protected ProfileStats getStats(List<ProfileStats> children) {
+		return new ProfileStats(ProfileStats.Kind.OPERATOR, op.getClass()
+				.getSimpleName(), null, openCnt, nextCnt, deliverCnt, total,
+				spilledBytes, tableSize, children);
+	}
+
 	@Override
 	protected String getName() {
 		return op.getClass().getSimpleName() + "_" + id;
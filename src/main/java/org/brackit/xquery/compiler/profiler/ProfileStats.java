@@ -0,0 +1,258 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.profiler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runtime statistics of a single operator or expression of a profiled query
+ * plan. Statistics form a tree mirroring the plan: the children of an
+ * operator are its input operators followed by the expressions it evaluates.
+ * <p>
+ * Times are measured in nanoseconds. Inclusive time covers all work done in
+ * calls to an operator or expression, including the work of its children.
+ * Exclusive time is inclusive time minus the inclusive time of all children.
+ * Note that results of expressions may be evaluated lazily, i.e., part of the
+ * work of a child may be accounted to an ancestor.
+ */
+public class ProfileStats {
+
+	public enum Kind {
+		OPERATOR, EXPRESSION
+	}
+
+	private final Kind kind;
+
+	private final String name;
+
+	private final String info;
+
+	private final long opens;
+
+	private final long calls;
+
+	private final long produced;
+
+	private final long inclusiveNanos;
+
+	private final long spilledBytes;
+
+	private final long tableSize;
+
+	private final List<ProfileStats> children;
+
+	ProfileStats(Kind kind, String name, String info, long opens, long calls,
+			long produced, long inclusiveNanos, long spilledBytes,
+			long tableSize, List<ProfileStats> children) {
+		this.kind = kind;
+		this.name = name;
+		this.info = info;
+		this.opens = opens;
+		this.calls = calls;
+		this.produced = produced;
+		this.inclusiveNanos = inclusiveNanos;
+		this.spilledBytes = spilledBytes;
+		this.tableSize = tableSize;
+		this.children = Collections.unmodifiableList(children);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Name of the operator or expression class.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Additional description, e.g., the expression string, or
+	 * <code>null</code>.
+	 */
+	public String getInfo() {
+		return info;
+	}
+
+	/**
+	 * Number of cursors opened (operators) or evaluations to a sequence
+	 * (expressions).
+	 */
+	public long getOpens() {
+		return opens;
+	}
+
+	/**
+	 * Number of calls to {@link org.brackit.xquery.operator.Cursor#next}
+	 * (operators) or evaluations to a sequence or an item (expressions).
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Number of tuples (operators) or items (expressions) produced.
+	 */
+	public long getProduced() {
+		return produced;
+	}
+
+	public long getInclusiveNanos() {
+		return inclusiveNanos;
+	}
+
+	public long getExclusiveNanos() {
+		long exclusive = inclusiveNanos;
+		for (ProfileStats child : children) {
+			exclusive -= child.inclusiveNanos;
+		}
+		return (exclusive > 0) ? exclusive : 0;
+	}
+
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * Maximum number of entries in an internal hash table.
+	 */
+	public long getTableSize() {
+		return tableSize;
+	}
+
+	public List<ProfileStats> getChildren() {
+		return children;
+	}
+
+	/**
+	 * Total number of operators and expressions in this subtree.
+	 */
+	public int getNodeCount() {
+		int count = 1;
+		for (ProfileStats child : children) {
+			count += child.getNodeCount();
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder();
+		toText(out, 0);
+		return out.toString();
+	}
+
+	private void toText(StringBuilder out, int level) {
+		for (int i = 0; i < level; i++) {
+			out.append("  ");
+		}
+		out.append(name);
+		if (info != null) {
+			out.append(" [").append(info).append("]");
+		}
+		out.append(String.format(Locale.ROOT, " (opens=%s calls=%s %s=%s "
+				+ "time=%.3fms self=%.3fms", opens, calls,
+				(kind == Kind.OPERATOR) ? "tuples" : "items", produced,
+				inclusiveNanos / 1000000.0, getExclusiveNanos() / 1000000.0));
+		if (tableSize > 0) {
+			out.append(" table=").append(tableSize);
+		}
+		if (spilledBytes > 0) {
+			out.append(" spilled=").append(spilledBytes).append("B");
+		}
+		out.append(")\n");
+		for (ProfileStats child : children) {
+			child.toText(out, level + 1);
+		}
+	}
+
+	public String toJSON() {
+		StringBuilder out = new StringBuilder();
+		toJSON(out);
+		return out.toString();
+	}
+
+	private void toJSON(StringBuilder out) {
+		out.append("{\"kind\":\"").append(kind.name().toLowerCase(Locale.ROOT));
+		out.append("\",\"name\":");
+		quote(out, name);
+		if (info != null) {
+			out.append(",\"info\":");
+			quote(out, info);
+		}
+		out.append(",\"opens\":").append(opens);
+		out.append(",\"calls\":").append(calls);
+		out.append(",\"produced\":").append(produced);
+		out.append(",\"inclusiveNanos\":").append(inclusiveNanos);
+		out.append(",\"exclusiveNanos\":").append(getExclusiveNanos());
+		out.append(",\"spilledBytes\":").append(spilledBytes);
+		out.append(",\"tableSize\":").append(tableSize);
+		out.append(",\"children\":[");
+		for (int i = 0; i < children.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			children.get(i).toJSON(out);
+		}
+		out.append("]}");
+	}
+
+	private static void quote(StringBuilder out, String s) {
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+}
@@ -38,6 +38,7 @@ import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.translator.TopDownTranslator;
 import org.brackit.xquery.module.MainModule;
 import org.brackit.xquery.operator.Operator;
+import org.brackit.xquery.operator.Start;
 import org.brackit.xquery.util.dot.DotContext;
 import org.brackit.xquery.xdm.Expr;
 
@@ -52,10 +53,8 @@ public class ProfilingCompiler extends TopDownTranslator {
 	
 	private ProfilingNode parent; // used to chain expressions
 
-	private ProfilingNode child; // used to chain operators
+	private ProfileOperator pending; // "upcoming" operator of current AST node
 
-	private ProfileOperator pending; // "upcoming" parent operator to
-	
 	public ProfilingCompiler(Map<QNm, Str> options) {
 		super(options);
 	}
@@ -64,10 +63,13 @@ public class ProfilingCompiler extends TopDownTranslator {
 	protected Expr anyExpr(AST node) throws QueryException {
 		ProfileExpr profileExpr = new ProfileExpr();
 		ProfilingNode savedParent = parent;
+		ProfileOperator savedPending = pending;
 		parent = profileExpr;
+		pending = null;
 		Expr e = super.anyExpr(node);
 		profileExpr.setExpr(e);
 		parent = savedParent;
+		pending = savedPending;
 		if (parent != null) {
 			parent.addChild(profileExpr);
 		}
@@ -76,18 +78,66 @@ public class ProfilingCompiler extends TopDownTranslator {
 
 	@Override
 	protected Operator anyOp(Operator in, AST node) throws QueryException {
+		// Operators are compiled top-down: the operator created for
+		// an AST node is passed as input to the next call. Thus, we
+		// wrap it here and collect inputs and expressions of the
+		// operator of the current node in a pending profile operator.
+		ProfileOperator input = null;
+		if (in != null) {
+			input = wrap(in);
+			if ((pending != null) && (pending.getOp() == null)) {
+				// input is consumed by a nested branch, e.g., of a join
+				pending.removeChild(input);
+			}
+		}
 		ProfileOperator profileOp = new ProfileOperator();
+		if (input != null) {
+			profileOp.addChild(input);
+		}
 		ProfilingNode savedParent = parent;
+		ProfileOperator savedPending = pending;
 		parent = profileOp;
-		Operator op = super.anyOp(in, node);
-		profileOp.setOp(op);
+		pending = profileOp;
+		Operator op = super.anyOp(input, node);
 		parent = savedParent;
-		if (parent != null) {
-			parent.addChild(profileOp);
+		pending = savedPending;
+		ProfileOperator result = wrap(op);
+		if (pending == null) {
+			if (parent != null) {
+				parent.addChild(result);
+			}
+		} else if (pending.getOp() == null) {
+			pending.addChild(result);
+		}
+		return result;
+	}
+
+	private ProfileOperator wrap(Operator op) {
+		if (op instanceof ProfileOperator) {
+			return (ProfileOperator) op;
+		}
+		ProfileOperator profileOp;
+		if ((op instanceof Start) || (pending == null)
+				|| (pending.getOp() != null)) {
+			profileOp = new ProfileOperator();
+		} else {
+			profileOp = pending;
 		}
+		profileOp.setOp(op);
 		return profileOp;
 	}
-	
+
+	/**
+	 * Returns the runtime statistics of a query compiled with a
+	 * {@link ProfilingCompileChain} or <code>null</code> if the query was
+	 * not compiled for profiling.
+	 */
+	public static ProfileStats getStats(XQuery xq) {
+		Expr body = xq.getModule().getBody();
+		return (body instanceof ProfileExpr) ? ((ProfileExpr) body)
+				.getStats() : null;
+	}
+
 	public static void visualize(XQuery xq, String outputDir) {
 		DotContext dotCtx = new DotContext();
 		((ProfileExpr)((MainModule) xq.getModule()).getBody()).toDot(dotCtx);
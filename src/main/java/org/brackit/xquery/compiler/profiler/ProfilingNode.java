@@ -27,7 +27,9 @@
  */
 package org.brackit.xquery.compiler.profiler;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.brackit.xquery.util.dot.DotContext;
@@ -79,8 +81,28 @@ public abstract class ProfilingNode {
 		}
 	}
 
+	void removeChild(ProfilingNode c) {
+		for (int i = 0; i < cel; i++) {
+			if (ce[i] == c) {
+				System.arraycopy(ce, i + 1, ce, i, cel - i - 1);
+				ce[--cel] = null;
+				return;
+			}
+		}
+	}
+
 	protected abstract String getName();
 
+	protected abstract ProfileStats getStats(List<ProfileStats> children);
+
+	public ProfileStats getStats() {
+		List<ProfileStats> children = new ArrayList<ProfileStats>(cel);
+		for (int i = 0; i < cel; i++) {
+			children.add(ce[i].getStats());
+		}
+		return getStats(children);
+	}
+
 	protected abstract void addFields(DotNode node);
 
 	public void toDot(DotContext dotCtx) {
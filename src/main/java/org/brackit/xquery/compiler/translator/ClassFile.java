@@ -0,0 +1,317 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.translator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for Java class files with a single superclass and a few
+ * methods without exception handlers. Branches are restricted to forward
+ * jumps. The class file version is 49 so that the JVM verifies the code by
+ * type inference and no stack map frames must be computed.
+ */
+final class ClassFile {
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PROTECTED = 0x0004;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	static final int ICONST_0 = 0x03;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC2_W = 0x14;
+	static final int ALOAD_0 = 0x2a;
+	static final int ALOAD_1 = 0x2b;
+	static final int ALOAD_2 = 0x2c;
+	static final int DADD = 0x63;
+	static final int DSUB = 0x67;
+	static final int DMUL = 0x6b;
+	static final int DCMPL = 0x97;
+	static final int DCMPG = 0x98;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int GOTO = 0xa7;
+	static final int IRETURN = 0xac;
+	static final int RETURN = 0xb1;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	static final class Label {
+		private int pos = -1;
+		private final List<int[]> jumps = new ArrayList<int[]>(2);
+	}
+
+	final class Code {
+		private final int access;
+		private final int name;
+		private final int desc;
+		private final int maxLocals;
+		private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		private final List<Label> labels = new ArrayList<Label>();
+			private byte[] code;
+		private int stack;
+		private int maxStack;
+
+		private Code(int access, String name, String desc, int maxLocals) {
+			this.access = access;
+			this.name = utf8(name);
+			this.desc = utf8(desc);
+			this.maxLocals = maxLocals;
+		}
+
+		/**
+		 * Emits an instruction without operands which changes the operand
+		 * stack size by <code>delta</code> slots.
+		 */
+		void insn(int opcode, int delta) {
+			buf.write(opcode);
+			adjust(delta);
+		}
+
+		/**
+		 * Pushes the int constant <code>v</code>.
+		 */
+		void iconst(int v) {
+			if ((v >= -1) && (v <= 5)) {
+				buf.write(ICONST_0 + v);
+			} else if ((v >= Byte.MIN_VALUE) && (v <= Byte.MAX_VALUE)) {
+				buf.write(BIPUSH);
+				buf.write(v);
+			} else {
+				buf.write(SIPUSH);
+				u2(v);
+			}
+			adjust(1);
+		}
+
+		void dconst(double v) {
+			buf.write(LDC2_W);
+			u2(doubleConst(v));
+			adjust(2);
+		}
+
+		void invoke(int opcode, String owner, String name, String desc,
+				int delta) {
+			buf.write(opcode);
+			u2(methodRef(owner, name, desc));
+			adjust(delta);
+		}
+
+		void jump(int opcode, Label label, int delta) {
+			label.jumps.add(new int[] { buf.size(), buf.size() + 1 });
+			buf.write(opcode);
+			u2(0);
+			adjust(delta);
+		}
+
+		Label label() {
+			Label label = new Label();
+			labels.add(label);
+			return label;
+		}
+
+		void mark(Label label) {
+			label.pos = buf.size();
+		}
+
+		private void u2(int v) {
+			buf.write(v >>> 8);
+			buf.write(v);
+		}
+
+		private void adjust(int delta) {
+			stack += delta;
+			maxStack = Math.max(maxStack, stack);
+		}
+
+		private void resolve() {
+			code = buf.toByteArray();
+			for (Label label : labels) {
+				for (int[] jump : label.jumps) {
+					int offset = label.pos - jump[0];
+					if ((label.pos < 0) || (offset > Short.MAX_VALUE)) {
+						throw new IllegalStateException("Invalid jump target");
+					}
+					code[jump[1]] = (byte) (offset >>> 8);
+					code[jump[1] + 1] = (byte) offset;
+				}
+			}
+		}
+	}
+
+	private final Map<String, Integer> pool = new HashMap<String, Integer>();
+	private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+	private final DataOutputStream cp = new DataOutputStream(constants);
+	private final List<Code> methods = new ArrayList<Code>();
+	private final int thisClass;
+	private final int superClass;
+	private int poolSize = 1;
+
+	ClassFile(String name, String superName) {
+		thisClass = cls(name);
+		superClass = cls(superName);
+	}
+
+	Code method(int access, String name, String desc, int maxLocals) {
+		Code code = new Code(access, name, desc, maxLocals);
+		methods.add(code);
+		return code;
+	}
+
+	byte[] toByteArray() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			int codeAttr = utf8("Code");
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(poolSize);
+			cp.flush();
+			constants.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(methods.size());
+			for (Code m : methods) {
+				m.resolve();
+				out.writeShort(m.access);
+				out.writeShort(m.name);
+				out.writeShort(m.desc);
+				out.writeShort(1);
+				out.writeShort(codeAttr);
+				out.writeInt(12 + m.code.length);
+				out.writeShort(m.maxStack);
+				out.writeShort(m.maxLocals);
+				out.writeInt(m.code.length);
+				out.write(m.code);
+				out.writeShort(0); // exception table
+				out.writeShort(0); // code attributes
+			}
+			out.writeShort(0); // class attributes
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private int utf8(String s) {
+		Integer idx = pool.get("U" + s);
+		if (idx != null) {
+			return idx;
+		}
+		try {
+			cp.writeByte(CONSTANT_UTF8);
+			cp.writeUTF(s);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add("U" + s, 1);
+	}
+
+	private int cls(String name) {
+		Integer idx = pool.get("C" + name);
+		if (idx != null) {
+			return idx;
+		}
+		int nameIdx = utf8(name);
+		write(CONSTANT_CLASS, nameIdx);
+		return add("C" + name, 1);
+	}
+
+	private int methodRef(String owner, String name, String desc) {
+		String key = "M" + owner + "." + name + desc;
+		Integer idx = pool.get(key);
+		if (idx != null) {
+			return idx;
+		}
+		int ownerIdx = cls(owner);
+		int nameIdx = utf8(name);
+		int descIdx = utf8(desc);
+		int ntIdx = poolSize;
+		write(CONSTANT_NAME_AND_TYPE, nameIdx, descIdx);
+		poolSize++;
+		write(CONSTANT_METHODREF, ownerIdx, ntIdx);
+		return add(key, 1);
+	}
+
+	private int doubleConst(double v) {
+		String key = "D" + Double.doubleToRawLongBits(v);
+		Integer idx = pool.get(key);
+		if (idx != null) {
+			return idx;
+		}
+		try {
+			cp.writeByte(CONSTANT_DOUBLE);
+			cp.writeDouble(v);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		// double constants occupy two pool entries
+		return add(key, 2);
+	}
+
+	private void write(int tag, int... refs) {
+		try {
+			cp.writeByte(tag);
+			for (int ref : refs) {
+				cp.writeShort(ref);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private int add(String key, int slots) {
+		int idx = poolSize;
+		pool.put(key, idx);
+		poolSize += slots;
+		return idx;
+	}
+}
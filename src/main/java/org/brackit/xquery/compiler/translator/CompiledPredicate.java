@@ -0,0 +1,246 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.translator;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.Tuple;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.Bool;
+import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.LonNumeric;
+import org.brackit.xquery.atomic.Numeric;
+import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.xdm.Expr;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Sequence;
+import org.brackit.xquery.xdm.Type;
+
+/**
+ * Base class of predicates generated by {@link PredicateCompiler}. The
+ * generated {@link #test(QueryContext, Tuple)} evaluates comparisons and
+ * arithmetic on primitive doubles. Subexpressions which are not compiled
+ * are evaluated as leaves with the helpers of this class.
+ * 
+ * <p>
+ * A leaf value which cannot be represented exactly as double, e.g., a
+ * string, a sequence of several items, or a large integer, aborts the
+ * compiled code and the predicate is evaluated by the interpreted
+ * expression instead. If this happens for a considerable share of the
+ * evaluations, the compiled code is not used anymore.
+ * </p>
+ */
+public abstract class CompiledPredicate implements Expr {
+
+	/**
+	 * Leaf mode: cast untyped atomics to xs:double
+	 */
+	public static final int UNTYPED = 1;
+
+	/**
+	 * Leaf mode: accept decimals with fraction digits
+	 */
+	public static final int FRACTION = 2;
+
+	private static final double MAX_EXACT = 9007199254740992d; // 2^53
+
+	/**
+	 * Number of evaluations after which the fallback counter is reset
+	 */
+	private static final int FALLBACK_WINDOW = 1024;
+
+	/**
+	 * Maximum number of fallbacks within a window
+	 */
+	private static final int MAX_FALLBACKS = 64;
+
+	private static class Fallback extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final Fallback FALLBACK = new Fallback();
+
+	private final Expr expr;
+
+	private final Expr[] leaves;
+
+	// compiled queries may be evaluated concurrently
+	private volatile boolean disabled;
+
+	private final AtomicInteger evaluations = new AtomicInteger();
+
+	private final AtomicInteger fallbacks = new AtomicInteger();
+
+	protected CompiledPredicate(Expr expr, Expr[] leaves) {
+		this.expr = expr;
+		this.leaves = leaves;
+	}
+
+	protected abstract boolean test(QueryContext ctx, Tuple tuple)
+			throws QueryException;
+
+	@Override
+	public Sequence evaluate(QueryContext ctx, Tuple tuple)
+			throws QueryException {
+		if (!disabled) {
+			evaluated();
+			try {
+				return test(ctx, tuple) ? Bool.TRUE : Bool.FALSE;
+			} catch (Fallback e) {
+				fallback();
+			}
+		}
+		return expr.evaluate(ctx, tuple);
+	}
+
+	@Override
+	public Item evaluateToItem(QueryContext ctx, Tuple tuple)
+			throws QueryException {
+		if (!disabled) {
+			evaluated();
+			try {
+				return test(ctx, tuple) ? Bool.TRUE : Bool.FALSE;
+			} catch (Fallback e) {
+				fallback();
+			}
+		}
+		return expr.evaluateToItem(ctx, tuple);
+	}
+
+	private void evaluated() {
+		if (evaluations.incrementAndGet() % FALLBACK_WINDOW == 0) {
+			// rare fallbacks must not disable the compiled code for good
+			fallbacks.set(0);
+		}
+	}
+
+	private void fallback() {
+		if (fallbacks.incrementAndGet() >= MAX_FALLBACKS) {
+			disabled = true;
+		}
+	}
+
+	/**
+	 * Evaluates leaf <code>leaf</code> to a single numeric value.
+	 */
+	protected final double num(int leaf, QueryContext ctx, Tuple tuple,
+			int mode) throws QueryException {
+		Sequence s = leaves[leaf].evaluate(ctx, tuple);
+		Item item;
+		if (s instanceof Item) {
+			item = (Item) s;
+		} else if (s == null) {
+			throw FALLBACK;
+		} else {
+			Iter it = s.iterate();
+			try {
+				item = it.next();
+				if ((item == null) || (it.next() != null)) {
+					throw FALLBACK;
+				}
+			} finally {
+				it.close();
+			}
+		}
+		Atomic a = item.atomize();
+		if (a instanceof LonNumeric) {
+			long v = ((LonNumeric) a).longValue();
+			if (Math.abs(v) < MAX_EXACT) {
+				return v;
+			}
+			throw FALLBACK;
+		}
+		if (a instanceof Dbl) {
+			return ((Dbl) a).doubleValue();
+		}
+		if (a instanceof Una) {
+			if ((mode & UNTYPED) == 0) {
+				throw FALLBACK;
+			}
+			try {
+				return Dbl.parse(a.stringValue()).doubleValue();
+			} catch (QueryException e) {
+				throw FALLBACK;
+			}
+		}
+		if ((a instanceof Numeric)
+				&& ((a.type().instanceOf(Type.DEC)))) {
+			BigDecimal dec = ((Numeric) a).decimalValue();
+			double v = dec.doubleValue();
+			if ((Math.abs(v) < MAX_EXACT)
+					&& (((mode & FRACTION) != 0) || (v == Math.rint(v)))
+					&& (new BigDecimal(v).compareTo(dec) == 0)) {
+				return v;
+			}
+		}
+		throw FALLBACK;
+	}
+
+	/**
+	 * Evaluates the effective boolean value of leaf <code>leaf</code>.
+	 */
+	protected final boolean bool(int leaf, QueryContext ctx, Tuple tuple)
+			throws QueryException {
+		Sequence s = leaves[leaf].evaluate(ctx, tuple);
+		return ((s != null) && (s.booleanValue()));
+	}
+
+	/**
+	 * Checks that the result of an arithmetic operation is exact for
+	 * integers.
+	 */
+	protected static double exact(double v) {
+		if (!(Math.abs(v) < MAX_EXACT)) {
+			throw FALLBACK;
+		}
+		return v;
+	}
+
+	@Override
+	public boolean isUpdating() {
+		return expr.isUpdating();
+	}
+
+	@Override
+	public boolean isVacuous() {
+		return expr.isVacuous();
+	}
+
+	public String toString() {
+		return expr.toString();
+	}
+}
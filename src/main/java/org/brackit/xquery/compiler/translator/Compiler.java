@@ -41,12 +41,14 @@ import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.Bits;
 import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.analyzer.TypeInference;
 import org.brackit.xquery.expr.Accessor;
 import org.brackit.xquery.expr.AndExpr;
 import org.brackit.xquery.expr.ArithmeticExpr;
 import org.brackit.xquery.expr.ArithmeticExpr.ArithmeticOp;
 import org.brackit.xquery.expr.ArrayAccessExpr;
 import org.brackit.xquery.expr.ArrayExpr;
+import org.brackit.xquery.expr.AtomicCmpExpr;
 import org.brackit.xquery.expr.AttributeExpr;
 import org.brackit.xquery.expr.Cast;
 import org.brackit.xquery.expr.Castable;
@@ -57,12 +59,14 @@ import org.brackit.xquery.expr.ElementExpr;
 import org.brackit.xquery.expr.EmptyExpr;
 import org.brackit.xquery.expr.ExceptExpr;
 import org.brackit.xquery.expr.FilterExpr;
+import org.brackit.xquery.expr.FunctionConversionExpr;
 import org.brackit.xquery.expr.GCmpExpr;
 import org.brackit.xquery.expr.IfExpr;
 import org.brackit.xquery.expr.InstanceOf;
 import org.brackit.xquery.expr.IntersectExpr;
 import org.brackit.xquery.expr.NodeCmpExpr;
 import org.brackit.xquery.expr.NodeCmpExpr.NodeCmp;
+import org.brackit.xquery.expr.NumericArithmeticExpr;
 import org.brackit.xquery.expr.OrExpr;
 import org.brackit.xquery.expr.PIExpr;
 import org.brackit.xquery.expr.PathStepExpr;
@@ -83,10 +87,12 @@ import org.brackit.xquery.expr.TypeswitchExpr;
 import org.brackit.xquery.expr.UnionExpr;
 import org.brackit.xquery.expr.VCmpExpr;
 import org.brackit.xquery.function.FunctionExpr;
+import org.brackit.xquery.function.TailCall;
 import org.brackit.xquery.function.UDF;
 import org.brackit.xquery.function.bit.BitFun;
 import org.brackit.xquery.function.bit.Every;
 import org.brackit.xquery.function.bit.Some;
+import org.brackit.xquery.function.fn.RegEx;
 import org.brackit.xquery.module.Module;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.operator.Count;
@@ -124,6 +130,7 @@ import org.brackit.xquery.xdm.type.ElementType;
 import org.brackit.xquery.xdm.type.ItemType;
 import org.brackit.xquery.xdm.type.NSNameWildcardTest;
 import org.brackit.xquery.xdm.type.NSWildcardNameTest;
+import org.brackit.xquery.xdm.type.NumericType;
 import org.brackit.xquery.xdm.type.NodeType;
 import org.brackit.xquery.xdm.type.PIType;
 import org.brackit.xquery.xdm.type.SequenceType;
@@ -172,6 +179,7 @@ public class Compiler implements Translator {
 	protected VariableTable table;
 	protected StaticContext ctx;
 	protected final Map<QNm, Str> options;
+	private boolean predicate;
 
 	public Compiler(Map<QNm, Str> options) {
 		this.options = options;
@@ -200,6 +208,7 @@ public class Compiler implements Translator {
 			table.resolve(params[i]);
 		}
 		// compile body
+		markTailCalls(expr, udf);
 		Expr body = expr(expr, !allowUpdate);
 		// unbind parameters
 		for (int i = 0; i < params.length; i++) {
@@ -209,6 +218,61 @@ public class Compiler implements Translator {
 		return body;
 	}
 
+	/**
+	 * Marks calls of user-defined functions in tail position of the body of
+	 * <code>udf</code>. They are compiled to return a pending
+	 * {@link TailCall} which is executed in a loop by the caller. This is
+	 * only safe if the callee's result conversion is implied by the one of
+	 * <code>udf</code>.
+	 */
+	private boolean markTailCalls(AST node, UDF udf) throws QueryException {
+		boolean marked = false;
+		switch (node.getType()) {
+		case XQ.EnclosedExpr:
+		case XQ.ParenthesizedExpr:
+		case XQ.SequenceExpr:
+			// a singleton sequence expression is compiled to its operand
+			if ((node.getChildCount() == 1)
+					&& (markTailCalls(node.getChild(0), udf))) {
+				node.setProperty("tailCall", Boolean.TRUE);
+				marked = true;
+			}
+			break;
+		case XQ.IfExpr:
+			marked |= markTailCalls(node.getChild(1), udf);
+			marked |= markTailCalls(node.getChild(2), udf);
+			break;
+		case XQ.TypeSwitch:
+			for (int i = 1; i < node.getChildCount(); i++) {
+				marked |= markTailCalls(node.getChild(i).getLastChild(), udf);
+			}
+			break;
+		case XQ.SwitchExpr:
+			for (int i = 1; i < node.getChildCount() - 1; i++) {
+				marked |= markTailCalls(node.getChild(i).getLastChild(), udf);
+			}
+			marked |= markTailCalls(node.getLastChild(), udf);
+			break;
+		case XQ.FunctionCall:
+			if (udf.isUpdating()) {
+				break;
+			}
+			Function callee = ctx.getFunctions().resolve(
+					(QNm) node.getValue(), node.getChildCount());
+			if (!(callee instanceof UDF) || (callee.isUpdating())) {
+				break;
+			}
+			SequenceType type = callee.getSignature().getResultType();
+			if ((type.equals(udf.getSignature().getResultType()))
+					|| (type.equals(SequenceType.ITEM_SEQUENCE))) {
+				node.setProperty("tailCall", Boolean.TRUE);
+				marked = true;
+			}
+			break;
+		}
+		return marked;
+	}
+
 	protected Expr expr(AST node, boolean disallowUpdatingExpr)
 			throws QueryException {
 		Expr expr = anyExpr(node);
@@ -222,7 +286,29 @@ public class Compiler implements Translator {
 		return expr;
 	}
 
+	/**
+	 * Compiles the predicate of a where clause or selection. If code
+	 * generation is enabled, it is passed to the {@link PredicateCompiler}
+	 * in {@link #anyExpr(AST)}, i.e., within the scope of subclasses
+	 * wrapping all compiled expressions.
+	 */
+	protected Expr predicate(AST node) throws QueryException {
+		predicate = PredicateCompiler.CODEGEN;
+		try {
+			return anyExpr(node);
+		} finally {
+			predicate = false;
+		}
+	}
+
 	protected Expr anyExpr(AST node) throws QueryException {
+		if (predicate) {
+			predicate = false;
+			Expr expr = new PredicateCompiler(this).compile(node);
+			if (expr != null) {
+				return expr;
+			}
+		}
 		switch (node.getType()) {
 		case XQ.FlowrExpr:
 			return flowrExpr(node);
@@ -240,6 +326,7 @@ public class Compiler implements Translator {
 		case XQ.QNm:
 		case XQ.AnyURI:
 		case XQ.Bool:
+		case XQ.Atomic:
 			return (Atomic) node.getValue();
 		case XQ.VariableRef:
 			return variableRefExpr(node);
@@ -259,6 +346,8 @@ public class Compiler implements Translator {
 			return castableExpr(node);
 		case XQ.TreatExpr:
 			return treatExpr(node);
+		case XQ.FunctionConversion:
+			return functionConversion(node);
 		case XQ.InstanceofExpr:
 			return instanceOfExpr(node);
 		case XQ.TypeSwitch:
@@ -460,6 +549,15 @@ public class Compiler implements Translator {
 		return new Treat(expr, sequenceType);
 	}
 
+	protected Expr functionConversion(AST node) throws QueryException {
+		Expr expr = expr(node.getChild(0), true);
+		SequenceType type = (SequenceType) node.getValue();
+		if (TypeInference.subtypeOf(TypeInference.type(node.getChild(0)), type)) {
+			return expr;
+		}
+		return new FunctionConversionExpr(expr, type);
+	}
+
 	protected Expr instanceOfExpr(AST node) throws QueryException {
 		Expr expr = expr(node.getChild(0), true);
 		SequenceType sequenceType = sequenceType(node.getChild(1));
@@ -739,7 +837,12 @@ public class Compiler implements Translator {
 			args = new Expr[0];
 		}
 
-		return new FunctionExpr(node.getStaticContext(), function, args);
+		if (function instanceof RegEx) {
+			function = ((RegEx) function).precompile(args);
+		}
+
+		return new FunctionExpr(node.getStaticContext(), function, node
+				.checkProperty("tailCall"), args);
 	}
 
 	protected Expr documentExpr(AST node) throws QueryException {
@@ -927,6 +1030,15 @@ public class Compiler implements Translator {
 		Expr firstArg = expr(node.getChild(1), true);
 		Expr secondArg = expr(node.getChild(2), true);
 		AST cmpNode = node.getChild(0);
+		SequenceType leftType = TypeInference.type(node.getChild(1));
+		SequenceType rightType = TypeInference.type(node.getChild(2));
+		Cmp cmp = PredicateCompiler.cmp(cmpNode);
+		if ((cmp != null) && (typedAtomic(leftType))
+				&& (typedAtomic(rightType))) {
+			return new AtomicCmpExpr(cmp, firstArg, secondArg,
+					PredicateCompiler.isGeneral(cmpNode), (isDouble(leftType))
+							&& (isDouble(rightType)));
+		}
 		switch (cmpNode.getType()) {
 		case XQ.ValueCompEQ:
 			return new VCmpExpr(Cmp.eq, firstArg, secondArg);
@@ -988,9 +1100,45 @@ public class Compiler implements Translator {
 
 		Expr firstArg = expr(node.getChild(1), true);
 		Expr secondArg = expr(node.getChild(2), true);
+		if ((TypeInference.numeric(TypeInference.type(node.getChild(1))) != null)
+				&& (TypeInference.numeric(TypeInference.type(node.getChild(2))) != null)) {
+			return new NumericArithmeticExpr(op, firstArg, secondArg);
+		}
 		return new ArithmeticExpr(op, firstArg, secondArg);
 	}
 
+	private boolean typedAtomic(SequenceType type) {
+		if ((type == null) || (!type.getCardinality().atMostOne())
+				|| (!(type.getItemType() instanceof AtomicType))) {
+			return false;
+		}
+		Type atomicType = ((AtomicType) type.getItemType()).getType();
+		return ((atomicType != Type.ANA) && (!atomicType.instanceOf(Type.UNA)));
+	}
+
+	private boolean isDouble(SequenceType type) {
+		return ((!(type.getItemType() instanceof NumericType)) && (type
+				.getItemType().equals(AtomicType.DBL)));
+	}
+
+	/**
+	 * Returns the type which must be checked for a variable bound to the
+	 * result of <code>expr</code>, or <code>null</code> if the check is
+	 * redundant because the declared type is <code>item()*</code> or the
+	 * statically inferred type of <code>expr</code> is a subtype of it.
+	 */
+	protected SequenceType checkedType(SequenceType declared, AST expr,
+			boolean iterate) {
+		if (declared.equals(SequenceType.ITEM_SEQUENCE)) {
+			return null;
+		}
+		SequenceType type = TypeInference.type(expr);
+		if ((iterate) && (type != null)) {
+			type = new SequenceType(type.getItemType(), Cardinality.One);
+		}
+		return (TypeInference.subtypeOf(type, declared)) ? null : declared;
+	}
+
 	/*
 	 * The compilation of path expressions is a bit tricky. A path of the form
 	 * E1/E2/../EN must be evaluated with "left-deep semantics", i.e.,
@@ -1018,12 +1166,40 @@ public class Compiler implements Translator {
 			boolean lastStep = (i + 1 == node.getChildCount());
 			boolean skipDDO = step.checkProperty("skipDDO");
 			boolean checkInput = step.checkProperty("checkInput");
+			boolean structuralJoin = step.checkProperty("structuralJoin");
+			// the input is consumed once per iteration of the output
+			boolean reuseInput = (bindSize) || (!consumedOnce(node));
 			e1 = new PathStepExpr(e1, e2, bindItem, bindPos, bindSize,
-					lastStep, skipDDO, checkInput);
+					lastStep, skipDDO, checkInput, structuralJoin, reuseInput);
 		}
 		return e1;
 	}
 
+	/**
+	 * Checks if the result of the given expression is iterated at most once
+	 * per evaluation, i.e., if it need not be buffered for reuse.
+	 */
+	protected boolean consumedOnce(AST expr) {
+		AST parent = expr.getParent();
+		if (parent == null) {
+			return false;
+		}
+		switch (parent.getType()) {
+		case XQ.ForClause:
+		case XQ.ForBind:
+			// source expression follows the variable bindings
+			for (int i = 0; i < parent.getChildCount(); i++) {
+				AST child = parent.getChild(i);
+				if (child.getType() != XQ.TypedVariableBinding) {
+					return (child == expr);
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
 	protected Expr stepExpr(AST node) throws QueryException {
 		AST child = node.getChild(0);
 		Accessor axis;
@@ -1256,6 +1432,9 @@ public class Compiler implements Translator {
 	}
 
 	protected Expr sequenceExpr(AST node) throws QueryException {
+		if (node.checkProperty("tailCall")) {
+			return expr(node.getChild(0), false);
+		}
 		boolean allVacouousOrUpdating = false;
 		Expr[] subExpr = new Expr[node.getChildCount()];
 		for (int i = 0; i < node.getChildCount(); i++) {
@@ -1461,7 +1640,7 @@ public class Compiler implements Translator {
 
 	protected ClauseBinding whereClause(AST node, ClauseBinding in)
 			throws QueryException {
-		Expr expr = anyExpr(node.getChild(0));
+		Expr expr = predicate(node.getChild(0));
 		Select select = new Select(in.operator, expr);
 		return new ClauseBinding(in, select);
 	}
@@ -1476,8 +1655,10 @@ public class Compiler implements Translator {
 		if (letVarDecl.getChildCount() == 2) {
 			letVarType = sequenceType(letVarDecl.getChild(1));
 		}
-		Expr sourceExpr = expr(letClause.getChild(letClausePos++), true);
-		final Binding binding = table.bind(letVarName, letVarType);
+		AST sourceNode = letClause.getChild(letClausePos++);
+		Expr sourceExpr = expr(sourceNode, true);
+		final Binding binding = table.bind(letVarName, checkedType(letVarType,
+				sourceNode, false));
 		final LetBind letBind = new LetBind(in.operator, sourceExpr);
 
 		return new ClauseBinding(in, letBind, binding) {
@@ -1509,7 +1690,8 @@ public class Compiler implements Translator {
 		}
 		Expr sourceExpr = expr(posBindingOrSourceExpr, true);
 
-		final Binding runVarBinding = table.bind(runVarName, runVarType);
+		final Binding runVarBinding = table.bind(runVarName, checkedType(
+				runVarType, posBindingOrSourceExpr, true));
 		final Binding posBinding = (posVarName != null) ? table.bind(
 				posVarName, SequenceType.INTEGER) : null;
 		final ForBind forBind = new ForBind(in.operator, sourceExpr, false);
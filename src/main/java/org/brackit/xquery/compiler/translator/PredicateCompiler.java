@@ -0,0 +1,396 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.translator;
+
+import static org.brackit.xquery.compiler.translator.ClassFile.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.brackit.xquery.ErrorCode;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.Numeric;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.compiler.translator.ClassFile.Code;
+import org.brackit.xquery.compiler.translator.ClassFile.Label;
+import org.brackit.xquery.expr.AndExpr;
+import org.brackit.xquery.expr.ArithmeticExpr;
+import org.brackit.xquery.expr.ArithmeticExpr.ArithmeticOp;
+import org.brackit.xquery.expr.GCmpExpr;
+import org.brackit.xquery.expr.OrExpr;
+import org.brackit.xquery.expr.VCmpExpr;
+import org.brackit.xquery.util.Cfg;
+import org.brackit.xquery.util.Cmp;
+import org.brackit.xquery.xdm.Expr;
+
+/**
+ * Compiles predicates of where clauses and selections to JVM bytecode.
+ * 
+ * <p>
+ * Value and general comparisons with at least one statically numeric
+ * operand, i.e., a numeric literal or an addition, subtraction or
+ * multiplication, are translated together with enclosing
+ * <code>and</code> and <code>or</code> expressions to straight-line code on
+ * primitive doubles. All other subexpressions are compiled as usual and
+ * become leaves of the generated {@link CompiledPredicate}. The interpreted
+ * version of the predicate is kept as fallback for values which cannot be
+ * handled by the generated code.
+ * </p>
+ * 
+ * <p>
+ * For example, <code>$i/price * 2 > 100 and $i/@id != "x"</code> compiles
+ * to a comparison of doubles where <code>$i/price</code> is a numeric leaf
+ * and <code>$i/@id != "x"</code> is a boolean leaf.
+ * </p>
+ */
+public class PredicateCompiler {
+
+	public static final String CODEGEN_CFG = "org.brackit.xquery.codegen";
+
+	public static boolean CODEGEN = Cfg.asBool(CODEGEN_CFG, false);
+
+	private static final String BASE = "org/brackit/xquery/compiler/translator/CompiledPredicate";
+
+	private static final String NAME = "org/brackit/xquery/compiler/translator/GeneratedPredicate";
+
+	private static final String EXPR = "Lorg/brackit/xquery/xdm/Expr;";
+
+	private static final String TEST = "(Lorg/brackit/xquery/QueryContext;Lorg/brackit/xquery/Tuple;)Z";
+
+	private static final String NUM = "(ILorg/brackit/xquery/QueryContext;Lorg/brackit/xquery/Tuple;I)D";
+
+	private static final String BOOL = "(ILorg/brackit/xquery/QueryContext;Lorg/brackit/xquery/Tuple;)Z";
+
+	private static final double MAX_EXACT = 9007199254740992d; // 2^53
+
+	private static final AtomicInteger count = new AtomicInteger();
+
+	private static class Loader extends ClassLoader {
+		Loader() {
+			super(CompiledPredicate.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] b) {
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	private final Compiler compiler;
+
+	private final List<Expr> leaves = new ArrayList<Expr>();
+
+	private ClassFile cf;
+
+	private Code code;
+
+	PredicateCompiler(Compiler compiler) {
+		this.compiler = compiler;
+	}
+
+	/**
+	 * Compiles the predicate <code>node</code> or returns <code>null</code>
+	 * if it contains no comparison which could be compiled.
+	 */
+	Expr compile(AST node) throws QueryException {
+		if (!worthCompiling(node)) {
+			return null;
+		}
+		String name = NAME + count.incrementAndGet();
+		cf = new ClassFile(name, BASE);
+		Code init = cf.method(ACC_PUBLIC, "<init>", "(" + EXPR + "[" + EXPR
+				+ ")V", 3);
+		init.insn(ALOAD_0, 1);
+		init.insn(ALOAD_1, 1);
+		init.insn(ALOAD_2, 1);
+		init.invoke(INVOKESPECIAL, BASE, "<init>", "(" + EXPR + "[" + EXPR
+				+ ")V", -3);
+		init.insn(RETURN, 0);
+
+		code = cf.method(ACC_PROTECTED, "test", TEST, 3);
+		Label fail = code.label();
+		Expr expr = cond(node, fail);
+		code.iconst(1);
+		code.insn(IRETURN, -1);
+		code.mark(fail);
+		code.iconst(0);
+		code.insn(IRETURN, -1);
+
+		try {
+			byte[] bytes = cf.toByteArray();
+			Class<?> c = new Loader().define(name.replace('/', '.'), bytes);
+			Expr[] l = leaves.toArray(new Expr[leaves.size()]);
+			return (Expr) c.getConstructor(Expr.class, Expr[].class)
+					.newInstance(expr, l);
+		} catch (Exception e) {
+			throw new QueryException(e,
+					ErrorCode.BIT_DYN_RT_ILLEGAL_STATE_ERROR,
+					"Code generation for predicate failed");
+		} catch (LinkageError e) {
+			throw new QueryException(e,
+					ErrorCode.BIT_DYN_RT_ILLEGAL_STATE_ERROR,
+					"Code generation for predicate failed");
+		}
+	}
+
+	private Expr cond(AST node, Label fail) throws QueryException {
+		node = unwrap(node);
+		if (node.getType() == XQ.AndExpr) {
+			Expr first = cond(node.getChild(0), fail);
+			Expr second = cond(node.getChild(1), fail);
+			return new AndExpr(first, second);
+		}
+		if (node.getType() == XQ.OrExpr) {
+			Label next = code.label();
+			Label done = code.label();
+			Expr first = cond(node.getChild(0), next);
+			code.jump(GOTO, done, 0);
+			code.mark(next);
+			Expr second = cond(node.getChild(1), fail);
+			code.mark(done);
+			return new OrExpr(first, second);
+		}
+		if (isComparison(node)) {
+			return comparison(node, fail);
+		}
+		// effective boolean value of a leaf
+		int leaf = leaf(node);
+		code.insn(ALOAD_0, 1);
+		code.iconst(leaf);
+		code.insn(ALOAD_1, 1);
+		code.insn(ALOAD_2, 1);
+		code.invoke(INVOKEVIRTUAL, BASE, "bool", BOOL, -3);
+		code.jump(IFEQ, fail, -1);
+		return leaves.get(leaf);
+	}
+
+	private Expr comparison(AST node, Label fail) throws QueryException {
+		Cmp cmp = cmp(node.getChild(0));
+		boolean general = isGeneral(node.getChild(0));
+		AST left = unwrap(node.getChild(1));
+		AST right = unwrap(node.getChild(2));
+		// untyped operands of general comparisons are cast
+		// to xs:double only if the other operand is numeric
+		int leftMode = ((general) && (isNumeric(right))) ? CompiledPredicate.UNTYPED
+				| CompiledPredicate.FRACTION
+				: CompiledPredicate.FRACTION;
+		int rightMode = ((general) && (isNumeric(left))) ? CompiledPredicate.UNTYPED
+				| CompiledPredicate.FRACTION
+				: CompiledPredicate.FRACTION;
+		Expr leftExpr = num(left, leftMode);
+		Expr rightExpr = num(right, rightMode);
+		// NaN compares false except for ne
+		switch (cmp) {
+		case lt:
+			code.insn(DCMPG, -3);
+			code.jump(IFGE, fail, -1);
+			break;
+		case le:
+			code.insn(DCMPG, -3);
+			code.jump(IFGT, fail, -1);
+			break;
+		case gt:
+			code.insn(DCMPL, -3);
+			code.jump(IFLE, fail, -1);
+			break;
+		case ge:
+			code.insn(DCMPL, -3);
+			code.jump(IFLT, fail, -1);
+			break;
+		case eq:
+			code.insn(DCMPL, -3);
+			code.jump(IFNE, fail, -1);
+			break;
+		default:
+			code.insn(DCMPL, -3);
+			code.jump(IFEQ, fail, -1);
+		}
+		return (general) ? new GCmpExpr(cmp, leftExpr, rightExpr)
+				: new VCmpExpr(cmp, leftExpr, rightExpr);
+	}
+
+	private Expr num(AST node, int mode) throws QueryException {
+		node = unwrap(node);
+		Double v = literal(node, ((mode & CompiledPredicate.FRACTION) != 0));
+		if (v != null) {
+			code.dconst(v);
+			return (Atomic) node.getValue();
+		}
+		if (isArithmetic(node)) {
+			Expr first = num(node.getChild(1), CompiledPredicate.UNTYPED);
+			Expr second = num(node.getChild(2), CompiledPredicate.UNTYPED);
+			ArithmeticOp op;
+			switch (node.getChild(0).getType()) {
+			case XQ.AddOp:
+				code.insn(DADD, -2);
+				op = ArithmeticOp.PLUS;
+				break;
+			case XQ.SubtractOp:
+				code.insn(DSUB, -2);
+				op = ArithmeticOp.MINUS;
+				break;
+			default:
+				code.insn(DMUL, -2);
+				op = ArithmeticOp.MULT;
+			}
+			code.invoke(INVOKESTATIC, BASE, "exact", "(D)D", 0);
+			return new ArithmeticExpr(op, first, second);
+		}
+		int leaf = leaf(node);
+		code.insn(ALOAD_0, 1);
+		code.iconst(leaf);
+		code.insn(ALOAD_1, 1);
+		code.insn(ALOAD_2, 1);
+		code.iconst(mode);
+		code.invoke(INVOKEVIRTUAL, BASE, "num", NUM, -3);
+		return leaves.get(leaf);
+	}
+
+	private int leaf(AST node) throws QueryException {
+		leaves.add(compiler.expr(node, true));
+		return leaves.size() - 1;
+	}
+
+	private boolean worthCompiling(AST node) {
+		node = unwrap(node);
+		if ((node.getType() == XQ.AndExpr) || (node.getType() == XQ.OrExpr)) {
+			return ((worthCompiling(node.getChild(0))) || (worthCompiling(node
+					.getChild(1))));
+		}
+		return isComparison(node);
+	}
+
+	private boolean isComparison(AST node) {
+		if ((node.getType() != XQ.ComparisonExpr)
+				|| (cmp(node.getChild(0)) == null)) {
+			return false;
+		}
+		AST left = unwrap(node.getChild(1));
+		AST right = unwrap(node.getChild(2));
+		if ((isInexact(left, true)) || (isInexact(right, true))) {
+			return false;
+		}
+		return ((isNumeric(left)) || (isNumeric(right)));
+	}
+
+	private boolean isNumeric(AST node) {
+		return ((literal(node, true) != null) || (isArithmetic(node)));
+	}
+
+	private boolean isArithmetic(AST node) {
+		if (node.getType() != XQ.ArithmeticExpr) {
+			return false;
+		}
+		int op = node.getChild(0).getType();
+		if ((op != XQ.AddOp) && (op != XQ.SubtractOp)
+				&& (op != XQ.MultiplyOp)) {
+			return false;
+		}
+		// decimal and integer arithmetic must be exact
+		return ((!isInexact(unwrap(node.getChild(1)), false)) && (!isInexact(
+				unwrap(node.getChild(2)), false)));
+	}
+
+	private boolean isInexact(AST node, boolean fraction) {
+		int type = node.getType();
+		return (((type == XQ.Int) || (type == XQ.Dec) || (type == XQ.Dbl)) && (literal(
+				node, fraction) == null));
+	}
+
+	/**
+	 * Returns the value of a numeric literal if it is exactly representable
+	 * as double.
+	 */
+	private Double literal(AST node, boolean fraction) {
+		int type = node.getType();
+		if (type == XQ.Dbl) {
+			return ((Dbl) node.getValue()).doubleValue();
+		}
+		if ((type != XQ.Int) && (type != XQ.Dec)) {
+			return null;
+		}
+		BigDecimal dec = ((Numeric) node.getValue()).decimalValue();
+		double v = dec.doubleValue();
+		if ((Math.abs(v) < MAX_EXACT) && ((fraction) || (v == Math.rint(v)))
+				&& (new BigDecimal(v).compareTo(dec) == 0)) {
+			return v;
+		}
+		return null;
+	}
+
+	private AST unwrap(AST node) {
+		while ((node.getType() == XQ.ParenthesizedExpr)
+				&& (node.getChildCount() == 1)) {
+			node = node.getChild(0);
+		}
+		return node;
+	}
+
+	static boolean isGeneral(AST cmpNode) {
+		switch (cmpNode.getType()) {
+		case XQ.GeneralCompEQ:
+		case XQ.GeneralCompGE:
+		case XQ.GeneralCompLE:
+		case XQ.GeneralCompLT:
+		case XQ.GeneralCompGT:
+		case XQ.GeneralCompNE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static Cmp cmp(AST cmpNode) {
+		switch (cmpNode.getType()) {
+		case XQ.ValueCompEQ:
+		case XQ.GeneralCompEQ:
+			return Cmp.eq;
+		case XQ.ValueCompGE:
+		case XQ.GeneralCompGE:
+			return Cmp.ge;
+		case XQ.ValueCompLE:
+		case XQ.GeneralCompLE:
+			return Cmp.le;
+		case XQ.ValueCompLT:
+		case XQ.GeneralCompLT:
+			return Cmp.lt;
+		case XQ.ValueCompGT:
+		case XQ.GeneralCompGT:
+			return Cmp.gt;
+		case XQ.ValueCompNE:
+		case XQ.GeneralCompNE:
+			return Cmp.ne;
+		default:
+			return null;
+		}
+	}
+}
@@ -289,7 +289,8 @@ public class TopDownTranslator extends Compiler {
 		Expr sourceExpr = expr(posBindingOrSourceExpr, true);
 
 		Binding posBinding = null;
-		Binding runVarBinding = table.bind(runVarName, runVarType);
+		Binding runVarBinding = table.bind(runVarName, checkedType(runVarType,
+				posBindingOrSourceExpr, true));
 		// Fake binding of run variable because set-oriented processing requires
 		// the variable anyway
 		table.resolve(runVarName);
@@ -317,8 +318,10 @@ public class TopDownTranslator extends Compiler {
 		if (letVarDecl.getChildCount() == 2) {
 			letVarType = sequenceType(letVarDecl.getChild(1));
 		}
-		Expr sourceExpr = expr(node.getChild(pos++), true);
-		Binding binding = table.bind(letVarName, letVarType);
+		AST sourceNode = node.getChild(pos++);
+		Expr sourceExpr = expr(sourceNode, true);
+		Binding binding = table.bind(letVarName, checkedType(letVarType,
+				sourceNode, false));
 
 		// Fake binding of let variable because set-oriented processing requires
 		// the variable anyway
@@ -350,7 +353,7 @@ public class TopDownTranslator extends Compiler {
 	@SuppressWarnings("unchecked")
 	protected Operator select(Operator in, AST node) throws QueryException {
 		int pos = 0;
-		Expr expr = anyExpr(node.getChild(pos++));
+		Expr expr = predicate(node.getChild(pos++));
 		Select select = new Select(in, expr);
 		addChecks(select, (List<QNm>) node.getProperty("check"));
 		return anyOp(select, node.getLastChild());
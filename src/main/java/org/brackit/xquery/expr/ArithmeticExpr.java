@@ -68,7 +68,7 @@ public class ArithmeticExpr implements Expr {
 
 	protected final Expr rightExpr;
 
-	private final ArithmeticOp op;
+	protected final ArithmeticOp op;
 
 	public ArithmeticExpr(ArithmeticOp op, Expr leftExpr, Expr rightExpr) {
 		this.op = op;
@@ -94,6 +94,10 @@ public class ArithmeticExpr implements Expr {
 			return null;
 		}
 
+		return compute(left, right);
+	}
+
+	protected Item compute(Item left, Item right) throws QueryException {
 		left = left.atomize();
 		right = right.atomize();
 
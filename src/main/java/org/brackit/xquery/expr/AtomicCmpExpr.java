@@ -0,0 +1,98 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.expr;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.Tuple;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.Bool;
+import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.util.Cmp;
+import org.brackit.xquery.xdm.Expr;
+import org.brackit.xquery.xdm.Item;
+
+/**
+ * Value or general comparison of two operands which are statically known to
+ * be single, typed atomic values. Such comparisons need neither atomization
+ * nor casts of untyped operands and, thus, compare the operands directly.
+ * Two operands of type xs:double are compared as primitive values.
+ */
+public class AtomicCmpExpr extends VCmpExpr {
+
+	private final boolean general;
+
+	private final boolean doubles;
+
+	public AtomicCmpExpr(Cmp cmp, Expr leftExpr, Expr rightExpr,
+			boolean general, boolean doubles) {
+		super(cmp, leftExpr, rightExpr);
+		this.general = general;
+		this.doubles = doubles;
+	}
+
+	@Override
+	public Item evaluateToItem(QueryContext ctx, Tuple tuple)
+			throws QueryException {
+		Item left = leftExpr.evaluateToItem(ctx, tuple);
+		Item right = rightExpr.evaluateToItem(ctx, tuple);
+
+		if ((left == null) || (right == null)) {
+			return (general) ? Bool.FALSE : null;
+		}
+		if ((doubles) && (left instanceof Dbl) && (right instanceof Dbl)) {
+			return compare(((Dbl) left).doubleValue(), ((Dbl) right)
+					.doubleValue()) ? Bool.TRUE : Bool.FALSE;
+		}
+		if ((left instanceof Atomic) && (!(left instanceof Una))
+				&& (right instanceof Atomic) && (!(right instanceof Una))) {
+			return cmp.aCmp(ctx, (Atomic) left, (Atomic) right) ? Bool.TRUE
+					: Bool.FALSE;
+		}
+		return (general) ? cmp.gCmpAsBool(ctx, left, right) : cmp
+				.vCmpAsBool(ctx, left, right);
+	}
+
+	private boolean compare(double left, double right) {
+		switch (cmp) {
+		case eq:
+			return (left == right);
+		case ne:
+			return (left != right);
+		case lt:
+			return (left < right);
+		case le:
+			return (left <= right);
+		case gt:
+			return (left > right);
+		default:
+			return (left >= right);
+		}
+	}
+}
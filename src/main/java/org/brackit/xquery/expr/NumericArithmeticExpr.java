@@ -0,0 +1,77 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.expr;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.Tuple;
+import org.brackit.xquery.atomic.Numeric;
+import org.brackit.xquery.xdm.Expr;
+import org.brackit.xquery.xdm.Item;
+
+/**
+ * Arithmetic expression with operands which are statically known to be
+ * numeric. The operation is dispatched directly to {@link Numeric} without
+ * atomization and type checks.
+ */
+public class NumericArithmeticExpr extends ArithmeticExpr {
+
+	public NumericArithmeticExpr(ArithmeticOp op, Expr leftExpr,
+			Expr rightExpr) {
+		super(op, leftExpr, rightExpr);
+	}
+
+	@Override
+	public Item evaluateToItem(QueryContext ctx, Tuple tuple)
+			throws QueryException {
+		Item left = leftExpr.evaluateToItem(ctx, tuple);
+		Item right = rightExpr.evaluateToItem(ctx, tuple);
+
+		if ((left == null) || (right == null)) {
+			return null;
+		}
+		if ((!(left instanceof Numeric)) || (!(right instanceof Numeric))) {
+			return compute(left, right);
+		}
+
+		switch (op) {
+		case PLUS:
+			return ((Numeric) left).add((Numeric) right);
+		case MINUS:
+			return ((Numeric) left).subtract((Numeric) right);
+		case MULT:
+			return ((Numeric) left).multiply((Numeric) right);
+		case DIV:
+			return ((Numeric) left).div((Numeric) right);
+		case IDIV:
+			return ((Numeric) left).idiv((Numeric) right);
+		default:
+			return ((Numeric) left).mod((Numeric) right);
+		}
+	}
+}
@@ -79,6 +79,13 @@ import org.brackit.xquery.xdm.Stream;
  * sorting, but the inference of this property is outside the scope of this
  * class.
  * </p>
+ * <p>
+ * If the input is known to be in document order, a descendant step E2 can be
+ * evaluated as structural join (staircase join): Context nodes which are
+ * descendants of the previous context node are skipped, because their
+ * subtrees were already scanned. The result is then produced in document
+ * order and without duplicates in a single pass.
+ * </p>
  * 
  * @author Sebastian Baechle
  * 
@@ -93,9 +100,24 @@ public class PathStepExpr implements Expr {
 	final boolean lastStep;
 	final boolean skipDDO;
 	final boolean checkInput;
+	final boolean structuralJoin;
+	final boolean reuseInput;
+
+	public PathStepExpr(Expr e1, Expr e2, boolean bindItem, boolean bindPos,
+			boolean bindSize, boolean lastStep, boolean skipDDO,
+			boolean checkInput, boolean structuralJoin) {
+		this(e1, e2, bindItem, bindPos, bindSize, lastStep, skipDDO,
+				checkInput, structuralJoin, true);
+	}
 
+	/**
+	 * @param reuseInput
+	 *            whether the input may be consumed more than once, e.g.,
+	 *            because the output is iterated repeatedly
+	 */
 	public PathStepExpr(Expr e1, Expr e2, boolean bindItem, boolean bindPos,
-			boolean bindSize, boolean lastStep, boolean skipDDO, boolean checkInput) {
+			boolean bindSize, boolean lastStep, boolean skipDDO,
+			boolean checkInput, boolean structuralJoin, boolean reuseInput) {
 		this.e1 = e1;
 		this.e2 = e2;
 		this.bindItem = bindItem;
@@ -104,6 +126,8 @@ public class PathStepExpr implements Expr {
 		this.lastStep = lastStep;
 		this.skipDDO = skipDDO;
 		this.checkInput = checkInput;
+		this.structuralJoin = structuralJoin;
+		this.reuseInput = reuseInput;
 		bindCount = (bindItem ? 1 : 0) + (bindPos ? 1 : 0) + (bindSize ? 1 : 0);
 	}
 
@@ -111,7 +135,7 @@ public class PathStepExpr implements Expr {
 	public Sequence evaluate(QueryContext ctx, Tuple t) throws QueryException {
 		Sequence in = e1.evaluate(ctx, t);
 		if ((!skipDDO) && (checkInput)) {
-			in = ExprUtil.materialize(in);
+			in = ExprUtil.materialize(in, reuseInput);
 		}
 		if (in == null) {
 			return null;
@@ -119,7 +143,7 @@ public class PathStepExpr implements Expr {
 		IntNumeric size = (bindSize) ? in.size() : null;
 		Sequence out = new PathStepSequence(ctx, t, in, size);
 		if ((!skipDDO) && ((!checkInput) || (!(in instanceof Node<?>)))) {
-			out = new DdoOrAtomicSequence(out);
+			out = new DdoOrAtomicSequence(ctx, out);
 		}
 		return out;
 	}
@@ -239,6 +263,7 @@ public class PathStepExpr implements Expr {
 		Boolean nodeOnly;
 		IntNumeric pos = Int32.ZERO;
 		Iter out;
+		Node<?> anchor;
 
 		SequenceContextPathStepIter(QueryContext ctx, Tuple tuple,
 				IntNumeric inSeqSize, Iter in) {
@@ -275,12 +300,21 @@ public class PathStepExpr implements Expr {
 				if (item == null) {
 					return null;
 				}
+				ctx.check();
 				if (!(item instanceof Node<?>)) {
 					throw new QueryException(
 							ErrorCode.ERR_PATH_STEP_RETURNED_NON_NODE_VALUE,
 							"Intermediate step in path expression returned a non-node: %s",
 							item.itemType());
 				}
+				if (structuralJoin) {
+					Node<?> node = (Node<?>) item;
+					if ((anchor != null) && (anchor.isAncestorOrSelfOf(node))) {
+						// subtree was already scanned
+						continue;
+					}
+					anchor = node;
+				}
 
 				if (bindCount > 0) {
 					Sequence[] tmp = new Sequence[bindCount];
@@ -326,13 +360,15 @@ public class PathStepExpr implements Expr {
 			}
 		};
 
+		final QueryContext ctx;
 		final Sequence s;
 		// volatile fields because they are
 		// computed on demand
 		volatile TupleSort tupleSort;
 		volatile boolean atomicOnly;
 
-		public DdoOrAtomicSequence(Sequence s) {
+		public DdoOrAtomicSequence(QueryContext ctx, Sequence s) {
+			this.ctx = ctx;
 			this.s = s;
 		}
 
@@ -373,6 +409,7 @@ public class PathStepExpr implements Expr {
 							// TODO -1 means no external sort
 							sort = new TupleSort(cmp, -1);
 							do {
+								ctx.check();
 								sort.add(next);
 							} while ((next = it.next()) != null);
 							sort.sort();
@@ -387,6 +424,7 @@ public class PathStepExpr implements Expr {
 					}
 					Node<?> next;
 					while ((next = (Node<?>) sorted.next()) != null) {
+						ctx.check();
 						if ((prev == null) || (prev.cmp(next) != 0)) {
 							prev = next;
 							return next;
@@ -99,7 +99,7 @@ public class RangeExpr implements Expr {
 	}
 
 	@Override
-	public Sequence evaluate(QueryContext ctx, Tuple tuple)
+	public Sequence evaluate(final QueryContext ctx, Tuple tuple)
 			throws QueryException {
 		Item lItem = leftExpr.evaluateToItem(ctx, tuple);
 		Item rItem = rightExpr.evaluateToItem(ctx, tuple);
@@ -163,6 +163,7 @@ public class RangeExpr implements Expr {
 							if (current.cmp(e) > 0)
 								return null;
 
+							ctx.check();
 							IntNumeric res = current;
 							current = current.inc();
 							return res;
@@ -82,7 +82,7 @@ public class StepExpr extends PredicateExpr {
 					"Context item in axis step is not a node: %s",
 					((Item) node).itemType());
 		}
-		Sequence s = new AxisStepSequence((Node<?>) node);
+		Sequence s = new AxisStepSequence(ctx, (Node<?>) node);
 		boolean backwardAxis = !accessor.getAxis().isForward();
 		boolean reversed = false;
 
@@ -148,28 +148,33 @@ public class StepExpr extends PredicateExpr {
 	}
 
 	private class AxisStepSequence extends LazySequence {
+		final QueryContext ctx;
 		final Node<?> n;
 
-		AxisStepSequence(Node<?> n) {
+		AxisStepSequence(QueryContext ctx, Node<?> n) {
+			this.ctx = ctx;
 			this.n = n;
 		}
 
 		@Override
 		public Iter iterate() {
-			return new AxisStepSequenceIter(n);
+			return new AxisStepSequenceIter(ctx, n);
 		}
 	}
 
 	private class AxisStepSequenceIter extends BaseIter {
+		final QueryContext ctx;
 		final Node<?> node;
 		Stream<? extends Node<?>> nextS;
 
-		AxisStepSequenceIter(Node<?> node) {
+		AxisStepSequenceIter(QueryContext ctx, Node<?> node) {
+			this.ctx = ctx;
 			this.node = node;
 		}
 
 		@Override
 		public Item next() throws QueryException {
+			ctx.check();
 			if (nextS == null) {
 				nextS = accessor.performStep(node, test);
 			}
@@ -74,10 +74,10 @@ public class UnionExpr implements Expr {
 			}
 		};
 
-		final Sequence sortedA = new SortedNodeSequence(comparator, sequenceA,
-				true);
-		final Sequence sortedB = new SortedNodeSequence(comparator, sequenceB,
-				true);
+		final Sequence sortedA = new SortedNodeSequence(ctx, comparator,
+				sequenceA, true);
+		final Sequence sortedB = new SortedNodeSequence(ctx, comparator,
+				sequenceB, true);
 
 		return new LazySequence() {
 			@Override
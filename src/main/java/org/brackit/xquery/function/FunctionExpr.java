@@ -58,10 +58,22 @@ public class FunctionExpr implements Expr {
 	private final Expr[] exprs;
 	private final boolean builtin;
 	private final SequenceType dftCtxType;
+	private final boolean tailCall;
 
 	public FunctionExpr(StaticContext sctx, Function function, Expr... exprs)
 			throws QueryException {
+		this(sctx, function, false, exprs);
+	}
+
+	/**
+	 * Creates a call which returns a pending {@link TailCall} instead of
+	 * invoking the user-defined function <code>function</code> if
+	 * <code>tailCall</code> is set.
+	 */
+	public FunctionExpr(StaticContext sctx, Function function,
+			boolean tailCall, Expr... exprs) throws QueryException {
 		this.sctx = sctx;
+		this.tailCall = tailCall;
 		this.function = function;
 		this.exprs = exprs;
 		this.builtin = function.isBuiltIn();
@@ -109,6 +121,10 @@ public class FunctionExpr implements Expr {
 			}
 		}
 
+		if (tailCall) {
+			return new TailCall(ctx, (UDF) function, args);
+		}
+
 		try {
 			res = function.execute(sctx, ctx, args);
 		} catch (StackOverflowError e) {
@@ -130,7 +146,7 @@ public class FunctionExpr implements Expr {
 	@Override
 	public Item evaluateToItem(QueryContext ctx, Tuple tuple)
 			throws QueryException {
-		return ExprUtil.asItem(evaluate(ctx, tuple));
+		return ExprUtil.asItem(TailCall.resolve(evaluate(ctx, tuple)));
 	}
 
 	@Override
@@ -0,0 +1,232 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.function;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Sequence;
+
+/**
+ * Per-query cache of the results of a memoized function. Calls are keyed by
+ * their atomic arguments; arguments containing other items are not cached.
+ * If a capacity is given, the least recently used entry is evicted when the
+ * table grows beyond it.
+ */
+public class MemoTable {
+
+	private final Map<Key, Sequence[]> table;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	public MemoTable(final int capacity) {
+		table = new LinkedHashMap<Key, Sequence[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Sequence[]> eldest) {
+				if ((capacity > 0) && (size() > capacity)) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Builds the lookup key for the given arguments, or returns
+	 * <code>null</code> if they cannot be cached.
+	 */
+	public Object key(Sequence[] args) throws QueryException {
+		Object[] values = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			Sequence arg = args[i];
+			if (arg == null) {
+				continue;
+			}
+			if (arg instanceof Item) {
+				if (!(arg instanceof Atomic)) {
+					return null;
+				}
+				values[i] = arg;
+				continue;
+			}
+			Atomic[] items = new Atomic[4];
+			int size = 0;
+			Iter it = arg.iterate();
+			try {
+				Item item;
+				while ((item = it.next()) != null) {
+					if (!(item instanceof Atomic)) {
+						return null;
+					}
+					if (size == items.length) {
+						items = Arrays.copyOf(items, size * 3 / 2 + 1);
+					}
+					items[size++] = (Atomic) item;
+				}
+			} finally {
+				it.close();
+			}
+			values[i] = (size == 0) ? null : (size == 1) ? items[0] : Arrays
+					.copyOf(items, size);
+		}
+		return new Key(values);
+	}
+
+	/**
+	 * Returns the cached result for the given key wrapped in a singleton
+	 * array, or <code>null</code> if the call has not been cached.
+	 */
+	public Sequence[] get(Object key) {
+		Sequence[] result = table.get(key);
+		if (result != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return result;
+	}
+
+	public void put(Object key, Sequence result) {
+		table.put((Key) key, new Sequence[] { result });
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public int getSize() {
+		return table.size();
+	}
+
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return (lookups > 0) ? ((double) hits) / lookups : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("hits=%s misses=%s evictions=%s size=%s", hits,
+				misses, evictions, table.size());
+	}
+
+	private static final class Key {
+		private final Object[] values;
+
+		private final int hash;
+
+		Key(Object[] values) {
+			this.values = values;
+			int h = 1;
+			for (Object value : values) {
+				h = 31 * h + hash(value);
+			}
+			this.hash = h;
+		}
+
+		private static int hash(Object value) {
+			if (value instanceof Atomic[]) {
+				int h = 1;
+				for (Atomic item : (Atomic[]) value) {
+					h = 31 * h + item.hashCode();
+				}
+				return h;
+			}
+			return (value != null) ? value.hashCode() : 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if ((hash != other.hash) || (values.length != other.values.length)) {
+				return false;
+			}
+			for (int i = 0; i < values.length; i++) {
+				if (!equal(values[i], other.values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean equal(Object a, Object b) {
+			if ((a == null) || (b == null)) {
+				return (a == b);
+			}
+			if (a instanceof Atomic[]) {
+				if (!(b instanceof Atomic[])) {
+					return false;
+				}
+				Atomic[] as = (Atomic[]) a;
+				Atomic[] bs = (Atomic[]) b;
+				if (as.length != bs.length) {
+					return false;
+				}
+				for (int i = 0; i < as.length; i++) {
+					if (!equal(as[i], bs[i])) {
+						return false;
+					}
+				}
+				return true;
+			}
+			if (b instanceof Atomic[]) {
+				return false;
+			}
+			// atomics of different types must not share results, even if
+			// they compare equal
+			Atomic aa = (Atomic) a;
+			Atomic ab = (Atomic) b;
+			return (aa.type().equals(ab.type())) && (aa.atomicCmp(ab) == 0);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.function;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.atomic.IntNumeric;
+import org.brackit.xquery.sequence.AbstractSequence;
+import org.brackit.xquery.sequence.BaseIter;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Sequence;
+
+/**
+ * Pending call of a user-defined function in tail position of another
+ * user-defined function. Instead of invoking the callee on top of the
+ * caller's Java stack, the call is returned to the caller's
+ * {@link UDF#execute} which executes it in a loop.
+ * <p>
+ * A tail call must only be created when the result type of the callee
+ * equals the one of the caller or is <code>item()*</code>, because no result
+ * conversion is applied to the callee's result. Should a tail call ever be
+ * accessed as an ordinary sequence, it is executed on first access.
+ */
+public final class TailCall extends AbstractSequence {
+	private final QueryContext ctx;
+
+	private final UDF function;
+
+	private final Sequence[] args;
+
+	private Sequence result;
+
+	private boolean executed;
+
+	public TailCall(QueryContext ctx, UDF function, Sequence[] args) {
+		this.ctx = ctx;
+		this.function = function;
+		this.args = args;
+	}
+
+	/**
+	 * Executes pending tail calls until the result is an ordinary sequence.
+	 */
+	public static Sequence resolve(Sequence result) throws QueryException {
+		while (result instanceof TailCall) {
+			TailCall call = (TailCall) result;
+			result = call.function.invoke(call.ctx, call.args);
+		}
+		return result;
+	}
+
+	private Sequence result() throws QueryException {
+		if (!executed) {
+			result = resolve(function.invoke(ctx, args));
+			executed = true;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean booleanValue() throws QueryException {
+		Sequence s = result();
+		return (s != null) && (s.booleanValue());
+	}
+
+	@Override
+	public IntNumeric size() throws QueryException {
+		Sequence s = result();
+		return (s != null) ? s.size() : Int32.ZERO;
+	}
+
+	@Override
+	public Item get(IntNumeric pos) throws QueryException {
+		Sequence s = result();
+		return (s != null) ? s.get(pos) : null;
+	}
+
+	@Override
+	public Iter iterate() {
+		return new BaseIter() {
+			Iter it;
+
+			@Override
+			public Item next() throws QueryException {
+				if (it == null) {
+					Sequence s = result();
+					if (s == null) {
+						return null;
+					}
+					it = s.iterate();
+				}
+				return it.next();
+			}
+
+			@Override
+			public void close() {
+				if (it != null) {
+					it.close();
+				}
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "tail call " + function.getName();
+	}
+}
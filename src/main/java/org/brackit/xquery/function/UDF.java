@@ -27,13 +27,18 @@
  */
 package org.brackit.xquery.function;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.Tuple;
 import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.compiler.AST;
 import org.brackit.xquery.compiler.Unit;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.operator.TupleImpl;
+import org.brackit.xquery.util.ExprUtil;
 import org.brackit.xquery.xdm.Expr;
 import org.brackit.xquery.xdm.Sequence;
 import org.brackit.xquery.xdm.Signature;
@@ -46,6 +51,16 @@ import org.brackit.xquery.xdm.Signature;
 public class UDF extends AbstractFunction implements Unit {
 	private Expr body;
 
+	private boolean memoize;
+
+	private int memoCapacity;
+
+	private UDF[] callees;
+
+	private QNm[] inlineParams;
+
+	private AST inlineBody;
+
 	public UDF(QNm name, Signature signature, boolean updating) {
 		super(name, signature, false, updating);
 	}
@@ -55,11 +70,110 @@ public class UDF extends AbstractFunction implements Unit {
 		this.body = body;
 	}
 
+	/**
+	 * Caches the results of this function per query. The function must be
+	 * deterministic and must not construct nodes whose identity matters to
+	 * the caller. A capacity of 0 does not bound the cache.
+	 */
+	public void setMemoize(int capacity) {
+		memoize = true;
+		memoCapacity = capacity;
+	}
+
+	public boolean isMemoized() {
+		return memoize;
+	}
+
+	/**
+	 * Records the user-defined functions called directly in the body of
+	 * this function.
+	 */
+	public void setCallees(UDF[] callees) {
+		this.callees = callees;
+	}
+
+	/**
+	 * Checks whether this function may directly or indirectly call itself.
+	 */
+	public boolean isRecursive() {
+		Set<UDF> visited = new HashSet<UDF>();
+		return reaches(this, visited);
+	}
+
+	private boolean reaches(UDF target, Set<UDF> visited) {
+		if (callees == null) {
+			return false;
+		}
+		for (UDF callee : callees) {
+			if (callee == target) {
+				return true;
+			}
+			if ((visited.add(callee)) && (callee.reaches(target, visited))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps the analyzed body of this function for inlining at compile time.
+	 * The root of <code>body</code> must carry the static context of the
+	 * function's module.
+	 */
+	public void setInlineBody(QNm[] params, AST body) {
+		this.inlineParams = params;
+		this.inlineBody = body;
+	}
+
+	public boolean isInlinable() {
+		return (inlineBody != null);
+	}
+
+	public QNm[] getInlineParams() {
+		return inlineParams;
+	}
+
+	/**
+	 * Returns a fresh copy of the body kept for inlining.
+	 */
+	public AST getInlineBody() {
+		return (inlineBody != null) ? inlineBody.copyTree() : null;
+	}
+
 	@Override
 	public Sequence execute(StaticContext sctx, QueryContext ctx, Sequence[] args)
 			throws QueryException {
+		return TailCall.resolve(invoke(ctx, args));
+	}
+
+	/**
+	 * Evaluates the body of this function, which may return a pending
+	 * {@link TailCall}.
+	 */
+	Sequence invoke(QueryContext ctx, Sequence[] args) throws QueryException {
+		ctx.check();
+		if (memoize) {
+			return memoized(ctx, args);
+		}
 		Tuple tuple = new TupleImpl(args);
 		return body.evaluate(ctx, tuple);
 	}
 
+	private Sequence memoized(QueryContext ctx, Sequence[] args)
+			throws QueryException {
+		MemoTable table = ctx.getMemoTable(this, memoCapacity);
+		Object key = table.key(args);
+		if (key == null) {
+			return body.evaluate(ctx, new TupleImpl(args));
+		}
+		Sequence[] cached = table.get(key);
+		if (cached != null) {
+			return cached[0];
+		}
+		Sequence result = ExprUtil.materialize(TailCall.resolve(body
+				.evaluate(ctx, new TupleImpl(args))));
+		table.put(key, result);
+		return result;
+	}
+
 }
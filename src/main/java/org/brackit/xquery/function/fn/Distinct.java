@@ -27,38 +27,77 @@
  */
 package org.brackit.xquery.function.fn;
 
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import org.brackit.xquery.ErrorCode;
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.Flt;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.expr.Cast;
 import org.brackit.xquery.function.AbstractFunction;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.sequence.BaseIter;
 import org.brackit.xquery.sequence.LazySequence;
+import org.brackit.xquery.util.AtomicHashSet;
+import org.brackit.xquery.util.Cfg;
+import org.brackit.xquery.util.log.Logger;
 import org.brackit.xquery.xdm.Item;
 import org.brackit.xquery.xdm.Iter;
 import org.brackit.xquery.xdm.Sequence;
 import org.brackit.xquery.xdm.Signature;
+import org.brackit.xquery.xdm.Type;
 
 /**
+ * <p>
+ * Implementation of fn:distinct-values. Each value is returned as soon as it
+ * is seen for the first time.
+ * </p>
+ * <p>
+ * If the number of distinct values exceeds {@link #MAX_SIZE}, the values
+ * seen so far are kept and all further values not among them are
+ * hash-partitioned to temporary files. The partitions are deduplicated one
+ * after another when the input is exhausted.
+ * </p>
  * 
  * @author Sebastian Baechle
  * 
  */
 public class Distinct extends AbstractFunction {
+	private static final Logger log = Logger.getLogger(Distinct.class);
+
+	public static final String MAX_SIZE_CFG = "org.brackit.xquery.maxDistinctValues";
+
+	/**
+	 * Maximum number of distinct values to keep in memory.
+	 */
+	public static int MAX_SIZE = Cfg.asInt(MAX_SIZE_CFG, 1 << 20);
+
+	private static final int PARTITIONS = 16;
+
+	private static final int MAX_SPILL_DEPTH = 4;
+
+	private static final File spillDir = new File(Cfg
+			.asString("java.io.tmpdir"));
+
 	public Distinct(QNm name, Signature signature) {
 		super(name, signature, true);
 	}
 
 	@Override
-	public Sequence execute(StaticContext sctx, final QueryContext ctx, Sequence[] args)
-			throws QueryException {
+	public Sequence execute(final StaticContext sctx, final QueryContext ctx,
+			Sequence[] args) throws QueryException {
 		if (args.length == 2) {
 			Str collation = (Str) args[1];
 
@@ -77,44 +116,257 @@ public class Distinct extends AbstractFunction {
 
 		return new LazySequence() {
 			final Sequence inSeq = s;
-			// volatile because it is computed
-			// on demand
-			volatile Set<Atomic> set;
 
 			@Override
 			public Iter iterate() {
-				return new BaseIter() {
-					Iterator<Atomic> it;
-
-					@Override
-					public Item next() throws QueryException {
-						Set<Atomic> distinct = set; // volatile read
-						if (distinct == null) {
-							distinct = new LinkedHashSet<Atomic>();
-							Iter it = inSeq.iterate();
-							try {
-								Item runVar;
-								while ((runVar = it.next()) != null) {
-									distinct.add((Atomic) runVar);
-								}
-							} finally {
-								it.close();
+				return new DistinctIter(sctx, inSeq.iterate(), 0);
+			}
+		};
+	}
+
+	private static class DistinctIter extends BaseIter {
+		final StaticContext sctx;
+		final Iter in;
+		final int depth;
+		final AtomicHashSet seen = new AtomicHashSet();
+		boolean exhausted;
+		Spill spill;
+		int partition;
+		Iter partitionIt;
+
+		DistinctIter(StaticContext sctx, Iter in, int depth) {
+			this.sctx = sctx;
+			this.in = in;
+			this.depth = depth;
+		}
+
+		@Override
+		public Item next() throws QueryException {
+			if (!exhausted) {
+				Item item;
+				while ((item = in.next()) != null) {
+					Atomic atomic = (Atomic) item;
+					if (spill == null) {
+						if (seen.add(atomic)) {
+							if ((seen.size() > MAX_SIZE)
+									&& (depth < MAX_SPILL_DEPTH)) {
+								spill = new Spill(depth);
 							}
-							set = distinct;
+							return atomic;
+						}
+					} else if ((!seen.contains(atomic))
+							&& (!spill.write(atomic)) && (seen.add(atomic))) {
+						// value cannot be spilled
+						return atomic;
+					}
+				}
+				exhausted = true;
+				if (spill == null) {
+					return null;
+				}
+				spill.finish();
+			}
+			return nextSpilled();
+		}
+
+		private Item nextSpilled() throws QueryException {
+			while (true) {
+				if (partitionIt != null) {
+					Item item = partitionIt.next();
+					if (item != null) {
+						return item;
+					}
+					partitionIt.close();
+					partitionIt = null;
+					spill.delete(partition++);
+				}
+				if (partition == PARTITIONS) {
+					return null;
+				}
+				if (spill.count(partition) > 0) {
+					partitionIt = new DistinctIter(sctx, spill.read(sctx,
+							partition), depth + 1);
+				} else {
+					spill.delete(partition++);
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			in.close();
+			if (partitionIt != null) {
+				partitionIt.close();
+			}
+			if (spill != null) {
+				spill.close();
+			}
+		}
+	}
+
+	/**
+	 * Hash partitions of spilled values.
+	 */
+	private static class Spill {
+		final int depth;
+		final File[] files = new File[PARTITIONS];
+		final DataOutputStream[] out = new DataOutputStream[PARTITIONS];
+		final int[] counts = new int[PARTITIONS];
+
+		Spill(int depth) throws QueryException {
+			this.depth = depth;
+			try {
+				for (int i = 0; i < PARTITIONS; i++) {
+					files[i] = File.createTempFile("distinct", ".run",
+							spillDir);
+					files[i].deleteOnExit();
+					out[i] = new DataOutputStream(new BufferedOutputStream(
+							new FileOutputStream(files[i])));
+				}
+			} catch (IOException e) {
+				close();
+				throw new QueryException(e, ErrorCode.BIT_DYN_INT_ERROR);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Spilling distinct values at depth %s",
+						depth));
+			}
+		}
+
+		/**
+		 * Writes the given value to its partition, if it can be restored
+		 * from its serialized form.
+		 */
+		boolean write(Atomic atomic) throws QueryException {
+			Type type = atomic.type();
+			int typeIndex = typeIndex(type);
+			if ((typeIndex < 0) || (type == Type.QNM) || (type == Type.NOT)) {
+				return false;
+			}
+			int h = AtomicHashSet.hash(atomic) ^ (depth * 0x9E3779B9);
+			h ^= (h >>> 16);
+			h *= 0x85EBCA6B;
+			h ^= (h >>> 13);
+			int p = h & (PARTITIONS - 1);
+			try {
+				DataOutputStream o = out[p];
+				o.writeByte(typeIndex);
+				if (type == Type.DBL) {
+					o.writeLong(Double.doubleToLongBits(((Dbl) atomic)
+							.doubleValue()));
+				} else if (type == Type.FLO) {
+					o.writeInt(Float.floatToIntBits(((Flt) atomic)
+							.floatValue()));
+				} else {
+					byte[] b = atomic.stringValue().getBytes("UTF-8");
+					o.writeInt(b.length);
+					o.write(b);
+				}
+			} catch (IOException e) {
+				close();
+				throw new QueryException(e, ErrorCode.BIT_DYN_INT_ERROR);
+			}
+			counts[p]++;
+			return true;
+		}
+
+		void finish() throws QueryException {
+			try {
+				for (int i = 0; i < PARTITIONS; i++) {
+					out[i].close();
+					out[i] = null;
+				}
+			} catch (IOException e) {
+				close();
+				throw new QueryException(e, ErrorCode.BIT_DYN_INT_ERROR);
+			}
+		}
+
+		int count(int partition) {
+			return counts[partition];
+		}
+
+		Iter read(final StaticContext sctx, final int partition)
+				throws QueryException {
+			final DataInputStream in;
+			try {
+				in = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(files[partition])));
+			} catch (IOException e) {
+				close();
+				throw new QueryException(e, ErrorCode.BIT_DYN_INT_ERROR);
+			}
+			return new BaseIter() {
+				int remaining = counts[partition];
+
+				@Override
+				public Item next() throws QueryException {
+					if (remaining == 0) {
+						return null;
+					}
+					remaining--;
+					try {
+						Type type = Type.builtInTypes[in.readByte()];
+						if (type == Type.DBL) {
+							return new Dbl(Double.longBitsToDouble(in
+									.readLong()));
+						} else if (type == Type.FLO) {
+							return new Flt(Float.intBitsToFloat(in.readInt()));
 						}
-						if (it == null) {
-							it = distinct.iterator();
+						byte[] b = new byte[in.readInt()];
+						in.readFully(b);
+						String s = new String(b, "UTF-8");
+						if (type == Type.STR) {
+							return new Str(s);
+						} else if (type == Type.UNA) {
+							return new Una(s);
 						}
+						return Cast.cast(sctx, new Una(s), type);
+					} catch (IOException e) {
+						throw new QueryException(e, ErrorCode.BIT_DYN_INT_ERROR);
+					}
+				}
 
-						return (it.hasNext()) ? it.next() : null;
+				@Override
+				public void close() {
+					try {
+						in.close();
+					} catch (IOException e) {
+						log.error(e);
 					}
+				}
+			};
+		}
 
-					@Override
-					public void close() {
-						it = null;
+		void delete(int partition) {
+			if (files[partition] != null) {
+				files[partition].delete();
+				files[partition] = null;
+			}
+		}
+
+		void close() {
+			for (int i = 0; i < PARTITIONS; i++) {
+				if (out[i] != null) {
+					try {
+						out[i].close();
+					} catch (IOException e) {
+						log.error(e);
 					}
-				};
+					out[i] = null;
+				}
+				delete(i);
 			}
-		};
+		}
+
+		private static int typeIndex(Type type) {
+			Type[] types = Type.builtInTypes;
+			for (int i = 0; i < types.length; i++) {
+				if (types[i] == type) {
+					return i;
+				}
+			}
+			return -1;
+		}
 	}
 }
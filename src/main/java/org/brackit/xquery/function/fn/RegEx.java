@@ -27,14 +27,18 @@
  */
 package org.brackit.xquery.function.fn;
 
+import java.util.regex.Pattern;
+
 import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.Atomic;
 import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.function.AbstractFunction;
 import org.brackit.xquery.module.StaticContext;
 import org.brackit.xquery.util.Regex;
 import org.brackit.xquery.util.Regex.Mode;
+import org.brackit.xquery.xdm.Expr;
 import org.brackit.xquery.xdm.Sequence;
 import org.brackit.xquery.xdm.Signature;
 
@@ -53,20 +57,61 @@ import org.brackit.xquery.xdm.Signature;
  */
 public class RegEx extends AbstractFunction {
 	
-	private Mode mode;
+	private final Mode mode;
+
+	private final Pattern pattern;
 
 	public RegEx(QNm name, Mode mode, Signature signature) {
 		super(name, signature, true);
 		this.mode = mode;
+		this.pattern = null;
+	}
+
+	private RegEx(RegEx fn, Pattern pattern) {
+		super(fn.getName(), fn.getSignature(), true);
+		this.mode = fn.mode;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Returns a variant of this function with a precompiled pattern if
+	 * pattern, flags and replacement string are given as literals. Invalid
+	 * literals are left to be reported at runtime.
+	 */
+	public RegEx precompile(Expr[] args) {
+		if ((pattern != null) || (args.length < 2)) {
+			return this;
+		}
+		int flagsPos = (mode == Mode.REPLACE) ? 3 : 2;
+		if ((!(args[1] instanceof Str))
+				|| ((mode == Mode.REPLACE) && (!(args[2] instanceof Str)))
+				|| ((args.length > flagsPos) && (!(args[flagsPos] instanceof Str)))) {
+			return this;
+		}
+		String flags = (args.length > flagsPos) ? ((Str) args[flagsPos])
+				.stringValue() : null;
+		try {
+			Pattern cpattern = Regex.compile(mode,
+					((Str) args[1]).stringValue(), flags);
+			if (mode == Mode.REPLACE) {
+				Regex.checkReplacement(((Str) args[2]).stringValue());
+			}
+			return new RegEx(this, cpattern);
+		} catch (QueryException e) {
+			return this;
+		}
 	}
 
 	@Override
 	public Sequence execute(StaticContext sctx, QueryContext ctx,
 			Sequence[] args) throws QueryException {
 		String input = (args[0] != null ? ((Atomic) args[0]).stringValue() : "");
-		String pattern = ((Atomic) args[1]).stringValue();
 		String replacement = (mode == Mode.REPLACE) ? ((Atomic) args[2])
 				.stringValue() : null;
+		if (pattern != null) {
+			return Regex.match(mode, pattern, input, replacement);
+		}
+		String pattern = ((Atomic) args[1]).stringValue();
 		String flags = (mode == Mode.REPLACE) ? (args.length > 3 ? ((Atomic) args[3])
 				.stringValue() : null)
 				: (args.length > 2 ? ((Atomic) args[2]).stringValue() : null);
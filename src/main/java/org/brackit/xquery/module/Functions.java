@@ -113,6 +113,8 @@ public class Functions {
 
 	private static final Map<QNm, Function[]> predefined = new HashMap<QNm, Function[]>();
 
+	private static final Map<QNm, FunctionLibrary> libraries = new HashMap<QNm, FunctionLibrary>();
+
 	public static final QNm FN_POSITION = new QNm(Namespaces.FN_NSURI,
 			Namespaces.FN_PREFIX, "position");
 
@@ -145,7 +147,145 @@ public class Functions {
 	protected final LinkedList<Functions> imports = new LinkedList<Functions>();
 
 	static {
-		// See XQuery Functions and Operators 2 Accessors
+		predefine(new FunctionLibrary(fn("node-name", "nilled", "base-uri",
+				"data", "string", "document-uri")) {
+			protected void define() {
+				accessors();
+			}
+		});
+		predefine(new FunctionLibrary(fn("error")) {
+			protected void define() {
+				errors();
+			}
+		});
+		predefine(new FunctionLibrary(fn("trace")) {
+			protected void define() {
+				trace();
+			}
+		});
+		predefine(new FunctionLibrary(fn("dateTime")) {
+			protected void define() {
+				dateTimeConstructor();
+			}
+		});
+		predefine(new FunctionLibrary(fn("abs", "ceiling", "floor", "round",
+				"round-half-to-even")) {
+			protected void define() {
+				numericFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("string-to-codepoints",
+				"codepoints-to-string")) {
+			protected void define() {
+				codepointFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("compare", "codepoint-equal")) {
+			protected void define() {
+				stringComparisons();
+			}
+		});
+		predefine(new FunctionLibrary(fn("concat", "upper-case", "lower-case",
+				"string-length", "string-join", "substring", "translate",
+				"normalize-space", "resolve-uri", "encode-for-uri",
+				"iri-to-uri", "escape-html-uri")) {
+			protected void define() {
+				stringFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("contains", "starts-with", "ends-with",
+				"substring-before", "substring-after")) {
+			protected void define() {
+				substringFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("matches", "replace", "tokenize")) {
+			protected void define() {
+				patternFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("true", "false", "not")) {
+			protected void define() {
+				booleanFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("years-from-duration",
+				"months-from-duration", "days-from-duration",
+				"hours-from-duration", "minutes-from-duration",
+				"seconds-from-duration", "year-from-dateTime",
+				"month-from-dateTime", "day-from-dateTime",
+				"hours-from-dateTime", "minutes-from-dateTime",
+				"seconds-from-dateTime", "timezone-from-dateTime",
+				"year-from-date", "month-from-date", "day-from-date",
+				"timezone-from-date", "hours-from-time", "minutes-from-time",
+				"seconds-from-time", "timezone-from-time")) {
+			protected void define() {
+				componentExtraction();
+			}
+		});
+		predefine(new FunctionLibrary(fn("adjust-dateTime-to-timezone",
+				"adjust-date-to-timezone", "adjust-time-to-timezone")) {
+			protected void define() {
+				timezoneAdjustment();
+			}
+		});
+		predefine(new FunctionLibrary(fn("QName")) {
+			protected void define() {
+				qnameFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("name", "local-name", "namespace-uri",
+				"number", "root")) {
+			protected void define() {
+				nodeFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("boolean", "index-of", "empty",
+				"exists", "insert-before", "remove", "reverse", "subsequence",
+				"unordered", "distinct-values")) {
+			protected void define() {
+				sequenceFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("zero-or-one", "one-or-more",
+				"exactly-one")) {
+			protected void define() {
+				cardinalityFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("deep-equal")) {
+			protected void define() {
+				sequenceComparisons();
+			}
+		});
+		predefine(new FunctionLibrary(fn("min", "max", "avg", "sum", "count")) {
+			protected void define() {
+				aggregateFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(fn("doc", "doc-available",
+				"collection")) {
+			protected void define() {
+				sequenceGenerators();
+			}
+		});
+		predefine(new FunctionLibrary(fn("current-dateTime", "current-date",
+				"current-time", "implicit-timezone", "default-collation")) {
+			protected void define() {
+				contextFunctions();
+			}
+		});
+		predefine(new FunctionLibrary(constructorNames()) {
+			protected void define() {
+				constructorFunctions();
+			}
+		});
+	}
+
+	/**
+	 * See XQuery Functions and Operators 2 Accessors
+	 */
+	private static void accessors() {
 		predefine(new NodeName(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "node-name"), new Signature(
 				new SequenceType(AtomicType.QNM, Cardinality.ZeroOrOne),
@@ -181,8 +321,12 @@ public class Functions {
 				Namespaces.FN_PREFIX, "document-uri"), new Signature(
 				new SequenceType(AtomicType.AURI, Cardinality.ZeroOrOne),
 				new SequenceType(AnyNodeType.ANY_NODE, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 3 The Error Function
+	/**
+	 * See XQuery Functions and Operators 3 The Error Function
+	 */
+	private static void errors() {
 		predefine(new org.brackit.xquery.function.fn.Error(new QNm(
 				Namespaces.FN_NSURI, Namespaces.FN_PREFIX, "error"),
 				new Signature(new SequenceType(AnyItemType.ANY,
@@ -205,23 +349,35 @@ public class Functions {
 						Cardinality.ZeroOrOne), new SequenceType(
 						AtomicType.STR, Cardinality.One), new SequenceType(
 						AnyItemType.ANY, Cardinality.ZeroOrMany))));
+	}
 
-		// See XQuery Functions and Operators 4 Trace Function
+	/**
+	 * See XQuery Functions and Operators 4 Trace Function
+	 */
+	private static void trace() {
 		predefine(new Trace(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"trace"), new Signature(new SequenceType(AnyItemType.ANY,
 				Cardinality.ZeroOrMany), new SequenceType(AnyItemType.ANY,
 				Cardinality.ZeroOrMany), new SequenceType(AtomicType.STR,
 				Cardinality.One))));
+	}
 
-		// See XQuery Functions and Operators 5.2 A Special Constructor Function
-		// for xs:dateTime
+	/**
+	 * See XQuery Functions and Operators 5.2 A Special Constructor Function for
+	 * xs:dateTime
+	 */
+	private static void dateTimeConstructor() {
 		predefine(new DateTime(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "dateTime"), new Signature(
 				new SequenceType(AtomicType.DATI, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.DATE, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.TIME, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 6.4 Functions on Numeric Values
+	/**
+	 * See XQuery Functions and Operators 6.4 Functions on Numeric Values
+	 */
+	private static void numericFunctions() {
 		predefine(new Abs(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"abs"), new Signature(new SequenceType(NumericType.INSTANCE,
 				Cardinality.ZeroOrOne), new SequenceType(NumericType.INSTANCE,
@@ -247,9 +403,13 @@ public class Functions {
 				new SequenceType(NumericType.INSTANCE, Cardinality.ZeroOrOne),
 				new SequenceType(NumericType.INSTANCE, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.INR, Cardinality.One))));
+	}
 
-		// See XQuery Functions and Operators 7.2 Functions to Assemble and
-		// Disassemble Strings
+	/**
+	 * See XQuery Functions and Operators 7.2 Functions to Assemble and
+	 * Disassemble Strings
+	 */
+	private static void codepointFunctions() {
 		predefine(new StringToCodepoints(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "string-to-codepoints"), new Signature(
 				new SequenceType(AtomicType.INR, Cardinality.ZeroOrMany),
@@ -258,9 +418,12 @@ public class Functions {
 				Namespaces.FN_PREFIX, "codepoints-to-string"), new Signature(
 				new SequenceType(AtomicType.STR, Cardinality.One),
 				new SequenceType(AtomicType.INR, Cardinality.ZeroOrMany))));
+	}
 
-		// See XQuery Functions and Operators 7.3 Equality and Comparison of
-		// Strings
+	/**
+	 * See XQuery Functions and Operators 7.3 Equality and Comparison of Strings
+	 */
+	private static void stringComparisons() {
 		predefine(new Compare(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "compare"), new Signature(
 				new SequenceType(AtomicType.INR, Cardinality.ZeroOrOne),
@@ -277,8 +440,12 @@ public class Functions {
 				new SequenceType(AtomicType.BOOL, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 7.4 Functions on String Values
+	/**
+	 * See XQuery Functions and Operators 7.4 Functions on String Values
+	 */
+	private static void stringFunctions() {
 		predefine(new Concat(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"concat"), new Signature(new SequenceType(AtomicType.ANA,
 				Cardinality.One), true, null, new SequenceType(AtomicType.ANA,
@@ -366,9 +533,13 @@ public class Functions {
 				"escape-html-uri"), Encode.Mode.HTML_URI, new Signature(
 				new SequenceType(AtomicType.STR, Cardinality.One),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operator 7.5 Functions Based on Substring
-		// Matching
+	/**
+	 * See XQuery Functions and Operator 7.5 Functions Based on Substring
+	 * Matching
+	 */
+	private static void substringFunctions() {
 		predefine(new SubstringMatch(
 				new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX, "contains"),
 				SubstringMatch.Mode.CONTAINS,
@@ -438,9 +609,13 @@ public class Functions {
 				new SequenceType(AtomicType.STR, Cardinality.One),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 7.6 String Functions that Use
-		// Pattern Matching
+	/**
+	 * See XQuery Functions and Operators 7.6 String Functions that Use Pattern
+	 * Matching
+	 */
+	private static void patternFunctions() {
 		predefine(new RegEx(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"matches"), Regex.Mode.MATCH, new Signature(new SequenceType(
 				AtomicType.BOOL, Cardinality.One), new SequenceType(
@@ -476,8 +651,12 @@ public class Functions {
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne),
 				new SequenceType(AtomicType.STR, Cardinality.One),
 				new SequenceType(AtomicType.STR, Cardinality.One))));
+	}
 
-		// See XQuery Functions and Operators 9.3 Functions on Boolean Values
+	/**
+	 * See XQuery Functions and Operators 9.3 Functions on Boolean Values
+	 */
+	private static void booleanFunctions() {
 		predefine(new BooleanValue(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "true"), true, new Signature(
 				new SequenceType(AtomicType.BOOL, Cardinality.One))));
@@ -488,9 +667,13 @@ public class Functions {
 				Namespaces.FN_PREFIX, "not"), true, new Signature(
 				new SequenceType(AtomicType.BOOL, Cardinality.One),
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany))));
+	}
 
-		// See XQuery Functions and Operators 10.5 Component Extraction
-		// Functions on Durations, Dates and Times
+	/**
+	 * See XQuery Functions and Operators 10.5 Component Extraction Functions on
+	 * Durations, Dates and Times
+	 */
+	private static void componentExtraction() {
 		predefine(new ExtractFromDuration(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "years-from-duration"),
 				ExtractFromDuration.Comp.YEARS,
@@ -630,9 +813,13 @@ public class Functions {
 				new Signature(new SequenceType(AtomicType.DTD,
 						Cardinality.ZeroOrOne), new SequenceType(
 						AtomicType.TIME, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 10.7 Timezone Adjustment Functions
-		// on Dates and Time Values
+	/**
+	 * See XQuery Functions and Operators 10.7 Timezone Adjustment Functions on
+	 * Dates and Time Values
+	 */
+	private static void timezoneAdjustment() {
 		predefine(new AdjustToTimezone(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "adjust-dateTime-to-timezone"),
 				AdjustToTimezone.Source.DATE_TIME,
@@ -675,16 +862,23 @@ public class Functions {
 						Cardinality.ZeroOrOne), new SequenceType(
 						AtomicType.TIME, Cardinality.ZeroOrOne),
 						new SequenceType(AtomicType.DTD, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 11 Functions Related to QNames
+	/**
+	 * See XQuery Functions and Operators 11 Functions Related to QNames
+	 */
+	private static void qnameFunctions() {
 		predefine(new QName(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"QName"), new Signature(new SequenceType(AtomicType.QNM,
 				Cardinality.One), new SequenceType(AtomicType.STR,
 				Cardinality.ZeroOrOne), new SequenceType(AtomicType.STR,
 				Cardinality.One))));
+	}
 
-		// See XQuery Functions and Operators 14 Functions and Operators on
-		// Nodes
+	/**
+	 * See XQuery Functions and Operators 14 Functions and Operators on Nodes
+	 */
+	private static void nodeFunctions() {
 		predefine(new Name(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"name"), Name.Mode.NAME, new Signature(new SequenceType(
 				AtomicType.STR, Cardinality.One), false, AnyNodeType.ANY_NODE)));
@@ -721,9 +915,13 @@ public class Functions {
 		predefine(new Root(FN_ROOT, new Signature(new SequenceType(
 				AnyNodeType.ANY_NODE, Cardinality.ZeroOrOne), new SequenceType(
 				AnyNodeType.ANY_NODE, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 15.1 General Functions and
-		// Operators on Sequences
+	/**
+	 * See XQuery Functions and Operators 15.1 General Functions and Operators
+	 * on Sequences
+	 */
+	private static void sequenceFunctions() {
 		predefine(new BooleanValue(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "boolean"), false, new Signature(
 				new SequenceType(AtomicType.BOOL, Cardinality.One),
@@ -821,9 +1019,13 @@ public class Functions {
 				Namespaces.FN_PREFIX, "unordered"), new Signature(
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany),
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany))));
+	}
 
-		// See XQuery Functions and Operators 15.2 Functions That Test the
-		// Cardinality of Sequences
+	/**
+	 * See XQuery Functions and Operators 15.2 Functions That Test the
+	 * Cardinality of Sequences
+	 */
+	private static void cardinalityFunctions() {
 		predefine(new CardinalityTest(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "zero-or-one"), new Signature(
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrOne),
@@ -839,8 +1041,13 @@ public class Functions {
 				new SequenceType(AnyItemType.ANY, Cardinality.One),
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany)),
 				Cardinality.One));
-		// See XQuery Functions and Operators 15.3 Equals, Union, Intersection
-		// and Except
+	}
+
+	/**
+	 * See XQuery Functions and Operators 15.3 Equals, Union, Intersection and
+	 * Except
+	 */
+	private static void sequenceComparisons() {
 		predefine(new DeepEqual(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "deep-equal"), new Signature(
 				new SequenceType(AtomicType.BOOL, Cardinality.One),
@@ -852,8 +1059,12 @@ public class Functions {
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany),
 				new SequenceType(AnyItemType.ANY, Cardinality.ZeroOrMany),
 				new SequenceType(AtomicType.STR, Cardinality.One))));
+	}
 
-		// See XQuery Functions and Operators 15.4 Aggregate Functions
+	/**
+	 * See XQuery Functions and Operators 15.4 Aggregate Functions
+	 */
+	private static void aggregateFunctions() {
 		predefine(new Count(FN_COUNT, new Signature(new SequenceType(
 				AtomicType.INR, Cardinality.One), new SequenceType(
 				AnyItemType.ANY, Cardinality.ZeroOrMany))));
@@ -889,8 +1100,13 @@ public class Functions {
 				Cardinality.ZeroOrOne), new SequenceType(AtomicType.ANA,
 				Cardinality.ZeroOrMany), new SequenceType(AtomicType.ANA,
 				Cardinality.ZeroOrOne)), false));
-		// See XQuery Functions and Operators 15.5 Functions and Operators that
-		// Generate Sequences
+	}
+
+	/**
+	 * See XQuery Functions and Operators 15.5 Functions and Operators that
+	 * Generate Sequences
+	 */
+	private static void sequenceGenerators() {
 		predefine(new Doc(new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
 				"doc"), true, new Signature(new SequenceType(DocumentType.DOC,
 				Cardinality.ZeroOrOne), new SequenceType(AtomicType.STR,
@@ -906,8 +1122,12 @@ public class Functions {
 				Namespaces.FN_PREFIX, "collection"), new Signature(
 				new SequenceType(DocumentType.DOC, Cardinality.ZeroOrMany),
 				new SequenceType(AtomicType.STR, Cardinality.ZeroOrOne))));
+	}
 
-		// See XQuery Functions and Operators 16 Context Functions
+	/**
+	 * See XQuery Functions and Operators 16 Context Functions
+	 */
+	private static void contextFunctions() {
 		predefine(new CurrentDateTime(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "current-dateTime"), new Signature(
 				new SequenceType(AtomicType.DATI, Cardinality.One))));
@@ -923,7 +1143,13 @@ public class Functions {
 		predefine(new CurrentDateTime(new QNm(Namespaces.FN_NSURI,
 				Namespaces.FN_PREFIX, "default-collation"), new Signature(
 				new SequenceType(AtomicType.STR, Cardinality.One))));
+	}
 
+	/**
+	 * See XQuery Functions and Operators 17.1 Casting from primitive types to
+	 * primitive types
+	 */
+	private static void constructorFunctions() {
 		for (Type type : Type.builtInTypes) {
 			if ((type != Type.ANA) && (type != Type.NOT)) {
 				predefine(new ConstructorFunction(type.getName(),
@@ -943,7 +1169,7 @@ public class Functions {
 				available.add(f);
 			}
 		}
-		Function[] predefFuns = predefined.get(name);
+		Function[] predefFuns = predefined(name);
 		if (predefFuns != null) {
 			for (Function f : predefFuns) {
 				available.add(f);
@@ -998,26 +1224,120 @@ public class Functions {
 	}
 
 	public Map<QNm, Function[]> getPredefinedFunctions() {
-		return Collections.unmodifiableMap(predefined);
+		synchronized (predefined) {
+			while (!libraries.isEmpty()) {
+				load(libraries.values().iterator().next());
+			}
+			return Collections.unmodifiableMap(predefined);
+		}
 	}
 
-	public static void predefine(Function function) {
-		Function[] funs = predefined.get(function.getName());
+	/**
+	 * Registers the names of a library of predefined functions. The library
+	 * itself is not {@link FunctionLibrary#define() defined} before one of
+	 * its names is resolved for the first time.
+	 */
+	public static void predefine(FunctionLibrary library) {
+		synchronized (predefined) {
+			for (QNm name : library.getNames()) {
+				libraries.put(name, library);
+			}
+		}
+	}
 
-		if (funs == null) {
-			funs = new Function[1];
-			predefined.put(function.getName(), funs);
+	private static Function[] predefined(QNm name) {
+		synchronized (predefined) {
+			FunctionLibrary library = libraries.get(name);
+			if (library != null) {
+				load(library);
+			}
+			return predefined.get(name);
+		}
+	}
+
+	private static void load(FunctionLibrary library) {
+		int undefined = 0;
+		Map<QNm, Function[]> previous = new HashMap<QNm, Function[]>();
+		for (QNm name : library.getNames()) {
+			// unregister during define() to avoid loading it recursively
+			libraries.remove(name);
+			Function[] funs = predefined.get(name);
+			if (funs == null) {
+				undefined++;
+			} else {
+				previous.put(name, funs.clone());
+			}
+		}
+		int size = predefined.size();
+		boolean defined = false;
+		try {
+			library.define();
+			defined = true;
+		} finally {
+			if (!defined) {
+				// roll back partial definitions so that the
+				// library can be loaded again on the next lookup
+				for (QNm name : library.getNames()) {
+					Function[] funs = previous.get(name);
+					if (funs != null) {
+						predefined.put(name, funs);
+					} else {
+						predefined.remove(name);
+					}
+					libraries.put(name, library);
+				}
+			}
 		}
+		for (QNm name : library.getNames()) {
+			if (!predefined.containsKey(name)) {
+				throw new IllegalStateException(String.format(
+						"Function library did not define %s", name));
+			}
+		}
+		if (predefined.size() - size != undefined) {
+			throw new IllegalStateException(
+					"Function library defined unannounced functions");
+		}
+	}
 
-		for (int i = 0; i < funs.length; i++) {
-			if (funs[i] == null) {
-				funs[i] = function;
-				return;
+	private static QNm[] fn(String... localNames) {
+		QNm[] names = new QNm[localNames.length];
+		for (int i = 0; i < localNames.length; i++) {
+			names[i] = new QNm(Namespaces.FN_NSURI, Namespaces.FN_PREFIX,
+					localNames[i]);
+		}
+		return names;
+	}
+
+	private static QNm[] constructorNames() {
+		ArrayList<QNm> names = new ArrayList<QNm>();
+		for (Type type : Type.builtInTypes) {
+			if ((type != Type.ANA) && (type != Type.NOT)) {
+				names.add(type.getName());
 			}
 		}
+		return names.toArray(new QNm[names.size()]);
+	}
 
-		funs = Arrays.copyOf(funs, funs.length + 1);
-		funs[funs.length - 1] = function;
-		predefined.put(function.getName(), funs);
+	public static void predefine(Function function) {
+		synchronized (predefined) {
+			Function[] funs = predefined.get(function.getName());
+
+			if (funs == null) {
+				funs = new Function[1];
+				predefined.put(function.getName(), funs);
+			}
+
+			for (int i = 0; i < funs.length; i++) {
+				if (funs[i] == null) {
+					funs[i] = function;
+					return;
+				}
+			}
+
+			funs = Arrays.copyOf(funs, funs.length + 1);
+			funs[funs.length - 1] = function;
+			predefined.put(function.getName(), funs);
+		}
 	}
 }
@@ -82,7 +82,7 @@ public class Variables {
 		} else if (name.equals(Bits.FS_POSITION)) {
 			return dftPos;
 		} else if (name.equals(Bits.FS_LAST)) {
-			return var;
+			return dftSize;
 		}
 		for (Variables v : imports) {
 			// TODO check only public vars!
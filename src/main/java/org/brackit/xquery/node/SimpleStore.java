@@ -27,6 +27,7 @@
  */
 package org.brackit.xquery.node;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -35,12 +36,14 @@ import java.util.HashMap;
 import org.brackit.xquery.node.d2linked.D2NodeFactory;
 import org.brackit.xquery.node.parser.DocumentParser;
 import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.node.snapshot.Snapshot;
 import org.brackit.xquery.util.io.URIHandler;
 import org.brackit.xquery.xdm.Collection;
 import org.brackit.xquery.xdm.DocumentException;
 import org.brackit.xquery.xdm.Node;
 import org.brackit.xquery.xdm.NodeFactory;
 import org.brackit.xquery.xdm.OperationNotSupportedException;
+import org.brackit.xquery.xdm.SnapshotStore;
 import org.brackit.xquery.xdm.Store;
 import org.brackit.xquery.xdm.Stream;
 
@@ -49,7 +52,7 @@ import org.brackit.xquery.xdm.Stream;
  * @author Sebastian Baechle
  * 
  */
-public class SimpleStore implements Store {
+public class SimpleStore implements Store, SnapshotStore {
 	private HashMap<String, Collection<?>> docs = new HashMap<String, Collection<?>>();
 
 	@Override
@@ -108,4 +111,19 @@ public class SimpleStore implements Store {
 	public void makeDir(String path) throws DocumentException {
 		throw new OperationNotSupportedException();
 	}
+
+	@Override
+	public void save(String name, String file) throws DocumentException {
+		Snapshot.write(lookup(name), new File(file));
+	}
+
+	@Override
+	public Collection<?> open(String name, String file)
+			throws DocumentException {
+		Snapshot snapshot = Snapshot.open(new File(file));
+		Collection<?> coll = getNodeFactory().collection(name,
+				snapshot.getDocuments());
+		docs.put(name, coll);
+		return coll;
+	}
 }
@@ -0,0 +1,143 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.brackit.xquery.atomic.QNm;
+
+/**
+ * Process-wide dictionary of element and attribute names. Each expanded name
+ * (namespace URI and local name) is mapped to a stable integer vocID, which
+ * allows name tests to compare ints instead of strings. Furthermore, the
+ * dictionary interns {@link QNm} instances so that nodes with the same name
+ * share a single instance.
+ */
+public final class Vocabulary {
+
+	private static final class Entry {
+		final int vocID;
+		final QNm name;
+
+		Entry(int vocID, QNm name) {
+			this.vocID = vocID;
+			this.name = name;
+		}
+	}
+
+	private static final ConcurrentMap<QNm, Entry> entries = new ConcurrentHashMap<QNm, Entry>();
+
+	private static QNm[] names = new QNm[64];
+
+	private static int size;
+
+	private Vocabulary() {
+	}
+
+	/**
+	 * Returns the vocID of the given name.
+	 */
+	public static int id(QNm name) {
+		return entry(name).vocID;
+	}
+
+	/**
+	 * Returns the vocID of the given name or -1 if the name is not
+	 * registered. In contrast to {@link #id(QNm)}, unknown names are not
+	 * registered.
+	 */
+	public static int lookup(QNm name) {
+		Entry entry = entries.get(name);
+		return (entry != null) ? entry.vocID : -1;
+	}
+
+	/**
+	 * Returns the name with the given vocID.
+	 */
+	public static synchronized QNm name(int vocID) {
+		if ((vocID < 0) || (vocID >= size)) {
+			throw new IllegalArgumentException("Invalid vocID: " + vocID);
+		}
+		return names[vocID];
+	}
+
+	/**
+	 * Returns the shared instance of the given name if it uses the same
+	 * prefix as the first registered instance, and the given name otherwise.
+	 */
+	public static QNm intern(QNm name) {
+		QNm shared = entry(name).name;
+		if (shared == name) {
+			return name;
+		}
+		if (name.getClass() != QNm.class) {
+			// keep typed names
+			return name;
+		}
+		String prefix = name.getPrefix();
+		String sharedPrefix = shared.getPrefix();
+		if ((prefix == null) ? (sharedPrefix == null) : prefix
+				.equals(sharedPrefix)) {
+			return shared;
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the number of registered names.
+	 */
+	public static synchronized int size() {
+		return size;
+	}
+
+	private static Entry entry(QNm name) {
+		Entry entry = entries.get(name);
+		return (entry != null) ? entry : register(name);
+	}
+
+	private static synchronized Entry register(QNm name) {
+		Entry entry = entries.get(name);
+		if (entry != null) {
+			return entry;
+		}
+		if (size == names.length) {
+			QNm[] tmp = new QNm[(size * 3) / 2 + 1];
+			System.arraycopy(names, 0, tmp, 0, size);
+			names = tmp;
+		}
+		if (name.getClass() != QNm.class) {
+			// do not share typed names
+			name = new QNm(name.nsURI, name.prefix, name.localName);
+		}
+		entry = new Entry(size, name);
+		names[size++] = name;
+		entries.put(name, entry);
+		return entry;
+	}
+}
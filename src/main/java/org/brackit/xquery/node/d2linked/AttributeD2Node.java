@@ -30,6 +30,7 @@ package org.brackit.xquery.node.d2linked;
 import org.brackit.xquery.atomic.Atomic;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.node.Vocabulary;
 import org.brackit.xquery.node.parser.SubtreeParser;
 import org.brackit.xquery.xdm.DocumentException;
 import org.brackit.xquery.xdm.Kind;
@@ -43,12 +44,14 @@ import org.brackit.xquery.xdm.OperationNotSupportedException;
  */
 public final class AttributeD2Node extends D2Node {
 	QNm name;
+	int vocID;
 	Una value;
 
 	AttributeD2Node(ElementD2Node parent, int[] division, QNm name, Atomic value)
 			throws DocumentException {
 		super(parent, division);
 		this.name = checkName(name);
+		this.vocID = Vocabulary.id(this.name);
 		this.value = value.asUna();
 	}
 
@@ -81,12 +84,15 @@ public final class AttributeD2Node extends D2Node {
 	@Override
 	public void setName(QNm name) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.name = checkName(name);
+		this.vocID = Vocabulary.id(this.name);
 	}
 
 	@Override
 	public void setValue(Atomic value) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.value = value.asUna();
 	}
 
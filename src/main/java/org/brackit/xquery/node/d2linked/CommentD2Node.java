@@ -79,6 +79,7 @@ public final class CommentD2Node extends D2Node {
 	@Override
 	public void setValue(Atomic value) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.value = checkValue(value);
 	}
 
@@ -73,20 +73,103 @@ public abstract class D2Node extends AbstractNode<D2Node> {
 	 */
 	public static final int NODE_CLASS_ID = 1;
 
+	/**
+	 * Shared state of all nodes of a fragment. Document order within a
+	 * fragment is encoded in pre-order labels, which are (re-)assigned lazily
+	 * in a single traversal when nodes are compared after the fragment was
+	 * modified. Deletions do not invalidate labels because they preserve the
+	 * relative order of the remaining nodes. A separate version counter
+	 * tracks all changes of the fragment's content, including deletions and
+	 * value updates, to invalidate cached string values.
+	 */
+	private static final class Fragment {
+		final int id;
+		int modCount;
+		int version;
+		boolean readOnly;
+		volatile int labeled = -1;
+
+		Fragment(int id) {
+			this.id = id;
+		}
+
+		synchronized void label(D2Node node) {
+			int mod = modCount;
+			if (labeled == mod) {
+				return;
+			}
+			D2Node root = node;
+			while (root.parent != null) {
+				root = root.parent;
+			}
+			int pre = 0;
+			D2Node n = root;
+			while (n != null) {
+				n.pre = pre++;
+				if (n instanceof ElementD2Node) {
+					for (D2Node a = ((ElementD2Node) n).firstAttribute; a != null; a = a.sibling) {
+						a.pre = pre++;
+					}
+				}
+				D2Node next = (n instanceof ParentD2Node) ? ((ParentD2Node) n).firstChild
+						: null;
+				if (next == null) {
+					D2Node c = n;
+					while ((c != root) && (c.sibling == null)) {
+						c = c.parent;
+					}
+					next = (c != root) ? c.sibling : null;
+				}
+				n = next;
+			}
+			labeled = mod;
+		}
+	}
+
 	protected final ParentD2Node parent;
 
 	protected final int[] division;
 
 	protected D2Node sibling;
 
-	protected int localFragmentID = -1;
+	private final Fragment fragment;
+
+	private int pre;
 
 	protected D2Node(ParentD2Node parent, int[] division) {
 		this.parent = parent;
 		this.division = division;
-		this.localFragmentID = (parent == null) ? localFragmentID()
-				: parent.localFragmentID;
-		;
+		if (parent == null) {
+			this.fragment = new Fragment(localFragmentID());
+		} else {
+			this.fragment = ((D2Node) parent).fragment;
+			fragment.modCount++;
+			fragment.version++;
+		}
+	}
+
+	protected final int contentVersion() {
+		return fragment.version;
+	}
+
+	protected final void contentChanged() {
+		fragment.version++;
+	}
+
+	/**
+	 * Rejects all further updates of this node's fragment.
+	 */
+	final void freeze() {
+		fragment.readOnly = true;
+	}
+
+	protected final void checkUpdatable() throws DocumentException {
+		if (fragment.readOnly) {
+			D2NodeCollection coll = getCollection();
+			throw new OperationNotSupportedException(
+					"Documents of collection %s are read-only",
+					(coll != null) ? coll.getName() : null);
+		}
 	}
 
 	private D2Node getRoot() {
@@ -123,41 +206,14 @@ public abstract class D2Node extends AbstractNode<D2Node> {
 		if (node == this) {
 			return 0;
 		}
-		if (localFragmentID != node.localFragmentID) {
-			return localFragmentID < node.localFragmentID ? -1 : 1;
-		}
-		D2Node c = null;
-		D2Node cp = this;
-		while (cp != null) {
-			D2Node lcap = null;
-			D2Node lca = node;
-			while (lca != null) {
-				if (lca == cp) {
-					// found least common ancestor
-					// case 0: node == this is not allowed
-					// case 1: lca is this
-					if (lca == this)
-						return -1;
-					// case 2: lca is node
-					if (lca == node)
-						return 1;
-					// case 3: c and lcap have the same parent
-					Kind kind = c.getKind();
-					Kind nkind = lcap.getKind();
-					if ((kind == Kind.ATTRIBUTE) ^ (nkind == Kind.ATTRIBUTE)) {
-						return (kind == Kind.ATTRIBUTE) ? -1 : 1;
-					}
-					// nodes must be in the same chain -> search
-					// scan from context node to n
-					return compare(c.division, lcap.division);
-				}
-				lcap = lca;
-				lca = lca.parent;
-			}
-			c = cp;
-			cp = cp.parent;
+		Fragment f = fragment;
+		if (f != node.fragment) {
+			return f.id < node.fragment.id ? -1 : 1;
+		}
+		if (f.labeled != f.modCount) {
+			f.label(this);
 		}
-		return -1;
+		return (pre < node.pre) ? -1 : 1;
 	}
 
 	protected final boolean isInSubtreeOf(D2Node n) {
@@ -32,6 +32,7 @@ import java.util.Map;
 import org.brackit.xquery.atomic.Atomic;
 import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.node.AbstractBuilder;
+import org.brackit.xquery.node.Vocabulary;
 import org.brackit.xquery.xdm.DocumentException;
 import org.brackit.xquery.xdm.Kind;
 
@@ -78,6 +79,7 @@ public class D2NodeBuilder extends AbstractBuilder<D2Node> {
 	@Override
 	protected D2Node buildAttribute(D2Node parent, QNm name, Atomic value)
 			throws DocumentException {
+		name = Vocabulary.intern(name);
 		return (parent != null) ? parent.setAttribute(name, value) : first(
 				Kind.ATTRIBUTE, name, value);
 	}
@@ -103,6 +105,7 @@ public class D2NodeBuilder extends AbstractBuilder<D2Node> {
 	@Override
 	protected D2Node buildElement(D2Node parent, QNm name,
 			Map<String, String> nsMappings) throws DocumentException {
+		name = Vocabulary.intern(name);
 		ElementD2Node e;
 		if (parent != null) {
 			e = (ElementD2Node) ((ParentD2Node) parent).insertChild(sibling,
@@ -37,4 +37,11 @@ public class D2NodeCollection extends ArrayCollection<D2Node> {
 	public D2NodeCollection(String name) {
 		super(name);
 	}
+
+	/**
+	 * Rejects all further updates of the given document.
+	 */
+	protected static void freeze(D2Node document) {
+		document.freeze();
+	}
 }
\ No newline at end of file
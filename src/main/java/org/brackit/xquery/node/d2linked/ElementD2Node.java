@@ -32,6 +32,7 @@ import java.util.TreeMap;
 
 import org.brackit.xquery.atomic.Atomic;
 import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.node.Vocabulary;
 import org.brackit.xquery.node.stream.EmptyStream;
 import org.brackit.xquery.node.stream.IteratorStream;
 import org.brackit.xquery.xdm.DocumentException;
@@ -49,17 +50,20 @@ import org.brackit.xquery.xdm.Stream;
 public final class ElementD2Node extends ParentD2Node implements Scope {
 	Map<String, String> nsMappings;
 	QNm name;
+	int vocID;
 	D2Node firstAttribute;
 
 	public ElementD2Node(QNm name) throws DocumentException {
 		super(null, FIRST);
 		this.name = checkName(name);
+		this.vocID = Vocabulary.id(this.name);
 	}
 
 	ElementD2Node(ParentD2Node parent, int[] division, QNm name)
 			throws DocumentException {
 		super(parent, division);
 		this.name = checkName(name);
+		this.vocID = Vocabulary.id(this.name);
 	}
 
 	QNm checkName(QNm name) throws DocumentException {
@@ -108,8 +112,12 @@ public final class ElementD2Node extends ParentD2Node implements Scope {
 
 	@Override
 	public D2Node getAttribute(QNm name) throws DocumentException {
+		int vocID = Vocabulary.lookup(name);
+		if (vocID < 0) {
+			return null;
+		}
 		for (D2Node attribute = firstAttribute; attribute != null; attribute = attribute.sibling) {
-			if (attribute.getName().equals(name)) {
+			if (((AttributeD2Node) attribute).vocID == vocID) {
 				return attribute;
 			}
 		}
@@ -168,9 +176,14 @@ public final class ElementD2Node extends ParentD2Node implements Scope {
 	@Override
 	public boolean deleteAttribute(QNm name)
 			throws OperationNotSupportedException, DocumentException {
+		checkUpdatable();
+		int vocID = Vocabulary.lookup(name);
+		if (vocID < 0) {
+			return false;
+		}
 		D2Node prev = null;
 		for (D2Node attribute = firstAttribute; attribute != null; attribute = attribute.sibling) {
-			if (attribute.getName().equals(name)) {
+			if (((AttributeD2Node) attribute).vocID == vocID) {
 				if (prev != null) {
 					prev.sibling = attribute.sibling;
 				} else {
@@ -198,13 +211,15 @@ public final class ElementD2Node extends ParentD2Node implements Scope {
 	@Override
 	public D2Node setAttribute(QNm name, Atomic value)
 			throws OperationNotSupportedException, DocumentException {
+		checkUpdatable();
 		checkName(name);
 		if (firstAttribute == null) {
 			return (firstAttribute = new AttributeD2Node(this, name, value));
 		} else {
+			int vocID = Vocabulary.lookup(name);
 			D2Node prev = null;
 			for (D2Node attribute = firstAttribute; attribute != null; attribute = attribute.sibling) {
-				if (attribute.getName().equals(name)) {
+				if (((AttributeD2Node) attribute).vocID == vocID) {
 					throw new DocumentException(
 							"Attribute '%s' already exists", name);
 				}
@@ -218,13 +233,17 @@ public final class ElementD2Node extends ParentD2Node implements Scope {
 	@Override
 	public void setName(QNm name) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.name = checkName(name);
+		this.vocID = Vocabulary.id(this.name);
 	}
 
 	@Override
 	public void setValue(Atomic value) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		firstChild = null;
+		contentChanged();
 		append(Kind.TEXT, null, value);
 	}
 
@@ -243,6 +262,7 @@ public final class ElementD2Node extends ParentD2Node implements Scope {
 
 	@Override
 	public void addPrefix(String prefix, String uri) throws DocumentException {
+		checkUpdatable();
 		// TODO checks
 		if (nsMappings == null) {
 			// use tree map because we expect only a few
@@ -93,6 +93,7 @@ public final class PID2Node extends D2Node {
 	@Override
 	public void setName(QNm name) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.target = checkName(name);
 	}
 
@@ -104,6 +105,7 @@ public final class PID2Node extends D2Node {
 	@Override
 	public void setValue(Atomic value) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.value = checkValue(value);
 	}
 
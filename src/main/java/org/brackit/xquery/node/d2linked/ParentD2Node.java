@@ -32,11 +32,13 @@ import org.brackit.xquery.atomic.QNm;
 import org.brackit.xquery.atomic.Una;
 import org.brackit.xquery.node.parser.SubtreeParser;
 import org.brackit.xquery.node.stream.EmptyStream;
+import org.brackit.xquery.xdm.Axis;
 import org.brackit.xquery.xdm.DocumentException;
 import org.brackit.xquery.xdm.Kind;
 import org.brackit.xquery.xdm.Node;
 import org.brackit.xquery.xdm.OperationNotSupportedException;
 import org.brackit.xquery.xdm.Stream;
+import org.brackit.xquery.xdm.type.NodeType;
 
 /**
  * Abstract base for all constructed nodes that may have children
@@ -47,6 +49,10 @@ import org.brackit.xquery.xdm.Stream;
 abstract class ParentD2Node extends D2Node {
 	protected D2Node firstChild;
 
+	// string value cached until the content of the fragment changes
+	private Atomic value;
+	private int valueVersion;
+
 	protected static class SiblingStream implements Stream<D2Node> {
 		D2Node node;
 
@@ -183,6 +189,57 @@ abstract class ParentD2Node extends D2Node {
 		return new FragmentScanner(this);
 	}
 
+	protected static final class VocIDFilter implements Stream<D2Node> {
+		final Stream<D2Node> in;
+		final int vocID;
+
+		VocIDFilter(Stream<D2Node> in, int vocID) {
+			this.in = in;
+			this.vocID = vocID;
+		}
+
+		@Override
+		public void close() {
+			in.close();
+		}
+
+		@Override
+		public D2Node next() throws DocumentException {
+			D2Node n;
+			while ((n = in.next()) != null) {
+				if ((n instanceof ElementD2Node)
+						&& (((ElementD2Node) n).vocID == vocID)) {
+					return n;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public Stream<? extends Node<?>> performStep(Axis axis, NodeType test)
+			throws DocumentException {
+		if ((test.getNodeKind() != Kind.ELEMENT) || (test.getVocID() < 0)
+				|| (test.getType() != null)) {
+			return null;
+		}
+		// element name tests compare vocIDs only
+		if (axis == Axis.CHILD) {
+			return new VocIDFilter(new SiblingStream(firstChild), test
+					.getVocID());
+		}
+		if (axis == Axis.DESCENDANT) {
+			DescendantScanner s = new DescendantScanner(this);
+			s.next(); // consume self
+			return new VocIDFilter(s, test.getVocID());
+		}
+		if (axis == Axis.DESCENDANT_OR_SELF) {
+			return new VocIDFilter(new DescendantScanner(this), test
+					.getVocID());
+		}
+		return null;
+	}
+
 	protected ParentD2Node(ParentD2Node parent, int[] division) {
 		super(parent, division);
 	}
@@ -193,7 +250,27 @@ abstract class ParentD2Node extends D2Node {
 
 	@Override
 	public Atomic getValue() throws DocumentException {
-		StringBuffer buffer = new StringBuffer();
+		int version = contentVersion();
+		Atomic v = value;
+		if ((v != null) && (valueVersion == version)) {
+			return v;
+		}
+		D2Node child = firstChild;
+		if (child == null) {
+			v = Una.EMPTY;
+		} else if ((child.sibling == null) && (child.getKind() == Kind.TEXT)) {
+			// single text child: no need to copy
+			v = child.getValue();
+		} else {
+			v = buildValue();
+		}
+		value = v;
+		valueVersion = version;
+		return v;
+	}
+
+	private Atomic buildValue() throws DocumentException {
+		StringBuilder buffer = new StringBuilder();
 		Stream<D2Node> scanner = new DescendantScanner(this);
 		try {
 			D2Node descendant;
@@ -226,6 +303,7 @@ abstract class ParentD2Node extends D2Node {
 	}
 
 	void deleteChild(D2Node node) throws DocumentException {
+		checkUpdatable();
 		if ((getKind() == Kind.DOCUMENT) && (node.getKind() == Kind.ELEMENT)) {
 			throw new DocumentException("The root element must not be deleted");
 		}
@@ -235,10 +313,12 @@ abstract class ParentD2Node extends D2Node {
 			firstChild = node.sibling;
 		else
 			prev.sibling = node.sibling;
+		contentChanged();
 	}
 
 	D2Node insertChild(D2Node sibling, Kind kind, QNm name, Atomic value,
 			boolean right) throws DocumentException {
+		checkUpdatable();
 
 		if ((getKind() == Kind.DOCUMENT) && (kind == Kind.ELEMENT)) {
 			for (D2Node c = firstChild; c != null; c = c.sibling) {
@@ -304,12 +384,15 @@ abstract class ParentD2Node extends D2Node {
 		c.sibling = ns;
 		if (ps != null) {
 			ps.sibling = c;
+		} else {
+			firstChild = c;
 		}
 		return c;
 	}
 
 	private D2Node replaceChild(D2Node sibling, Kind kind, QNm name,
 			Atomic value) throws DocumentException {
+		checkUpdatable();
 
 		if ((getKind() == Kind.DOCUMENT) && (sibling != null)
 				&& (sibling.getKind() == Kind.ELEMENT)
@@ -69,7 +69,9 @@ public final class TextD2Node extends D2Node {
 	@Override
 	public void setValue(Atomic value) throws OperationNotSupportedException,
 			DocumentException {
+		checkUpdatable();
 		this.value = value.asUna();
+		contentChanged();
 	}
 
 	@Override
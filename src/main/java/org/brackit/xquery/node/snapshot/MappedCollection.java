@@ -0,0 +1,209 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node.snapshot;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+import org.brackit.xquery.node.d2linked.D2Node;
+import org.brackit.xquery.node.d2linked.D2NodeBuilder;
+import org.brackit.xquery.node.d2linked.D2NodeCollection;
+import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.node.stream.AtomStream;
+import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.OperationNotSupportedException;
+import org.brackit.xquery.xdm.Stream;
+
+/**
+ * <p>
+ * Collection backed by a memory-mapped {@link Snapshot} file. Documents are
+ * built on first access and only softly referenced afterwards, i.e., the
+ * garbage collector may evict them under memory pressure. Every node refers
+ * to its parent, so a document cannot be evicted as long as a query holds any
+ * of its nodes, and it keeps its node identities. An evicted document is
+ * rebuilt from the mapping on its next access.
+ * </p>
+ * <p>
+ * Loaded documents are read-only because they could not be restored after an
+ * eviction otherwise. New documents are appended to the snapshot file.
+ * Document IDs are the positions of the documents in the snapshot, which do
+ * not change when other documents are removed.
+ * </p>
+ */
+public class MappedCollection extends D2NodeCollection {
+
+	private final MappedStore store;
+
+	private final File file;
+
+	private Snapshot snapshot;
+
+	private Reference<D2Node>[] cache;
+
+	private int count;
+
+	MappedCollection(MappedStore store, String name, File file)
+			throws DocumentException {
+		super(name);
+		this.store = store;
+		this.file = file;
+		open(Snapshot.open(file));
+		for (int i = 0; i < cache.length; i++) {
+			if (!snapshot.isRemoved(i)) {
+				count++;
+			}
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void open(Snapshot snapshot) {
+		Reference<D2Node>[] tmp = new Reference[snapshot.getDocumentCount()];
+		if (cache != null) {
+			System.arraycopy(cache, 0, tmp, 0, Math.min(cache.length,
+					tmp.length));
+		}
+		this.snapshot = snapshot;
+		this.cache = tmp;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public synchronized int getDocumentCount() {
+		return count;
+	}
+
+	/**
+	 * Drops all loaded documents from memory which are not referenced
+	 * elsewhere.
+	 */
+	public synchronized void evict() {
+		for (int i = 0; i < cache.length; i++) {
+			D2Node doc = (cache[i] != null) ? cache[i].get() : null;
+			// documents in use stay reachable until they are released
+			cache[i] = (doc != null) ? new WeakReference<D2Node>(doc) : null;
+		}
+	}
+
+	synchronized D2Node load(int pos) throws DocumentException {
+		Reference<D2Node> ref = cache[pos];
+		D2Node doc = (ref != null) ? ref.get() : null;
+		if (doc == null) {
+			SubtreeParser parser = snapshot.getDocument(pos);
+			if (parser == null) {
+				return null;
+			}
+			D2NodeBuilder builder = new D2NodeBuilder(this);
+			parser.parse(builder);
+			doc = builder.root();
+			freeze(doc);
+			cache[pos] = new SoftReference<D2Node>(doc);
+		} else if (!(ref instanceof SoftReference<?>)) {
+			// evicted while in use
+			cache[pos] = new SoftReference<D2Node>(doc);
+		}
+		return doc;
+	}
+
+	@Override
+	public D2Node getDocument() throws DocumentException {
+		Stream<? extends D2Node> docs = getDocuments();
+		try {
+			D2Node doc = docs.next();
+			if ((doc != null) && (docs.next() == null)) {
+				return doc;
+			}
+		} finally {
+			docs.close();
+		}
+		throw new DocumentException("Illegal access to non-singular collection");
+	}
+
+	@Override
+	public Stream<? extends D2Node> getDocuments() throws DocumentException {
+		final int count;
+		synchronized (this) {
+			count = cache.length;
+		}
+		return new Stream<D2Node>() {
+			int pos;
+
+			@Override
+			public D2Node next() throws DocumentException {
+				while (pos < count) {
+					D2Node doc = load(pos++);
+					if (doc != null) {
+						return doc;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public void close() {
+				pos = count;
+			}
+		};
+	}
+
+	@Override
+	public synchronized D2Node add(SubtreeParser parser)
+			throws OperationNotSupportedException, DocumentException {
+		open(snapshot.append(new AtomStream<SubtreeParser>(parser)));
+		count++;
+		return load(cache.length - 1);
+	}
+
+	@Override
+	public void add(Node<? super D2Node> doc) {
+		// documents are registered while they are built;
+		// they are tracked by their position in the snapshot
+	}
+
+	@Override
+	public void delete() throws DocumentException {
+		store.drop(name);
+	}
+
+	@Override
+	public synchronized void remove(long documentID)
+			throws OperationNotSupportedException, DocumentException {
+		if ((documentID < 0) || (documentID >= cache.length)
+				|| (snapshot.isRemoved((int) documentID))) {
+			throw new DocumentException("Document %s not found in %s",
+					documentID, name);
+		}
+		snapshot.remove((int) documentID);
+		cache[(int) documentID] = null;
+		count--;
+	}
+}
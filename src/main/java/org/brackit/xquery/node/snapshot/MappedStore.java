@@ -0,0 +1,231 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node.snapshot;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.brackit.xquery.node.d2linked.D2NodeFactory;
+import org.brackit.xquery.node.parser.DocumentParser;
+import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.node.stream.AtomStream;
+import org.brackit.xquery.node.stream.EmptyStream;
+import org.brackit.xquery.util.io.URIHandler;
+import org.brackit.xquery.xdm.Collection;
+import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.SnapshotStore;
+import org.brackit.xquery.xdm.Store;
+import org.brackit.xquery.xdm.Stream;
+
+/**
+ * <p>
+ * Persistent {@link Store} which keeps each collection as {@link Snapshot}
+ * file below a root directory. Collection names are paths relative to the
+ * root; directories are created with {@link #makeDir(String)}.
+ * </p>
+ * <p>
+ * Collections are memory-mapped when they are looked up for the first time.
+ * Their documents are paged in on first access and may be evicted under
+ * memory pressure (see {@link MappedCollection}). Documents which are not
+ * stored in this store, e.g., resolved by URI, are held in memory only.
+ * </p>
+ */
+public class MappedStore implements Store, SnapshotStore {
+
+	public static final String SUFFIX = ".snapshot";
+
+	private final File root;
+
+	private final Map<String, MappedCollection> collections = new HashMap<String, MappedCollection>();
+
+	private final Map<String, Collection<?>> transientDocs = new HashMap<String, Collection<?>>();
+
+	public MappedStore(File root) throws DocumentException {
+		if ((!root.isDirectory()) && (!root.mkdirs())) {
+			throw new DocumentException("Cannot create store directory %s",
+					root);
+		}
+		this.root = root;
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	@Override
+	public synchronized Collection<?> lookup(String name)
+			throws DocumentException {
+		MappedCollection coll = collections.get(name);
+		if (coll != null) {
+			return coll;
+		}
+		File file = file(name, false);
+		if ((file != null) && (file.isFile())) {
+			coll = new MappedCollection(this, name, file);
+			collections.put(name, coll);
+			return coll;
+		}
+		Collection<?> doc = transientDocs.get(name);
+		if (doc != null) {
+			return doc;
+		}
+		try {
+			InputStream in = URIHandler.getInputStream(URI.create(name));
+			try {
+				Node<?> n = new D2NodeFactory().build(new DocumentParser(in));
+				doc = n.getCollection();
+			} finally {
+				in.close();
+			}
+			transientDocs.put(name, doc);
+			return doc;
+		} catch (Exception e) {
+			throw new DocumentException(e, "Collection %s not found", name);
+		}
+	}
+
+	@Override
+	public Collection<?> create(String name) throws DocumentException {
+		return create(name, new EmptyStream<SubtreeParser>());
+	}
+
+	@Override
+	public Collection<?> create(String name, SubtreeParser parser)
+			throws DocumentException {
+		return create(name, new AtomStream<SubtreeParser>(parser));
+	}
+
+	@Override
+	public synchronized Collection<?> create(String name,
+			Stream<SubtreeParser> parsers) throws DocumentException {
+		File file = file(name, true);
+		File dir = file.getParentFile();
+		if (!dir.isDirectory()) {
+			parsers.close();
+			throw new DocumentException("Directory %s does not exist",
+					dirName(name));
+		}
+		write(parsers, file);
+		MappedCollection coll = new MappedCollection(this, name, file);
+		collections.put(name, coll);
+		return coll;
+	}
+
+	@Override
+	public synchronized void drop(String name) throws DocumentException {
+		collections.remove(name);
+		File file = file(name, false);
+		if ((file == null) || (!file.isFile())) {
+			if (transientDocs.remove(name) == null) {
+				throw new DocumentException("Collection %s not found", name);
+			}
+			return;
+		}
+		if (!file.delete()) {
+			throw new DocumentException("Could not delete collection %s",
+					name);
+		}
+	}
+
+	@Override
+	public synchronized void makeDir(String path) throws DocumentException {
+		File dir = new File(root, checkPath(path));
+		if ((!dir.isDirectory()) && (!dir.mkdirs())) {
+			throw new DocumentException("Could not create directory %s", path);
+		}
+	}
+
+	@Override
+	public void save(String name, String file) throws DocumentException {
+		Snapshot.write(lookup(name), new File(file));
+	}
+
+	@Override
+	public synchronized Collection<?> open(String name, String file)
+			throws DocumentException {
+		// validate the snapshot before it is copied
+		Snapshot snapshot = Snapshot.open(new File(file));
+		return create(name, snapshot.getDocuments());
+	}
+
+	/**
+	 * Writes a snapshot atomically by replacing the target file with a
+	 * completely written temporary file.
+	 */
+	synchronized void write(Stream<SubtreeParser> parsers, File file)
+			throws DocumentException {
+		File tmp = new File(file.getPath() + ".tmp");
+		Snapshot.write(parsers, tmp);
+		if ((!tmp.renameTo(file))
+				&& ((!file.delete()) || (!tmp.renameTo(file)))) {
+			tmp.delete();
+			throw new DocumentException("Could not replace %s", file);
+		}
+	}
+
+	private File file(String name, boolean check) throws DocumentException {
+		String path;
+		try {
+			path = checkPath(name);
+		} catch (DocumentException e) {
+			if (check) {
+				throw e;
+			}
+			return null;
+		}
+		return new File(root, path + SUFFIX);
+	}
+
+	private static String checkPath(String name) throws DocumentException {
+		String path = name;
+		while (path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		if ((path.length() == 0) || (path.indexOf(':') >= 0)
+				|| (path.indexOf('\\') >= 0)) {
+			throw new DocumentException("Invalid collection name: %s", name);
+		}
+		for (String segment : path.split("/")) {
+			if ((segment.length() == 0) || (segment.equals("."))
+					|| (segment.equals(".."))) {
+				throw new DocumentException("Invalid collection name: %s",
+						name);
+			}
+		}
+		return path;
+	}
+
+	private static String dirName(String name) {
+		int pos = name.lastIndexOf('/');
+		return (pos > 0) ? name.substring(0, pos) : "/";
+	}
+}
@@ -0,0 +1,907 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.node.Vocabulary;
+import org.brackit.xquery.node.parser.DefaultHandler;
+import org.brackit.xquery.node.parser.SubtreeHandler;
+import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.util.Cfg;
+import org.brackit.xquery.xdm.Collection;
+import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.Stream;
+
+/**
+ * <p>
+ * Compact binary snapshot of the documents of a collection. A snapshot is
+ * written in a single pass through a {@link FileChannel} and read through a
+ * memory mapping, which avoids the costly XML tokenization when an in-memory
+ * collection is rebuilt.
+ * </p>
+ * <p>
+ * The file consists of one or more segments. The writer starts a new segment
+ * when the current one exceeds {@link #SEGMENT_SIZE_CFG} bytes, and further
+ * documents are appended as new segment without rewriting the existing ones.
+ * Each segment consists of
+ * a fixed-size header, the node records of its documents in pre-order, a name
+ * dictionary, a text heap, and a table with the offsets of the documents'
+ * first records relative to the start of the segment:
+ * </p>
+ * 
+ * <pre>
+ * header:    magic, version, names offset, heap offset, documents offset,
+ *            root count
+ * records:   DOCUMENT                      ... END
+ *            ELEMENT nameID #mappings (prefix uri)* ... END
+ *            ATTRIBUTE nameID value
+ *            TEXT value | COMMENT value | PI nameID value
+ * names:     count (namespaceURI prefix localName)*
+ * heap:      UTF-8 encoded strings
+ * documents: record offset*
+ * </pre>
+ * <p>
+ * Strings are stored as references (offset, length) into the text heap.
+ * Removed documents are marked with a negative record offset. A segment is
+ * limited to 2GB because it is mapped as one buffer; the size of the file is
+ * not limited.
+ * </p>
+ */
+public final class Snapshot {
+
+	public static final String SEGMENT_SIZE_CFG = "org.brackit.xquery.snapshot.segmentSize";
+
+	static int SEGMENT_SIZE = Cfg.asInt(SEGMENT_SIZE_CFG, 1 << 30);
+
+	private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+	private static final int MAGIC = 0x42534e50;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 40;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte END = 0;
+
+	private static final byte DOCUMENT = 1;
+
+	private static final byte ELEMENT = 2;
+
+	private static final byte ATTRIBUTE = 3;
+
+	private static final byte TEXT = 4;
+
+	private static final byte COMMENT = 5;
+
+	private static final byte PI = 6;
+
+	private final File file;
+
+	private final Segment[] segments;
+
+	private final int[] firstDocument;
+
+	private final long size;
+
+	private Snapshot(File file, Segment[] segments, long size) {
+		this.file = file;
+		this.segments = segments;
+		this.size = size;
+		this.firstDocument = new int[segments.length + 1];
+		for (int i = 0; i < segments.length; i++) {
+			firstDocument[i + 1] = firstDocument[i]
+					+ segments[i].documents.length;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of all documents of the given collection.
+	 */
+	public static void write(Collection<?> coll, File file)
+			throws DocumentException {
+		Writer writer = null;
+		boolean success = false;
+		try {
+			writer = new Writer(file, 0);
+			Stream<? extends Node<?>> docs = coll.getDocuments();
+			try {
+				Node<?> doc;
+				while ((doc = docs.next()) != null) {
+					doc.parse(writer);
+				}
+			} finally {
+				docs.close();
+			}
+			writer.finish();
+			success = true;
+		} catch (IOException e) {
+			throw new DocumentException(e, "Error writing snapshot %s", file);
+		} finally {
+			if (writer != null) {
+				writer.close(success);
+			}
+		}
+	}
+
+	/**
+	 * Writes a snapshot of all documents delivered by the given parsers.
+	 */
+	public static void write(Stream<SubtreeParser> parsers, File file)
+			throws DocumentException {
+		write(parsers, file, 0);
+	}
+
+	private static void write(Stream<SubtreeParser> parsers, File file,
+			long base) throws DocumentException {
+		Writer writer = null;
+		boolean success = false;
+		try {
+			writer = new Writer(file, base);
+			try {
+				SubtreeParser parser;
+				while ((parser = parsers.next()) != null) {
+					parser.parse(writer);
+				}
+			} finally {
+				parsers.close();
+			}
+			writer.finish();
+			success = true;
+		} catch (IOException e) {
+			throw new DocumentException(e, "Error writing snapshot %s", file);
+		} finally {
+			if (writer != null) {
+				writer.close(success);
+			}
+		}
+	}
+
+	/**
+	 * Maps the given snapshot file into memory.
+	 */
+	public static Snapshot open(File file) throws DocumentException {
+		return map(file, new Segment[0], 0);
+	}
+
+	/**
+	 * Appends the documents delivered by the given parsers as new segment to
+	 * the snapshot file and returns the extended snapshot. Only the new
+	 * segment is written and mapped; the mappings of previous segments are
+	 * merged like the digits of a binary counter to keep their number
+	 * logarithmic, as long as a mapping does not exceed 2GB.
+	 */
+	public Snapshot append(Stream<SubtreeParser> parsers)
+			throws DocumentException {
+		write(parsers, file, size);
+		long end = file.length();
+		int start = segments.length;
+		int count = 1;
+		while (start > 0) {
+			int prev = start - 1;
+			while (segments[prev].base != 0) {
+				prev--;
+			}
+			if ((start - prev > count)
+					|| (end - segments[prev].position > MAX_SEGMENT_SIZE)) {
+				break;
+			}
+			count += start - prev;
+			start = prev;
+		}
+		long from = (start < segments.length) ? segments[start].position
+				: size;
+		return map(file, segments, from);
+	}
+
+	/**
+	 * Marks the document at the given position as removed. The positions of
+	 * all other documents remain unchanged.
+	 */
+	public void remove(int position) throws DocumentException {
+		int s = segment(position);
+		Segment segment = segments[s];
+		int i = position - firstDocument[s];
+		if (segment.documents[i] < 0) {
+			return;
+		}
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(segment.position + segment.docsOffset + 8L * i);
+				raf.writeLong(-1);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new DocumentException(e, "Error writing snapshot %s", file);
+		}
+		segment.documents[i] = -1;
+	}
+
+	private static Snapshot map(File file, Segment[] known, long from)
+			throws DocumentException {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel ch = raf.getChannel();
+				long size = ch.size();
+				if (size < HEADER_SIZE) {
+					throw new DocumentException("%s is not a snapshot file",
+							file);
+				}
+				List<Segment> segments = new ArrayList<Segment>();
+				int i = 0;
+				while ((i < known.length) && (known[i].position < from)) {
+					segments.add(known[i++]);
+				}
+				long pos = from;
+				while (pos < size) {
+					// map as many whole segments as fit into one buffer
+					long start = pos;
+					List<Long> sizes = new ArrayList<Long>();
+					while (pos < size) {
+						long segmentSize = (i + sizes.size() < known.length) ? known[i
+								+ sizes.size()].size
+								: segmentSize(file, raf, pos, size);
+						if ((!sizes.isEmpty())
+								&& (pos + segmentSize - start > MAX_SEGMENT_SIZE)) {
+							break;
+						}
+						sizes.add(segmentSize);
+						pos += segmentSize;
+					}
+					// the mapping remains valid after the file is closed
+					MappedByteBuffer buffer = ch.map(
+							FileChannel.MapMode.READ_ONLY, start, pos - start);
+					int base = 0;
+					for (long segmentSize : sizes) {
+						Segment segment = (i < known.length) ? known[i++]
+								.rebase(buffer, base) : read(file, buffer,
+								base, start + base);
+						segments.add(segment);
+						base += segmentSize;
+					}
+				}
+				return new Snapshot(file, segments
+						.toArray(new Segment[segments.size()]), size);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new DocumentException(e, "Error opening snapshot %s", file);
+		}
+	}
+
+	/**
+	 * Reads the size of the segment at the given position from its header.
+	 */
+	private static long segmentSize(File file, RandomAccessFile raf,
+			long position, long size) throws IOException, DocumentException {
+		if (size - position < HEADER_SIZE) {
+			throw new DocumentException("%s is not a snapshot file", file);
+		}
+		raf.seek(position);
+		if (raf.readInt() != MAGIC) {
+			throw new DocumentException("%s is not a snapshot file", file);
+		}
+		int version = raf.readInt();
+		if (version != VERSION) {
+			throw new DocumentException(
+					"Unsupported version %s of snapshot file %s", version, file);
+		}
+		raf.skipBytes(16);
+		long docsOffset = raf.readLong();
+		int docCount = raf.readInt();
+		long segmentSize = docsOffset + 8L * docCount;
+		if ((docsOffset < HEADER_SIZE) || (docCount < 0)
+				|| (segmentSize > MAX_SEGMENT_SIZE)
+				|| (segmentSize > size - position)) {
+			throw new DocumentException("Corrupt snapshot %s", file);
+		}
+		return segmentSize;
+	}
+
+	private static Segment read(File file, ByteBuffer buffer, int base,
+			long position) throws DocumentException {
+		if ((buffer.capacity() - base < HEADER_SIZE)
+				|| (buffer.getInt(base) != MAGIC)) {
+			throw new DocumentException("%s is not a snapshot file", file);
+		}
+		if (buffer.getInt(base + 4) != VERSION) {
+			throw new DocumentException(
+					"Unsupported version %s of snapshot file %s", buffer
+							.getInt(base + 4), file);
+		}
+		int namesOffset = (int) buffer.getLong(base + 8);
+		int heapOffset = (int) buffer.getLong(base + 16);
+		int docsOffset = (int) buffer.getLong(base + 24);
+		int docCount = buffer.getInt(base + 32);
+		if ((docsOffset < HEADER_SIZE) || (docCount < 0)
+				|| (buffer.capacity() - base - docsOffset < 8L * docCount)) {
+			throw new DocumentException("Corrupt snapshot %s", file);
+		}
+
+		ByteBuffer b = buffer.duplicate();
+		b.position(base + namesOffset);
+		QNm[] names = new QNm[b.getInt()];
+		for (int i = 0; i < names.length; i++) {
+			String nsURI = string(buffer, base + heapOffset, b);
+			String prefix = string(buffer, base + heapOffset, b);
+			String localName = string(buffer, base + heapOffset, b);
+			names[i] = Vocabulary.intern(new QNm(nsURI, prefix, localName));
+		}
+		b.position(base + docsOffset);
+		int[] documents = new int[docCount];
+		for (int i = 0; i < docCount; i++) {
+			documents[i] = (int) b.getLong();
+		}
+		return new Segment(buffer, base, position, names, heapOffset,
+				docsOffset, documents);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of document positions including removed documents.
+	 */
+	public int getDocumentCount() {
+		return firstDocument[segments.length];
+	}
+
+	/**
+	 * Checks if the document at the given position was removed.
+	 */
+	public boolean isRemoved(int position) {
+		int s = segment(position);
+		return (segments[s].documents[position - firstDocument[s]] < 0);
+	}
+
+	/**
+	 * Returns a parser for the document at the given position or
+	 * <code>null</code> if the document was removed.
+	 */
+	public SubtreeParser getDocument(int position) {
+		int s = segment(position);
+		int offset = segments[s].documents[position - firstDocument[s]];
+		return (offset >= 0) ? new RecordParser(segments[s], offset) : null;
+	}
+
+	/**
+	 * Returns parsers for all documents of this snapshot which were not
+	 * removed.
+	 */
+	public Stream<SubtreeParser> getDocuments() {
+		final int count = getDocumentCount();
+		return new Stream<SubtreeParser>() {
+			int pos;
+
+			@Override
+			public SubtreeParser next() throws DocumentException {
+				while (pos < count) {
+					SubtreeParser parser = getDocument(pos++);
+					if (parser != null) {
+						return parser;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public void close() {
+				pos = count;
+			}
+		};
+	}
+
+	private int segment(int position) {
+		if ((position < 0) || (position >= getDocumentCount())) {
+			throw new IndexOutOfBoundsException(Integer.toString(position));
+		}
+		int s = Arrays.binarySearch(firstDocument, position);
+		if (s < 0) {
+			return -s - 2;
+		}
+		// skip empty segments
+		while (firstDocument[s + 1] == position) {
+			s++;
+		}
+		return s;
+	}
+
+	private static String string(ByteBuffer buffer, int heapOffset,
+			ByteBuffer b) {
+		int offset = (int) b.getLong();
+		int length = b.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer heap = buffer.duplicate();
+		heap.position(heapOffset + offset);
+		heap.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * A self-contained part of a snapshot file as written in one pass. All
+	 * offsets are relative to the beginning of the segment.
+	 */
+	private static final class Segment {
+		final ByteBuffer buffer;
+		final int base;
+		final long position;
+		final QNm[] names;
+		final int heapOffset;
+		final int docsOffset;
+		final int[] documents;
+		final int size;
+
+		Segment(ByteBuffer buffer, int base, long position, QNm[] names,
+				int heapOffset, int docsOffset, int[] documents) {
+			this.buffer = buffer;
+			this.base = base;
+			this.position = position;
+			this.names = names;
+			this.heapOffset = heapOffset;
+			this.docsOffset = docsOffset;
+			this.documents = documents;
+			this.size = docsOffset + 8 * documents.length;
+		}
+
+		Segment rebase(ByteBuffer buffer, int base) {
+			return new Segment(buffer, base, position, names, heapOffset,
+					docsOffset, documents);
+		}
+	}
+
+	private class RecordParser implements SubtreeParser {
+		final Segment segment;
+		final int offset;
+
+		RecordParser(Segment segment, int offset) {
+			this.segment = segment;
+			this.offset = offset;
+		}
+
+		@Override
+		public void parse(SubtreeHandler handler) throws DocumentException {
+			try {
+				handler.begin();
+				handler.beginFragment();
+				traverse(handler);
+				handler.endFragment();
+				handler.end();
+			} catch (DocumentException e) {
+				handler.fail();
+				throw e;
+			} catch (RuntimeException e) {
+				handler.fail();
+				throw new DocumentException(e, "Corrupt snapshot %s", file);
+			}
+		}
+
+		private void traverse(SubtreeHandler handler)
+				throws DocumentException {
+			ByteBuffer b = segment.buffer.duplicate();
+			b.position(segment.base + offset);
+			// open elements and documents with their namespace mappings
+			ArrayDeque<QNm> open = new ArrayDeque<QNm>();
+			ArrayDeque<String[]> mappings = new ArrayDeque<String[]>();
+			QNm documentMarker = new QNm("");
+			do {
+				byte kind = b.get();
+				switch (kind) {
+				case DOCUMENT:
+					handler.startDocument();
+					open.push(documentMarker);
+					mappings.push(new String[0]);
+					break;
+				case ELEMENT:
+					QNm name = segment.names[b.getInt()];
+					String[] prefixes = new String[b.getInt()];
+					for (int i = 0; i < prefixes.length; i++) {
+						prefixes[i] = string(b);
+						handler.startMapping(prefixes[i], string(b));
+					}
+					handler.startElement(name);
+					open.push(name);
+					mappings.push(prefixes);
+					break;
+				case ATTRIBUTE:
+					handler.attribute(segment.names[b.getInt()], new Una(string(b)));
+					break;
+				case TEXT:
+					handler.text(new Una(string(b)));
+					break;
+				case COMMENT:
+					handler.comment(new Str(string(b)));
+					break;
+				case PI:
+					handler.processingInstruction(segment.names[b.getInt()], new Str(
+							string(b)));
+					break;
+				case END:
+					QNm closed = open.pop();
+					String[] closedPrefixes = mappings.pop();
+					if (closed == documentMarker) {
+						handler.endDocument();
+					} else {
+						handler.endElement(closed);
+						for (String prefix : closedPrefixes) {
+							handler.endMapping(prefix);
+						}
+					}
+					break;
+				default:
+					throw new DocumentException(
+							"Corrupt snapshot %s: illegal record type %s",
+							file, kind);
+				}
+			} while (!open.isEmpty());
+		}
+
+		private String string(ByteBuffer b) {
+			return Snapshot.string(segment.buffer, segment.base
+					+ segment.heapOffset, b);
+		}
+	}
+
+	private static final class NameKey {
+		final String nsURI;
+		final String prefix;
+		final String localName;
+
+		NameKey(QNm name) {
+			this.nsURI = name.getNamespaceURI();
+			this.prefix = name.getPrefix();
+			this.localName = name.getLocalName();
+		}
+
+		@Override
+		public int hashCode() {
+			return localName.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NameKey)) {
+				return false;
+			}
+			NameKey k = (NameKey) obj;
+			return ((localName.equals(k.localName))
+					&& (nsURI.equals(k.nsURI)) && ((prefix == null) ? (k.prefix == null)
+					: prefix.equals(k.prefix)));
+		}
+	}
+
+	private static class Writer extends DefaultHandler {
+		final File file;
+		final long start;
+		final RandomAccessFile raf;
+		final FileChannel out;
+		final ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+		final File heapFile;
+		final RandomAccessFile heapRaf;
+		final FileChannel heap;
+		final ByteBuffer heapBuf = ByteBuffer.allocate(64 * 1024);
+		final Map<NameKey, Integer> nameIDs = new HashMap<NameKey, Integer>();
+		final List<QNm> names = new ArrayList<QNm>();
+		final List<Long> documents = new ArrayList<Long>();
+		final List<String> pendingMappings = new ArrayList<String>();
+		long base;
+		long heapSize;
+		int depth;
+
+		Writer(File file, long start) throws IOException {
+			this.file = file;
+			this.start = start;
+			this.base = start;
+			this.raf = new RandomAccessFile(file, "rw");
+			raf.setLength(start);
+			this.out = raf.getChannel();
+			out.position(base + HEADER_SIZE);
+			this.heapFile = File.createTempFile("snapshot", ".heap");
+			this.heapRaf = new RandomAccessFile(heapFile, "rw");
+			this.heap = heapRaf.getChannel();
+		}
+
+		/**
+		 * Completes the current segment and starts a new one behind it.
+		 */
+		private void nextSegment() throws IOException {
+			finish();
+			base = out.position();
+			out.position(base + HEADER_SIZE);
+			heap.truncate(0);
+			heapSize = 0;
+			nameIDs.clear();
+			names.clear();
+			documents.clear();
+		}
+
+		void finish() throws IOException {
+			// name dictionary
+			flush();
+			long namesOffset = out.position();
+			ensure(4);
+			buf.putInt(names.size());
+			for (QNm name : names) {
+				ensure(36);
+				string(name.getNamespaceURI());
+				string(name.getPrefix());
+				string(name.getLocalName());
+			}
+			flush();
+
+			// text heap
+			long heapOffset = out.position();
+			flushHeap();
+			long pos = 0;
+			while (pos < heapSize) {
+				pos += heap.transferTo(pos, heapSize - pos, out);
+			}
+			out.position(heapOffset + heapSize);
+
+			// document table
+			long docsOffset = out.position();
+			for (Long doc : documents) {
+				ensure(8);
+				buf.putLong(doc - base);
+			}
+			flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(namesOffset - base);
+			header.putLong(heapOffset - base);
+			header.putLong(docsOffset - base);
+			header.putInt(documents.size());
+			header.clear();
+			while (header.hasRemaining()) {
+				out.write(header, base + header.position());
+			}
+			out.force(false);
+		}
+
+		void close(boolean success) {
+			try {
+				heapRaf.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			heapFile.delete();
+			try {
+				if ((!success) && (start > 0)) {
+					// discard the incomplete segments
+					raf.setLength(start);
+				}
+				raf.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			if ((!success) && (start == 0)) {
+				file.delete();
+			}
+		}
+
+		private void flush() throws IOException {
+			checkSize(0);
+			buf.flip();
+			while (buf.hasRemaining()) {
+				out.write(buf);
+			}
+			buf.clear();
+		}
+
+		private void ensure(int size) throws IOException {
+			if (buf.remaining() < size) {
+				flush();
+			}
+		}
+
+		private void string(String s) throws IOException {
+			if (s == null) {
+				buf.putLong(0);
+				buf.putInt(-1);
+				return;
+			}
+			byte[] bytes = s.getBytes(UTF8);
+			checkSize(bytes.length);
+			if (heapBuf.remaining() < bytes.length) {
+				flushHeap();
+			}
+			if (bytes.length > heapBuf.capacity()) {
+				ByteBuffer large = ByteBuffer.wrap(bytes);
+				while (large.hasRemaining()) {
+					heap.write(large);
+				}
+			} else {
+				heapBuf.put(bytes);
+			}
+			buf.putLong(heapSize);
+			buf.putInt(bytes.length);
+			heapSize += bytes.length;
+		}
+
+		/**
+		 * Returns the size of the current segment including the pending text
+		 * heap and document table.
+		 */
+		private long segmentSize(int pendingHeap) throws IOException {
+			return out.position() - base + buf.position() + heapSize
+					+ pendingHeap + 8L * documents.size();
+		}
+
+		/**
+		 * Fails as soon as the current segment would exceed the mappable 2GB.
+		 */
+		private void checkSize(int pendingHeap) throws IOException {
+			if (segmentSize(pendingHeap) > MAX_SEGMENT_SIZE) {
+				throw new IOException("Snapshot segment exceeds the maximum size");
+			}
+		}
+
+		private void flushHeap() throws IOException {
+			heapBuf.flip();
+			while (heapBuf.hasRemaining()) {
+				heap.write(heapBuf);
+			}
+			heapBuf.clear();
+		}
+
+		private int nameID(QNm name) {
+			NameKey key = new NameKey(name);
+			Integer id = nameIDs.get(key);
+			if (id == null) {
+				id = names.size();
+				names.add(name);
+				nameIDs.put(key, id);
+			}
+			return id;
+		}
+
+		private void begin(int size) throws IOException {
+			if ((depth == 0) && (!documents.isEmpty())
+					&& (segmentSize(0) > SEGMENT_SIZE)) {
+				nextSegment();
+			}
+			ensure(size);
+			if (depth == 0) {
+				// new root
+				documents.add(out.position() + buf.position());
+			}
+		}
+
+		private void record(byte kind, QNm name, Atomic value)
+				throws DocumentException {
+			try {
+				if (kind == END) {
+					ensure(1);
+					depth--;
+				} else {
+					begin(17);
+				}
+				buf.put(kind);
+				if (name != null) {
+					buf.putInt(nameID(name));
+				}
+				if (value != null) {
+					string(value.stringValue());
+				}
+			} catch (IOException e) {
+				throw new DocumentException(e);
+			}
+		}
+
+		@Override
+		public void startDocument() throws DocumentException {
+			record(DOCUMENT, null, null);
+			depth++;
+		}
+
+		@Override
+		public void endDocument() throws DocumentException {
+			record(END, null, null);
+		}
+
+		@Override
+		public void startMapping(String prefix, String uri)
+				throws DocumentException {
+			pendingMappings.add(prefix);
+			pendingMappings.add(uri);
+		}
+
+		@Override
+		public void startElement(QNm name) throws DocumentException {
+			try {
+				begin(9);
+				depth++;
+				buf.put(ELEMENT);
+				buf.putInt(nameID(name));
+				buf.putInt(pendingMappings.size() / 2);
+				for (String s : pendingMappings) {
+					ensure(12);
+					string(s);
+				}
+				pendingMappings.clear();
+			} catch (IOException e) {
+				throw new DocumentException(e);
+			}
+		}
+
+		@Override
+		public void endElement(QNm name) throws DocumentException {
+			record(END, null, null);
+		}
+
+		@Override
+		public void attribute(QNm name, Atomic value)
+				throws DocumentException {
+			record(ATTRIBUTE, name, value);
+		}
+
+		@Override
+		public void text(Atomic content) throws DocumentException {
+			record(TEXT, null, content);
+		}
+
+		@Override
+		public void comment(Atomic content) throws DocumentException {
+			record(COMMENT, null, content);
+		}
+
+		@Override
+		public void processingInstruction(QNm target, Atomic content)
+				throws DocumentException {
+			record(PI, target, content);
+		}
+	}
+}
@@ -75,7 +75,7 @@ public class ForBind extends Check implements Operator {
 				if (it != null) {
 					Item i = it.next();
 					if (i != null) {
-						return emit(t, i);
+						return emit(ctx, t, i);
 					}
 					it.close();
 					it = null;
@@ -91,22 +91,22 @@ public class ForBind extends Check implements Operator {
 				Sequence s = bind.evaluate(ctx, t);
 				pos = Int32.ZERO;
 				if (s == null) {
-					Tuple tmp = (allowingEmpty) ? emit(t, null)
+					Tuple tmp = (allowingEmpty) ? emit(ctx, t, null)
 							: (check) ? passthroughUncheck(t, local()) : null;
 					t = null;
 					return tmp;
 				} else if (s instanceof Item) {
-					return emit(t, s);
+					return emit(ctx, t, s);
 				} else {
 					it = s.iterate();
 					Item i = it.next();
 					if (i != null) {
-						return emit(t, i);
+						return emit(ctx, t, i);
 					}
 					it.close();
 					it = null;
 					if (allowingEmpty) {
-						Tuple tmp = emit(i, null);
+						Tuple tmp = emit(ctx, i, null);
 						t = null;
 						return tmp;
 					} else if (check) {
@@ -118,7 +118,9 @@ public class ForBind extends Check implements Operator {
 			}
 		}
 
-		private Tuple emit(Tuple t, Sequence item) throws QueryException {
+		private Tuple emit(QueryContext ctx, Tuple t, Sequence item)
+				throws QueryException {
+			ctx.produced();
 			if (bindVar) {
 				if (bindPos) {
 					return t.concat(new Sequence[] { item,
@@ -158,12 +158,14 @@ public class GroupBy extends Check implements Operator {
 		}
 	}
 
-	private class HashGroupBy implements Cursor {
+	private class HashGroupBy implements Cursor, Measurable {
 		final Cursor c;
 		final int tupleSize;
 		final Map<Key, Grouping> map;
 		Tuple next;
 		Iterator<Key> it;
+		long maxSize;
+		long held; // estimated memory of current groups
 
 		public HashGroupBy(Cursor c, int tupleSize) {
 			this.c = c;
@@ -179,6 +181,8 @@ public class GroupBy extends Check implements Operator {
 		@Override
 		public void close(QueryContext ctx) {
 			map.clear();
+			ctx.release(held);
+			held = 0;
 			c.close(ctx);
 		}
 
@@ -195,6 +199,8 @@ public class GroupBy extends Check implements Operator {
 					} else {
 						it = null;
 						map.clear();
+						ctx.release(held);
+						held = 0;
 					}
 				}
 
@@ -216,12 +222,12 @@ public class GroupBy extends Check implements Operator {
 						}
 					}
 
-					add(t);
+					add(ctx, t);
 					while ((next = c.next(ctx)) != null) {
 						if ((check) && (separate(t, next))) {
 							break;
 						}
-						add(next);
+						add(ctx, next);
 					}
 					it = map.keySet().iterator();
 				} else {
@@ -230,7 +236,7 @@ public class GroupBy extends Check implements Operator {
 			}
 		}
 
-		private void add(Tuple t) throws QueryException {
+		private void add(QueryContext ctx, Tuple t) throws QueryException {
 			Atomic[] gks = Grouping.groupingKeys(groupSpecs, t);
 			Key key = new Key(gks);
 			Grouping grp = map.get(key);
@@ -238,8 +244,24 @@ public class GroupBy extends Check implements Operator {
 				grp = new Grouping(groupSpecs, addAggSpecs, defaultAgg,
 						addAggs, tupleSize);
 				map.put(key, grp);
+				if (map.size() > maxSize) {
+					maxSize = map.size();
+				}
 			}
 			grp.add(gks, t);
+			long size = QueryContext.estimateSize(t.getSize());
+			held += size;
+			ctx.allocate(size);
+		}
+
+		@Override
+		public long getSpilledBytes() {
+			return 0;
+		}
+
+		@Override
+		public long getTableSize() {
+			return maxSize;
 		}
 
 		private Tuple emit(Grouping grp) throws QueryException {
@@ -126,6 +126,7 @@ public class NLJoin implements Operator {
 							.vCmp(ctx, (Item) lKey, (Item) rKey);
 
 					if (res) {
+						ctx.produced();
 						Sequence[] tmp = rt.array();
 						Sequence[] bindings = Arrays.copyOfRange(tmp, lSize,
 								tmp.length);
@@ -42,10 +42,12 @@ import org.brackit.xquery.xdm.Stream;
  */
 public class OrderBy extends Check implements Operator {
 
-	private class OrderByCursor implements Cursor {
+	private class OrderByCursor implements Cursor, Measurable {
 		private final Cursor c;
 		private Stream<? extends Tuple> sorted;
 		private Tuple next;
+		private long spilledBytes;
+		private long held; // estimated memory of current sort
 
 		public OrderByCursor(Cursor c) {
 			this.c = c;
@@ -56,6 +58,8 @@ public class OrderBy extends Check implements Operator {
 			if (sorted != null) {
 				sorted.close();
 			}
+			ctx.release(held);
+			held = 0;
 			c.close(ctx);
 		}
 
@@ -67,6 +71,9 @@ public class OrderBy extends Check implements Operator {
 					return t;
 				}
 				sorted.close();
+				sorted = null;
+				ctx.release(held);
+				held = 0;
 			}
 			if (((t = next) == null) && ((t = c.next(ctx)) == null)) {
 				return null;
@@ -81,13 +88,16 @@ public class OrderBy extends Check implements Operator {
 			// sort current tuple and all following in same group
 			Ordering sort = new Ordering(orderByExprs, modifier);
 			sort.add(ctx, t);
+			allocate(ctx, sort, t);
 			while ((next = c.next(ctx)) != null) {
 				if ((check) && (separate(t, next))) {
 					break;
 				}
 				sort.add(ctx, next);
+				allocate(ctx, sort, next);
 			}
 			sorted = sort.sorted();
+			spilledBytes += sort.getSpilledBytes();
 			t = sorted.next();
 			return t;
 		}
@@ -96,6 +106,31 @@ public class OrderBy extends Check implements Operator {
 		public void open(QueryContext ctx) throws QueryException {
 			c.open(ctx);
 		}
+
+		private void allocate(QueryContext ctx, Ordering sort, Tuple t)
+				throws QueryException {
+			// only tuples buffered in main memory are charged;
+			// the estimate is released when the sort writes a run
+			long size = QueryContext.estimateSize(t.getSize()
+					+ orderByExprs.length);
+			long buffered = sort.getBufferedCount() * size;
+			if (buffered > held) {
+				ctx.allocate(buffered - held);
+			} else {
+				ctx.release(held - buffered);
+			}
+			held = buffered;
+		}
+
+		@Override
+		public long getSpilledBytes() {
+			return spilledBytes;
+		}
+
+		@Override
+		public long getTableSize() {
+			return 0;
+		}
 	}
 
 	final Operator in;
@@ -46,7 +46,7 @@ import org.brackit.xquery.xdm.Sequence;
  * 
  */
 public class TableJoin extends Check implements Operator {
-	private class TableJoinCursor implements Cursor {
+	private class TableJoinCursor implements Cursor, Measurable {
 		final Cursor lc;
 		final Sequence[] padding;
 		final int lSize;
@@ -58,6 +58,8 @@ public class TableJoin extends Check implements Operator {
 		FastList<Sequence[]> it;
 		int itPos = 0;
 		int itSize = 0;
+		long maxSize;
+		long held; // estimated memory of current table
 
 		public TableJoinCursor(Cursor lc, int lSize, int pad) {
 			this.lc = lc;
@@ -75,11 +77,13 @@ public class TableJoin extends Check implements Operator {
 		public void close(QueryContext ctx) {
 			lc.close(ctx);
 			it = null;
+			dropTable(ctx);
 		}
 
 		@Override
 		public Tuple next(QueryContext ctx) throws QueryException {
 			if ((it != null) && (itPos < itSize)) {
+				ctx.produced();
 				return tuple.concat(it.get(itPos++));
 			}
 
@@ -92,7 +96,7 @@ public class TableJoin extends Check implements Operator {
 				if (groupVar >= 0) {
 					Atomic gk = (Atomic) tuple.get(groupVar);
 					if ((tgk != null) && (tgk.atomicCmp(gk) != 0)) {
-						table = null;
+						dropTable(ctx);
 					}
 				}
 				if (table == null) {
@@ -107,6 +111,7 @@ public class TableJoin extends Check implements Operator {
 				itSize = matches.getSize();
 
 				if (itPos < itSize) {
+					ctx.produced();
 					prev = tuple.concat(matches.get(itPos++));
 					return prev;
 				} else if (leftJoin) {
@@ -133,10 +138,16 @@ public class TableJoin extends Check implements Operator {
 					return prev;
 				}
 			}
-			table = null;
+			dropTable(ctx);
 			return null;
 		}
 
+		private void dropTable(QueryContext ctx) {
+			table = null;
+			ctx.release(held);
+			held = 0;
+		}
+
 		protected void buildTable(QueryContext ctx, Tuple tuple)
 				throws QueryException {
 			table = new MultiTypeJoinTable(cmp, isGCmp, skipSort);
@@ -156,11 +167,27 @@ public class TableJoin extends Check implements Operator {
 						Sequence[] bindings = Arrays.copyOfRange(tmp, lSize,
 								tmp.length);
 						table.add(keys, bindings, pos++);
+						long size = QueryContext.estimateSize(bindings.length);
+						held += size;
+						ctx.allocate(size);
 					}
 				}
 			} finally {
 				rc.close(ctx);
 			}
+			if (table.size() > maxSize) {
+				maxSize = table.size();
+			}
+		}
+
+		@Override
+		public long getSpilledBytes() {
+			return 0;
+		}
+
+		@Override
+		public long getTableSize() {
+			return maxSize;
 		}
 	}
 
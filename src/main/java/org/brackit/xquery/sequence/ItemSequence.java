@@ -42,20 +42,30 @@ import org.brackit.xquery.xdm.Node;
  */
 public class ItemSequence extends AbstractSequence {
 	protected final Item[] items;
+	protected final int size;
 
 	public ItemSequence(Item... items) {
+		this(items, items.length);
+	}
+
+	/**
+	 * Creates a sequence of the first <code>size</code> items of the given
+	 * array.
+	 */
+	public ItemSequence(Item[] items, int size) {
 		this.items = items;
+		this.size = size;
 	}
 
 	@Override
 	public boolean booleanValue() throws QueryException {
-		if (items.length == 0) {
+		if (size == 0) {
 			return false;
 		}
 		if (items[0] instanceof Node<?>) {
 			return true;
 		}
-		if (items.length > 1) {
+		if (size > 1) {
 			throw new QueryException(ErrorCode.ERR_INVALID_ARGUMENT_TYPE,
 					"Effective boolean value is undefined "
 							+ "for sequences with two or more items "
@@ -66,7 +76,7 @@ public class ItemSequence extends AbstractSequence {
 
 	@Override
 	public IntNumeric size() throws QueryException {
-		return new Int32(items.length);
+		return new Int32(size);
 	}
 
 	@Override
@@ -84,7 +94,7 @@ public class ItemSequence extends AbstractSequence {
 
 			@Override
 			public Item next() {
-				return (pos < items.length) ? items[pos++] : null;
+				return (pos < size) ? items[pos++] : null;
 			}
 
 			@Override
@@ -95,9 +105,9 @@ public class ItemSequence extends AbstractSequence {
 
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		if (items.length > 0) {
+		if (size > 0) {
 			sb.append(items[0]);
-			for (int i = 1; i < items.length; i++) {
+			for (int i = 1; i < size; i++) {
 				sb.append(",");
 				sb.append(items[i]);
 			}
@@ -46,6 +46,9 @@ public abstract class LazySequence extends AbstractSequence {
 	// they are computed on demand
 	private volatile IntNumeric size;
 	private volatile Boolean bool;
+	// random-access buffer created on repeated positional access
+	private volatile MaterializingSequence buffer;
+	private volatile boolean accessed;
 
 	@Override
 	public final boolean booleanValue() throws QueryException {
@@ -81,6 +84,10 @@ public abstract class LazySequence extends AbstractSequence {
 		if (si != null) {
 			return si;
 		}
+		MaterializingSequence b = buffer; // volatile read
+		if (b != null) {
+			return (size = b.size());
+		}
 		final Counter count = new Counter();
 		Iter s = iterate();
 		try {
@@ -102,6 +109,20 @@ public abstract class LazySequence extends AbstractSequence {
 		if (Int32.ZERO.cmp(pos) >= 0) {
 			return null;
 		}
+		MaterializingSequence b = buffer; // volatile read
+		if (b == null) {
+			if (accessed) {
+				// repeated positional access:
+				// buffer items instead of re-iterating every time
+				b = new MaterializingSequence(this);
+				buffer = b;
+			} else {
+				accessed = true;
+			}
+		}
+		if (b != null) {
+			return b.get(pos);
+		}
 		final Counter count = new Counter();
 		Iter it = iterate();
 		Item item;
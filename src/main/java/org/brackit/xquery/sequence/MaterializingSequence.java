@@ -0,0 +1,232 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.sequence;
+
+import org.brackit.xquery.ErrorCode;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Counter;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.atomic.IntNumeric;
+import org.brackit.xquery.util.Cfg;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.Sequence;
+
+/**
+ * Random-access view of a lazily evaluated sequence. Items are buffered in
+ * chunks as they are pulled from the source for the first time, i.e.,
+ * repeated positional access and repeated iteration evaluate the source only
+ * once.
+ * 
+ * <p>
+ * The buffer is bounded by {@link #MAX_BUFFER} items. The items of larger
+ * sequences beyond this bound are not buffered but read by re-iterating the
+ * source. Only {@link Sequence#iterate()} is called on the source, i.e., it
+ * may itself delegate positional access to this view.
+ * </p>
+ */
+public class MaterializingSequence extends AbstractSequence {
+
+	public static final String MAX_BUFFER_CFG = "org.brackit.xquery.maxSequenceBuffer";
+
+	/**
+	 * Maximum number of items to buffer.
+	 */
+	public static int MAX_BUFFER = Cfg.asInt(MAX_BUFFER_CFG, 1 << 20);
+
+	private static final int CHUNK_BITS = 10;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private final Sequence source;
+
+	private final int maxBuffer;
+
+	private Item[][] chunks = new Item[4][];
+
+	private int count;
+
+	private Iter sourceIt;
+
+	// the buffer contains all items of the source
+	private boolean complete;
+
+	// the buffer contains only a prefix of the source
+	private boolean truncated;
+
+	private volatile IntNumeric size;
+
+	public MaterializingSequence(Sequence source) {
+		this(source, MAX_BUFFER);
+	}
+
+	public MaterializingSequence(Sequence source, int maxBuffer) {
+		this.source = source;
+		this.maxBuffer = maxBuffer;
+	}
+
+	/**
+	 * Returns the item at the 0-based position <code>pos</code> if it is
+	 * buffered or can be buffered. Returns <code>null</code> if the source
+	 * ends before or if <code>pos</code> lies beyond the buffer bound.
+	 */
+	private synchronized Item buffered(int pos) throws QueryException {
+		while ((pos >= count) && (!complete) && (!truncated)) {
+			if (sourceIt == null) {
+				sourceIt = source.iterate();
+			}
+			Item item = sourceIt.next();
+			if (item == null) {
+				complete = true;
+				sourceIt.close();
+				sourceIt = null;
+				size = new Int32(count);
+			} else if (count == maxBuffer) {
+				truncated = true;
+				sourceIt.close();
+				sourceIt = null;
+			} else {
+				append(item);
+			}
+		}
+		return (pos < count) ? chunks[pos >>> CHUNK_BITS][pos
+				& (CHUNK_SIZE - 1)] : null;
+	}
+
+	private void append(Item item) {
+		int chunk = count >>> CHUNK_BITS;
+		if (chunk == chunks.length) {
+			Item[][] tmp = new Item[chunks.length * 2][];
+			System.arraycopy(chunks, 0, tmp, 0, chunks.length);
+			chunks = tmp;
+		}
+		if (chunks[chunk] == null) {
+			chunks[chunk] = new Item[CHUNK_SIZE];
+		}
+		chunks[chunk][count++ & (CHUNK_SIZE - 1)] = item;
+	}
+
+	private synchronized boolean isTruncated() {
+		return truncated;
+	}
+
+	@Override
+	public boolean booleanValue() throws QueryException {
+		Item first = buffered(0);
+		if (first == null) {
+			return false;
+		}
+		if (first instanceof Node<?>) {
+			return true;
+		}
+		if (buffered(1) != null) {
+			throw new QueryException(ErrorCode.ERR_INVALID_ARGUMENT_TYPE,
+					"Effective boolean value is undefined "
+							+ "for sequences with two or more items "
+							+ "not starting with a node");
+		}
+		return first.booleanValue();
+	}
+
+	@Override
+	public IntNumeric size() throws QueryException {
+		IntNumeric si = size; // volatile read
+		if (si != null) {
+			return si;
+		}
+		buffered(Integer.MAX_VALUE - 1);
+		si = size; // volatile read
+		if (si != null) {
+			return si;
+		}
+		// buffer is truncated: count by iterating the source
+		Counter count = new Counter();
+		Iter it = source.iterate();
+		try {
+			while (it.next() != null) {
+				count.inc();
+			}
+		} finally {
+			it.close();
+		}
+		return (size = count.asIntNumeric());
+	}
+
+	@Override
+	public Item get(IntNumeric pos) throws QueryException {
+		if (Int32.ZERO.cmp(pos) >= 0) {
+			return null;
+		}
+		if (pos.cmp(new Int32(maxBuffer)) <= 0) {
+			Item item = buffered(pos.intValue() - 1);
+			if ((item != null) || (!isTruncated())) {
+				return item;
+			}
+		}
+		// read behind the buffered prefix by iterating the source
+		Iter it = source.iterate();
+		try {
+			it.skip((IntNumeric) pos.subtract(Int32.ONE));
+			return it.next();
+		} finally {
+			it.close();
+		}
+	}
+
+	@Override
+	public Iter iterate() {
+		return new BaseIter() {
+			int pos;
+			Iter it;
+
+			@Override
+			public Item next() throws QueryException {
+				if (it != null) {
+					return it.next();
+				}
+				Item item = buffered(pos);
+				if ((item != null) || (!isTruncated())) {
+					pos++;
+					return item;
+				}
+				// continue behind the buffered prefix
+				it = source.iterate();
+				it.skip(new Int32(pos));
+				return it.next();
+			}
+
+			@Override
+			public void close() {
+				if (it != null) {
+					it.close();
+				}
+			}
+		};
+	}
+}
@@ -30,6 +30,7 @@ package org.brackit.xquery.sequence;
 import java.util.Comparator;
 
 import org.brackit.xquery.ErrorCode;
+import org.brackit.xquery.QueryContext;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.Tuple;
 import org.brackit.xquery.util.sort.TupleSort;
@@ -45,11 +46,22 @@ import org.brackit.xquery.xdm.Stream;
  * 
  */
 public class SortedNodeSequence extends LazySequence {
+	private final QueryContext ctx;
 	private final Comparator<Tuple> cmp;
 	private final Sequence in;	
 	private final boolean dedup;
 
+	/**
+	 * Creates a sorted sequence whose buffered nodes are not accounted to a
+	 * query's memory limit.
+	 */
 	public SortedNodeSequence(Comparator<Tuple> cmp, Sequence in, boolean dedup) {
+		this(null, cmp, in, dedup);
+	}
+
+	public SortedNodeSequence(QueryContext ctx, Comparator<Tuple> cmp,
+			Sequence in, boolean dedup) {
+		this.ctx = ctx;
 		this.cmp = cmp;
 		this.in = in;
 		this.dedup = dedup;
@@ -65,6 +77,7 @@ public class SortedNodeSequence extends LazySequence {
 			Stream<? extends Tuple> sorted;
 			Node<?> p;
 			Node<?> n;
+			long held; // estimated memory of sorted nodes
 
 			@Override
 			public Item next() throws QueryException {
@@ -91,6 +104,10 @@ public class SortedNodeSequence extends LazySequence {
 				if (sorted != null) {
 					sorted.close();
 				}
+				if (ctx != null) {
+					ctx.release(held);
+					held = 0;
+				}
 			}
 
 			private void loadAndSort() throws QueryException {
@@ -107,6 +124,7 @@ public class SortedNodeSequence extends LazySequence {
 								sequence);
 					}
 					sort.add((Item) sequence);
+					allocate();
 				} else {
 					Item item;
 					Iter it = sequence.iterate();
@@ -119,6 +137,7 @@ public class SortedNodeSequence extends LazySequence {
 										item);
 							}
 							sort.add(item);
+							allocate();
 						}
 					} finally {
 						it.close();
@@ -126,6 +145,16 @@ public class SortedNodeSequence extends LazySequence {
 				}
 				sort.sort();
 			}
+
+			private void allocate() throws QueryException {
+				if (ctx == null) {
+					return;
+				}
+				long size = QueryContext.estimateSize(1);
+				held += size;
+				ctx.allocate(size);
+				ctx.check();
+			}
 		};
 	}
 }
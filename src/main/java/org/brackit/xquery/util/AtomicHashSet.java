@@ -0,0 +1,191 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.brackit.xquery.atomic.Atomic;
+import org.brackit.xquery.atomic.DecNumeric;
+import org.brackit.xquery.atomic.IntNumeric;
+import org.brackit.xquery.atomic.Numeric;
+import org.brackit.xquery.xdm.Type;
+
+/**
+ * <p>
+ * Hash set of atomic values, which is specialized on the atomic type code of
+ * its members. Numeric values with an integral value between
+ * -2<sup>53</sup> and 2<sup>53</sup> are kept as primitive
+ * <code>long</code>s in an open-addressing hash table. String-like values
+ * are kept as plain Java strings. All other values are kept in a general
+ * hash set.
+ * </p>
+ * <p>
+ * Values are considered equal if they are equal according to
+ * {@link Atomic#equals(Object)}. In contrast to the latter, positive and
+ * negative zero are considered equal, too.
+ * </p>
+ */
+public class AtomicHashSet {
+
+	/**
+	 * Key of values which cannot be represented as integral
+	 * <code>long</code>.
+	 */
+	private static final long NONE = Long.MIN_VALUE;
+
+	private static final long MAX_EXACT = 1L << 53;
+
+	private long[] longs;
+
+	private int longCount;
+
+	private HashSet<String> strings;
+
+	private HashSet<Atomic> others;
+
+	private int size;
+
+	public boolean add(Atomic atomic) {
+		boolean added;
+		int code = atomic.atomicCode();
+		if (code == Type.NUMERIC_CODE) {
+			long key = longKey(atomic);
+			added = (key != NONE) ? addLong(key) : addOther(atomic);
+		} else if (code == Type.STRING_CODE) {
+			if (strings == null) {
+				strings = new HashSet<String>();
+			}
+			added = strings.add(atomic.stringValue());
+		} else {
+			added = addOther(atomic);
+		}
+		if (added) {
+			size++;
+		}
+		return added;
+	}
+
+	public boolean contains(Atomic atomic) {
+		int code = atomic.atomicCode();
+		if (code == Type.NUMERIC_CODE) {
+			long key = longKey(atomic);
+			if (key != NONE) {
+				return (longs != null) && (longs[slot(longs, key)] == key);
+			}
+		} else if (code == Type.STRING_CODE) {
+			return (strings != null)
+					&& (strings.contains(atomic.stringValue()));
+		}
+		return (others != null) && (others.contains(atomic));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a hash code of the given value, which is consistent with the
+	 * equality of set members.
+	 */
+	public static int hash(Atomic atomic) {
+		int code = atomic.atomicCode();
+		if (code == Type.NUMERIC_CODE) {
+			long key = longKey(atomic);
+			if (key != NONE) {
+				return (int) (key ^ (key >>> 32));
+			}
+		} else if (code == Type.STRING_CODE) {
+			return atomic.stringValue().hashCode();
+		}
+		return atomic.hashCode();
+	}
+
+	private static long longKey(Atomic atomic) {
+		Numeric n = (Numeric) atomic;
+		if (atomic instanceof IntNumeric) {
+			return (Math.abs(n.doubleValue()) < MAX_EXACT) ? n.longValue()
+					: NONE;
+		}
+		if (atomic instanceof DecNumeric) {
+			BigDecimal d = n.decimalValue();
+			if ((d.signum() != 0) && (d.scale() > 0)
+					&& (d.stripTrailingZeros().scale() > 0)) {
+				return NONE;
+			}
+		}
+		double d = n.doubleValue();
+		return ((d == Math.rint(d)) && (Math.abs(d) < MAX_EXACT)) ? (long) d
+				: NONE;
+	}
+
+	private boolean addOther(Atomic atomic) {
+		if (others == null) {
+			others = new HashSet<Atomic>();
+		}
+		return others.add(atomic);
+	}
+
+	private boolean addLong(long key) {
+		if (longs == null) {
+			longs = new long[16];
+			Arrays.fill(longs, NONE);
+		}
+		int slot = slot(longs, key);
+		if (longs[slot] == key) {
+			return false;
+		}
+		longs[slot] = key;
+		if (++longCount > (longs.length >> 1)) {
+			rehash();
+		}
+		return true;
+	}
+
+	private void rehash() {
+		long[] tmp = new long[longs.length << 1];
+		Arrays.fill(tmp, NONE);
+		for (long key : longs) {
+			if (key != NONE) {
+				tmp[slot(tmp, key)] = key;
+			}
+		}
+		longs = tmp;
+	}
+
+	private static int slot(long[] table, long key) {
+		int mask = table.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h ^ (h >>> 32)) & mask;
+		while ((table[slot] != NONE) && (table[slot] != key)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+}
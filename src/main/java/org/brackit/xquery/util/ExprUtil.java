@@ -27,11 +27,15 @@
  */
 package org.brackit.xquery.util;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.brackit.xquery.ErrorCode;
 import org.brackit.xquery.QueryException;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.sequence.BaseIter;
 import org.brackit.xquery.sequence.ItemSequence;
+import org.brackit.xquery.sequence.LazySequence;
+import org.brackit.xquery.sequence.MaterializingSequence;
 import org.brackit.xquery.xdm.Expr;
 import org.brackit.xquery.xdm.Item;
 import org.brackit.xquery.xdm.Iter;
@@ -65,13 +69,40 @@ public abstract class ExprUtil implements Expr {
 		}
 	}
 
+	/**
+	 * Materializes the given sequence for repeated consumption.
+	 * 
+	 * @see #materialize(Sequence, boolean)
+	 */
 	public static Sequence materialize(Sequence res) throws QueryException {
-		// TODO
-		// how to decide cleverly if we should materialize or not???
+		return materialize(res, true);
+	}
+
+	/**
+	 * <p>
+	 * Normalizes the given sequence such that empty and singleton sequences
+	 * are returned as <code>null</code> and as single item, respectively.
+	 * </p>
+	 * <p>
+	 * Longer sequences are only copied into an array if the result is
+	 * consumed more than once. A result which is consumed only once remains
+	 * lazy and continues the iteration which was started to inspect its first
+	 * items. Sequences exceeding {@link MaterializingSequence#MAX_BUFFER}
+	 * items are not copied but recomputed on every access.
+	 * </p>
+	 */
+	public static Sequence materialize(Sequence res, boolean reuse)
+			throws QueryException {
 		if ((res == null) || (res instanceof Item)) {
 			return res;
 		}
+		if (res instanceof ItemSequence) {
+			// already materialized
+			int size = res.size().intValue();
+			return (size > 1) ? res : (size == 1) ? res.get(Int32.ONE) : null;
+		}
 		Iter it = res.iterate();
+		boolean close = true;
 		try {
 			Item first = it.next();
 			if (first == null) {
@@ -81,15 +112,90 @@ public abstract class ExprUtil implements Expr {
 			if (second == null) {
 				return first;
 			}
-			ArrayList<Item> buffer = new ArrayList<Item>();
-			buffer.add(first);
-			buffer.add(second);
+			if (!reuse) {
+				close = false;
+				return new ResumedSequence(res, it, first, second);
+			}
+			int maxSize = MaterializingSequence.MAX_BUFFER;
+			Item[] buffer = new Item[16];
+			buffer[0] = first;
+			buffer[1] = second;
+			int size = 2;
 			Item item;
 			while ((item = it.next()) != null) {
-				buffer.add(item);
+				if (size == maxSize) {
+					// too large: recompute on demand
+					return res;
+				}
+				if (size == buffer.length) {
+					buffer = Arrays.copyOf(buffer, Math.min(maxSize,
+							(buffer.length * 3) / 2 + 1));
+				}
+				buffer[size++] = item;
 			}
-			return new ItemSequence(buffer.toArray(new Item[buffer.size()]));
+			return new ItemSequence(buffer, size);
 		} finally {
+			if (close) {
+				it.close();
+			}
+		}
+	}
+
+	/**
+	 * Lazy sequence, which hands out an already started iteration once
+	 * before it falls back to iterate its source again.
+	 */
+	private static class ResumedSequence extends LazySequence {
+		private final Sequence source;
+		private Iter resume;
+
+		ResumedSequence(Sequence source, Iter it, final Item first,
+				final Item second) {
+			this.source = source;
+			this.resume = new PrefixedIter(it, first, second);
+		}
+
+		@Override
+		public Iter iterate() {
+			synchronized (this) {
+				if (resume != null) {
+					Iter it = resume;
+					resume = null;
+					return it;
+				}
+			}
+			return source.iterate();
+		}
+	}
+
+	private static class PrefixedIter extends BaseIter {
+		private final Iter it;
+		private Item first;
+		private Item second;
+
+		PrefixedIter(Iter it, Item first, Item second) {
+			this.it = it;
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public Item next() throws QueryException {
+			Item item = first;
+			if (item != null) {
+				first = null;
+				return item;
+			}
+			item = second;
+			if (item != null) {
+				second = null;
+				return item;
+			}
+			return it.next();
+		}
+
+		@Override
+		public void close() {
 			it.close();
 		}
 	}
@@ -28,7 +28,10 @@
 package org.brackit.xquery.util;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -37,7 +40,10 @@ import org.brackit.xquery.ErrorCode;
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.Bool;
 import org.brackit.xquery.atomic.Str;
-import org.brackit.xquery.sequence.ItemSequence;
+import org.brackit.xquery.sequence.BaseIter;
+import org.brackit.xquery.sequence.LazySequence;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
 import org.brackit.xquery.xdm.Sequence;
 
 /**
@@ -55,17 +61,167 @@ import org.brackit.xquery.xdm.Sequence;
  */
 public class Regex {
 
+	public static final String CACHE_SIZE_CFG = "org.brackit.xquery.regexCacheSize";
+
+	public static int CACHE_SIZE = Cfg.asInt(CACHE_SIZE_CFG, 256);
+
 	private final static List<Character> WHITESPACE = Arrays.asList(
 			Character.toChars(0x09)[0], Character.toChars(0x0A)[0],
 			Character.toChars(0x0D)[0], Character.toChars(0x20)[0]);
 
+	// Disallowed in replacement string: backslash or dollar sign as
+	// only character in string, or dollar sign not preceded by
+	// backslash and not followed by a digit, or backslash not
+	// preceded by backslash and not followed by a dollar sign
+	private final static Pattern ILLEGAL_REPLACEMENT = Pattern
+			.compile("(\\$|\\\\|.*[^\\\\]\\$\\D.*|.*[^\\\\]\\\\[^\\$].*)");
+
+	private final static Map<Key, Pattern> cache = Collections
+			.synchronizedMap(new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Key, Pattern> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
 	public static enum Mode {
 		MATCH, REPLACE, TOKENIZE
 	};
 
+	private static final class Key {
+		final Mode mode;
+		final String pattern;
+		final String flags;
+		final int hash;
+
+		Key(Mode mode, String pattern, String flags) {
+			// only matching adapts the pattern differently
+			this.mode = (mode == Mode.MATCH) ? Mode.MATCH : Mode.REPLACE;
+			this.pattern = pattern;
+			this.flags = (flags != null) ? flags : "";
+			this.hash = (31 * (31 * this.mode.hashCode() + pattern.hashCode()) + this.flags
+					.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) obj;
+			return ((mode == k.mode) && (pattern.equals(k.pattern)) && (flags
+					.equals(k.flags)));
+		}
+	}
+
 	public static Sequence match(Mode mode, String input, String pattern,
 			String replace, String flags) throws QueryException {
+		Pattern cpattern = compile(mode, pattern, flags);
+		if (mode == Mode.REPLACE) {
+			checkReplacement(replace);
+		}
+		return match(mode, cpattern, input, replace);
+	}
+
+	/**
+	 * Evaluates a pattern obtained from {@link #compile(Mode, String, String)}
+	 * . For {@link Mode#REPLACE}, the replacement string must have been
+	 * checked with {@link #checkReplacement(String)} before.
+	 */
+	public static Sequence match(Mode mode, final Pattern cpattern,
+			final String input, String replace) throws QueryException {
+		switch (mode) {
+		case MATCH:
+			return new Bool(cpattern.matcher(input).matches());
+		case REPLACE:
+			Matcher matcher = cpattern.matcher(input);
+			StringBuffer sb = new StringBuffer();
+			while (matcher.find()) {
+				matcher.appendReplacement(sb, replace);
+			}
+			matcher.appendTail(sb);
+
+			return new Str(sb.toString());
+
+		case TOKENIZE:
+			if (input.isEmpty()) {
+				return null;
+			}
+			return new LazySequence() {
+				@Override
+				public Iter iterate() {
+					return new BaseIter() {
+						Matcher matcher;
+						int pos;
+
+						@Override
+						public Item next() throws QueryException {
+							if (pos < 0) {
+								return null;
+							}
+							if (matcher == null) {
+								matcher = cpattern.matcher(input);
+							}
+							if (matcher.find()) {
+								Str token = new Str(input.substring(pos,
+										matcher.start()));
+								pos = matcher.end();
+								return token;
+							}
+							Str token = new Str(input.substring(pos));
+							pos = -1;
+							return token;
+						}
+
+						@Override
+						public void close() {
+							matcher = null;
+							pos = -1;
+						}
+					};
+				}
+			};
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the compiled (and cached) Java pattern for the given XQuery
+	 * regular expression and flags.
+	 */
+	public static Pattern compile(Mode mode, String pattern, String flags)
+			throws QueryException {
+		Key key = new Key(mode, pattern, flags);
+		Pattern cpattern = cache.get(key);
+		if (cpattern == null) {
+			cpattern = compileInternal(mode, pattern, flags);
+			cache.put(key, cpattern);
+		}
+		return cpattern;
+	}
+
+	/**
+	 * Checks if the given replacement string is valid for
+	 * fn:replace($arg1, $arg2, $arg3). Replacement strings are not cached,
+	 * so that computed replacements do not evict compiled patterns.
+	 */
+	public static void checkReplacement(String replace) throws QueryException {
+		if (ILLEGAL_REPLACEMENT.matcher(replace).matches()) {
+			throw (new QueryException(ErrorCode.ERR_INVALID_REPLACEMENT_STRING,
+					"Replacement string matches makes illegal "
+							+ "use of chars '\\' or '$'."));
+		}
+	}
 
+	private static Pattern compileInternal(Mode mode, String pattern,
+			String flags) throws QueryException {
 		// parse flags
 		boolean removeWhitespace = false;
 		int flagMask = Pattern.UNIX_LINES;
@@ -97,60 +253,18 @@ public class Regex {
 			}
 		}
 
-		if (mode != Mode.MATCH && Pattern.matches(pattern, "")) {
-			throw (new QueryException(
-					ErrorCode.ERR_REGULAR_EXPRESSION_EMPTY_STRING,
-					"Pattern matches empty string."));
-		}
-
-		if (mode == Mode.TOKENIZE && input.isEmpty()) {
-			return null;
-		}
-
-		Pattern cpattern;
 		try {
+			if (mode != Mode.MATCH && Pattern.matches(pattern, "")) {
+				throw (new QueryException(
+						ErrorCode.ERR_REGULAR_EXPRESSION_EMPTY_STRING,
+						"Pattern matches empty string."));
+			}
 			String regex = adaptRegEx(mode, pattern, flagMask, removeWhitespace);
-			cpattern = Pattern.compile(regex, flagMask);
+			return Pattern.compile(regex, flagMask);
 		} catch (PatternSyntaxException e) {
 			throw (new QueryException(e,
 					ErrorCode.ERR_INVALID_REGULAR_EXPRESSION));
 		}
-		Matcher matcher = cpattern.matcher(input);
-
-		switch (mode) {
-		case MATCH:
-			return new Bool(matcher.matches());
-		case REPLACE:
-			// Disallowed in replacement string: backslash or dollar sign as
-			// only character in string, or dollar sign not preceded by
-			// backslash and not followed by a digit, or backslash not
-			// preceded by backslash and not followed by a dollar sign
-			String pat = "(\\$|\\\\|.*[^\\\\]\\$\\D.*|.*[^\\\\]\\\\[^\\$].*)";
-			if (Pattern.matches(pat, replace)) {
-				throw (new QueryException(
-						ErrorCode.ERR_INVALID_REPLACEMENT_STRING,
-						"Replacement string matches makes illegal "
-								+ "use of chars '\\' or '$'."));
-			}
-
-			StringBuffer sb = new StringBuffer();
-			while (matcher.find()) {
-				matcher.appendReplacement(sb, replace);
-			}
-			matcher.appendTail(sb);
-
-			return new Str(sb.toString());
-
-		case TOKENIZE:
-			String[] tokens = cpattern.split(input, -1);
-			Str[] items = new Str[tokens.length];
-			for (int i = 0; i < tokens.length; i++) {
-				items[i] = new Str(tokens[i]);
-			}
-			return new ItemSequence(items);
-		default:
-			return null;
-		}
 	}
 
 	/**
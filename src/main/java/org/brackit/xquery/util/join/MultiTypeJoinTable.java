@@ -72,6 +72,8 @@ public class MultiTypeJoinTable {
 
 	private boolean numericPresent;
 
+	private int size;
+
 	public MultiTypeJoinTable(Cmp cmp, boolean isGCmp, boolean skipSort) {
 		this.cmp = cmp;
 		this.isGCmp = isGCmp;
@@ -98,6 +100,7 @@ public class MultiTypeJoinTable {
 			tables.put(type, table);
 		}
 		table.add(atomic, pos, bindings);
+		size++;
 		if (type.isNumeric()) {
 			numericPresent = true;
 		} else {
@@ -261,6 +264,10 @@ public class MultiTypeJoinTable {
 		}
 	}
 
+	public int size() {
+		return size;
+	}
+
 	public final FastList<Sequence[]> probe(Sequence keys)
 			throws QueryException {
 		if (keys == null) {
@@ -53,6 +53,7 @@ public class Ordering implements Comparator<Tuple> {
 	final OrderModifier[] modifier;
 	int offset;
 	TupleSort sort;
+	long spilledBytes;
 
 	public Ordering(Expr[] orderByExprs, OrderModifier[] modifier) {
 		this.orderByExprs = orderByExprs;
@@ -77,6 +78,7 @@ public class Ordering implements Comparator<Tuple> {
 
 	public Stream<Tuple> sorted() throws QueryException {
 		sort.sort();
+		spilledBytes += sort.getSpilledBytes();
 		Stream<Tuple> s = new TransformerStream<Tuple, Tuple>(sort.stream()) {
 			@Override
 			protected Tuple transform(Tuple next) throws DocumentException {
@@ -148,6 +150,14 @@ public class Ordering implements Comparator<Tuple> {
 		}
 	}
 
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	public int getBufferedCount() {
+		return (sort != null) ? sort.getBufferedCount() : 0;
+	}
+
 	public void clear() {
 		if (sort != null) {
 			sort.clear();
@@ -90,6 +90,8 @@ public class TupleSort {
 
 	private int initialRuns;
 
+	private long spilledBytes;
+
 	public TupleSort(Comparator<Tuple> comparator, long maxSize) {
 		this.comparator = comparator;
 		this.maxSize = maxSize;
@@ -129,6 +131,7 @@ public class TupleSort {
 		try {
 			if (currentRun != null) {
 				currentRun.close();
+				spilledBytes += runs[runCount - 1].length();
 			}
 
 			File run = File.createTempFile("sort", ".run", sortDir);
@@ -247,6 +250,7 @@ public class TupleSort {
 	private void closeLastRun() throws QueryException {
 		try {
 			currentRun.close();
+			spilledBytes += runs[runCount - 1].length();
 			lastInRun = null;
 		} catch (IOException e) {
 			errorCleanup();
@@ -509,6 +513,18 @@ public class TupleSort {
 		}
 	}
 
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * Returns the number of tuples currently buffered in main memory, i.e.,
+	 * not yet written to a run.
+	 */
+	public int getBufferedCount() {
+		return count;
+	}
+
 	public String printStats() {
 		StringBuilder out = new StringBuilder();
 		out.append(String.format("# initial runs: %s # merges: %s",
@@ -0,0 +1,726 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.util.xmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Una;
+import org.brackit.xquery.node.parser.SubtreeHandler;
+import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.util.serialize.SubtreePrinter;
+import org.brackit.xquery.xdm.DocumentException;
+
+/**
+ * Deterministic generator for XMark auction documents in the spirit of the
+ * original <code>xmlgen</code> tool. The document structure follows the XMark
+ * DTD and all references (persons, items, categories, open auctions) are
+ * valid, so that the standard XMark queries produce meaningful results. At
+ * scale factor 1.0, a document has the same number of persons, items,
+ * categories and auctions as an <code>xmlgen</code> document of the same
+ * factor (about 80MB of XML).
+ * <p>
+ * Documents can either be streamed directly into a {@link SubtreeHandler},
+ * e.g., to build them in a node factory or store without any intermediate
+ * XML, or written as XML text. The same factor and seed always yield the same
+ * document.
+ */
+public class XMarkGenerator implements SubtreeParser {
+
+	public static final long DEFAULT_SEED = 12345678;
+
+	private static final String[] REGIONS = { "africa", "asia", "australia",
+			"europe", "namerica", "samerica" };
+
+	private static final int[] REGION_ITEMS = { 550, 2000, 2200, 6000, 10000,
+			1000 };
+
+	private static final int CATEGORIES = 1000;
+
+	private static final int EDGES = 3800;
+
+	private static final int PERSONS = 25500;
+
+	private static final int OPEN_AUCTIONS = 12000;
+
+	private static final String[] WORDS = { "abandon", "abide", "accord",
+			"account", "against", "alas", "ancient", "angel", "anon", "answer",
+			"apparel", "arms", "attend", "authority", "banish", "bear",
+			"beauty", "bed", "beseech", "bitter", "blood", "bold", "bosom",
+			"brave", "breath", "brother", "business", "captain", "cause",
+			"charge", "cheek", "child", "choose", "church", "citizens",
+			"cold", "comfort", "command", "content", "counsel", "country",
+			"crown", "cruel", "daughter", "dead", "dear", "death", "deed",
+			"desire", "device", "duke", "duty", "earth", "enemy", "eternal",
+			"eyes", "fair", "faith", "false", "fame", "father", "fear",
+			"feast", "fellow", "fire", "flesh", "fool", "fortune", "france",
+			"friend", "gentle", "ghost", "give", "glory", "god", "gold",
+			"grace", "grave", "great", "grief", "guard", "hamlet", "hand",
+			"happy", "hast", "heart", "heaven", "honest", "honour", "hope",
+			"horse", "house", "humble", "husband", "joy", "judgement",
+			"justice", "king", "knave", "lady", "land", "leave", "letter",
+			"liberty", "life", "light", "lord", "love", "majesty", "malice",
+			"master", "matter", "mercy", "mind", "mistress", "money",
+			"mother", "murder", "music", "nature", "night", "noble", "oath",
+			"offence", "office", "pardon", "patience", "peace", "person",
+			"pity", "pleasure", "poor", "power", "prince", "purpose",
+			"queen", "quiet", "reason", "rest", "revenge", "rich", "royal",
+			"sake", "scorn", "sense", "servant", "shame", "sight", "silver",
+			"sleep", "soldier", "sorrow", "soul", "speak", "spirit", "state",
+			"strange", "sweet", "sword", "tears", "thee", "thought", "throne",
+			"time", "tongue", "truth", "tyrant", "villain", "virtue", "war",
+			"wife", "wisdom", "wit", "woman", "wonder", "world", "worth",
+			"wrong", "youth" };
+
+	private static final String[] FIRST_NAMES = { "Aamer", "Adil", "Agathe",
+			"Ahmed", "Aiichiro", "Akira", "Alain", "Alexander", "Alois",
+			"Amanda", "Anders", "Annemarie", "Benedikte", "Berthold",
+			"Bojan", "Carlo", "Claudia", "Dariusz", "Ebbe", "Elena", "Fumio",
+			"Gerhard", "Giovanna", "Hagen", "Hiroshi", "Ingrid", "Javam",
+			"Jaroslav", "Kazuhiro", "Lalit", "Libero", "Mehrdad", "Mikael",
+			"Nathalie", "Olaf", "Pascal", "Qiang", "Radek", "Sigrid",
+			"Takahiro", "Ulrich", "Vesna", "Wieslaw", "Xiaoyan", "Yechezkel",
+			"Zhenbing" };
+
+	private static final String[] LAST_NAMES = { "Aamodt", "Baeza", "Cappelli",
+			"Dittrich", "Egerstedt", "Fujisawa", "Glew", "Hartvigsen",
+			"Ishikawa", "Jansch", "Kandlur", "Lanzelotte", "Mahnke",
+			"Nakamura", "Ossenbruggen", "Pettersson", "Quittner", "Rive",
+			"Suwanda", "Takano", "Uchoa", "Vogel", "Wegerle", "Xiang",
+			"Yemenis", "Zolnowsky" };
+
+	private static final String[] DOMAINS = { "acm.org", "cmu.edu", "cohera.com",
+			"gmu.edu", "hitachi.com", "ibm.com", "sds.no", "uni-kl.de",
+			"washington.edu", "yahoo.com" };
+
+	private static final String[] COUNTRIES = { "United States", "Germany",
+			"Japan", "Moldova, Republic Of", "Brazil", "France", "Norway",
+			"Australia", "Kenya", "Canada" };
+
+	private static final String[] CITIES = { "Kaiserslautern", "Seattle",
+			"Tokyo", "Oslo", "Sydney", "Nairobi", "Toronto", "Paris",
+			"Chisinau", "Recife" };
+
+	private static final String[] PROVINCES = { "Alabama", "California",
+			"Florida", "Oregon", "Texas", "Vermont" };
+
+	private static final String[] EDUCATION = { "High School", "College",
+			"Graduate School", "Other" };
+
+	private static final String[] PAYMENT = { "Creditcard", "Money order",
+			"Personal Check", "Cash" };
+
+	private static final String[] SHIPPING = { "Will ship internationally",
+			"Will ship only within country", "Buyer pays fixed shipping charges",
+			"See description for charges" };
+
+	private static final String[] AUCTION_TYPES = { "Regular", "Featured",
+			"Dutch" };
+
+	private static final QNm SITE = new QNm("site");
+	private static final QNm REGIONS_ = new QNm("regions");
+	private static final QNm ITEM = new QNm("item");
+	private static final QNm ID = new QNm("id");
+	private static final QNm FEATURED = new QNm("featured");
+	private static final QNm LOCATION = new QNm("location");
+	private static final QNm QUANTITY = new QNm("quantity");
+	private static final QNm NAME = new QNm("name");
+	private static final QNm PAYMENT_ = new QNm("payment");
+	private static final QNm DESCRIPTION = new QNm("description");
+	private static final QNm SHIPPING_ = new QNm("shipping");
+	private static final QNm INCATEGORY = new QNm("incategory");
+	private static final QNm CATEGORY = new QNm("category");
+	private static final QNm MAILBOX = new QNm("mailbox");
+	private static final QNm MAIL = new QNm("mail");
+	private static final QNm FROM = new QNm("from");
+	private static final QNm TO = new QNm("to");
+	private static final QNm DATE = new QNm("date");
+	private static final QNm TEXT = new QNm("text");
+	private static final QNm PARLIST = new QNm("parlist");
+	private static final QNm LISTITEM = new QNm("listitem");
+	private static final QNm BOLD = new QNm("bold");
+	private static final QNm KEYWORD = new QNm("keyword");
+	private static final QNm EMPH = new QNm("emph");
+	private static final QNm CATEGORIES_ = new QNm("categories");
+	private static final QNm CATGRAPH = new QNm("catgraph");
+	private static final QNm EDGE = new QNm("edge");
+	private static final QNm PEOPLE = new QNm("people");
+	private static final QNm PERSON = new QNm("person");
+	private static final QNm EMAILADDRESS = new QNm("emailaddress");
+	private static final QNm PHONE = new QNm("phone");
+	private static final QNm ADDRESS = new QNm("address");
+	private static final QNm STREET = new QNm("street");
+	private static final QNm CITY = new QNm("city");
+	private static final QNm COUNTRY = new QNm("country");
+	private static final QNm PROVINCE = new QNm("province");
+	private static final QNm ZIPCODE = new QNm("zipcode");
+	private static final QNm HOMEPAGE = new QNm("homepage");
+	private static final QNm CREDITCARD = new QNm("creditcard");
+	private static final QNm PROFILE = new QNm("profile");
+	private static final QNm INCOME = new QNm("income");
+	private static final QNm INTEREST = new QNm("interest");
+	private static final QNm EDUCATION_ = new QNm("education");
+	private static final QNm GENDER = new QNm("gender");
+	private static final QNm BUSINESS = new QNm("business");
+	private static final QNm AGE = new QNm("age");
+	private static final QNm WATCHES = new QNm("watches");
+	private static final QNm WATCH = new QNm("watch");
+	private static final QNm OPEN_AUCTION = new QNm("open_auction");
+	private static final QNm OPEN_AUCTIONS_ = new QNm("open_auctions");
+	private static final QNm INITIAL = new QNm("initial");
+	private static final QNm RESERVE = new QNm("reserve");
+	private static final QNm BIDDER = new QNm("bidder");
+	private static final QNm TIME = new QNm("time");
+	private static final QNm PERSONREF = new QNm("personref");
+	private static final QNm INCREASE = new QNm("increase");
+	private static final QNm CURRENT = new QNm("current");
+	private static final QNm PRIVACY = new QNm("privacy");
+	private static final QNm ITEMREF = new QNm("itemref");
+	private static final QNm SELLER = new QNm("seller");
+	private static final QNm ANNOTATION = new QNm("annotation");
+	private static final QNm AUTHOR = new QNm("author");
+	private static final QNm HAPPINESS = new QNm("happiness");
+	private static final QNm TYPE = new QNm("type");
+	private static final QNm INTERVAL = new QNm("interval");
+	private static final QNm START = new QNm("start");
+	private static final QNm END = new QNm("end");
+	private static final QNm CLOSED_AUCTIONS = new QNm("closed_auctions");
+	private static final QNm CLOSED_AUCTION = new QNm("closed_auction");
+	private static final QNm BUYER = new QNm("buyer");
+	private static final QNm PRICE = new QNm("price");
+
+	private final long seed;
+
+	private final int[] regionItems;
+
+	private final int items;
+
+	private final int categories;
+
+	private final int edges;
+
+	private final int persons;
+
+	private final int openAuctions;
+
+	private SubtreeHandler handler;
+
+	private Random rnd;
+
+	private final StringBuilder buf = new StringBuilder();
+
+	public XMarkGenerator(double factor) {
+		this(factor, DEFAULT_SEED);
+	}
+
+	public XMarkGenerator(double factor, long seed) {
+		if (factor <= 0) {
+			throw new IllegalArgumentException("Illegal scale factor: "
+					+ factor);
+		}
+		this.seed = seed;
+		int totalItems = 0;
+		regionItems = new int[REGIONS.length];
+		for (int i = 0; i < REGIONS.length; i++) {
+			regionItems[i] = scale(REGION_ITEMS[i], factor);
+			totalItems += regionItems[i];
+		}
+		this.items = totalItems;
+		this.categories = scale(CATEGORIES, factor);
+		this.edges = scale(EDGES, factor);
+		this.persons = scale(PERSONS, factor);
+		// every item is sold in exactly one open or closed auction
+		this.openAuctions = Math.min(scale(OPEN_AUCTIONS, factor), items);
+	}
+
+	private static int scale(int count, double factor) {
+		return (int) Math.max(1, Math.round(count * factor));
+	}
+
+	public int getItemCount() {
+		return items;
+	}
+
+	public int getPersonCount() {
+		return persons;
+	}
+
+	public int getCategoryCount() {
+		return categories;
+	}
+
+	public int getOpenAuctionCount() {
+		return openAuctions;
+	}
+
+	public int getClosedAuctionCount() {
+		return items - openAuctions;
+	}
+
+	@Override
+	public void parse(SubtreeHandler handler) throws DocumentException {
+		this.handler = handler;
+		this.rnd = new Random(seed);
+		try {
+			handler.begin();
+			handler.beginFragment();
+			handler.startDocument();
+			handler.startElement(SITE);
+			generate();
+			handler.endElement(SITE);
+			handler.endDocument();
+			handler.endFragment();
+			handler.end();
+		} catch (DocumentException e) {
+			handler.fail();
+			throw e;
+		} finally {
+			this.handler = null;
+			this.rnd = null;
+		}
+	}
+
+	/**
+	 * Writes the document as XML text.
+	 */
+	public void write(Writer out) throws DocumentException {
+		PrintWriter pw = new PrintWriter(out, false);
+		parse(new SubtreePrinter(pw, true, false));
+		pw.flush();
+	}
+
+	public void write(File file) throws DocumentException {
+		try {
+			Writer out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(file), "UTF-8"), 1 << 16);
+			try {
+				write(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new DocumentException(e, "Error writing XMark document %s",
+					file);
+		}
+	}
+
+	private void generate() throws DocumentException {
+		// assign every item to exactly one auction
+		int[] auctionItems = new int[items];
+		for (int i = 0; i < items; i++) {
+			auctionItems[i] = i;
+		}
+		for (int i = items - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			int tmp = auctionItems[i];
+			auctionItems[i] = auctionItems[j];
+			auctionItems[j] = tmp;
+		}
+
+		handler.startElement(REGIONS_);
+		int itemNo = 0;
+		for (int i = 0; i < REGIONS.length; i++) {
+			QNm region = new QNm(REGIONS[i]);
+			handler.startElement(region);
+			for (int j = 0; j < regionItems[i]; j++) {
+				item(itemNo++);
+			}
+			handler.endElement(region);
+		}
+		handler.endElement(REGIONS_);
+
+		handler.startElement(CATEGORIES_);
+		for (int i = 0; i < categories; i++) {
+			category(i);
+		}
+		handler.endElement(CATEGORIES_);
+
+		handler.startElement(CATGRAPH);
+		for (int i = 0; i < edges; i++) {
+			handler.startElement(EDGE);
+			attribute(FROM, "category" + rnd.nextInt(categories));
+			attribute(TO, "category" + rnd.nextInt(categories));
+			handler.endElement(EDGE);
+		}
+		handler.endElement(CATGRAPH);
+
+		handler.startElement(PEOPLE);
+		for (int i = 0; i < persons; i++) {
+			person(i);
+		}
+		handler.endElement(PEOPLE);
+
+		handler.startElement(OPEN_AUCTIONS_);
+		for (int i = 0; i < openAuctions; i++) {
+			openAuction(i, auctionItems[i]);
+		}
+		handler.endElement(OPEN_AUCTIONS_);
+
+		handler.startElement(CLOSED_AUCTIONS);
+		for (int i = openAuctions; i < items; i++) {
+			closedAuction(auctionItems[i]);
+		}
+		handler.endElement(CLOSED_AUCTIONS);
+	}
+
+	private void item(int id) throws DocumentException {
+		handler.startElement(ITEM);
+		attribute(ID, "item" + id);
+		if (rnd.nextInt(10) == 0) {
+			attribute(FEATURED, "yes");
+		}
+		element(LOCATION, (rnd.nextInt(4) != 0) ? COUNTRIES[0] : pick(COUNTRIES));
+		element(QUANTITY, Integer.toString(1 + (rnd.nextInt(10) == 0 ? 1 : 0)));
+		element(NAME, words(1 + rnd.nextInt(3)));
+		element(PAYMENT_, list(PAYMENT));
+		description();
+		element(SHIPPING_, list(SHIPPING));
+		int incategories = 1 + rnd.nextInt(5);
+		for (int i = 0; i < incategories; i++) {
+			handler.startElement(INCATEGORY);
+			attribute(CATEGORY, "category" + rnd.nextInt(categories));
+			handler.endElement(INCATEGORY);
+		}
+		handler.startElement(MAILBOX);
+		int mails = rnd.nextInt(4);
+		for (int i = 0; i < mails; i++) {
+			handler.startElement(MAIL);
+			element(FROM, personName() + " mailto:" + email());
+			element(TO, personName() + " mailto:" + email());
+			element(DATE, date());
+			text(80);
+			handler.endElement(MAIL);
+		}
+		handler.endElement(MAILBOX);
+		handler.endElement(ITEM);
+	}
+
+	private void category(int id) throws DocumentException {
+		handler.startElement(CATEGORY);
+		attribute(ID, "category" + id);
+		element(NAME, words(1 + rnd.nextInt(3)));
+		description();
+		handler.endElement(CATEGORY);
+	}
+
+	private void person(int id) throws DocumentException {
+		handler.startElement(PERSON);
+		attribute(ID, "person" + id);
+		String last = pick(LAST_NAMES);
+		element(NAME, pick(FIRST_NAMES) + " " + last);
+		element(EMAILADDRESS, "mailto:" + last + "@" + pick(DOMAINS));
+		if (rnd.nextBoolean()) {
+			element(PHONE, "+" + rnd.nextInt(100) + " (" + (100 + rnd.nextInt(900))
+					+ ") " + (1000000 + rnd.nextInt(9000000)));
+		}
+		if (rnd.nextBoolean()) {
+			handler.startElement(ADDRESS);
+			element(STREET, (1 + rnd.nextInt(99)) + " " + pick(LAST_NAMES)
+					+ " St");
+			element(CITY, pick(CITIES));
+			element(COUNTRY, (rnd.nextInt(4) != 0) ? COUNTRIES[0]
+					: pick(COUNTRIES));
+			if (rnd.nextBoolean()) {
+				element(PROVINCE, pick(PROVINCES));
+			}
+			element(ZIPCODE, Integer.toString(rnd.nextInt(100)));
+			handler.endElement(ADDRESS);
+		}
+		if (rnd.nextBoolean()) {
+			element(HOMEPAGE, "http://www." + pick(DOMAINS) + "/~" + last);
+		}
+		if (rnd.nextBoolean()) {
+			element(CREDITCARD, (1000 + rnd.nextInt(9000)) + " "
+					+ (1000 + rnd.nextInt(9000)) + " "
+					+ (1000 + rnd.nextInt(9000)) + " "
+					+ (1000 + rnd.nextInt(9000)));
+		}
+		if (rnd.nextBoolean()) {
+			handler.startElement(PROFILE);
+			attribute(INCOME, price(40000, 25000));
+			int interests = rnd.nextInt(6);
+			for (int i = 0; i < interests; i++) {
+				handler.startElement(INTEREST);
+				attribute(CATEGORY, "category" + rnd.nextInt(categories));
+				handler.endElement(INTEREST);
+			}
+			if (rnd.nextBoolean()) {
+				element(EDUCATION_, pick(EDUCATION));
+			}
+			if (rnd.nextBoolean()) {
+				element(GENDER, rnd.nextBoolean() ? "male" : "female");
+			}
+			element(BUSINESS, rnd.nextBoolean() ? "Yes" : "No");
+			if (rnd.nextBoolean()) {
+				element(AGE, Integer.toString(18 + rnd.nextInt(50)));
+			}
+			handler.endElement(PROFILE);
+		}
+		if (rnd.nextBoolean()) {
+			handler.startElement(WATCHES);
+			int watches = rnd.nextInt(6);
+			for (int i = 0; i < watches; i++) {
+				handler.startElement(WATCH);
+				attribute(OPEN_AUCTION, "open_auction"
+						+ rnd.nextInt(openAuctions));
+				handler.endElement(WATCH);
+			}
+			handler.endElement(WATCHES);
+		}
+		handler.endElement(PERSON);
+	}
+
+	private void openAuction(int id, int item) throws DocumentException {
+		handler.startElement(OPEN_AUCTION);
+		attribute(ID, "open_auction" + id);
+		int initial = 100 + rnd.nextInt(20000);
+		element(INITIAL, cents(initial));
+		if (rnd.nextBoolean()) {
+			element(RESERVE, cents(initial + rnd.nextInt(initial)));
+		}
+		int current = initial;
+		int bidders = rnd.nextInt(11);
+		for (int i = 0; i < bidders; i++) {
+			int increase = 150 * (1 + rnd.nextInt(20));
+			current += increase;
+			handler.startElement(BIDDER);
+			element(DATE, date());
+			element(TIME, time());
+			handler.startElement(PERSONREF);
+			attribute(PERSON, "person" + rnd.nextInt(persons));
+			handler.endElement(PERSONREF);
+			element(INCREASE, cents(increase));
+			handler.endElement(BIDDER);
+		}
+		element(CURRENT, cents(current));
+		if (rnd.nextBoolean()) {
+			element(PRIVACY, rnd.nextBoolean() ? "Yes" : "No");
+		}
+		reference(ITEMREF, ITEM, "item" + item);
+		reference(SELLER, PERSON, "person" + rnd.nextInt(persons));
+		annotation();
+		element(QUANTITY, Integer.toString(1 + (rnd.nextInt(10) == 0 ? 1 : 0)));
+		element(TYPE, pick(AUCTION_TYPES));
+		handler.startElement(INTERVAL);
+		element(START, date());
+		element(END, date());
+		handler.endElement(INTERVAL);
+		handler.endElement(OPEN_AUCTION);
+	}
+
+	private void closedAuction(int item) throws DocumentException {
+		handler.startElement(CLOSED_AUCTION);
+		reference(SELLER, PERSON, "person" + rnd.nextInt(persons));
+		reference(BUYER, PERSON, "person" + rnd.nextInt(persons));
+		reference(ITEMREF, ITEM, "item" + item);
+		element(PRICE, cents(100 + rnd.nextInt(20000)));
+		element(DATE, date());
+		element(QUANTITY, Integer.toString(1 + (rnd.nextInt(10) == 0 ? 1 : 0)));
+		element(TYPE, pick(AUCTION_TYPES));
+		annotation();
+		handler.endElement(CLOSED_AUCTION);
+	}
+
+	private void annotation() throws DocumentException {
+		handler.startElement(ANNOTATION);
+		reference(AUTHOR, PERSON, "person" + rnd.nextInt(persons));
+		description();
+		element(HAPPINESS, Integer.toString(1 + rnd.nextInt(10)));
+		handler.endElement(ANNOTATION);
+	}
+
+	private void description() throws DocumentException {
+		handler.startElement(DESCRIPTION);
+		if (rnd.nextInt(3) == 0) {
+			parlist(0);
+		} else {
+			text(100);
+		}
+		handler.endElement(DESCRIPTION);
+	}
+
+	private void parlist(int depth) throws DocumentException {
+		handler.startElement(PARLIST);
+		int listitems = 1 + rnd.nextInt(3);
+		for (int i = 0; i < listitems; i++) {
+			handler.startElement(LISTITEM);
+			if ((depth < 2) && (rnd.nextInt(4) == 0)) {
+				parlist(depth + 1);
+			} else {
+				text(50);
+			}
+			handler.endElement(LISTITEM);
+		}
+		handler.endElement(PARLIST);
+	}
+
+	private void text(int maxWords) throws DocumentException {
+		handler.startElement(TEXT);
+		markup(maxWords, true);
+		handler.endElement(TEXT);
+	}
+
+	private void markup(int maxWords, boolean nested) throws DocumentException {
+		int words = 1 + rnd.nextInt(maxWords);
+		buf.setLength(0);
+		for (int i = 0; i < words; i++) {
+			if ((nested) && (rnd.nextInt(12) == 0)) {
+				flush();
+				int kind = rnd.nextInt(3);
+				QNm name = (kind == 0) ? BOLD : (kind == 1) ? KEYWORD : EMPH;
+				handler.startElement(name);
+				markup(6, (kind == 2));
+				handler.endElement(name);
+				buf.setLength(0);
+				buf.append(' ');
+			}
+			buf.append(pick(WORDS)).append(' ');
+		}
+		flush();
+	}
+
+	private void flush() throws DocumentException {
+		if (buf.length() > 0) {
+			handler.text(new Una(buf.toString()));
+			buf.setLength(0);
+		}
+	}
+
+	private void element(QNm name, String value) throws DocumentException {
+		handler.startElement(name);
+		handler.text(new Una(value));
+		handler.endElement(name);
+	}
+
+	private void reference(QNm name, QNm attribute, String value)
+			throws DocumentException {
+		handler.startElement(name);
+		attribute(attribute, value);
+		handler.endElement(name);
+	}
+
+	private void attribute(QNm name, String value) throws DocumentException {
+		handler.attribute(name, new Una(value));
+	}
+
+	private String pick(String[] values) {
+		return values[rnd.nextInt(values.length)];
+	}
+
+	private String words(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(pick(WORDS));
+		}
+		return sb.toString();
+	}
+
+	private String list(String[] values) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if ((rnd.nextBoolean()) || ((i == values.length - 1) && (sb
+					.length() == 0))) {
+				if (sb.length() > 0) {
+					sb.append(", ");
+				}
+				sb.append(values[i]);
+			}
+		}
+		return sb.toString();
+	}
+
+	private String personName() {
+		return pick(FIRST_NAMES) + " " + pick(LAST_NAMES);
+	}
+
+	private String email() {
+		return pick(LAST_NAMES) + "@" + pick(DOMAINS);
+	}
+
+	private String date() {
+		int month = 1 + rnd.nextInt(12);
+		int day = 1 + rnd.nextInt(28);
+		int year = 1998 + rnd.nextInt(4);
+		return ((month < 10) ? "0" : "") + month + "/" + ((day < 10) ? "0" : "")
+				+ day + "/" + year;
+	}
+
+	private String time() {
+		int h = rnd.nextInt(24);
+		int m = rnd.nextInt(60);
+		int s = rnd.nextInt(60);
+		return ((h < 10) ? "0" : "") + h + ":" + ((m < 10) ? "0" : "") + m + ":"
+				+ ((s < 10) ? "0" : "") + s;
+	}
+
+	private String price(double mean, double deviation) {
+		double price = mean + rnd.nextGaussian() * deviation;
+		return cents((int) Math.max(100, Math.round(price * 100)));
+	}
+
+	private static String cents(int cents) {
+		int fraction = cents % 100;
+		return (cents / 100) + ((fraction < 10) ? ".0" : ".") + fraction;
+	}
+
+	public static void main(String[] args) throws Exception {
+		double factor = 1.0;
+		long seed = DEFAULT_SEED;
+		String file = null;
+		for (int i = 0; i < args.length; i++) {
+			if (("-f".equals(args[i])) && (i + 1 < args.length)) {
+				factor = Double.parseDouble(args[++i]);
+			} else if (("-s".equals(args[i])) && (i + 1 < args.length)) {
+				seed = Long.parseLong(args[++i]);
+			} else if (("-o".equals(args[i])) && (i + 1 < args.length)) {
+				file = args[++i];
+			} else {
+				System.out.println(String.format(
+						"Usage: java %s [-f <factor>] [-s <seed>] [-o <file>]",
+						XMarkGenerator.class.getName()));
+				System.exit(-1);
+			}
+		}
+		XMarkGenerator generator = new XMarkGenerator(factor, seed);
+		if (file != null) {
+			generator.write(new File(file));
+		} else {
+			generator.write(new OutputStreamWriter(System.out, "UTF-8"));
+		}
+	}
+}
@@ -29,6 +29,7 @@ package org.brackit.xquery.xdm.type;
 
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.node.Vocabulary;
 import org.brackit.xquery.xdm.Item;
 import org.brackit.xquery.xdm.Kind;
 import org.brackit.xquery.xdm.Node;
@@ -41,21 +42,25 @@ import org.brackit.xquery.xdm.Type;
  */
 public final class AttributeType extends NodeType {
 	private final QNm name;
+	private final int vocID;
 
 	private final Type type;
 
 	public AttributeType() {
 		this.name = null;
+		this.vocID = -1;
 		this.type = null;
 	}
 
 	public AttributeType(QNm name) {
 		this.name = name;
+		this.vocID = (name != null) ? Vocabulary.id(name) : -1;
 		this.type = null;
 	}
 
 	public AttributeType(QNm name, Type type) {
 		this.name = name;
+		this.vocID = (name != null) ? Vocabulary.id(name) : -1;
 		this.type = type;
 	}
 
@@ -64,6 +69,11 @@ public final class AttributeType extends NodeType {
 		return name;
 	}
 
+	@Override
+	public int getVocID() {
+		return vocID;
+	}
+
 	@Override
 	public Type getType() {
 		return type;
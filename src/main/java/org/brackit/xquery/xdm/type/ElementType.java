@@ -29,6 +29,7 @@ package org.brackit.xquery.xdm.type;
 
 import org.brackit.xquery.QueryException;
 import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.node.Vocabulary;
 import org.brackit.xquery.xdm.Kind;
 import org.brackit.xquery.xdm.Node;
 import org.brackit.xquery.xdm.Type;
@@ -43,20 +44,24 @@ public final class ElementType extends NodeType {
 	public static final ElementType ELEMENT = new ElementType();
 	
 	private final QNm name;
+	private final int vocID;
 	private final Type type;
 
 	public ElementType() {
 		this.name = null;
+		this.vocID = -1;
 		this.type = null;
 	}
 
 	public ElementType(QNm name) {
 		this.name = name;
+		this.vocID = (name != null) ? Vocabulary.id(name) : -1;
 		this.type = null;
 	}
 
 	public ElementType(QNm name, Type type) {
 		this.name = name;
+		this.vocID = (name != null) ? Vocabulary.id(name) : -1;
 		this.type = type;
 	}
 
@@ -65,6 +70,11 @@ public final class ElementType extends NodeType {
 		return name;
 	}
 
+	@Override
+	public int getVocID() {
+		return vocID;
+	}
+
 	@Override
 	public Type getType() {
 		return type;
@@ -84,6 +84,15 @@ public abstract class NodeType implements ItemType {
 		return null;
 	}
 
+	/**
+	 * -1 indicates any name
+	 * 
+	 * @see org.brackit.xquery.node.Vocabulary
+	 */
+	public int getVocID() {
+		return -1;
+	}
+
 	/**
 	 * null indicates any type
 	 */
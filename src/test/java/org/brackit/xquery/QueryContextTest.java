@@ -0,0 +1,178 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.brackit.xquery.atomic.Int32;
+import org.junit.Test;
+
+public class QueryContextTest extends XQueryBaseTest {
+
+	@Test
+	public void cancel() throws Exception {
+		XQuery xq = new XQuery("count(1 to 100000000)");
+		ctx.cancel();
+		try {
+			xq.execute(ctx);
+			fail("query not cancelled");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_ABORTED_ERROR, e.getCode());
+		}
+	}
+
+	@Test
+	public void cancelAsync() throws Exception {
+		XQuery xq = new XQuery("count(for $a in 1 to 1000000000 return $a)");
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+				}
+				ctx.cancel();
+			}
+		}.start();
+		try {
+			xq.execute(ctx);
+			fail("query not cancelled");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_ABORTED_ERROR, e.getCode());
+		}
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		XQuery xq = new XQuery("count(for $a in 1 to 1000000000 "
+				+ "where $a < 0 return $a)");
+		ctx.setTimeout(50);
+		try {
+			xq.execute(ctx);
+			fail("query not timed out");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_RT_TIMEOUT_ERROR, e.getCode());
+		}
+	}
+
+	@Test
+	public void timeoutInPath() throws Exception {
+		StringBuilder doc = new StringBuilder("<r>");
+		for (int i = 0; i < 5000; i++) {
+			doc.append("<a/>");
+		}
+		storeDocument("r.xml", doc.append("</r>").toString());
+		XQuery xq = new XQuery("count(doc('r.xml')//a/following::a)");
+		ctx.setTimeout(20);
+		try {
+			xq.execute(ctx);
+			fail("query not timed out");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_RT_TIMEOUT_ERROR, e.getCode());
+		}
+	}
+
+	@Test
+	public void timeoutStartsWithQuery() throws Exception {
+		XQuery xq = new XQuery("count(1 to 10)");
+		ctx.setTimeout(100);
+		Thread.sleep(200);
+		ResultChecker.dCheck(new Int32(10), xq.execute(ctx));
+	}
+
+	@Test
+	public void maxTuples() throws Exception {
+		XQuery xq = new XQuery("count(for $a in 1 to 1000 "
+				+ "for $b in 1 to 1000 return $b)");
+		ctx.setMaxTuples(10000);
+		try {
+			xq.execute(ctx);
+			fail("tuple limit not enforced");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_RT_RESOURCE_LIMIT_ERROR, e
+					.getCode());
+		}
+	}
+
+	@Test
+	public void maxTuplesNotExceeded() throws Exception {
+		XQuery xq = new XQuery("count(for $a in 1 to 100 "
+				+ "for $b in 1 to 100 return $b)");
+		ctx.setMaxTuples(20000);
+		ResultChecker.dCheck(new Int32(10000), xq.execute(ctx));
+	}
+
+	@Test
+	public void maxMemoryOrderBy() throws Exception {
+		XQuery xq = new XQuery("count(for $a in 1 to 100000 "
+				+ "order by $a descending return $a)");
+		ctx.setMaxMemory(100000);
+		try {
+			xq.execute(ctx);
+			fail("memory limit not enforced");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_RT_RESOURCE_LIMIT_ERROR, e
+					.getCode());
+		}
+	}
+
+	@Test
+	public void maxMemoryOrderByWithinBudget() throws Exception {
+		// 1000 buffered tuples of width 2 are estimated at 48000 bytes
+		XQuery xq = new XQuery("count(for $a in 1 to 1000 "
+				+ "order by $a descending return $a)");
+		ctx.setMaxMemory(50000);
+		ResultChecker.dCheck(new Int32(1000), xq.execute(ctx));
+		assertEquals(0, ctx.getMemory());
+	}
+
+	@Test
+	public void maxMemoryGroupBy() throws Exception {
+		// grouping on the range variable itself would stream
+		XQuery xq = new XQuery("count(for $a in 1 to 100000 "
+				+ "let $b := $a * 2 group by $b return $b)");
+		ctx.setMaxMemory(100000);
+		try {
+			xq.execute(ctx);
+			fail("memory limit not enforced");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.BIT_DYN_RT_RESOURCE_LIMIT_ERROR, e
+					.getCode());
+		}
+	}
+
+	@Test
+	public void memoryReleased() throws Exception {
+		XQuery xq = new XQuery("sum(for $a in 1 to 1000 "
+				+ "let $b := $a mod 10 group by $b "
+				+ "order by $b return count($a))");
+		ctx.setMaxMemory(1000000);
+		ResultChecker.dCheck(new Int32(1000), xq.execute(ctx));
+		assertEquals(0, ctx.getMemory());
+	}
+}
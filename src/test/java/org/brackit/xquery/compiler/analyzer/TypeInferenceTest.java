@@ -0,0 +1,124 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.ErrorCode;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.compiler.optimizer.DefaultOptimizer;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.junit.Test;
+
+public class TypeInferenceTest extends XQueryBaseTest {
+
+	private XQuery xq;
+
+	private String explain(String query) throws QueryException {
+		xq = new XQuery(new ProfilingCompileChain(), query);
+		return xq.getStats().toString();
+	}
+
+	private String result() throws QueryException {
+		PrintStream buf = createBuffer();
+		xq.serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	@Test
+	public void numericArithmetic() throws Exception {
+		String plan = explain("for $i in 1 to 5 return $i * 2 - 1");
+		assertTrue(plan.contains("NumericArithmeticExpr"));
+		assertFalse(plan.contains(" ArithmeticExpr"));
+		assertEquals("1 3 5 7 9", result());
+	}
+
+	@Test
+	public void untypedArithmetic() throws Exception {
+		String plan = explain("let $d := <a>2</a> return $d * 2");
+		assertFalse(plan.contains("NumericArithmeticExpr"));
+		assertEquals("4", result());
+	}
+
+	@Test
+	public void atomicComparison() throws Exception {
+		String plan = explain("for $i in 1 to 5 where $i * 2 gt 4 "
+				+ "return $i = 4");
+		assertTrue(plan.contains("AtomicCmpExpr"));
+		assertFalse(plan.contains("GCmpExpr"));
+		assertEquals("false true false", result());
+	}
+
+	@Test
+	public void untypedComparison() throws Exception {
+		String plan = explain("let $d := <a>1</a> return ($d = 1, $d eq '1')");
+		assertFalse(plan.contains("AtomicCmpExpr"));
+		assertEquals("true true", result());
+	}
+
+	@Test
+	public void doubleComparison() throws Exception {
+		String plan = explain("for $s in ('NaN', '1') "
+				+ "let $d := xs:double($s) return ($d eq $d, $d lt 2e0)");
+		assertTrue(plan.contains("AtomicCmpExpr"));
+		assertEquals("false false true true", result());
+	}
+
+	@Test
+	public void redundantTypeCheck() throws Exception {
+		explain("let $x as xs:integer := 1 to 3 return $x");
+		try {
+			result();
+			fail("type error not detected");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.ERR_TYPE_INAPPROPRIATE_TYPE, e.getCode());
+		}
+		explain("for $x as xs:decimal in 1 to 3 return $x");
+		assertEquals("1 2 3", result());
+	}
+
+	@Test
+	public void typingDisabled() throws Exception {
+		boolean typing = DefaultOptimizer.STATIC_TYPING;
+		DefaultOptimizer.STATIC_TYPING = false;
+		try {
+			String plan = explain("for $i in 1 to 5 return $i * 2 - 1");
+			assertFalse(plan.contains("NumericArithmeticExpr"));
+			assertEquals("1 3 5 7 9", result());
+		} finally {
+			DefaultOptimizer.STATIC_TYPING = typing;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.junit.Test;
+
+public class CommonSubexpressionsTest extends XQueryBaseTest {
+
+	private static final String ITEMS = "let $d := <r><i><p>5</p></i>"
+			+ "<i><p>20</p></i><i><p>15</p></i></r> ";
+
+	private XQuery xq;
+
+	private String explain(String query) throws QueryException {
+		xq = new XQuery(new ProfilingCompileChain(), query);
+		return xq.getStats().toString();
+	}
+
+	private String result() throws QueryException {
+		PrintStream buf = createBuffer();
+		xq.serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	private int count(String plan, String s) {
+		int count = 0;
+		for (int i = plan.indexOf(s); i >= 0; i = plan.indexOf(s, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	public void repeatedPath() throws Exception {
+		String plan = explain(ITEMS + "for $i in $d/i where $i/p > 10 "
+				+ "order by $i/p descending return string($i/p)");
+		assertEquals(1, count(plan, "CHILD::element(\"p\")"));
+		assertEquals("20 15", result());
+	}
+
+	@Test
+	public void repeatedPathWithPredicate() throws Exception {
+		String plan = explain(ITEMS + "for $i in $d/i "
+				+ "where xs:int($d/i[1]/p) < xs:int($i/p) "
+				+ "and xs:int($d/i[2]/p) > xs:int($i/p) "
+				+ "return (string($d/i[1]/p), string($i/p))");
+		assertEquals(3, count(plan, "CHILD::element(\"p\")"));
+		assertEquals("5 15", result());
+	}
+
+	@Test
+	public void groupByRebindsVariables() throws Exception {
+		String query = ITEMS + "for $i in $d/i let $k := $i/p > 10 "
+				+ "where $i/p > 1 group by $k "
+				+ "return string-join($i/p/text(), ',')";
+		boolean cse = DefaultOptimizer.CSE;
+		DefaultOptimizer.CSE = false;
+		String expected;
+		try {
+			explain(query);
+			expected = result();
+		} finally {
+			DefaultOptimizer.CSE = cse;
+		}
+		String plan = explain(query);
+		assertEquals(2, count(plan, "CHILD::element(\"p\")"));
+		assertEquals(expected, result());
+	}
+
+	@Test
+	public void nestedScopesNotHoisted() throws Exception {
+		explain(ITEMS + "for $i in $d/i return "
+				+ "(for $j in $i/p return $j/text(), "
+				+ "for $j in $i/p return $j/text())");
+		assertEquals("5520201515", result());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.junit.Test;
+
+public class ConstantFoldingTest extends XQueryBaseTest {
+
+	private XQuery xq;
+
+	private String explain(String query) throws QueryException {
+		xq = new XQuery(new ProfilingCompileChain(), query);
+		return xq.getStats().toString();
+	}
+
+	private String result() throws QueryException {
+		PrintStream buf = createBuffer();
+		xq.serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	@Test
+	public void foldNestedArithmetic() throws Exception {
+		String plan = explain("for $i in 1 to 2 return $i * ((1 + 2) * -3)");
+		assertFalse(plan.contains("(Int32 + Int32)"));
+		assertTrue(plan.contains("Int32 [-9]"));
+		assertEquals("-9 -18", result());
+	}
+
+	@Test
+	public void foldConstructorFunction() throws Exception {
+		String plan = explain("for $i in 1 to 2 "
+				+ "return xs:date('2012-03-04') + xs:dayTimeDuration('P1D')");
+		assertFalse(plan.contains("FunctionExpr"));
+		assertEquals("2012-03-05 2012-03-05", result());
+	}
+
+	@Test
+	public void foldConcat() throws Exception {
+		String plan = explain("concat('a', 'b', upper-case('c'))");
+		assertFalse(plan.contains("FunctionExpr"));
+		assertEquals("abC", result());
+	}
+
+	@Test
+	public void mergeConcatLiterals() throws Exception {
+		String plan = explain("for $i in ('x', 'y') "
+				+ "return concat('a', 'b', $i, 'c', 'd')");
+		assertTrue(plan.contains("Str [ab]"));
+		assertTrue(plan.contains("Str [cd]"));
+		assertEquals("abxcd abycd", result());
+	}
+
+	@Test
+	public void keepErroneousExpression() throws Exception {
+		String plan = explain("if (1 = 2) then 1 idiv 0 else 'ok'");
+		assertTrue(plan.contains("ArithmeticExpr"));
+		assertEquals("ok", result());
+	}
+
+	@Test
+	public void keepTimezoneDependentComparison() throws Exception {
+		String plan = explain("xs:dateTime('2012-03-04T10:00:00') "
+				+ "= xs:dateTime('2012-03-04T10:00:00Z')");
+		// the general comparison is specialized for singleton atomics
+		assertTrue(plan.contains("AtomicCmpExpr"));
+		assertEquals("true", result());
+	}
+
+	@Test
+	public void foldingDisabled() throws Exception {
+		boolean folding = DefaultOptimizer.FOLDING;
+		DefaultOptimizer.FOLDING = false;
+		try {
+			String plan = explain("1 + 2");
+			assertTrue(plan.contains("ArithmeticExpr"));
+			assertEquals("3", result());
+		} finally {
+			DefaultOptimizer.FOLDING = folding;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.ErrorCode;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.compiler.BaseResolver;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.junit.Test;
+
+public class FunctionInliningTest extends XQueryBaseTest {
+
+	private static final String LIB = "module namespace lib=\"http://brackit.org/lib/match\"; "
+			+ "declare function lib:matches($a as xs:integer) "
+			+ "{ for $b in (2, 3, 4) where $a = $b return $b };";
+
+	private XQuery xq;
+
+	private String explain(String query) throws QueryException {
+		return explain(new ProfilingCompileChain(), query);
+	}
+
+	private String explain(ProfilingCompileChain chain, String query)
+			throws QueryException {
+		xq = new XQuery(chain, query);
+		return xq.getStats().toString();
+	}
+
+	private String result() throws QueryException {
+		PrintStream buf = createBuffer();
+		xq.serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	@Test
+	public void inlineWithRenaming() throws Exception {
+		String plan = explain("declare function local:f($x as xs:integer) "
+				+ "as xs:integer { let $y := $x * 2 return $y + 1 }; "
+				+ "for $x in 1 to 3 let $y := local:f($x) "
+				+ "return local:f($y)");
+		assertFalse(plan.contains("FunctionExpr"));
+		assertEquals("7 11 15", result());
+	}
+
+	@Test
+	public void inlineNested() throws Exception {
+		String plan = explain("declare function local:g($s) { ($s, $s) }; "
+				+ "declare function local:f($s as xs:string) as xs:string* "
+				+ "{ local:g($s) }; local:f('a'), local:f('b')");
+		assertFalse(plan.contains("FunctionExpr"));
+		assertEquals("a a b b", result());
+	}
+
+	@Test
+	public void inlineConvertsArguments() throws Exception {
+		explain("declare function local:f($x as xs:double) as xs:string "
+				+ "{ string($x * 2) }; "
+				+ "local:f(xs:untypedAtomic('1.5')), local:f(2)");
+		assertEquals("3 4", result());
+	}
+
+	@Test
+	public void inlineChecksResultType() throws Exception {
+		explain("declare function local:f($x) as xs:integer { $x }; "
+				+ "local:f('1')");
+		try {
+			result();
+			fail("type error not detected");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.ERR_TYPE_INAPPROPRIATE_TYPE, e.getCode());
+		}
+	}
+
+	@Test
+	public void recursiveNotInlined() throws Exception {
+		String plan = explain("declare function local:even($n as xs:integer) "
+				+ "as xs:boolean { if ($n = 0) then true() "
+				+ "else local:odd($n - 1) }; "
+				+ "declare function local:odd($n as xs:integer) "
+				+ "as xs:boolean { if ($n = 0) then false() "
+				+ "else local:even($n - 1) }; local:even(10)");
+		assertTrue(plan.contains("FunctionExpr"));
+		assertEquals("true", result());
+	}
+
+	@Test
+	public void globalVariableNotInlined() throws Exception {
+		String plan = explain("declare variable $a := 2; "
+				+ "declare function local:f($x) { $x * $a }; local:f(3)");
+		assertTrue(plan.contains("FunctionExpr"));
+		assertEquals("6", result());
+	}
+
+	@Test
+	public void focusDependentNotInlined() throws Exception {
+		String[] bodies = { "position()", "last()" };
+		for (String body : bodies) {
+			try {
+				explain("declare function local:f() { " + body + " }; "
+						+ "(1,2,3)[local:f() eq 2]");
+				result();
+				fail("undefined focus not detected");
+			} catch (QueryException e) {
+				assertEquals(
+						ErrorCode.ERR_DYNAMIC_CONTEXT_VARIABLE_NOT_DEFINED,
+						e.getCode());
+			}
+		}
+	}
+
+	@Test
+	public void joinInLibraryFunction() throws Exception {
+		BaseResolver resolver = new BaseResolver();
+		ProfilingCompileChain chain = new ProfilingCompileChain(resolver);
+		new XQuery(chain, LIB);
+		String plan = explain(chain,
+				"import module namespace lib=\"http://brackit.org/lib/match\"; "
+						+ "for $a in (1, 2, 3) return lib:matches($a)");
+		assertFalse(plan.contains("FunctionExpr"));
+		assertTrue(plan.contains("Join"));
+		assertEquals("2 3", result());
+	}
+
+	@Test
+	public void inliningDisabled() throws Exception {
+		boolean inline = DefaultOptimizer.INLINE;
+		DefaultOptimizer.INLINE = false;
+		try {
+			String plan = explain("declare function local:f($x) { $x + 1 }; "
+					+ "local:f(1)");
+			assertTrue(plan.contains("FunctionExpr"));
+			assertEquals("2", result());
+		} finally {
+			DefaultOptimizer.INLINE = inline;
+		}
+	}
+}
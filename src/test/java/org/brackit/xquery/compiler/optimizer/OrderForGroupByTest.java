@@ -0,0 +1,162 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.CompileChain;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.module.StaticContext;
+import org.junit.Test;
+
+public class OrderForGroupByTest extends XQueryBaseTest {
+
+	private AST optimized;
+
+	private class CapturingCompileChain extends CompileChain {
+		@Override
+		protected Optimizer getOptimizer(Map<QNm, Str> options) {
+			return new TopDownOptimizer(options) {
+				@Override
+				public AST optimize(StaticContext sctx, AST ast)
+						throws QueryException {
+					optimized = super.optimize(sctx, ast);
+					return optimized;
+				}
+			};
+		}
+	}
+
+	@Test
+	public void unorderedInput() throws Exception {
+		String res = evaluate("for $x in (3, 1, 2, 1, 3) let $y := $x "
+				+ "group by $x return $x");
+		assertEquals("3 1 2", res);
+		assertEquals("hash", strategy());
+	}
+
+	@Test
+	public void orderedInput() throws Exception {
+		String res = evaluate("for $x in (3, 1, 2, 1, 3) order by $x "
+				+ "group by $x return $x");
+		assertEquals("1 2 3", res);
+		assertEquals("sequential", strategy());
+		assertEquals(1, orderBys(optimized));
+	}
+
+	@Test
+	public void orderedOnMultipleKeys() throws Exception {
+		String res = evaluate("for $x in (3, 1, 2, 1, 3) let $y := $x mod 2 "
+				+ "order by $y, $x descending "
+				+ "for $z in (1, 2) group by $x, $y "
+				+ "return concat($x, ':', count($z))");
+		assertEquals("2:2 3:4 1:4", res);
+		assertEquals("sequential", strategy());
+	}
+
+	@Test
+	public void rangeInput() throws Exception {
+		String res = evaluate("for $x in 1 to 5 let $y := $x * 2 "
+				+ "group by $x return $y");
+		assertEquals("2 4 6 8 10", res);
+		assertEquals("sequential", strategy());
+		assertEquals(0, orderBys(optimized));
+	}
+
+	@Test
+	public void rebindBreaksOrder() throws Exception {
+		String res = evaluate("for $x in (3, 1, 2, 1, 3) order by $x "
+				+ "let $x := 4 - $x group by $x return $x");
+		assertEquals("3 2 1", res);
+		assertEquals("hash", strategy());
+	}
+
+	@Test
+	public void lowCardinality() throws Exception {
+		String res = evaluate("for $x in 1 to 1000 let $k := $x mod 3 "
+				+ "group by $k return count($x)");
+		assertEquals("334 333 333", res);
+		assertEquals("hash", strategy());
+	}
+
+	@Test
+	public void highCardinality() throws Exception {
+		int maxGroups = DefaultOptimizer.MAX_HASH_GROUPS;
+		DefaultOptimizer.MAX_HASH_GROUPS = 100;
+		try {
+			String res = evaluate("for $x in 1 to 1000 "
+					+ "let $k := $x mod 500 group by $k "
+					+ "return count($x)");
+			assertEquals(500, res.split(" ").length);
+			assertEquals("sequential", strategy());
+			assertEquals(1, orderBys(optimized));
+		} finally {
+			DefaultOptimizer.MAX_HASH_GROUPS = maxGroups;
+		}
+	}
+
+	private String evaluate(String query) throws QueryException {
+		XQuery xq = new XQuery(new CapturingCompileChain(), "string-join("
+				+ "for $r in (" + query + ") return string($r), ' ')");
+		return xq.execute(ctx).toString();
+	}
+
+	private String strategy() {
+		AST groupBy = find(optimized, XQ.GroupBy);
+		return (groupBy.checkProperty("sequential")) ? "sequential" : "hash";
+	}
+
+	private int orderBys(AST node) {
+		int count = (node.getType() == XQ.OrderBy) ? 1 : 0;
+		for (int i = 0; i < node.getChildCount(); i++) {
+			count += orderBys(node.getChild(i));
+		}
+		return count;
+	}
+
+	private AST find(AST node, int type) {
+		if (node.getType() == type) {
+			return node;
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			AST found = find(node.getChild(i), type);
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+}
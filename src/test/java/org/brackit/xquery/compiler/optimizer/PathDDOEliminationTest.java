@@ -0,0 +1,174 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
+import org.brackit.xquery.compiler.AST;
+import org.brackit.xquery.compiler.CompileChain;
+import org.brackit.xquery.compiler.XQ;
+import org.brackit.xquery.module.StaticContext;
+import org.junit.Test;
+
+public class PathDDOEliminationTest extends XQueryBaseTest {
+
+	private static final String DOC = "let $d := <a><b><b><c>1</c></b><c>2</c></b>"
+			+ "<b><c>3</c><c>4</c></b></a> return ";
+
+	private AST optimized;
+
+	private class CapturingCompileChain extends CompileChain {
+		@Override
+		protected Optimizer getOptimizer(Map<QNm, Str> options) {
+			return new TopDownOptimizer(options) {
+				@Override
+				public AST optimize(StaticContext sctx, AST ast)
+						throws QueryException {
+					optimized = super.optimize(sctx, ast);
+					return optimized;
+				}
+			};
+		}
+	}
+
+	@Test
+	public void forBoundVariable() throws Exception {
+		String res = evaluate(DOC + "for $x in $d/b return $x/c/text()");
+		assertEquals("2 3 4", res);
+		assertEquals("b:skip c:skip text:skip", annotations());
+	}
+
+	@Test
+	public void parentOfForBoundVariable() throws Exception {
+		String res = evaluate(DOC + "for $x in $d//c return $x/../c/text()");
+		assertEquals("1 2 3 4 3 4", res);
+		assertEquals("descendant:skip parent:skip c:skip text:skip",
+				annotations());
+	}
+
+	@Test
+	public void nestedDescendants() throws Exception {
+		String res = evaluate(DOC + "$d//b//c/text()");
+		assertEquals("1 2 3 4", res);
+		assertEquals("descendant:skip descendant:join text", annotations());
+	}
+
+	@Test
+	public void structuralJoinOfNestedNodes() throws Exception {
+		String res = evaluate(DOC
+				+ "$d//b//descendant-or-self::node()/text()");
+		assertEquals("1 2 3 4", res);
+		assertEquals("descendant:skip descendant_or_self:join text:join",
+				annotations());
+	}
+
+	@Test
+	public void childOfRelatedNodes() throws Exception {
+		String res = evaluate(DOC + "$d//b/c/text()");
+		assertEquals("1 2 3 4", res);
+		assertEquals("descendant:skip c text", annotations());
+	}
+
+	@Test
+	public void unknownInput() throws Exception {
+		String res = evaluate(DOC
+				+ "(for $x in $d/b return $x)/c/text()");
+		assertEquals("2 3 4", res);
+		assertEquals("c:check text b:skip", annotations());
+	}
+
+	@Test
+	public void unknownMultiNodeInput() throws Exception {
+		String res = evaluate(DOC
+				+ "(for $x in ($d/b, $d/b/b) return $x)/c/text()");
+		assertEquals("1 2 3 4", res);
+	}
+
+	@Test
+	public void groupedVariable() throws Exception {
+		String res = evaluate(DOC + "for $x in $d//c let $k := 1 "
+				+ "group by $k return $x/../c/text()");
+		assertEquals("1 2 3 4", res);
+	}
+
+	private String evaluate(String query) throws QueryException {
+		XQuery xq = new XQuery(new CapturingCompileChain(), "string-join(("
+				+ query + "), ' ')");
+		return xq.execute(ctx).toString();
+	}
+
+	private String annotations() {
+		StringBuilder buf = new StringBuilder();
+		annotations(optimized, buf);
+		return buf.toString();
+	}
+
+	private void annotations(AST node, StringBuilder buf) {
+		if (node.getType() == XQ.PathExpr) {
+			for (int i = 1; i < node.getChildCount(); i++) {
+				AST step = node.getChild(i);
+				if (buf.length() > 0) {
+					buf.append(' ');
+				}
+				buf.append(stepName(step));
+				if (step.checkProperty("structuralJoin")) {
+					buf.append(":join");
+				} else if (step.checkProperty("skipDDO")) {
+					buf.append(":skip");
+				} else if (step.checkProperty("checkInput")) {
+					buf.append(":check");
+				}
+			}
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			annotations(node.getChild(i), buf);
+		}
+	}
+
+	private String stepName(AST step) {
+		if (step.getType() != XQ.StepExpr) {
+			return step.toString();
+		}
+		AST axis = step.getChild(0).getChild(0);
+		AST test = step.getChild(1);
+		if ((axis.getType() == XQ.CHILD) && (test.getType() == XQ.NameTest)) {
+			return test.getChild(0).getStringValue();
+		}
+		if (test.getType() == XQ.KindTestText) {
+			return "text";
+		}
+		return axis.toString().toLowerCase();
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.brackit.xquery.ResultChecker;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.sequence.ItemSequence;
+import org.brackit.xquery.xdm.Sequence;
+import org.junit.Test;
+
+public class ProfilingCompilerTest extends XQueryBaseTest {
+
+	@Test
+	public void noStatsWithoutProfiling() throws Exception {
+		assertNull(new XQuery("1 + 1").getStats());
+	}
+
+	@Test
+	public void explainBeforeExecution() throws Exception {
+		XQuery xq = new XQuery(new ProfilingCompileChain(),
+				"for $a in 1 to 10 return $a");
+		ProfileStats stats = xq.getStats();
+		assertNotNull(stats);
+		assertEquals(ProfileStats.Kind.EXPRESSION, stats.getKind());
+		assertEquals(0, stats.getCalls());
+		assertEquals(0, stats.getInclusiveNanos());
+	}
+
+	@Test
+	public void operatorTree() throws Exception {
+		XQuery xq = new XQuery(new ProfilingCompileChain(),
+				"for $a in 1 to 100 let $b := $a mod 10 "
+						+ "group by $b order by $b return $b");
+		Sequence res = xq.evaluate(ctx);
+		ProfileStats stats = xq.getStats();
+		ResultChecker.dCheck(intSequence(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), res);
+
+		ProfileStats orderBy = find(stats, "OrderBy");
+		assertEquals(1, orderBy.getOpens());
+		assertEquals(10, orderBy.getProduced());
+		assertTrue(orderBy.getInclusiveNanos() >= orderBy.getExclusiveNanos());
+
+		// inputs are children of their consumers
+		ProfileStats groupBy = orderBy.getChildren().get(0);
+		assertEquals("GroupBy", groupBy.getName());
+		assertEquals(10, groupBy.getProduced());
+		assertEquals(10, groupBy.getTableSize());
+		ProfileStats letBind = groupBy.getChildren().get(0);
+		assertEquals("LetBind", letBind.getName());
+		assertEquals(100, letBind.getProduced());
+		ProfileStats forBind = letBind.getChildren().get(0);
+		assertEquals("ForBind", forBind.getName());
+		assertEquals("Start", forBind.getChildren().get(0).getName());
+		assertEquals("RangeExpr", forBind.getChildren().get(1).getName());
+	}
+
+	@Test
+	public void joinInputs() throws Exception {
+		XQuery xq = new XQuery(new ProfilingCompileChain(),
+				"count(for $l in 1 to 20 for $r in 1 to 20 "
+						+ "where $l = $r return $r)");
+		Sequence res = xq.evaluate(ctx);
+		ProfileStats join = find(xq.getStats(), "TableJoin");
+		ResultChecker.dCheck(new Int32(20), res);
+		assertEquals(20, join.getProduced());
+		assertEquals(20, join.getTableSize());
+		int inputs = 0;
+		for (ProfileStats child : join.getChildren()) {
+			if (child.getKind() == ProfileStats.Kind.OPERATOR) {
+				assertEquals("ForBind", child.getName());
+				assertEquals(20, child.getProduced());
+				inputs++;
+			}
+		}
+		assertEquals(2, inputs);
+	}
+
+	@Test
+	public void render() throws Exception {
+		XQuery xq = new XQuery(new ProfilingCompileChain(),
+				"for $a in (1, 2, 3) where $a > 1 return \"a\"\"b\"");
+		xq.evaluate(ctx);
+		ProfileStats stats = xq.getStats();
+		String text = stats.toString();
+		assertTrue(text.contains("Select (opens=1 calls=3 tuples=2"));
+		String json = stats.toJSON();
+		assertTrue(json.startsWith("{\"kind\":\"expression\""));
+		assertTrue(json.contains("\"name\":\"Select\""));
+		assertTrue(json.contains("\\\"b"));
+	}
+
+	@Test
+	public void renderIndependentOfLocale() throws Exception {
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(Locale.GERMANY);
+		try {
+			XQuery xq = new XQuery(new ProfilingCompileChain(), "1 + 1");
+			xq.evaluate(ctx);
+			String text = xq.getStats().toString();
+			assertTrue(text.matches("(?s).*time=\\d+\\.\\d{3}ms.*"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void expressionOpensAreEvaluations() throws Exception {
+		XQuery xq = new XQuery(new ProfilingCompileChain(),
+				"for $a in 1 to 10 let $b := $a * 2 "
+						+ "return ($b, $b + 1)[. mod 3 = 0]");
+		xq.evaluate(ctx).iterate().next();
+		checkOpens(xq.getStats());
+	}
+
+	private void checkOpens(ProfileStats stats) {
+		if (stats.getKind() == ProfileStats.Kind.EXPRESSION) {
+			assertTrue(stats.getName(), stats.getOpens() <= stats.getCalls());
+		}
+		for (ProfileStats child : stats.getChildren()) {
+			checkOpens(child);
+		}
+	}
+
+	private ProfileStats find(ProfileStats stats, String name) {
+		if (stats.getName().equals(name)) {
+			return stats;
+		}
+		for (ProfileStats child : stats.getChildren()) {
+			ProfileStats found = find(child, name);
+			if (found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	private Sequence intSequence(int... v) {
+		Int32[] s = new Int32[v.length];
+		for (int i = 0; i < v.length; i++) {
+			s[i] = new Int32(v[i]);
+		}
+		return new ItemSequence(s);
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.compiler.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.QueryContext;
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.Tuple;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.compiler.profiler.ProfilingCompileChain;
+import org.brackit.xquery.expr.EmptyExpr;
+import org.brackit.xquery.xdm.Expr;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PredicateCompilerTest extends XQueryBaseTest {
+
+	private static final String ITEMS = "let $d := <r><i><p>5</p><q>x</q></i>"
+			+ "<i><p>20</p><q>y</q></i><i><p>15</p><p>1</p></i>"
+			+ "<i><p>7.5</p></i></r> for $i in $d/i ";
+
+	private boolean codegen;
+
+	private XQuery xq;
+
+	@Before
+	public void enable() {
+		codegen = PredicateCompiler.CODEGEN;
+		PredicateCompiler.CODEGEN = true;
+	}
+
+	@After
+	public void restore() {
+		PredicateCompiler.CODEGEN = codegen;
+	}
+
+	private String explain(String query) throws QueryException {
+		xq = new XQuery(new ProfilingCompileChain(), query);
+		return xq.getStats().toString();
+	}
+
+	private String result() throws QueryException {
+		PrintStream buf = createBuffer();
+		xq.serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	private String interpreted(String query) throws QueryException {
+		PredicateCompiler.CODEGEN = false;
+		try {
+			PrintStream buf = createBuffer();
+			new XQuery(query).serialize(ctx, buf);
+			return buf.toString();
+		} finally {
+			PredicateCompiler.CODEGEN = true;
+		}
+	}
+
+	private void check(String query, String expected) throws QueryException {
+		assertTrue(explain(query).contains("GeneratedPredicate"));
+		assertEquals(expected, result());
+		assertEquals(expected, interpreted(query));
+	}
+
+	@Test
+	public void untypedComparison() throws Exception {
+		check(ITEMS + "where $i/p[1] > 10 return string($i/p[1])", "20 15");
+	}
+
+	@Test
+	public void arithmetic() throws Exception {
+		check(ITEMS + "where $i/p[1] * 2 - 1 >= 29 or $i/q = \"x\" "
+				+ "return string($i/p[1])", "5 20 15");
+	}
+
+	@Test
+	public void valueComparison() throws Exception {
+		check(ITEMS + "where xs:decimal($i/p[1]) + 0 eq 7.5 "
+				+ "return string($i/p[1])", "7.5");
+	}
+
+	@Test
+	public void generalComparisonWithSequence() throws Exception {
+		check(ITEMS + "where $i/p < 2 and true() return string($i/p[1])",
+				"15");
+	}
+
+	@Test
+	public void inexactInteger() throws Exception {
+		check("for $i in (1, 2) where $i * 9007199254740991 > "
+				+ "9007199254740991 return $i", "2");
+	}
+
+	@Test
+	public void inexactDecimal() throws Exception {
+		check("for $i in (0.5, 0.1) where $i + 1 > 1.25 return $i", "0.5");
+	}
+
+	@Test
+	public void notANumber() throws Exception {
+		check(ITEMS + "where number($i/q) ne 1 return string($i/p[1])",
+				"5 20 15 7.5");
+	}
+
+	@Test
+	public void typeError() throws Exception {
+		explain(ITEMS + "where $i/q > 1 return string($i/p[1])");
+		try {
+			result();
+			fail("type error not detected");
+		} catch (QueryException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void notCompiled() throws Exception {
+		String plan = explain(ITEMS + "where $i/q = \"y\" "
+				+ "return string($i/p[1])");
+		assertFalse(plan.contains("GeneratedPredicate"));
+		assertEquals("20", result());
+	}
+
+	@Test
+	public void rareFallbacks() throws Exception {
+		// one fallback per 100 evaluations keeps the compiled code
+		FallbackPredicate p = new FallbackPredicate(100);
+		for (int i = 0; i < 100000; i++) {
+			p.evaluate(ctx, null);
+		}
+		assertEquals(100000, p.tests);
+	}
+
+	@Test
+	public void frequentFallbacks() throws Exception {
+		FallbackPredicate p = new FallbackPredicate(1);
+		for (int i = 0; i < 1000; i++) {
+			p.evaluate(ctx, null);
+		}
+		assertEquals(64, p.tests);
+	}
+
+	private static class FallbackPredicate extends CompiledPredicate {
+		final int every;
+		int tests;
+
+		FallbackPredicate(int every) {
+			super(new EmptyExpr(), new Expr[0]);
+			this.every = every;
+		}
+
+		@Override
+		protected boolean test(QueryContext ctx, Tuple tuple)
+				throws QueryException {
+			if (++tests % every == 0) {
+				// inexact result aborts the compiled code
+				exact(Double.POSITIVE_INFINITY);
+			}
+			return true;
+		}
+	}
+}
@@ -30,6 +30,8 @@ package org.brackit.xquery.expr;
 import org.brackit.xquery.ResultChecker;
 import org.brackit.xquery.XQuery;
 import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.Dec;
 import org.brackit.xquery.atomic.Int32;
 import org.brackit.xquery.xdm.Sequence;
 import org.junit.Test;
@@ -70,4 +72,35 @@ public class ArithmeticExprTest extends XQueryBaseTest {
 		ResultChecker.dCheck(new Int32(9), result);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void decimalAdd() throws Exception {
+		Sequence result = new XQuery("0.1 + 0.2").execute(ctx);
+		ResultChecker.dCheck(new Dec("0.3"), result);
+	}
+
+	@Test
+	public void integerPlusDecimal() throws Exception {
+		Sequence result = new XQuery("3 - 0.25 + 2 * 0.5").execute(ctx);
+		ResultChecker.dCheck(new Dec("3.75"), result);
+	}
+
+	@Test
+	public void decimalOverflow() throws Exception {
+		Sequence result = new XQuery(
+				"999999999999999999.9 * 10 + 99999999999999999.99").execute(ctx);
+		ResultChecker.dCheck(new Dec("10099999999999999998.99"), result);
+	}
+
+	@Test
+	public void decimalSum() throws Exception {
+		Sequence result = new XQuery("sum((1.25, 2.5, 3, -0.75))")
+				.execute(ctx);
+		ResultChecker.dCheck(new Dec("6"), result);
+	}
+
+	@Test
+	public void decimalPlusDouble() throws Exception {
+		Sequence result = new XQuery("0.5 + 1e0").execute(ctx);
+		ResultChecker.dCheck(new Dbl(1.5), result);
+	}
+}
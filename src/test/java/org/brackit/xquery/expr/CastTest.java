@@ -366,4 +366,25 @@ public class CastTest extends XQueryBaseTest {
 					ErrorCode.ERR_TYPE_INAPPROPRIATE_TYPE, e.getCode());
 		}
 	}
+
+	@Test
+	public void durationComponentOverflow() throws Exception {
+		try {
+			new XQuery("xs:dayTimeDuration('PT99999999999S')").execute(ctx);
+			fail("Invalid duration parsed");
+		} catch (QueryException e) {
+			assertEquals("Correct error code",
+					ErrorCode.ERR_INVALID_VALUE_FOR_CAST, e.getCode());
+		}
+	}
+
+	@Test
+	public void dateTimeFromStringWithTimezone() throws Exception {
+		Sequence res = new XQuery(
+				"xs:dateTime(' 2012-03-04T10:11:12.3456789-05:30 ')")
+				.execute(ctx);
+		ResultChecker.dCheck(new DateTime("2012-03-04T10:11:12.345678-05:30"),
+				res);
+		assertEquals(345678, ((DateTime) res).getMicros() % 1000000);
+	}
 }
@@ -0,0 +1,148 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintStream;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.junit.Test;
+
+public class UDFTest extends XQueryBaseTest {
+
+	@Test
+	public void memoizeRecursion() throws Exception {
+		assertEquals("23416728348467685", query("declare %memoize "
+				+ "function local:fib($n as xs:integer) as xs:integer { "
+				+ "if ($n < 2) then $n "
+				+ "else local:fib($n - 1) + local:fib($n - 2) }; "
+				+ "local:fib(80)"));
+		MemoTable table = ctx.getMemoTables().values().iterator().next();
+		assertEquals(81, table.getMisses());
+		assertEquals(78, table.getHits());
+		assertEquals(81, table.getSize());
+	}
+
+	@Test
+	public void memoizeEmptyResult() throws Exception {
+		assertEquals("2 4 2 4", query("declare %memoize "
+				+ "function local:even($n as xs:integer*) { "
+				+ "for $i in $n where $i mod 2 = 0 return $i }; "
+				+ "string-join(for $i in (1 to 2), "
+				+ "$x in (local:even(1), local:even((1 to 4)), "
+				+ "local:even(())) return string($x), ' ')"));
+		MemoTable table = ctx.getMemoTables().values().iterator().next();
+		assertEquals(3, table.getMisses());
+		assertEquals(3, table.getHits());
+	}
+
+	@Test
+	public void memoizeBounded() throws Exception {
+		assertEquals("1 2 3 1", query("declare %memoize('2') "
+				+ "function local:id($s as xs:string) { $s }; "
+				+ "string-join(for $s in ('1', '2', '3', '1') "
+				+ "return local:id($s), ' ')"));
+		MemoTable table = ctx.getMemoTables().values().iterator().next();
+		assertEquals(4, table.getMisses());
+		assertEquals(2, table.getEvictions());
+		assertEquals(2, table.getSize());
+	}
+
+	@Test
+	public void memoizeDistinguishesTypes() throws Exception {
+		assertEquals("true false", query("declare %memoize "
+				+ "function local:int($a as xs:anyAtomicType) { "
+				+ "$a instance of xs:integer }; "
+				+ "(local:int(1), local:int(1.0))"));
+	}
+
+	@Test
+	public void memoizeIgnoredForNodeParams() throws Exception {
+		assertEquals("a", query("declare %memoize "
+				+ "function local:name($n as node()) { name($n) }; "
+				+ "local:name(<a/>)"));
+		assertTrue(ctx.getMemoTables().isEmpty());
+	}
+
+	@Test
+	public void memoizeIgnoredForItemParams() throws Exception {
+		assertEquals("a b", query("declare %memoize "
+				+ "function local:name($n as item()*) { $n/name() }; "
+				+ "declare %memoize function local:untyped($n) { $n/name() }; "
+				+ "local:name(<a/>), local:untyped(<b/>)"));
+		assertTrue(ctx.getMemoTables().isEmpty());
+	}
+
+	@Test
+	public void tailRecursion() throws Exception {
+		assertEquals("20000100000", query("declare function "
+				+ "local:sum($n as xs:integer, $acc as xs:integer) "
+				+ "as xs:integer { if ($n = 0) then $acc "
+				+ "else local:sum($n - 1, $acc + $n) }; "
+				+ "local:sum(200000, 0)"));
+	}
+
+	@Test
+	public void mutualTailRecursion() throws Exception {
+		assertEquals("false true", query("declare function "
+				+ "local:even($n as xs:integer) as xs:boolean { "
+				+ "if ($n = 0) then true() else local:odd($n - 1) }; "
+				+ "declare function local:odd($n as xs:integer) as xs:boolean { "
+				+ "switch ($n) case 0 return false() "
+				+ "default return local:even($n - 1) }; "
+				+ "(local:even(200001), local:odd(200001))"));
+	}
+
+	@Test
+	public void tailCallInTypeswitch() throws Exception {
+		assertEquals("3", query("declare function "
+				+ "local:len($s as item()*, $acc as xs:integer) as xs:integer { "
+				+ "typeswitch ($s) case empty-sequence() return $acc "
+				+ "default return local:len(subsequence($s, 2), $acc + 1) }; "
+				+ "local:len(('a', 'b', 'c'), 0)"));
+	}
+
+	@Test
+	public void tailCallWithDifferentResultType() throws Exception {
+		// the callee's result must still be promoted to xs:double
+		assertEquals("true", query("declare function "
+				+ "local:i($n as xs:integer) as xs:integer { $n }; "
+				+ "declare function local:d($n as xs:integer) as xs:double { "
+				+ "local:i($n) }; " + "local:d(1) instance of xs:double"));
+	}
+
+	private String query(String query) throws QueryException {
+		PrintStream buf = createBuffer();
+		new XQuery(query).serialize(ctx, buf);
+		return buf.toString();
+	}
+}
@@ -42,6 +42,7 @@ import org.brackit.xquery.atomic.DTD;
 import org.brackit.xquery.atomic.Date;
 import org.brackit.xquery.atomic.DateTime;
 import org.brackit.xquery.atomic.Dbl;
+import org.brackit.xquery.atomic.Dec;
 import org.brackit.xquery.atomic.Int32;
 import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.atomic.Time;
@@ -1026,6 +1027,27 @@ public class FnTest extends XQueryBaseTest {
 		}
 	}
 
+	@Test
+	public void fnTokenizeDynamicPattern() throws Exception {
+		Sequence result = new XQuery(
+				"for $p in ('\\s+', ',') return fn:tokenize('a b,c', $p)")
+				.execute(ctx);
+		ResultChecker.dCheck(new ItemSequence(new Str("a"), new Str("b,c"),
+				new Str("a b"), new Str("c")), result);
+	}
+
+	@Test
+	public void fnReplaceDynamicReplacement() throws Exception {
+		try {
+			Sequence result = new XQuery(
+					"for $r in ('x', 'x$x') return fn:replace('abracadabra', 'bra', $r)")
+					.evaluate(ctx);
+			fail("Replacement string makes illegal use of dollar sign.");
+		} catch (QueryException e) {
+			assertEquals(ErrorCode.ERR_INVALID_REPLACEMENT_STRING, e.getCode());
+		}
+	}
+
 	@Test
 	public void fnYearsFromDuration() throws Exception {
 		Sequence result = new XQuery(
@@ -1608,6 +1630,36 @@ public class FnTest extends XQueryBaseTest {
 		ResultChecker.check(new Dbl(282.69), result);
 	}
 
+	@Test
+	public void fnDistinctValuesMixed() throws Exception {
+		Sequence result = new XQuery(
+				"distinct-values((1, 2.0, 1.0e0, 'a', xs:untypedAtomic('a'), "
+						+ "3.5, 2, xs:float(3.5), -0.0e0, 0, 'b'))")
+				.execute(ctx);
+		ResultChecker.dCheck(new ItemSequence(new Int32(1), new Dec("2.0"),
+				new Str("a"), new Dec("3.5"), new Dbl(-0.0), new Str("b")),
+				result);
+	}
+
+	@Test
+	public void fnDistinctValuesSpill() throws Exception {
+		int maxSize = Distinct.MAX_SIZE;
+		Distinct.MAX_SIZE = 50;
+		try {
+			String query = "let $s := distinct-values(for $i in 1 to 3000 "
+					+ "return ($i mod 700, string($i mod 300), "
+					+ "($i mod 64) div 8e0, $i mod 3 = 0)) "
+					+ "return (count($s), count($s[. instance of xs:string]), "
+					+ "count($s[. instance of xs:double]), "
+					+ "sum($s[. instance of xs:integer]))";
+			Sequence result = new XQuery(query).execute(ctx);
+			ResultChecker.dCheck(new ItemSequence(new Int32(1058), new Int32(
+					300), new Int32(57), new Int32(244650)), result);
+		} finally {
+			Distinct.MAX_SIZE = maxSize;
+		}
+	}
+
 	@Before
 	public void setUp() throws Exception, FileNotFoundException {
 		super.setUp();
@@ -0,0 +1,112 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.compiler.Bits;
+import org.brackit.xquery.compiler.CompileChain;
+import org.brackit.xquery.function.fn.Trace;
+import org.brackit.xquery.xdm.Function;
+import org.brackit.xquery.xdm.Signature;
+import org.brackit.xquery.xdm.Type;
+import org.brackit.xquery.xdm.type.AnyItemType;
+import org.brackit.xquery.xdm.type.AtomicType;
+import org.brackit.xquery.xdm.type.Cardinality;
+import org.brackit.xquery.xdm.type.SequenceType;
+import org.junit.Test;
+
+public class FunctionsTest {
+
+	static {
+		// registers the bit, io and json libraries
+		new CompileChain();
+	}
+
+	@Test
+	public void resolveLazily() {
+		Functions functions = new Functions();
+		Function count = functions.resolve(Functions.FN_COUNT, 1);
+		assertNotNull(count);
+		assertEquals(Functions.FN_COUNT, count.getName());
+		assertNotNull(functions.resolve(new QNm(Namespaces.FN_NSURI,
+				Namespaces.FN_PREFIX, "substring"), 3));
+		assertNotNull(functions.resolve(Type.INT.getName(), 1));
+		assertNotNull(functions.resolve(new QNm(Bits.BIT_NSURI,
+				Bits.BIT_PREFIX, "store"), 3));
+		assertNull(functions.resolve(new QNm(Namespaces.FN_NSURI,
+				Namespaces.FN_PREFIX, "no-such-function"), 0));
+	}
+
+	@Test
+	public void librariesDefineAnnouncedNames() {
+		// fails if a library does not match its precomputed name index
+		Functions functions = new Functions();
+		assertNotNull(functions.getPredefinedFunctions().get(
+				Functions.FN_DISTINCT));
+	}
+
+	@Test
+	public void retryFailedLibrary() {
+		final QNm first = new QNm("http://brackit.org/test", "t", "first");
+		final QNm second = new QNm("http://brackit.org/test", "t", "second");
+		Functions.predefine(new FunctionLibrary(first, second) {
+			private boolean failed;
+
+			protected void define() {
+				Functions.predefine(trace(first));
+				if (!failed) {
+					failed = true;
+					throw new RuntimeException("define failed");
+				}
+				Functions.predefine(trace(second));
+			}
+		});
+		Functions functions = new Functions();
+		try {
+			functions.resolve(second, 2);
+			fail("define did not fail");
+		} catch (RuntimeException e) {
+			assertEquals("define failed", e.getMessage());
+		}
+		assertNotNull(functions.resolve(second, 2));
+		Function[] funs = functions.getPredefinedFunctions().get(first);
+		assertEquals(1, funs.length);
+	}
+
+	private static Function trace(QNm name) {
+		return new Trace(name, new Signature(new SequenceType(AnyItemType.ANY,
+				Cardinality.ZeroOrMany), new SequenceType(AnyItemType.ANY,
+				Cardinality.ZeroOrMany), new SequenceType(AtomicType.STR,
+				Cardinality.One)));
+	}
+}
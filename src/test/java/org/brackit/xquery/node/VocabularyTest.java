@@ -0,0 +1,109 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.node.d2linked.D2Node;
+import org.brackit.xquery.node.d2linked.D2NodeFactory;
+import org.brackit.xquery.node.parser.DocumentParser;
+import org.brackit.xquery.xdm.Axis;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.Stream;
+import org.brackit.xquery.xdm.type.ElementType;
+import org.junit.Test;
+
+public class VocabularyTest {
+
+	@Test
+	public void vocIDs() throws Exception {
+		QNm a = new QNm("http://brackit.org/voc", "x", "a");
+		QNm b = new QNm("http://brackit.org/voc", "y", "a");
+		QNm c = new QNm("http://brackit.org/voc", "x", "c");
+		int id = Vocabulary.id(a);
+		assertEquals(id, Vocabulary.id(b));
+		assertTrue(id != Vocabulary.id(c));
+		assertEquals(a, Vocabulary.name(id));
+		assertEquals(id, new ElementType(b).getVocID());
+		assertEquals(-1, new ElementType().getVocID());
+	}
+
+	@Test
+	public void intern() throws Exception {
+		QNm a = Vocabulary.intern(new QNm("vocInternA"));
+		assertSame(a, Vocabulary.intern(new QNm("vocInternA")));
+		QNm prefixed = new QNm("", "p", "vocInternA");
+		assertNotSame(a, Vocabulary.intern(prefixed));
+	}
+
+	@Test
+	public void lookupDoesNotRegister() throws Exception {
+		D2Node doc = new D2NodeFactory().build(new DocumentParser(
+				"<a att='1'/>"));
+		Node<?> a = doc.getFirstChild();
+		int size = Vocabulary.size();
+		QNm unknown = new QNm("vocLookupUnknown");
+		assertEquals(-1, Vocabulary.lookup(unknown));
+		assertTrue(a.getAttribute(unknown) == null);
+		assertTrue(!a.deleteAttribute(unknown));
+		assertEquals(size, Vocabulary.size());
+		assertEquals(Vocabulary.id(new QNm("att")), Vocabulary
+				.lookup(new QNm("att")));
+	}
+
+	@Test
+	public void nameTests() throws Exception {
+		D2Node doc = new D2NodeFactory().build(new DocumentParser(
+				"<a><b/><c><b><b/></b></c><x:b xmlns:x='urn:x'/></a>"));
+		Node<?> a = doc.getFirstChild();
+		ElementType b = new ElementType(new QNm("b"));
+		assertEquals(1, count(a.performStep(Axis.CHILD, b)));
+		assertEquals(3, count(a.performStep(Axis.DESCENDANT, b)));
+		assertEquals(1, count(a.performStep(Axis.CHILD, new ElementType(
+				new QNm("urn:x", "y", "b")))));
+		assertEquals(0, count(a.performStep(Axis.DESCENDANT_OR_SELF,
+				new ElementType(new QNm("d")))));
+		assertTrue(a.getAttribute(new QNm("b")) == null);
+	}
+
+	private int count(Stream<? extends Node<?>> s) throws Exception {
+		int count = 0;
+		try {
+			while (s.next() != null) {
+				count++;
+			}
+		} finally {
+			s.close();
+		}
+		return count;
+	}
+}
@@ -27,10 +27,21 @@
  */
 package org.brackit.xquery.node.d2linked;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.brackit.xquery.atomic.QNm;
+import org.brackit.xquery.atomic.Str;
 import org.brackit.xquery.node.NodeTest;
 import org.brackit.xquery.node.parser.DocumentParser;
 import org.brackit.xquery.xdm.Collection;
 import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Kind;
+import org.brackit.xquery.xdm.Stream;
+import org.junit.Test;
 
 /**
  * 
@@ -44,4 +55,108 @@ public class D2NodeTest extends NodeTest<D2Node> {
 			throws DocumentException {
 		return new D2NodeFactory().build(documentParser).getCollection();
 	}
+
+	@Test
+	public void documentOrder() throws Exception {
+		D2Node root = new D2NodeFactory().build(
+				new DocumentParser("<a x='1'><b y='2'><c/>t</b><d/></a>"))
+				.getFirstChild();
+		checkOrder(root);
+	}
+
+	@Test
+	public void documentOrderAfterUpdates() throws Exception {
+		D2Node root = new D2NodeFactory().build(
+				new DocumentParser("<a><b/><c/><d/></a>")).getFirstChild();
+		D2Node b = root.getFirstChild();
+		D2Node c = b.getNextSibling();
+		D2Node d = c.getNextSibling();
+		assertTrue(b.cmp(c) < 0);
+		assertTrue(d.cmp(c) > 0);
+
+		D2Node e = c.insertBefore(new D2NodeFactory().element(new QNm("e")));
+		D2Node f = b.prepend(Kind.ELEMENT, new QNm("f"), null);
+		D2Node x = c.setAttribute(new QNm("x"), new Str("1"));
+		D2Node g = root.prepend(new D2NodeFactory().element(new QNm("g")));
+		assertTrue(e.cmp(c) < 0);
+		assertTrue(e.cmp(b) > 0);
+		assertTrue(f.cmp(b) > 0);
+		assertTrue(f.cmp(e) < 0);
+		assertTrue(x.cmp(c) > 0);
+		assertTrue(x.cmp(d) < 0);
+		assertTrue(g.cmp(b) < 0);
+		checkOrder(root);
+
+		c.delete();
+		assertTrue(x.cmp(d) < 0);
+		checkOrder(root);
+	}
+
+	@Test
+	public void cachedStringValue() throws Exception {
+		D2Node root = new D2NodeFactory().build(
+				new DocumentParser("<a><b>x</b><c>y<d>z</d></c></a>"))
+				.getFirstChild();
+		D2Node b = root.getFirstChild();
+		D2Node c = b.getNextSibling();
+		D2Node d = c.getLastChild();
+		assertEquals("xyz", root.getValue().stringValue());
+		assertTrue(b.getValue() == b.getFirstChild().getValue());
+		assertTrue(root.getValue() == root.getValue());
+
+		d.getFirstChild().setValue(new Str("Z"));
+		assertEquals("xyZ", root.getValue().stringValue());
+		assertEquals("yZ", c.getValue().stringValue());
+
+		c.append(Kind.TEXT, null, new Str("w"));
+		assertEquals("xyZw", root.getValue().stringValue());
+
+		d.delete();
+		assertEquals("xyw", root.getValue().stringValue());
+		assertEquals("yw", c.getValue().stringValue());
+
+		b.setValue(new Str("v"));
+		assertEquals("vyw", root.getValue().stringValue());
+		assertEquals("v", b.getValue().stringValue());
+
+		b.getFirstChild().delete();
+		assertEquals("", b.getValue().stringValue());
+		assertEquals("yw", root.getValue().stringValue());
+	}
+
+	@Test
+	public void documentOrderAcrossFragments() throws Exception {
+		D2NodeFactory factory = new D2NodeFactory();
+		D2Node a = factory.element(new QNm("a"));
+		D2Node b = factory.element(new QNm("b"));
+		D2Node ac = a.append(Kind.ELEMENT, new QNm("c"), null);
+		assertEquals(a.cmp(b), ac.cmp(b));
+		assertEquals(-a.cmp(b), b.cmp(ac));
+	}
+
+	private void checkOrder(D2Node root) throws Exception {
+		List<D2Node> nodes = new ArrayList<D2Node>();
+		collect(root, nodes);
+		for (int i = 0; i < nodes.size(); i++) {
+			for (int j = 0; j < nodes.size(); j++) {
+				int expected = (i < j) ? -1 : (i == j) ? 0 : 1;
+				assertEquals(nodes.get(i) + " vs. " + nodes.get(j), expected,
+						Integer.signum(nodes.get(i).cmp(nodes.get(j))));
+			}
+		}
+	}
+
+	private void collect(D2Node node, List<D2Node> nodes) throws Exception {
+		nodes.add(node);
+		Stream<D2Node> attributes = node.getAttributes();
+		for (D2Node a = attributes.next(); a != null; a = attributes.next()) {
+			nodes.add(a);
+		}
+		attributes.close();
+		Stream<D2Node> children = node.getChildren();
+		for (D2Node c = children.next(); c != null; c = children.next()) {
+			collect(c, nodes);
+		}
+		children.close();
+	}
 }
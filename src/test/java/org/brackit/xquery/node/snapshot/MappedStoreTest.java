@@ -0,0 +1,181 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintStream;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.Store;
+import org.junit.After;
+import org.junit.Test;
+
+public class MappedStoreTest extends XQueryBaseTest {
+
+	private File dir;
+
+	@Override
+	protected Store createStore() throws Exception {
+		dir = File.createTempFile("store", "");
+		dir.delete();
+		return new MappedStore(dir);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		delete(dir);
+	}
+
+	@Test
+	public void storeAndReopen() throws Exception {
+		query("bit:mkdir('auctions')");
+		query("bit:create('auctions/items')");
+		query("bit:store('auctions/items', <item id='1'><price>10</price></item>, false())");
+		query("bit:store('auctions/items', <item id='2'><price>32</price></item>, false())");
+		assertEquals("42", query("sum(collection('auctions/items')//price)"));
+		assertTrue(new File(dir, "auctions/items" + MappedStore.SUFFIX)
+				.isFile());
+
+		// open the same directory with a fresh store
+		store = new MappedStore(dir);
+		ctx = createContext();
+		assertEquals("1 2",
+				query("collection('auctions/items')/item/@id/string()"));
+	}
+
+	@Test
+	public void evictKeepsDocumentsInUse() throws Exception {
+		query("bit:store('c', (<a>1</a>, <a>2</a>))");
+		MappedCollection coll = (MappedCollection) store.lookup("c");
+		assertEquals(2, coll.getDocumentCount());
+		Node<?> doc = coll.getDocuments().next();
+		assertTrue(doc == coll.getDocuments().next());
+		coll.evict();
+		assertTrue(doc == coll.getDocuments().next());
+		assertEquals("1", doc.getValue().stringValue());
+	}
+
+	@Test
+	public void appendDocuments() throws Exception {
+		query("bit:create('c')");
+		MappedCollection coll = (MappedCollection) store.lookup("c");
+		long length = 0;
+		for (int i = 1; i <= 20; i++) {
+			query("bit:store('c', <a>" + i + "</a>, false())");
+			assertTrue(coll.getFile().length() > length);
+			length = coll.getFile().length();
+		}
+		Node<?> first = coll.getDocuments().next();
+		query("bit:store('c', <a>21</a>, false())");
+		assertTrue(first == coll.getDocuments().next());
+		assertEquals("231", query("sum(collection('c')/a)"));
+
+		store = new MappedStore(dir);
+		ctx = createContext();
+		assertEquals("231", query("sum(collection('c')/a)"));
+	}
+
+	@Test
+	public void removeDocument() throws Exception {
+		query("bit:store('c', (<a>1</a>, <a>2</a>, <a>3</a>))");
+		MappedCollection coll = (MappedCollection) store.lookup("c");
+		coll.remove(1);
+		assertEquals(2, coll.getDocumentCount());
+		assertEquals("1 3", query("collection('c')/a/string()"));
+		try {
+			coll.remove(1);
+			fail("removed document found");
+		} catch (DocumentException e) {
+			// expected
+		}
+
+		store = new MappedStore(dir);
+		ctx = createContext();
+		assertEquals("1 3", query("collection('c')/a/string()"));
+	}
+
+	@Test
+	public void rejectUpdates() throws Exception {
+		query("bit:store('c', <a>1</a>)");
+		try {
+			query("insert node <b/> into collection('c')/a");
+			fail("update of mapped document accepted");
+		} catch (QueryException e) {
+			// expected
+		}
+		assertEquals("<a>1</a>", query("collection('c')"));
+	}
+
+	@Test
+	public void drop() throws Exception {
+		query("bit:create('c')");
+		query("bit:drop('c')");
+		try {
+			store.lookup("c");
+			fail("dropped collection found");
+		} catch (DocumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void missingDirectory() throws Exception {
+		try {
+			query("bit:create('missing/c')");
+			fail("collection created in missing directory");
+		} catch (QueryException e) {
+			// expected
+		}
+		query("bit:mkdir('missing')");
+		query("bit:create('missing/c')");
+	}
+
+	private String query(String query) throws QueryException {
+		PrintStream buf = createBuffer();
+		new XQuery(query).serialize(ctx, buf);
+		return buf.toString();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
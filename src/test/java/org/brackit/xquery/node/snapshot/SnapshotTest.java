@@ -0,0 +1,165 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.node.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.node.parser.DocumentParser;
+import org.brackit.xquery.node.parser.SubtreeParser;
+import org.brackit.xquery.node.stream.ArrayStream;
+import org.brackit.xquery.util.serialize.SubtreePrinter;
+import org.brackit.xquery.xdm.Collection;
+import org.brackit.xquery.xdm.DocumentException;
+import org.brackit.xquery.xdm.Node;
+import org.brackit.xquery.xdm.SnapshotStore;
+import org.brackit.xquery.xdm.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotTest extends XQueryBaseTest {
+
+	private static final String DOC1 = "<a xmlns:x=\"urn:x\" id=\"1\">"
+			+ "<x:b x:att=\"v\">text</x:b><!--comment--><?pi data?>"
+			+ "<c>äöü<d/>tail</c></a>";
+
+	private static final String DOC2 = "<r><s>2</s><s>3</s></r>";
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("snapshot", ".bin");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void roundtrip() throws Exception {
+		Collection<?> coll = store.create("snap",
+				new ArrayStream<SubtreeParser>(new SubtreeParser[] {
+						new DocumentParser(DOC1), new DocumentParser(DOC2) }));
+		Snapshot.write(coll, file);
+
+		Snapshot snapshot = Snapshot.open(file);
+		assertEquals(2, snapshot.getDocumentCount());
+		Collection<?> copy = store.create("snapcopy", snapshot.getDocuments());
+		String expected = serialize(coll);
+		assertTrue(expected.contains("x:att=\"v\""));
+		assertEquals(expected, serialize(copy));
+	}
+
+	@Test
+	public void storeSaveAndOpen() throws Exception {
+		store.create("snapshot.xml", new DocumentParser(DOC2));
+		assertTrue(store instanceof SnapshotStore);
+		SnapshotStore snapshots = (SnapshotStore) store;
+		snapshots.save("snapshot.xml", file.getAbsolutePath());
+		store.drop("snapshot.xml");
+		snapshots.open("snapshot.xml", file.getAbsolutePath());
+		PrintStream buf = createBuffer();
+		new XQuery("sum(collection('snapshot.xml')//s)").serialize(ctx, buf);
+		assertEquals("5", buf.toString());
+	}
+
+	@Test
+	public void largeText() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			text.append((char) ('a' + (i % 26)));
+		}
+		String xml = "<a>" + text + "</a>";
+		Collection<?> coll = store.create("large", new DocumentParser(xml));
+		Snapshot.write(coll, file);
+		SubtreeParser parser = Snapshot.open(file).getDocument(0);
+		Collection<?> copy = store.create("largecopy", parser);
+		assertEquals(serialize(coll), serialize(copy));
+	}
+
+	@Test
+	public void multipleSegments() throws Exception {
+		Collection<?> coll = store.create("segments",
+				new ArrayStream<SubtreeParser>(new SubtreeParser[] {
+						new DocumentParser(DOC1), new DocumentParser(DOC2),
+						new DocumentParser(DOC1) }));
+		int segmentSize = Snapshot.SEGMENT_SIZE;
+		Snapshot.SEGMENT_SIZE = 1;
+		try {
+			Snapshot.write(coll, file);
+		} finally {
+			Snapshot.SEGMENT_SIZE = segmentSize;
+		}
+		Snapshot snapshot = Snapshot.open(file).append(
+				new ArrayStream<SubtreeParser>(
+						new SubtreeParser[] { new DocumentParser(DOC2) }));
+		assertEquals(4, snapshot.getDocumentCount());
+		Collection<?> copy = store.create("segmentscopy", Snapshot.open(file)
+				.getDocuments());
+		assertEquals(serialize(coll) + serialize(store.create("doc2",
+				new DocumentParser(DOC2))), serialize(copy));
+	}
+
+	@Test
+	public void invalidFile() throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.write(new byte[64]);
+		raf.close();
+		try {
+			Snapshot.open(file);
+			fail("invalid snapshot accepted");
+		} catch (DocumentException e) {
+			// expected
+		}
+	}
+
+	private String serialize(Collection<?> coll) throws Exception {
+		PrintStream buf = createBuffer();
+		Stream<? extends Node<?>> docs = coll.getDocuments();
+		try {
+			Node<?> doc;
+			while ((doc = docs.next()) != null) {
+				new SubtreePrinter(buf, false, false).print(doc);
+			}
+		} finally {
+			docs.close();
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.sequence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.ResultChecker;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Sequence;
+import org.junit.Test;
+
+public class MaterializingSequenceTest extends XQueryBaseTest {
+
+	private static class CountingSequence extends LazySequence {
+		final int n;
+		int iterations;
+
+		CountingSequence(int n) {
+			this.n = n;
+		}
+
+		@Override
+		public Iter iterate() {
+			iterations++;
+			return new BaseIter() {
+				int i;
+
+				@Override
+				public Item next() throws QueryException {
+					return (i < n) ? new Int32(++i) : null;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+	}
+
+	@Test
+	public void repeatedPositionalAccess() throws Exception {
+		CountingSequence s = new CountingSequence(5000);
+		for (int i = 1; i <= 5000; i++) {
+			assertEquals(new Int32(i), s.get(new Int32(i)));
+		}
+		assertNull(s.get(new Int32(5001)));
+		assertEquals(new Int32(5000), s.size());
+		assertTrue(s.iterations <= 2);
+	}
+
+	@Test
+	public void bufferedIteration() throws Exception {
+		CountingSequence s = new CountingSequence(3000);
+		MaterializingSequence m = new MaterializingSequence(s);
+		for (int k = 0; k < 3; k++) {
+			Iter it = m.iterate();
+			int i = 0;
+			Item item;
+			while ((item = it.next()) != null) {
+				assertEquals(new Int32(++i), item);
+			}
+			it.close();
+			assertEquals(3000, i);
+		}
+		assertEquals(new Int32(3000), m.size());
+		assertEquals(1, s.iterations);
+	}
+
+	@Test
+	public void truncatedBuffer() throws Exception {
+		CountingSequence s = new CountingSequence(100);
+		MaterializingSequence m = new MaterializingSequence(s, 10);
+		assertEquals(new Int32(5), m.get(new Int32(5)));
+		assertEquals(new Int32(42), m.get(new Int32(42)));
+		assertNull(m.get(new Int32(101)));
+		assertEquals(new Int32(100), m.size());
+		Iter it = m.iterate();
+		int i = 0;
+		Item item;
+		while ((item = it.next()) != null) {
+			assertEquals(new Int32(++i), item);
+		}
+		it.close();
+		assertEquals(100, i);
+	}
+
+	@Test
+	public void positionalAccessInQuery() throws Exception {
+		Sequence res = new XQuery("let $s := for $i in 1 to 2000 "
+				+ "where $i mod 2 = 0 return $i "
+				+ "return sum(for $i in 1 to count($s) return $s[$i])")
+				.execute(ctx);
+		ResultChecker.dCheck(new Int32(1001000), res);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.brackit.xquery.QueryException;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.sequence.BaseIter;
+import org.brackit.xquery.sequence.ItemSequence;
+import org.brackit.xquery.sequence.LazySequence;
+import org.brackit.xquery.sequence.MaterializingSequence;
+import org.brackit.xquery.xdm.Item;
+import org.brackit.xquery.xdm.Iter;
+import org.brackit.xquery.xdm.Sequence;
+import org.junit.Test;
+
+public class ExprUtilTest extends XQueryBaseTest {
+
+	private static class CountingSequence extends LazySequence {
+		final int n;
+		int iterations;
+
+		CountingSequence(int n) {
+			this.n = n;
+		}
+
+		@Override
+		public Iter iterate() {
+			iterations++;
+			return new BaseIter() {
+				int i;
+
+				@Override
+				public Item next() throws QueryException {
+					return (i < n) ? new Int32(++i) : null;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+	}
+
+	private int count(Sequence s) throws QueryException {
+		Iter it = s.iterate();
+		try {
+			int i = 0;
+			Item item;
+			while ((item = it.next()) != null) {
+				assertEquals(new Int32(++i), item);
+			}
+			return i;
+		} finally {
+			it.close();
+		}
+	}
+
+	@Test
+	public void emptyAndSingleton() throws Exception {
+		assertNull(ExprUtil.materialize(new CountingSequence(0)));
+		assertEquals(new Int32(1), ExprUtil.materialize(new CountingSequence(
+				1), false));
+		assertNull(ExprUtil.materialize(new ItemSequence()));
+	}
+
+	@Test
+	public void reusedSequence() throws Exception {
+		CountingSequence s = new CountingSequence(1000);
+		Sequence m = ExprUtil.materialize(s, true);
+		assertTrue(m instanceof ItemSequence);
+		assertEquals(new Int32(1000), m.size());
+		assertEquals(1000, count(m));
+		assertEquals(1, s.iterations);
+		assertSame(m, ExprUtil.materialize(m, true));
+	}
+
+	@Test
+	public void singlePassSequence() throws Exception {
+		CountingSequence s = new CountingSequence(1000);
+		Sequence m = ExprUtil.materialize(s, false);
+		assertEquals(1000, count(m));
+		assertEquals(1, s.iterations);
+		// further iterations recompute the source
+		assertEquals(1000, count(m));
+		assertEquals(2, s.iterations);
+	}
+
+	@Test
+	public void exceedingBudget() throws Exception {
+		int maxBuffer = MaterializingSequence.MAX_BUFFER;
+		MaterializingSequence.MAX_BUFFER = 100;
+		try {
+			CountingSequence s = new CountingSequence(1000);
+			assertSame(s, ExprUtil.materialize(s, true));
+			assertEquals(1000, count(s));
+		} finally {
+			MaterializingSequence.MAX_BUFFER = maxBuffer;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * [New BSD License]
+ * Copyright (c) 2011-2012, Brackit Project Team <info@brackit.org>  
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Brackit Project Team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.brackit.xquery.util.xmark;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.brackit.xquery.ResultChecker;
+import org.brackit.xquery.XQuery;
+import org.brackit.xquery.XQueryBaseTest;
+import org.brackit.xquery.atomic.Bool;
+import org.brackit.xquery.atomic.Int32;
+import org.brackit.xquery.node.parser.DocumentParser;
+import org.brackit.xquery.sequence.ItemSequence;
+import org.brackit.xquery.xdm.Sequence;
+import org.junit.Test;
+
+public class XMarkGeneratorTest extends XQueryBaseTest {
+
+	@Test
+	public void sameSeedSameDocument() throws Exception {
+		StringWriter doc1 = new StringWriter();
+		new XMarkGenerator(0.005, 42).write(doc1);
+		StringWriter doc2 = new StringWriter();
+		new XMarkGenerator(0.005, 42).write(doc2);
+		assertEquals(doc1.toString(), doc2.toString());
+	}
+
+	@Test
+	public void generatedEqualsParsed() throws Exception {
+		StringWriter doc = new StringWriter();
+		new XMarkGenerator(0.005).write(doc);
+		storeDocument("generated.xml", new XMarkGenerator(0.005));
+		DocumentParser parser = new DocumentParser(doc.toString());
+		parser.setRetainWhitespace(true);
+		storeDocument("parsed.xml", parser);
+		Sequence result = new XQuery(
+				"deep-equal(doc('generated.xml'), doc('parsed.xml'))")
+				.execute(ctx);
+		ResultChecker.dCheck(Bool.TRUE, result);
+	}
+
+	@Test
+	public void scaledCounts() throws Exception {
+		XMarkGenerator generator = new XMarkGenerator(0.01);
+		storeDocument("auction.xml", generator);
+		Sequence result = new XQuery(
+				"let $s := doc('auction.xml')/site return "
+						+ "(count($s/regions//item), count($s/people/person), "
+						+ "count($s/categories/category), "
+						+ "count($s/open_auctions/open_auction), "
+						+ "count($s/closed_auctions/closed_auction))")
+				.execute(ctx);
+		ResultChecker.dCheck(new ItemSequence(new Int32(218), new Int32(255),
+				new Int32(10), new Int32(120), new Int32(98)), result);
+		assertEquals(218, generator.getItemCount());
+		assertEquals(98, generator.getClosedAuctionCount());
+	}
+
+	@Test
+	public void validReferences() throws Exception {
+		storeDocument("auction.xml", new XMarkGenerator(0.01));
+		Sequence result = new XQuery(
+				"let $s := doc('auction.xml')/site return "
+						+ "(every $r in $s//itemref satisfies "
+						+ "exists($s/regions//item[@id = $r/@item]), "
+						+ "every $r in $s//(seller|buyer|personref|author) satisfies "
+						+ "exists($s/people/person[@id = $r/@person]), "
+						+ "count(distinct-values($s//itemref/@item)) = count($s//itemref))")
+				.execute(ctx);
+		ResultChecker.dCheck(new ItemSequence(Bool.TRUE, Bool.TRUE,
+				Bool.TRUE), result);
+	}
+}